@@ -0,0 +1,120 @@
+#!/bin/bash
+
+# Servlet 与响应式端点对比压测：大量慢速下载客户端占用连接时，同时发起的填写请求的延迟
+#
+# 前提：应用以 --formfill.reactive.enabled=true 启动（Servlet 端口 8080，响应式端口 8081）
+# 用法：./bench-reactive.sh
+# 可用环境变量调整：
+#   HOST=localhost SERVLET_PORT=8080 REACTIVE_PORT=8081
+#   SLOW_CLIENTS=300   慢速下载客户端数
+#   SLOW_RATE=32k      每个慢速客户端的读取速率（curl --limit-rate）
+#   FILLS=200          填写请求数
+#   CONCURRENCY=50     填写请求并发数
+#   ROWS=60000         用于下载的大文件行数（通过流式批量写入生成）
+#   FORM_NAME=员工信息表  填写请求使用的模板
+
+set -e
+
+HOST=${HOST:-localhost}
+SERVLET_PORT=${SERVLET_PORT:-8080}
+REACTIVE_PORT=${REACTIVE_PORT:-8081}
+SLOW_CLIENTS=${SLOW_CLIENTS:-300}
+SLOW_RATE=${SLOW_RATE:-32k}
+FILLS=${FILLS:-200}
+CONCURRENCY=${CONCURRENCY:-50}
+ROWS=${ROWS:-60000}
+FORM_NAME=${FORM_NAME:-员工信息表}
+BULK_FORM=${BULK_FORM:-纳期回答登记表}
+
+# 颜色定义
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+RED='\033[0;31m'
+NC='\033[0m' # No Color
+
+WORK_DIR=$(mktemp -d)
+trap 'jobs -p | xargs -r kill 2>/dev/null; rm -rf "$WORK_DIR"' EXIT
+
+urlencode() {
+    python3 -c 'import sys, urllib.parse; print(urllib.parse.quote(sys.argv[1]))' "$1"
+}
+
+for PORT in $SERVLET_PORT $REACTIVE_PORT; do
+    if ! curl -s -o /dev/null "http://$HOST:$PORT/api/download/none"; then
+        echo -e "${RED}❌ 端口 $PORT 无法连接，请确认应用已以 --formfill.reactive.enabled=true 启动${NC}"
+        exit 1
+    fi
+done
+
+# 生成一个较大的输出文件供慢速客户端下载（内核发送缓冲区能容纳的小文件体现不出慢速读取的影响）
+echo "📄 生成 $ROWS 行的下载文件..."
+awk -v rows="$ROWS" 'BEGIN { for (i = 0; i < rows; i++) printf "{\"a\":\"PO-%06d\",\"b\":\"物料%d\",\"c\":%d,\"d\":\"2024-05-31\",\"e\":\"备注%d\"}\n", i, i, i % 500, i }' \
+    > "$WORK_DIR/rows.ndjson"
+DOWNLOAD_URL=$(curl -s -X POST "http://$HOST:$SERVLET_PORT/api/fill-form/$(urlencode "$BULK_FORM")/rows?start=A5&columns=a,b,c,d,e" \
+    -H 'Content-Type: application/x-ndjson' --data-binary @"$WORK_DIR/rows.ndjson" \
+    | python3 -c 'import json, sys; print(json.load(sys.stdin)["download_url"])')
+DOWNLOAD_PATH="/api/download/$(urlencode "$(basename "$DOWNLOAD_URL")")"
+SIZE=$(curl -s -o /dev/null -w '%{size_download}' "http://$HOST:$SERVLET_PORT$DOWNLOAD_PATH")
+echo -e "${GREEN}✅ 下载文件 $(basename "$DOWNLOAD_URL")，$SIZE 字节${NC}"
+
+FILL_BODY="{\"formName\":\"$FORM_NAME\",\"cells\":[[2,2,\"压测\"],[3,2,\"男\"]]}"
+
+live_threads() {
+    curl -s "http://$HOST:$SERVLET_PORT/actuator/metrics/jvm.threads.live" \
+        | python3 -c 'import json, sys; print(int(json.load(sys.stdin)["measurements"][0]["value"]))' 2>/dev/null || echo "?"
+}
+
+run_stack() {
+    local name=$1 port=$2
+    local base="http://$HOST:$port"
+    local result="$WORK_DIR/$name.txt"
+
+    echo
+    echo "🚀 [$name] 启动 $SLOW_CLIENTS 个慢速下载客户端（$SLOW_RATE/s）..."
+    local threads_before
+    threads_before=$(live_threads)
+    local pids=()
+    for i in $(seq 1 "$SLOW_CLIENTS"); do
+        curl -s -o /dev/null --limit-rate "$SLOW_RATE" "$base$DOWNLOAD_PATH" &
+        pids+=($!)
+    done
+    sleep 3
+
+    echo "⏱  [$name] 发送 $FILLS 个填写请求，并发 $CONCURRENCY..."
+    local start end
+    start=$(date +%s.%N)
+    # 每个请求使用不同的 X-Client-Id，避免按调用方限流干扰结果
+    seq 1 "$FILLS" | xargs -P "$CONCURRENCY" -I{} curl -s -o /dev/null -w '%{http_code} %{time_total}\n' \
+        -X POST "$base/api/fill-form" -H 'Content-Type: application/json' -H 'X-Client-Id: bench-{}' \
+        -d "$FILL_BODY" > "$result"
+    end=$(date +%s.%N)
+    local threads_during
+    threads_during=$(live_threads)
+
+    kill "${pids[@]}" 2>/dev/null || true
+    wait "${pids[@]}" 2>/dev/null || true
+
+    awk '$1 == 200 { print $2 }' "$result" | sort -n > "$result.times"
+    awk -v name="$name" -v start="$start" -v end="$end" -v tb="$threads_before" -v td="$threads_during" \
+        -v ok="$(wc -l < "$result.times")" -v busy="$(awk '$1 == 429' "$result" | wc -l)" -v total="$(wc -l < "$result")" '
+        { t[NR] = $1 }
+        END {
+            p50 = ok ? t[int(ok * 0.50) + 1] : 0
+            p95 = ok ? t[int(ok * 0.95) + 1] : 0
+            p99 = ok ? t[int(ok * 0.99) + 1] : 0
+            max = ok ? t[ok] : 0
+            printf "%-9s 成功 %4d  429 %4d  其他 %4d  p50 %6.3fs  p95 %6.3fs  p99 %6.3fs  max %6.3fs  吞吐 %6.1f/s  JVM线程 %s -> %s\n",
+                name, ok, busy, total - ok - busy, p50, p95, p99, max, ok / (end - start), tb, td
+        }' "$result.times" >> "$WORK_DIR/summary.txt"
+    tail -1 "$WORK_DIR/summary.txt"
+}
+
+run_stack servlet "$SERVLET_PORT"
+run_stack reactive "$REACTIVE_PORT"
+
+echo
+echo -e "${YELLOW}📊 结果（慢速客户端 $SLOW_CLIENTS 个 @ $SLOW_RATE/s，填写 $FILLS 次 @ 并发 $CONCURRENCY）${NC}"
+cat "$WORK_DIR/summary.txt"
+echo
+echo "说明：两个端点的填写都经过准入控制（formfill.admission），429 表示超出内存预算或单模板并发上限；"
+echo "      Tomcat 对大文件使用 sendfile，慢速下载不一定占用请求线程，可将 SLOW_RATE 调低或 ROWS 调高观察差异。"
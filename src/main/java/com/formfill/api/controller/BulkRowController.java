@@ -0,0 +1,98 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.service.AdmissionControlService;
+import com.formfill.api.service.AdmissionRejectedException;
+import com.formfill.api.service.BulkRowService;
+import com.formfill.api.service.FillAbortedException;
+import com.formfill.api.service.FillDeadlineService;
+import com.formfill.api.service.RequestTimings;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming row ingestion API
+ *
+ * POST /api/fill-form/{formName}/rows?start=A8&columns=orderNo,partNo,qty:E
+ * 请求体为NDJSON（每行一条记录）或JSON数组，记录可以是按字段名的对象，也可以是按位置的数组。
+ * 记录边读边写，不需要先把整个请求体读入内存。
+ * 请求头 X-Deadline-Ms 给出客户端剩余等待时间，到期后在下一个检查点停止并返回504 DEADLINE_EXCEEDED。
+ */
+@RestController
+@RequestMapping("/api")
+public class BulkRowController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BulkRowController.class);
+    
+    @Autowired
+    private BulkRowService bulkRowService;
+    
+    @Autowired
+    private AdmissionControlService admissionControlService;
+    
+    @Autowired
+    private FillDeadlineService fillDeadlineService;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    @PostMapping(value = "/fill-form/{formName}/rows", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Map<String, Object>> fillRows(@PathVariable String formName,
+                                                        @RequestParam("start") String startCell,
+                                                        @RequestParam(value = "columns", required = false) String columns,
+                                                        @RequestParam(value = "timings", defaultValue = "false") boolean includeTimings,
+                                                        @RequestHeader(value = FillDeadlineService.DEADLINE_HEADER, required = false) Long deadlineMs,
+                                                        HttpServletRequest request) {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        fillDeadlineService.create(deadlineMs, null).attach();
+        try {
+            logger.info("Streaming rows into form: {} from {}", formName, startCell);
+            
+            // Only the SXSSF window is held in memory, so admission is charged for one window of rows
+            int columnCount = columns != null && !columns.isBlank() ? columns.split(",").length : 1;
+            Map<String, Object> result = admissionControlService.call(formName, BulkRowService.ROW_WINDOW * columnCount,
+                    () -> bulkRowService.fillRows(formName, startCell, columns, request.getInputStream()));
+            
+            if ((Boolean) result.get("success")) {
+                String outputFile = (String) result.get("output_file");
+                Map<String, Object> response = new HashMap<>(result);
+                response.put("message", "Rows written successfully");
+                response.put("download_url", "/api/download/" + Paths.get(outputFile).getFileName().toString());
+                response.put("timestamp", LocalDateTime.now().toString());
+                response.remove("fill_method");
+                return RequestTimings.withTimings(ResponseEntity.ok(), response, timings, includeTimings);
+            } else {
+                HttpStatus status = "TEMPLATE_NOT_FOUND".equals(result.get("code")) ? HttpStatus.NOT_FOUND
+                        : "INVALID_ROWS".equals(result.get("code")) ? HttpStatus.BAD_REQUEST
+                        : HttpStatus.INTERNAL_SERVER_ERROR;
+                Map<String, Object> errorResponse = new HashMap<>(result);
+                errorResponse.put("formName", formName);
+                return RequestTimings.withTimings(ResponseEntity.status(status), errorResponse, timings, includeTimings);
+            }
+        
+        } catch (FillAbortedException e) {
+            return RequestTimings.withTimings(ResponseEntity.status(fillDeadlineService.statusOf(e)),
+                    fillDeadlineService.aborted(e, formName), timings, includeTimings);
+        } catch (AdmissionRejectedException e) {
+            // 429 is written by FillExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error streaming rows into form '{}': {}", formName, e.getMessage(), e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Internal server error: " + e.getMessage());
+            errorResponse.put("code", "INTERNAL_ERROR");
+            return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR), errorResponse, timings, includeTimings);
+        }
+    }
+}
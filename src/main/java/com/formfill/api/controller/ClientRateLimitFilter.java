@@ -0,0 +1,99 @@
+package com.formfill.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.formfill.api.service.ClientRateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 填写与邮件接口的按调用方限流过滤器
+ *
+ * 先检查调用方令牌桶，超出速率直接返回429；再在加权公平队列中等待处理名额，
+ * 等待超时同样返回429，并通过 Retry-After 告知调用方何时重试。
+ */
+@Component
+public class ClientRateLimitFilter extends OncePerRequestFilter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ClientRateLimitFilter.class);
+    
+    public static final String API_KEY_HEADER = "X-API-Key";
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Autowired
+    private ClientRateLimiter clientRateLimiter;
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!clientRateLimiter.isEnabled() || !"POST".equalsIgnoreCase(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.startsWith("/api/fill-form") || path.equals("/api/email/send") || path.equals("/api/jobs/fill"));
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ClientRateLimiter.ClientPolicy client = clientRateLimiter.identify(
+                request.getHeader(API_KEY_HEADER), request.getHeader(CLIENT_ID_HEADER), request.getRemoteAddr());
+        
+        long waitNanos = clientRateLimiter.tryConsume(client);
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+            reject(response, "Rate limit exceeded for client: " + client.getTag(), "RATE_LIMITED", retryAfter);
+            return;
+        }
+        
+        boolean granted;
+        try {
+            granted = clientRateLimiter.acquireSlot(client);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            granted = false;
+        }
+        if (!granted) {
+            reject(response, "Request queue full or wait timed out for client: " + client.getTag(), "QUEUE_TIMEOUT", 1);
+            return;
+        }
+        
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            clientRateLimiter.releaseSlot();
+        }
+    }
+    
+    private void reject(HttpServletResponse response, String message, String code, long retryAfterSeconds) throws IOException {
+        logger.warn("{} ({})", message, code);
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        errorResponse.put("retry_after", retryAfterSeconds);
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+}
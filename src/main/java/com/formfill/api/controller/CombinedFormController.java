@@ -0,0 +1,74 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.dto.CombinedFillRequest;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.service.AdmissionRejectedException;
+import com.formfill.api.service.CombinedFillRequestService;
+import com.formfill.api.service.FillAbortedException;
+import com.formfill.api.service.FillDeadlineService;
+import com.formfill.api.service.FillRequestService;
+import com.formfill.api.service.RequestTimings;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Multi-form combined output API
+ *
+ * POST /api/fill-form/combined
+ * 多个表单各自填写后作为独立的工作表写入同一个工作簿，只生成一个文件，请求格式见 CombinedFillRequest。
+ * 与 /api/fill-form 相同，可用 X-Deadline-Ms 请求头或 deadlineMs 字段给出期限。
+ */
+@RestController
+@RequestMapping("/api")
+public class CombinedFormController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CombinedFormController.class);
+    
+    @Autowired
+    private CombinedFillRequestService combinedFillRequestService;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    @Autowired
+    private FillDeadlineService fillDeadlineService;
+    
+    @PostMapping("/fill-form/combined")
+    public ResponseEntity<Map<String, Object>> fillCombined(@Valid @RequestBody CombinedFillRequest request,
+                                                            @RequestParam(value = "timings", defaultValue = "false") boolean includeTimings,
+                                                            @RequestHeader(value = FillDeadlineService.DEADLINE_HEADER, required = false) Long deadlineMs) {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        fillDeadlineService.create(deadlineMs, request.getDeadlineMs()).attach();
+        try {
+            // Per-form options, pre-flight validation and labels, then fill within the admission budget
+            CombinedFillRequestService.Prepared prepared = combinedFillRequestService.prepare(request);
+            if (prepared.isRejected()) {
+                FillRequestService.Outcome rejection = prepared.getRejection();
+                return RequestTimings.withTimings(ResponseEntity.status(rejection.getStatus()), rejection.getBody(), timings, includeTimings);
+            }
+            FillRequestService.Outcome outcome = combinedFillRequestService.fill(prepared);
+            return RequestTimings.withTimings(ResponseEntity.status(outcome.getStatus()), outcome.getBody(), timings, includeTimings);
+        
+        } catch (FillAbortedException e) {
+            return RequestTimings.withTimings(ResponseEntity.status(fillDeadlineService.statusOf(e)),
+                    fillDeadlineService.aborted(e, "combined output"), timings, includeTimings);
+        } catch (AdmissionRejectedException e) {
+            // 429 is written by FillExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error processing combined output: {}", e.getMessage(), e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Internal server error: " + e.getMessage());
+            errorResponse.put("code", "INTERNAL_ERROR");
+            return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR), errorResponse, timings, includeTimings);
+        }
+    }
+}
@@ -2,7 +2,9 @@ package com.formfill.api.controller;
 
 import com.formfill.api.dto.EmailSendRequest;
 import com.formfill.api.dto.EmailSendResponse;
+import com.formfill.api.dto.FormFillConfig;
 import com.formfill.api.service.EmailService;
+import com.formfill.api.service.RequestTimings;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,32 +25,43 @@ public class EmailController {
     @Autowired
     private EmailService emailService;
     
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
     /**
      * 发送带附件的邮件
+     * 
+     * 响应头 Server-Timing 给出附件读取与SMTP发送耗时；?timings=true 时响应体中同时返回 timings 对象
      */
     @PostMapping("/send")
-    public ResponseEntity<EmailSendResponse> sendEmail(@Valid @RequestBody EmailSendRequest request) {
+    public ResponseEntity<EmailSendResponse> sendEmail(@Valid @RequestBody EmailSendRequest request,
+                                                       @RequestParam(value = "timings", defaultValue = "false") boolean includeTimings) {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        EmailSendResponse response;
+        ResponseEntity.BodyBuilder builder;
         try {
             logger.info("收到邮件发送请求: {}", request);
             
-            EmailSendResponse response = emailService.sendEmailWithAttachment(request);
-            
-            if (response.isSuccess()) {
-                return ResponseEntity.ok(response);
-            } else {
-                return ResponseEntity.badRequest().body(response);
-            }
-            
+            response = emailService.sendEmailWithAttachment(request);
+            builder = response.isSuccess() ? ResponseEntity.ok() : ResponseEntity.badRequest();
+        
         } catch (Exception e) {
             logger.error("邮件发送接口异常: {}", e.getMessage(), e);
             
-            EmailSendResponse errorResponse = EmailSendResponse.failure(
+            response = EmailSendResponse.failure(
                 "邮件发送接口异常: " + e.getMessage(),
                 "API_ERROR"
             );
-            
-            return ResponseEntity.internalServerError().body(errorResponse);
+            builder = ResponseEntity.internalServerError();
+        }
+        
+        if (timings != null) {
+            builder.header(RequestTimings.HEADER, timings.toHeaderValue());
+            if (includeTimings) {
+                response.setTimings(timings.toMillis());
+            }
         }
+        return builder.body(response);
     }
     
     /**
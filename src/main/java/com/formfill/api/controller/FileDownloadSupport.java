@@ -0,0 +1,245 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.store.BufferPool;
+import com.formfill.api.store.OutputStore;
+import com.formfill.api.store.StoredObject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * 文件下载的条件请求、断点续传与零拷贝发送
+ *
+ * - 强ETag由文件标识（inode）、修改时间和大小生成，同时返回 Last-Modified 与 Cache-Control；
+ *   If-None-Match / If-Modified-Since 命中时返回304。
+ * - 支持单个 Range（206），If-Range 与当前ETag或修改时间不一致时忽略 Range 返回完整文件；
+ *   多段 Range 按完整文件返回，超出文件长度返回416。
+ * - 容器支持 sendfile 时（Tomcat NIO/NIO2）交给容器在 Servlet 返回后直接发送文件，
+ *   否则用 FileChannel.transferTo 写入响应流。
+ * - 输出存储中的文件：本地存储按上述方式发送；对象存储开启预签名下载时重定向（302）到预签名URL，
+ *   否则按所请求的范围从对象存储读取并转发，条件请求使用对象存储的ETag。
+ */
+@Component
+public class FileDownloadSupport {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FileDownloadSupport.class);
+    
+    public static final String XLSX_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    public static final String XLS_CONTENT_TYPE = "application/vnd.ms-excel";
+    
+    // Tomcat sendfile request attributes (org.apache.coyote.Constants)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    
+    @Autowired
+    private BufferPool bufferPool;
+    
+    /**
+     * 发送文件；文件不存在时返回404
+     *
+     * @param file 已确认位于允许目录中的文件
+     * @param cacheControl Cache-Control 响应头
+     */
+    public void serve(HttpServletRequest request, HttpServletResponse response, Path file, String cacheControl) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        String fileName = file.getFileName().toString();
+        serve(request, response, fileName, attributes.size(), attributes.lastModifiedTime().toMillis(), strongEtag(attributes), cacheControl,
+                (start, count) -> sendFile(request, response, file, fileName, start, count));
+    }
+    
+    /**
+     * 发送输出存储中的文件
+     *
+     * @param stored 已通过 OutputStore.stat 确认存在的对象
+     */
+    public void serve(HttpServletRequest request, HttpServletResponse response, OutputStore store,
+                      StoredObject stored, String cacheControl) throws IOException {
+        String name = stored.getName();
+        Path localFile = store.localPath(name);
+        if (localFile != null) {
+            serve(request, response, localFile, cacheControl);
+            return;
+        }
+        URI directUrl = store.downloadUrl(name);
+        if (directUrl != null) {
+            // The presigned URL expires, so the redirect itself must not be cached
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+            response.sendRedirect(directUrl.toString());
+            return;
+        }
+        String etag = stored.getEtag() != null ? stored.getEtag()
+                : "\"" + Long.toHexString(stored.getLastModified()) + "-" + Long.toHexString(stored.getSize()) + "\"";
+        serve(request, response, name, stored.getSize(), stored.getLastModified(), etag, cacheControl,
+                (start, count) -> {
+                    try (InputStream in = store.open(name, start, count)) {
+                        bufferPool.copy(in, response.getOutputStream());
+                    }
+                    logger.debug("Served {} bytes {}-{} of {} from the {} output store", count, start, start + count - 1, name, store.getType());
+                });
+    }
+    
+    private void serve(HttpServletRequest request, HttpServletResponse response, String fileName, long length,
+                       long lastModifiedMillis, String etag, String cacheControl, RangeWriter body) throws IOException {
+        long lastModified = lastModifiedMillis / 1000 * 1000;
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && length > 0 && rangeStillValid(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        
+        response.setContentType(fileName.toLowerCase().endsWith(".xls") ? XLS_CONTENT_TYPE : XLSX_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''"
+                + URLEncoder.encode(fileName, StandardCharsets.UTF_8).replaceAll("\\+", "%20"));
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+        body.write(start, count);
+    }
+    
+    private void sendFile(HttpServletRequest request, HttpServletResponse response, Path file, String fileName,
+                          long start, long count) throws IOException {
+        long end = start + count - 1;
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The container writes the file with sendfile after the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            logger.debug("Serving {} bytes {}-{} of {} via sendfile", count, start, end, fileName);
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+        logger.debug("Served {} bytes {}-{} of {} via transferTo", count, start, end, fileName);
+    }
+    
+    /**
+     * 强ETag："inode哈希-修改时间-大小"（十六进制），文件被替换或修改后改变
+     */
+    private String strongEtag(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return "\"" + (fileKey != null ? Integer.toHexString(fileKey.hashCode()) + "-" : "")
+                + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-"
+                + Long.toHexString(attributes.size()) + "\"";
+    }
+    
+    private boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-None-Match uses the weak comparison and takes precedence over If-Modified-Since
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+    
+    /**
+     * If-Range 为ETag时按强比较，为日期时须与 Last-Modified 完全相同
+     */
+    private boolean rangeStillValid(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date == lastModified;
+    }
+    
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * 写出响应体中 [start, start + count) 的内容
+     */
+    @FunctionalInterface
+    private interface RangeWriter {
+        void write(long start, long count) throws IOException;
+    }
+}
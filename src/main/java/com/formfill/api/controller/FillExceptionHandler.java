@@ -0,0 +1,37 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.service.AdmissionRejectedException;
+import com.formfill.api.service.RequestTimings;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 填写接口共用的异常响应
+ * 
+ * 准入被拒（AdmissionRejectedException）统一返回429 SERVER_BUSY，带 Retry-After 与 Server-Timing。
+ * 控制器捕获通用异常前需重新抛出该异常；线程上的 RequestTimings 由 RequestStateInterceptor 在请求结束后清理，
+ * 这里仍可读到本次请求的阶段耗时。
+ */
+@RestControllerAdvice
+public class FillExceptionHandler {
+    
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> admissionRejected(AdmissionRejectedException e, HttpServletRequest request) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", e.getMessage());
+        errorResponse.put("code", "SERVER_BUSY");
+        errorResponse.put("retry_after", e.getRetryAfterSeconds());
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return RequestTimings.withTimings(builder, errorResponse, RequestTimings.current(),
+                Boolean.parseBoolean(request.getParameter("timings")));
+    }
+}
@@ -0,0 +1,103 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.dto.FillJobRequest;
+import com.formfill.api.service.FillJobService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Asynchronous fill job API
+ *
+ * 提交: POST /api/jobs/fill  请求格式见 FillJobRequest，返回202与任务ID
+ * 查询: GET /api/jobs/{jobId}  state 为 queued / running / succeeded / failed / cancelled，成功后 result 中给出 download_url
+ * 取消: DELETE /api/jobs/{jobId}  排队中的任务立即取消（200），运行中的任务在下一个检查点停止（202）
+ * 通道统计: GET /api/jobs/lanes
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class FillJobController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FillJobController.class);
+    
+    @Autowired
+    private FillJobService fillJobService;
+    
+    @PostMapping("/fill")
+    public ResponseEntity<Map<String, Object>> submit(@Valid @RequestBody FillJobRequest request) {
+        try {
+            Map<String, Object> result = fillJobService.submit(request);
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.LOCATION, (String) result.get("statusUrl"))
+                        .body(result);
+            }
+            
+            String code = (String) result.get("code");
+            if ("SERVER_BUSY".equals(code)) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(result.get("retry_after")))
+                        .body(result);
+            }
+            HttpStatus status = "TEMPLATE_NOT_FOUND".equals(code) || "TEMPLATE_VERSION_NOT_FOUND".equals(code)
+                    ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status).body(result);
+        
+        } catch (Exception e) {
+            logger.error("Error submitting fill job: {}", e.getMessage(), e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Internal server error: " + e.getMessage());
+            errorResponse.put("code", "INTERNAL_ERROR");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    @GetMapping("/lanes")
+    public ResponseEntity<Map<String, Object>> lanes() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("lanes", fillJobService.getLaneStats());
+        response.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getStatus(@PathVariable String jobId) {
+        Map<String, Object> status = fillJobService.getStatus(jobId);
+        if (status == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Job not found or expired: " + jobId);
+            errorResponse.put("code", "JOB_NOT_FOUND");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        return ResponseEntity.ok(status);
+    }
+    
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable String jobId) {
+        Map<String, Object> status = fillJobService.cancel(jobId);
+        if (status == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("error", "Job not found or expired: " + jobId);
+            errorResponse.put("code", "JOB_NOT_FOUND");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        if ("JOB_FINISHED".equals(status.get("code"))) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        }
+        HttpStatus httpStatus = "cancelled".equals(status.get("state")) ? HttpStatus.OK : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(httpStatus).body(status);
+    }
+}
@@ -0,0 +1,196 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.dto.FillPlanRequest;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.service.AdmissionControlService;
+import com.formfill.api.service.AdmissionRejectedException;
+import com.formfill.api.service.FillAbortedException;
+import com.formfill.api.service.FillDeadlineService;
+import com.formfill.api.service.FillPlan;
+import com.formfill.api.service.FillPlanService;
+import com.formfill.api.service.FormContentValidator;
+import com.formfill.api.service.FormFillerService;
+import com.formfill.api.service.RequestTimings;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepared fill plan API
+ *
+ * 注册: POST /api/templates/{formName}/plans
+ * 填写: POST /api/fill-form/plan/{planId}  请求体为按字段顺序排列的值数组，如 ["张三", "男", "28"]
+ * 填写请求可带 X-Deadline-Ms 请求头，到期后在下一个检查点停止并返回504 DEADLINE_EXCEEDED
+ */
+@RestController
+@RequestMapping("/api")
+public class FillPlanController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FillPlanController.class);
+    
+    @Autowired
+    private FillPlanService fillPlanService;
+    
+    @Autowired
+    private FormFillerService formFillerService;
+    
+    @Autowired
+    private FormContentValidator formContentValidator;
+    
+    @Autowired
+    private AdmissionControlService admissionControlService;
+    
+    @Autowired
+    private FillDeadlineService fillDeadlineService;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    /**
+     * Register a field layout for a template and return its plan id
+     */
+    @PostMapping("/templates/{formName}/plans")
+    public ResponseEntity<Map<String, Object>> registerPlan(@PathVariable String formName,
+                                                            @Valid @RequestBody FillPlanRequest request) {
+        try {
+            FillPlan plan = fillPlanService.register(formName, request);
+            
+            List<Map<String, Object>> fields = new ArrayList<>();
+            for (int i = 0; i < plan.getFieldCount(); i++) {
+                Map<String, Object> field = new HashMap<>();
+                field.put("index", i);
+                field.put("name", plan.getFieldName(i));
+                field.put("row", plan.getRow(i));
+                field.put("col", plan.getCol(i));
+                field.put("type", plan.getType(i).name().toLowerCase());
+                field.put("style", plan.isKeepTemplateStyle(i) ? "template" : "default");
+                fields.add(field);
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("planId", plan.getId());
+            response.put("name", plan.getName());
+            response.put("formName", formName);
+            response.put("templateVersion", plan.getTemplateVersion());
+            response.put("fieldCount", plan.getFieldCount());
+            response.put("fields", fields);
+            response.put("fillUrl", "/api/fill-form/plan/" + plan.getId());
+            response.put("timestamp", LocalDateTime.now().toString());
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            logger.warn("Rejected plan for form '{}': {}", formName, e.getMessage());
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("formName", formName);
+            errorResponse.put("error", e.getMessage());
+            errorResponse.put("code", "INVALID_PLAN");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        } catch (Exception e) {
+            logger.error("Error registering plan for form '{}': {}", formName, e.getMessage(), e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("formName", formName);
+            errorResponse.put("error", "Failed to register plan: " + e.getMessage());
+            errorResponse.put("code", "PLAN_REGISTER_ERROR");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    /**
+     * Fill a form with a registered plan using positional values
+     */
+    @PostMapping("/fill-form/plan/{planId}")
+    public ResponseEntity<Map<String, Object>> fillWithPlan(@PathVariable String planId,
+                                                            @RequestBody List<String> values,
+                                                            @RequestParam(value = "timings", defaultValue = "false") boolean includeTimings,
+                                                            @RequestHeader(value = FillDeadlineService.DEADLINE_HEADER, required = false) Long deadlineMs) {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        fillDeadlineService.create(deadlineMs, null).attach();
+        try {
+            FillPlan plan = fillPlanService.get(planId);
+            if (plan == null) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "Plan not found: " + planId);
+                errorResponse.put("code", "PLAN_NOT_FOUND");
+                return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.NOT_FOUND), errorResponse, timings, includeTimings);
+            }
+            if (values.size() != plan.getFieldCount()) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "Expected " + plan.getFieldCount() + " values but got " + values.size());
+                errorResponse.put("code", "PLAN_VALUE_COUNT_MISMATCH");
+                return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.BAD_REQUEST), errorResponse, timings, includeTimings);
+            }
+            
+            FormContentValidator.Result validation = formContentValidator.validate(plan.toCellBatch(values));
+            if (!validation.isValid()) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "Form content exceeds allowed limits");
+                errorResponse.put("code", "INVALID_FORM_CONTENT");
+                errorResponse.put("violation_count", validation.getViolationCount());
+                errorResponse.put("violations", validation.getViolations());
+                return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.BAD_REQUEST), errorResponse, timings, includeTimings);
+            }
+            
+            Map<String, Object> result = admissionControlService.call(plan.getFormName(), validation.getFieldCount(),
+                    () -> formFillerService.fillWithPlan(plan, values));
+            
+            if ((Boolean) result.get("success")) {
+                String outputFile = (String) result.get("output_file");
+                Map<String, Object> response = new HashMap<>(result);
+                response.put("message", "Form filled successfully");
+                response.put("plan_id", planId);
+                response.put("download_url", "/api/download/" + Paths.get(outputFile).getFileName().toString());
+                response.put("timestamp", LocalDateTime.now().toString());
+                response.remove("fill_method");
+                return RequestTimings.withTimings(ResponseEntity.ok(), response, timings, includeTimings);
+            } else {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", result.get("error"));
+                errorResponse.put("code", result.get("code"));
+                return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR), errorResponse, timings, includeTimings);
+            }
+        
+        } catch (FillAbortedException e) {
+            return RequestTimings.withTimings(ResponseEntity.status(fillDeadlineService.statusOf(e)),
+                    fillDeadlineService.aborted(e, "plan " + planId), timings, includeTimings);
+        } catch (AdmissionRejectedException e) {
+            // 429 is written by FillExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error filling with plan {}: {}", planId, e.getMessage(), e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Internal server error: " + e.getMessage());
+            errorResponse.put("code", "INTERNAL_ERROR");
+            return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR), errorResponse, timings, includeTimings);
+        }
+    }
+    
+    /**
+     * Remove a registered plan
+     */
+    @DeleteMapping("/fill-form/plan/{planId}")
+    public ResponseEntity<Map<String, Object>> deletePlan(@PathVariable String planId) {
+        Map<String, Object> response = new HashMap<>();
+        boolean removed = fillPlanService.remove(planId);
+        response.put("success", removed);
+        response.put("planId", planId);
+        return removed ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+}
@@ -1,28 +1,40 @@
 package com.formfill.api.controller;
 
+import com.formfill.api.dto.FormFillConfig;
 import com.formfill.api.dto.FormFillRequest;
+import com.formfill.api.service.AdmissionRejectedException;
+import com.formfill.api.service.FillAbortedException;
+import com.formfill.api.service.FillDeadlineService;
+import com.formfill.api.service.FillRequestService;
 import com.formfill.api.service.FormFillerService;
+import com.formfill.api.service.RequestTimings;
+import com.formfill.api.service.TemplateCatalog;
+import com.formfill.api.service.TemplateSchemaService;
+import com.formfill.api.store.BufferPool;
+import com.formfill.api.store.OutputStore;
+import com.formfill.api.store.StoredObject;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +50,30 @@ public class FormFillController {
     @Autowired
     private FormFillerService formFillerService;
     
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    @Autowired
+    private FillRequestService fillRequestService;
+    
+    @Autowired
+    private TemplateSchemaService templateSchemaService;
+    
+    @Autowired
+    private FileDownloadSupport fileDownloadSupport;
+    
+    @Autowired
+    private OutputStore outputStore;
+    
+    @Autowired
+    private TemplateCatalog templateCatalog;
+    
+    @Autowired
+    private FillDeadlineService fillDeadlineService;
+    
+    @Autowired
+    private BufferPool bufferPool;
+    
     /**
      * Health check endpoint
      */
@@ -50,6 +86,18 @@ public class FormFillController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * 输出缓冲池统计
+     */
+    @GetMapping("/buffers")
+    public ResponseEntity<Map<String, Object>> bufferStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("buffers", bufferPool.getStats());
+        response.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.ok(response);
+    }
+    
     /**
      * Get form template URL by form name (POST with JSON)
      * 
@@ -85,6 +133,7 @@ public class FormFillController {
                 response.put("templateFound", true);
                 response.put("fileName", fileName);
                 response.put("templatePath", templatePath);
+                response.put("templateVersion", templateInfo.get("version"));
                 response.put("downloadUrl", "/api/template/download/" + URLEncoder.encode(fileName, "UTF-8"));
                 response.put("previewUrl", "/api/template/preview/" + URLEncoder.encode(fileName, "UTF-8"));
                 response.put("downloadUrlRaw", "/api/template/download/" + fileName);
@@ -93,7 +142,7 @@ public class FormFillController {
                 
                 logger.info("Template found for form '{}': {}", formName, fileName);
                 return ResponseEntity.ok(response);
-                
+            
             } else {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
@@ -106,7 +155,7 @@ public class FormFillController {
                 logger.warn("Template not found for form: {}", formName);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error getting template: {}", e.getMessage(), e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -117,7 +166,7 @@ public class FormFillController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
-
+    
     /**
      * Get form template URL by form name
      * 
@@ -142,6 +191,7 @@ public class FormFillController {
                 response.put("templateFound", true);
                 response.put("fileName", fileName);
                 response.put("templatePath", templatePath);
+                response.put("templateVersion", templateInfo.get("version"));
                 response.put("downloadUrl", "/api/template/download/" + URLEncoder.encode(fileName, "UTF-8"));
                 response.put("previewUrl", "/api/template/preview/" + URLEncoder.encode(fileName, "UTF-8"));
                 response.put("downloadUrlRaw", "/api/template/download/" + fileName);
@@ -150,7 +200,7 @@ public class FormFillController {
                 
                 logger.info("Template found for form '{}': {}", formName, fileName);
                 return ResponseEntity.ok(response);
-                
+            
             } else {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
@@ -163,7 +213,7 @@ public class FormFillController {
                 logger.warn("Template not found for form: {}", formName);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
-            
+        
         } catch (Exception e) {
             logger.error("Error getting template for form '{}': {}", formName, e.getMessage(), e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -175,46 +225,58 @@ public class FormFillController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
-
+    
+    /**
+     * Describe the template layout: labels with their adjacent input cells, merged regions and data validations
+     * 
+     * @param formName 表单名称
+     * @return 模板结构，按模板版本缓存
+     */
+    @GetMapping("/template/{formName}/schema")
+    public ResponseEntity<Map<String, Object>> getTemplateSchema(@PathVariable String formName) {
+        Map<String, Object> result = templateSchemaService.getSchema(formName);
+        if ((Boolean) result.get("success")) {
+            Map<String, Object> response = new LinkedHashMap<>(result);
+            response.put("timestamp", LocalDateTime.now().toString());
+            return ResponseEntity.ok(response);
+        }
+        
+        Map<String, Object> errorResponse = new HashMap<>(result);
+        errorResponse.put("formName", formName);
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        if ("TEMPLATE_NOT_FOUND".equals(result.get("code"))) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        if ("UNSUPPORTED_TEMPLATE".equals(result.get("code"))) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorResponse);
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    }
+    
     /**
      * Download template file by filename
      * 
+     * 支持 ETag/Last-Modified 条件请求与 Range 断点续传，见 FileDownloadSupport
+     * 
      * @param filename 模板文件名
-     * @return 模板文件下载响应
      */
     @GetMapping("/template/download/{filename}")
-    public ResponseEntity<Resource> downloadTemplate(@PathVariable String filename) {
-        try {
-            logger.info("Downloading template: {}", filename);
-            
-            Path filePath = Paths.get("templates").resolve(filename);
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (!resource.exists()) {
-                logger.warn("Template file not found: {}", filename);
-                return ResponseEntity.notFound().build();
-            }
-            
-            // URL encode the filename to handle Chinese characters
-            String encodedFilename;
-            try {
-                encodedFilename = URLEncoder.encode(filename, "UTF-8").replaceAll("\\+", "%20");
-            } catch (UnsupportedEncodingException e) {
-                encodedFilename = filename;
-                logger.warn("Failed to encode filename: {}", filename);
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename)
-                    .body(resource);
-                    
-        } catch (Exception e) {
-            logger.error("Error downloading template: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public void downloadTemplate(@PathVariable String filename, HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        logger.info("Downloading template: {}", filename);
+        
+        Path base = Paths.get("templates").toAbsolutePath().normalize();
+        Path filePath = base.resolve(filename).normalize();
+        if (!filePath.startsWith(base) || !Files.isRegularFile(filePath)) {
+            logger.warn("Template file not found: {}", filename);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        
+        // Templates can be replaced in place, so clients always revalidate (cheap 304s)
+        fileDownloadSupport.serve(request, response, filePath, "no-cache");
     }
-
+    
     /**
      * Preview template file information (without downloading)
      * 
@@ -226,10 +288,12 @@ public class FormFillController {
         try {
             logger.info("Previewing template: {}", filename);
             
-            Path filePath = Paths.get("templates").resolve(filename);
-            File templateFile = filePath.toFile();
+            TemplateCatalog.Entry entry = templateCatalog.get(filename);
+            if (entry == null) {
+                entry = templateCatalog.refresh(filename);
+            }
             
-            if (!templateFile.exists()) {
+            if (entry == null) {
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
                 errorResponse.put("error", "Template file not found: " + filename);
@@ -240,16 +304,16 @@ public class FormFillController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("fileName", filename);
-            response.put("filePath", templateFile.getAbsolutePath());
-            response.put("fileSize", templateFile.length());
-            response.put("lastModified", templateFile.lastModified());
-            response.put("readable", templateFile.canRead());
+            response.put("filePath", entry.getAbsolutePath());
+            response.put("fileSize", entry.getSize());
+            response.put("lastModified", entry.getLastModified());
+            response.put("readable", entry.isReadable());
             response.put("downloadUrl", "/api/template/download/" + URLEncoder.encode(filename, "UTF-8"));
             response.put("timestamp", LocalDateTime.now().toString());
             
             logger.info("Template preview generated for: {}", filename);
             return ResponseEntity.ok(response);
-            
+        
         } catch (Exception e) {
             logger.error("Error previewing template: {}", e.getMessage(), e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -271,133 +335,127 @@ public class FormFillController {
      *         "[4, 2]": ["Male"]
      *     }
      * }
+     * 
+     * or the compact form: {"formName": "EmployeeForm", "cells": [[3, 2, "John"], [4, 2, "Male"]]}
+     * 
+     * 响应头 Server-Timing 给出各阶段耗时；?timings=true 时响应体中同时返回 timings 对象
+     * 
+     * 请求头 X-Deadline-Ms 或字段 deadlineMs 给出客户端剩余等待时间，到期后在下一个检查点停止并返回504 DEADLINE_EXCEEDED
      */
     @PostMapping("/fill-form")
-    public ResponseEntity<Map<String, Object>> fillForm(@Valid @RequestBody FormFillRequest request) {
+    public ResponseEntity<Map<String, Object>> fillForm(@Valid @RequestBody FormFillRequest request,
+                                                        @RequestParam(value = "timings", defaultValue = "false") boolean includeTimings,
+                                                        @RequestHeader(value = FillDeadlineService.DEADLINE_HEADER, required = false) Long deadlineMs) {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        fillDeadlineService.create(deadlineMs, request.getDeadlineMs()).attach();
         try {
             logger.info("Processing form: {}", request.getFormName());
-            logger.info("Form content: {}", request.getFormContent());
-            
-            // Fill form
-            Map<String, Object> result = formFillerService.fillForm(
-                request.getFormName(), 
-                request.getFormContent()
-            );
+            logger.info("Form content: {}", request.getCells() != null ? request.getCells() : request.getFormContent());
             
-            if ((Boolean) result.get("success")) {
-                logger.info("Form filled successfully: {}", result.get("output_file"));
-                
-                // Build response
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Form filled successfully");
-                response.put("output_file", result.get("output_file"));
-                
-                // Generate download URL
-                String outputFile = (String) result.get("output_file");
-                String fileName = Paths.get(outputFile).getFileName().toString();
-                response.put("download_url", "/api/download/" + fileName);
-                
-                response.put("filled_count", result.get("filled_count"));
-                response.put("total_fields", result.get("total_fields"));
-                response.put("template_used", result.get("template_used"));
-                response.put("timestamp", LocalDateTime.now().toString());
-                
-                return ResponseEntity.ok(response);
-            } else {
-                logger.error("Form filling failed: {}", result.get("error"));
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("success", false);
-                errorResponse.put("error", result.get("error"));
-                errorResponse.put("code", result.get("code"));
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            // Labels and pre-flight validation, then fill within the admission budget
+            FillRequestService.Prepared prepared = fillRequestService.prepare(request);
+            if (prepared.isRejected()) {
+                FillRequestService.Outcome rejection = prepared.getRejection();
+                return RequestTimings.withTimings(ResponseEntity.status(rejection.getStatus()), rejection.getBody(), timings, includeTimings);
             }
-            
+            FillRequestService.Outcome outcome = fillRequestService.fill(prepared);
+            return RequestTimings.withTimings(ResponseEntity.status(outcome.getStatus()), outcome.getBody(), timings, includeTimings);
+        
+        } catch (FillAbortedException e) {
+            return RequestTimings.withTimings(ResponseEntity.status(fillDeadlineService.statusOf(e)),
+                    fillDeadlineService.aborted(e, request.getFormName()), timings, includeTimings);
+        } catch (AdmissionRejectedException e) {
+            // 429 is written by FillExceptionHandler
+            throw e;
         } catch (Exception e) {
             logger.error("Error processing request: {}", e.getMessage(), e);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "Internal server error: " + e.getMessage());
             errorResponse.put("code", "INTERNAL_ERROR");
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            return RequestTimings.withTimings(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR), errorResponse, timings, includeTimings);
         }
     }
     
     /**
      * Download completed form file
+     * 
+     * 支持 ETag/Last-Modified 条件请求与 Range 断点续传，见 FileDownloadSupport
      */
     @GetMapping("/download/{filename}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
-        try {
-            Path filePath = Paths.get("output").resolve(filename);
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (!resource.exists()) {
-                Map<String, Object> errorResponse = new HashMap<>();
-                errorResponse.put("error", "File not found");
-                errorResponse.put("code", "FILE_NOT_FOUND");
-                return ResponseEntity.notFound().build();
-            }
-            
-            // URL encode the filename to handle Chinese characters
-            String encodedFilename;
-            try {
-                encodedFilename = URLEncoder.encode(filename, "UTF-8").replaceAll("\\+", "%20");
-            } catch (UnsupportedEncodingException e) {
-                encodedFilename = filename;
-                logger.warn("Failed to encode filename: {}", filename);
-            }
-            
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename)
-                    .body(resource);
-                    
-        } catch (Exception e) {
-            logger.error("Error downloading file: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    public void downloadFile(@PathVariable String filename, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        long lookupStart = RequestTimings.mark();
+        StoredObject stored = OutputStore.isValidName(filename) ? outputStore.stat(filename) : null;
+        RequestTimings.record(RequestTimings.LOOKUP, lookupStart);
+        
+        if (timings != null) {
+            response.setHeader(RequestTimings.HEADER, timings.toHeaderValue());
         }
+        if (stored == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        // Outputs may contain personal data: cacheable by the client only, revalidated with the ETag
+        fileDownloadSupport.serve(request, response, outputStore, stored, "private, no-cache");
     }
     
     /**
-     * List all available form templates
+     * List available form templates
+     * 
+     * 列表来自内存中的模板目录（TemplateCatalog），不访问磁盘。
+     * 支持 prefix（文件名前缀）与 offset/limit 分页；响应的 ETag 为目录版本号，
+     * 客户端带 If-None-Match 轮询时目录未变化返回304。
+     * 
+     * @param prefix 文件名前缀，区分大小写
+     * @param offset 跳过的条目数
+     * @param limit 返回的最多条目数，不传时返回全部
      */
     @GetMapping("/templates")
-    public ResponseEntity<Map<String, Object>> listTemplates() {
+    public ResponseEntity<Map<String, Object>> listTemplates(@RequestParam(value = "prefix", required = false) String prefix,
+                                                             @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                             @RequestParam(value = "limit", required = false) Integer limit,
+                                                             WebRequest webRequest) {
         try {
-            File templatesDir = new File("templates");
-            List<Map<String, Object>> templates = new ArrayList<>();
+            if (offset < 0 || (limit != null && limit < 0)) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("error", "offset and limit must not be negative");
+                errorResponse.put("code", "INVALID_PAGINATION");
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
             
-            if (templatesDir.exists() && templatesDir.isDirectory()) {
-                File[] files = templatesDir.listFiles();
-                if (files != null) {
-                    for (File file : files) {
-                        if (file.getName().endsWith(".xlsx") || file.getName().endsWith(".xls")) {
-                            Map<String, Object> template = new HashMap<>();
-                            String fileName = file.getName();
-                            String baseName = fileName.replaceAll("\\.(xlsx|xls)$", "");
-                            
-                            template.put("name", baseName);
-                            template.put("filename", fileName);
-                            template.put("path", file.getAbsolutePath());
-                            template.put("downloadUrl", "/api/template/download/" + fileName);
-                            template.put("previewUrl", "/api/template/preview/" + fileName);
-                            template.put("getTemplateUrl", "/api/template/" + baseName);
-                            templates.add(template);
-                        }
-                    }
-                }
+            TemplateCatalog.Snapshot catalog = templateCatalog.snapshot();
+            String etag = "\"" + catalog.getVersion() + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+            
+            List<TemplateCatalog.Entry> matching = catalog.withPrefix(prefix);
+            int from = Math.min(offset, matching.size());
+            int to = limit != null ? (int) Math.min((long) from + limit, matching.size()) : matching.size();
+            List<Map<String, Object>> templates = new ArrayList<>(to - from);
+            for (TemplateCatalog.Entry entry : matching.subList(from, to)) {
+                templates.add(entry.toMap());
             }
             
             Map<String, Object> response = new HashMap<>();
             response.put("templates", templates);
             response.put("count", templates.size());
+            response.put("total", matching.size());
+            response.put("offset", offset);
+            if (limit != null) {
+                response.put("limit", limit);
+            }
+            response.put("version", catalog.getVersion());
             
             if (templates.isEmpty()) {
                 response.put("message", "Templates directory is empty or not exists");
             }
             
-            return ResponseEntity.ok(response);
-            
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(response);
+        
         } catch (Exception e) {
             logger.error("Error getting template list: {}", e.getMessage(), e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -0,0 +1,92 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.dto.BundleDownloadRequest;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.service.OutputBundleService;
+import com.formfill.api.store.OutputStore;
+import com.formfill.api.store.StoredObject;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bundle download API
+ *
+ * POST /api/download/bundle
+ * 把多个已填写的输出文件打成一个ZIP流式返回，请求格式见 BundleDownloadRequest。
+ * 所有文件在开始写出响应前校验，缺失的文件以404列出。
+ */
+@RestController
+@RequestMapping("/api")
+public class OutputBundleController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutputBundleController.class);
+    
+    @Autowired
+    private OutputBundleService outputBundleService;
+    
+    @Autowired
+    private OutputStore outputStore;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    @Autowired
+    private StreamingErrors streamingErrors;
+    
+    @PostMapping("/download/bundle")
+    public ResponseEntity<StreamingResponseBody> downloadBundle(@Valid @RequestBody BundleDownloadRequest request) throws IOException {
+        int maxFiles = formFillConfig.getValidation().getMaxBundleFiles();
+        LinkedHashSet<String> names = new LinkedHashSet<>(request.getFiles());
+        if (names.size() > maxFiles) {
+            return streamingErrors.error(HttpStatus.BAD_REQUEST, "At most " + maxFiles + " files can be bundled", "TOO_MANY_FILES");
+        }
+        
+        List<StoredObject> files = new ArrayList<>(names.size());
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            StoredObject file = OutputStore.isValidName(name) ? outputStore.stat(name) : null;
+            if (file == null) {
+                missing.add(name);
+            } else {
+                files.add(file);
+            }
+        }
+        if (!missing.isEmpty()) {
+            return streamingErrors.error(HttpStatus.NOT_FOUND, missing.size() + " file(s) not found", "FILE_NOT_FOUND", Map.of("missing", missing));
+        }
+        
+        String bundleName = request.getName() != null && !request.getName().isBlank()
+                ? request.getName().trim().replaceAll("[\\\\/:*?\"<>|]", "_")
+                : "outputs_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        if (!bundleName.toLowerCase().endsWith(".zip")) {
+            bundleName += ".zip";
+        }
+        String encodedName = URLEncoder.encode(bundleName, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        logger.info("Streaming bundle {} with {} file(s)", bundleName, files.size());
+        
+        StreamingResponseBody body = out -> outputBundleService.writeBundle(outputStore, files, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedName)
+                .body(body);
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.service.FillDeadline;
+import com.formfill.api.service.RequestTimings;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 请求结束后清理绑定到处理线程的 RequestTimings 与 FillDeadline
+ * 
+ * afterCompletion 在 @ExceptionHandler 写出响应之后执行，FillExceptionHandler 因此能读到阶段耗时；
+ * 控制器不再在 finally 中自行清理。
+ */
+@Component
+public class RequestStateInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+    
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestTimings.clear();
+        FillDeadline.clear();
+    }
+}
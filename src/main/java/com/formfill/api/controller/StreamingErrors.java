@@ -0,0 +1,44 @@
+package com.formfill.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式接口的错误响应
+ * 
+ * 返回类型需固定为 StreamingResponseBody 才会走流式处理，错误响应也以同样的形式写出，
+ * 响应体与其他接口相同：success、error、code 与 timestamp。
+ */
+@Component
+public class StreamingErrors {
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    public ResponseEntity<StreamingResponseBody> error(HttpStatus status, String message, String code) {
+        return error(status, message, code, Map.of());
+    }
+    
+    /**
+     * @param details 附加到响应体的字段，例如缺失的文件列表
+     */
+    public ResponseEntity<StreamingResponseBody> error(HttpStatus status, String message, String code, Map<String, ?> details) {
+        Map<String, Object> errorResponse = new HashMap<>(details);
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> out.write(objectMapper.writeValueAsBytes(errorResponse)));
+    }
+}
@@ -0,0 +1,146 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.service.TemplateRepository;
+import com.formfill.api.service.TemplateUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template upload API
+ *
+ * multipart: POST /api/templates  表单字段 file，可选 name（默认取上传文件名）与 overwrite
+ * 原始请求体: POST /api/templates?name=员工信息表.xlsx  Content-Type 为 application/octet-stream 或Excel类型
+ * 预编译状态: GET /api/templates/{filename}/precompile
+ * 版本列表: GET /api/templates/{filename}/versions  模板的各个版本（最新在前），版本号可作为填写请求的 templateVersion
+ */
+@RestController
+@RequestMapping("/api")
+public class TemplateUploadController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TemplateUploadController.class);
+    
+    @Autowired
+    private TemplateUploadService templateUploadService;
+    
+    @Autowired
+    private TemplateRepository templateRepository;
+    
+    @PostMapping(value = "/templates", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> uploadMultipart(@RequestParam("file") MultipartFile file,
+                                                               @RequestParam(value = "name", required = false) String name,
+                                                               @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite) {
+        String fileName = name != null && !name.isBlank() ? name.trim() : file.getOriginalFilename();
+        if (file.getSize() > templateUploadService.getMaxUploadBytes()) {
+            return tooLarge();
+        }
+        // The container has already spooled the part to disk; transferTo moves it when it can
+        return upload(fileName, file::transferTo, overwrite);
+    }
+    
+    @PostMapping(value = "/templates", consumes = {
+            MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            FileDownloadSupport.XLSX_CONTENT_TYPE,
+            FileDownloadSupport.XLS_CONTENT_TYPE
+    })
+    public ResponseEntity<Map<String, Object>> uploadRaw(@RequestParam("name") String name,
+                                                         @RequestParam(value = "overwrite", defaultValue = "false") boolean overwrite,
+                                                         HttpServletRequest request) {
+        long maxBytes = templateUploadService.getMaxUploadBytes();
+        if (request.getContentLengthLong() > maxBytes) {
+            return tooLarge();
+        }
+        return upload(name.trim(), target -> {
+            try (InputStream in = request.getInputStream()) {
+                TemplateUploadService.copyLimited(in, target, maxBytes);
+            }
+        }, overwrite);
+    }
+    
+    @GetMapping("/templates/{filename}/precompile")
+    public ResponseEntity<Map<String, Object>> getPrecompileStatus(@PathVariable String filename) {
+        Map<String, Object> status = templateUploadService.getPrecompileStatus(filename);
+        if (status == null) {
+            return error(HttpStatus.NOT_FOUND, "No upload recorded for template: " + filename, "PRECOMPILE_NOT_FOUND");
+        }
+        Map<String, Object> response = new HashMap<>(status);
+        response.put("success", true);
+        response.put("filename", filename);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/templates/{filename}/versions")
+    public ResponseEntity<Map<String, Object>> getVersions(@PathVariable String filename) {
+        try {
+            List<Map<String, Object>> versions = templateRepository.history(filename);
+            if (versions.isEmpty()) {
+                return error(HttpStatus.NOT_FOUND, "Template not found: " + filename, "TEMPLATE_NOT_FOUND");
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("filename", filename);
+            response.put("repository", templateRepository.getType());
+            response.put("versions", versions);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Error listing versions of template {}: {}", filename, e.getMessage(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to list template versions: " + e.getMessage(), "TEMPLATE_VERSIONS_ERROR");
+        }
+    }
+    
+    private ResponseEntity<Map<String, Object>> upload(String fileName, TemplateUploadService.UploadSource source,
+                                                       boolean overwrite) {
+        try {
+            logger.info("Uploading template: {} (overwrite={})", fileName, overwrite);
+            Map<String, Object> result = templateUploadService.upload(fileName, source, overwrite);
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                result.put("timestamp", LocalDateTime.now().toString());
+                return ResponseEntity.status(HttpStatus.CREATED).body(result);
+            }
+            
+            String code = (String) result.get("code");
+            HttpStatus status;
+            if ("TEMPLATE_EXISTS".equals(code)) {
+                status = HttpStatus.CONFLICT;
+            } else if ("INVALID_TEMPLATE".equals(code)) {
+                status = HttpStatus.UNPROCESSABLE_ENTITY;
+            } else {
+                status = HttpStatus.BAD_REQUEST;
+            }
+            return ResponseEntity.status(status).body(result);
+        
+        } catch (TemplateUploadService.UploadTooLargeException e) {
+            return tooLarge();
+        } catch (Exception e) {
+            logger.error("Error uploading template {}: {}", fileName, e.getMessage(), e);
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to upload template: " + e.getMessage(), "TEMPLATE_UPLOAD_ERROR");
+        }
+    }
+    
+    private ResponseEntity<Map<String, Object>> tooLarge() {
+        return error(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Template exceeds the upload limit of " + templateUploadService.getMaxUploadBytes() + " bytes",
+                "TEMPLATE_TOO_LARGE");
+    }
+    
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, String message, String code) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
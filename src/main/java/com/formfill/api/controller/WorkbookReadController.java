@@ -0,0 +1,127 @@
+package com.formfill.api.controller;
+
+import com.formfill.api.service.WorkbookReadService;
+import com.formfill.api.store.OutputStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Streaming read-back API
+ *
+ * GET /api/read/{filename}           读取已填写的输出文件
+ * GET /api/template/read/{filename}  读取模板文件
+ * 可选参数：format=json|csv，sheet（从0开始），startRow/endRow/startCol/endCol（从1开始，含两端）
+ * 响应以分块传输边读边写，不加载整个工作簿。
+ */
+@RestController
+@RequestMapping("/api")
+public class WorkbookReadController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WorkbookReadController.class);
+    
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    
+    @Autowired
+    private WorkbookReadService workbookReadService;
+    
+    @Autowired
+    private OutputStore outputStore;
+    
+    @Autowired
+    private StreamingErrors streamingErrors;
+    
+    @GetMapping("/read/{filename}")
+    public ResponseEntity<StreamingResponseBody> readOutput(@PathVariable String filename,
+                                        @RequestParam(value = "format", defaultValue = "json") String format,
+                                        @RequestParam(value = "sheet", defaultValue = "0") int sheet,
+                                        @RequestParam(value = "startRow", defaultValue = "1") int startRow,
+                                        @RequestParam(value = "endRow", defaultValue = "0") int endRow,
+                                        @RequestParam(value = "startCol", defaultValue = "1") int startCol,
+                                        @RequestParam(value = "endCol", defaultValue = "0") int endCol) throws IOException {
+        Path localFile = OutputStore.isValidName(filename) ? outputStore.localPath(filename) : null;
+        if (localFile != null) {
+            return read(localFile.toFile().isFile(), filename, () -> workbookReadService.open(localFile.toFile(), sheet),
+                    format, sheet, startRow, endRow, startCol, endCol);
+        }
+        boolean exists = OutputStore.isValidName(filename) && outputStore.stat(filename) != null;
+        return read(exists, filename, () -> {
+            try (InputStream in = outputStore.open(filename)) {
+                return workbookReadService.open(filename, in, sheet);
+            }
+        }, format, sheet, startRow, endRow, startCol, endCol);
+    }
+    
+    @GetMapping("/template/read/{filename}")
+    public ResponseEntity<StreamingResponseBody> readTemplate(@PathVariable String filename,
+                                          @RequestParam(value = "format", defaultValue = "json") String format,
+                                          @RequestParam(value = "sheet", defaultValue = "0") int sheet,
+                                          @RequestParam(value = "startRow", defaultValue = "1") int startRow,
+                                          @RequestParam(value = "endRow", defaultValue = "0") int endRow,
+                                          @RequestParam(value = "startCol", defaultValue = "1") int startCol,
+                                          @RequestParam(value = "endCol", defaultValue = "0") int endCol) {
+        Path base = Paths.get("templates").toAbsolutePath().normalize();
+        Path filePath = base.resolve(filename).normalize();
+        File file = filePath.toFile();
+        return read(filePath.startsWith(base) && file.isFile(), filename, () -> workbookReadService.open(file, sheet),
+                format, sheet, startRow, endRow, startCol, endCol);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> read(boolean exists, String filename, SessionOpener opener, String format,
+                                   int sheet, int startRow, int endRow, int startCol, int endCol) {
+        String normalizedFormat = format.toLowerCase();
+        if (!WorkbookReadService.FORMAT_JSON.equals(normalizedFormat) && !WorkbookReadService.FORMAT_CSV.equals(normalizedFormat)) {
+            return streamingErrors.error(HttpStatus.BAD_REQUEST, "Unsupported format: " + format + " (json or csv)", "INVALID_READ_RANGE");
+        }
+        if (sheet < 0 || startRow < 1 || startCol < 1 || (endRow > 0 && endRow < startRow) || (endCol > 0 && endCol < startCol)) {
+            return streamingErrors.error(HttpStatus.BAD_REQUEST, "Invalid sheet or row/column range", "INVALID_READ_RANGE");
+        }
+        
+        if (!exists) {
+            return streamingErrors.error(HttpStatus.NOT_FOUND, "File not found: " + filename, "FILE_NOT_FOUND");
+        }
+        if (!filename.toLowerCase().endsWith(".xlsx")) {
+            return streamingErrors.error(HttpStatus.UNPROCESSABLE_ENTITY, "Streaming read requires an .xlsx file", "UNSUPPORTED_FILE");
+        }
+        
+        WorkbookReadService.ReadSession session;
+        try {
+            session = opener.open();
+        } catch (IllegalArgumentException e) {
+            return streamingErrors.error(HttpStatus.BAD_REQUEST, e.getMessage(), "INVALID_READ_RANGE");
+        } catch (Exception e) {
+            logger.error("Error opening {} for reading: {}", filename, e.getMessage(), e);
+            return streamingErrors.error(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to open file: " + e.getMessage(), "READ_ERROR");
+        }
+        
+        StreamingResponseBody body = out -> {
+            try (WorkbookReadService.ReadSession reading = session) {
+                reading.writeTo(out, normalizedFormat, startRow, endRow, startCol, endCol);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException("Failed to read " + filename, e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(WorkbookReadService.FORMAT_CSV.equals(normalizedFormat) ? TEXT_CSV : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+    
+    @FunctionalInterface
+    private interface SessionOpener {
+        WorkbookReadService.ReadSession open() throws Exception;
+    }
+}
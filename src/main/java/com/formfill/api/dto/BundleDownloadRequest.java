@@ -0,0 +1,38 @@
+package com.formfill.api.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * 打包下载请求DTO
+ * {
+ *   "name": "2024-05-31批次",
+ *   "files": ["员工信息表_filled_20240531_143000.xlsx", "客户登记表_filled_20240531_143001.xlsx"]
+ * }
+ *
+ * files 为 output 目录下的文件名（即填写响应中 download_url 的最后一段）；name 为压缩包文件名，可省略。
+ */
+public class BundleDownloadRequest {
+    
+    private String name;
+    
+    @NotEmpty(message = "文件列表不能为空")
+    private List<String> files;
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public List<String> getFiles() {
+        return files;
+    }
+    
+    public void setFiles(List<String> files) {
+        this.files = files;
+    }
+}
@@ -0,0 +1,140 @@
+package com.formfill.api.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的单元格批次：行号、列号以原始int数组保存，值按顺序保存在列表中（行列均从1开始）
+ * 
+ * 既可由 CellBatchDeserializer 直接从紧凑JSON格式流式构建，
+ * 也可由旧的 {"row3": {"col2": "值"}} 格式一次性转换得到，填写服务只处理这一种结构。
+ */
+@JsonDeserialize(using = CellBatchDeserializer.class)
+public class CellBatch {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CellBatch.class);
+    
+    private int[] rows;
+    private int[] cols;
+    private final List<String> values;
+    private int size;
+    // 旧格式中无法解析的列键数量，计入 total_fields 以保持原有统计口径
+    private int skippedCount;
+    
+    public CellBatch() {
+        this(16);
+    }
+    
+    public CellBatch(int capacity) {
+        this.rows = new int[Math.max(capacity, 1)];
+        this.cols = new int[Math.max(capacity, 1)];
+        this.values = new ArrayList<>(Math.max(capacity, 1));
+    }
+    
+    /**
+     * 追加一个单元格
+     */
+    public void add(int row, int col, String value) {
+        if (size == rows.length) {
+            int newCapacity = size + (size >> 1) + 1;
+            rows = Arrays.copyOf(rows, newCapacity);
+            cols = Arrays.copyOf(cols, newCapacity);
+        }
+        rows[size] = row;
+        cols[size] = col;
+        values.add(value);
+        size++;
+    }
+    
+    /**
+     * 追加另一个批次中的全部单元格
+     */
+    public void addAll(CellBatch other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.rows[i], other.cols[i], other.values.get(i));
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public int getRow(int index) {
+        return rows[index];
+    }
+    
+    public int getCol(int index) {
+        return cols[index];
+    }
+    
+    public String getValue(int index) {
+        return values.get(index);
+    }
+    
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+    
+    void incrementSkipped() {
+        skippedCount++;
+    }
+    
+    /**
+     * 从旧格式 {"row3": {"col2": "值"}} 转换，键只解析一次
+     */
+    public static CellBatch fromFormContent(Map<String, Map<String, String>> formContent) {
+        int capacity = 0;
+        for (Map<String, String> colMap : formContent.values()) {
+            capacity += colMap != null ? colMap.size() : 0;
+        }
+        CellBatch batch = new CellBatch(capacity);
+        for (Map.Entry<String, Map<String, String>> rowEntry : formContent.entrySet()) {
+            Map<String, String> colMap = rowEntry.getValue();
+            int row = parseIndex(rowEntry.getKey(), "row");
+            if (row <= 0 || colMap == null) {
+                logger.warn("Invalid row format: {}", rowEntry.getKey());
+                continue;
+            }
+            for (Map.Entry<String, String> colEntry : colMap.entrySet()) {
+                int col = parseIndex(colEntry.getKey(), "col");
+                if (col <= 0) {
+                    logger.warn("Invalid column format: {}", colEntry.getKey());
+                    batch.incrementSkipped();
+                    continue;
+                }
+                batch.add(row, col, colEntry.getValue());
+            }
+        }
+        return batch;
+    }
+    
+    /**
+     * 解析 "row3"/"col2" 中的数字部分；不合法时返回-1，超出int范围时截断为Integer.MAX_VALUE交由预检报告
+     */
+    static int parseIndex(String key, String prefix) {
+        if (key == null || key.length() <= prefix.length()
+                || !key.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = prefix.length(); i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = Math.min(value * 10 + (c - '0'), Integer.MAX_VALUE);
+        }
+        return (int) value;
+    }
+    
+    @Override
+    public String toString() {
+        return "CellBatch{size=" + size + "}";
+    }
+}
@@ -0,0 +1,202 @@
+package com.formfill.api.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CellBatch 的流式反序列化器，直接从token流写入int数组，不构建中间Map
+ * 
+ * 支持以下紧凑格式（行列从1开始）：
+ * 1. 三元组/二元组数组：[[3, 2, "张三"], ["B4", "男"]]
+ * 2. 列式对象：{"rows": [3, 4], "cols": [2, 2], "values": ["张三", "男"]}
+ * 3. A1区域块：{"B3": "张三", "B4:C5": [["a", "b"], ["c", "d"]]}
+ */
+public class CellBatchDeserializer extends JsonDeserializer<CellBatch> {
+    
+    @Override
+    public CellBatch deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        CellBatch batch = new CellBatch();
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            readTuples(p, ctxt, batch);
+        } else if (token == JsonToken.START_OBJECT) {
+            readObject(p, ctxt, batch);
+        } else {
+            return (CellBatch) ctxt.handleUnexpectedToken(CellBatch.class, p);
+        }
+        return batch;
+    }
+    
+    /**
+     * [[row, col, value], ["A1", value], ...]
+     */
+    private void readTuples(JsonParser p, DeserializationContext ctxt, CellBatch batch) throws IOException {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (p.currentToken() != JsonToken.START_ARRAY) {
+                ctxt.reportInputMismatch(CellBatch.class, "Each cell must be [row, col, value] or [\"A1\", value]");
+            }
+            JsonToken first = nextElement(p, ctxt);
+            int row;
+            int col;
+            if (first == JsonToken.VALUE_STRING) {
+                CellReference ref = parseReference(p.getText(), ctxt);
+                row = ref.getRow() + 1;
+                col = ref.getCol() + 1;
+            } else {
+                row = readIndex(p, ctxt);
+                nextElement(p, ctxt);
+                col = readIndex(p, ctxt);
+            }
+            nextElement(p, ctxt);
+            batch.add(row, col, readValue(p, ctxt));
+            if (p.nextToken() != JsonToken.END_ARRAY) {
+                ctxt.reportInputMismatch(CellBatch.class, "Cell tuple has too many elements");
+            }
+        }
+    }
+    
+    /**
+     * 前进到元组的下一个元素，元组已结束时报错
+     */
+    private JsonToken nextElement(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            ctxt.reportInputMismatch(CellBatch.class, "Cell tuple has too few elements");
+        }
+        return token;
+    }
+    
+    /**
+     * 列式对象或A1区域块
+     */
+    private void readObject(JsonParser p, DeserializationContext ctxt, CellBatch batch) throws IOException {
+        int[] rows = null;
+        int[] cols = null;
+        int rowCount = 0;
+        int colCount = 0;
+        List<String> values = null;
+        
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken valueToken = p.nextToken();
+            if ("rows".equals(field) || "cols".equals(field)) {
+                int[] indexes = new int[16];
+                int count = 0;
+                expect(p, ctxt, valueToken, JsonToken.START_ARRAY, field);
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    if (count == indexes.length) {
+                        indexes = Arrays.copyOf(indexes, count * 2);
+                    }
+                    indexes[count++] = readIndex(p, ctxt);
+                }
+                if ("rows".equals(field)) {
+                    rows = indexes;
+                    rowCount = count;
+                } else {
+                    cols = indexes;
+                    colCount = count;
+                }
+            } else if ("values".equals(field)) {
+                expect(p, ctxt, valueToken, JsonToken.START_ARRAY, field);
+                values = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    values.add(readValue(p, ctxt));
+                }
+            } else {
+                readRange(p, ctxt, batch, field, valueToken);
+            }
+        }
+        
+        if (rows != null || cols != null || values != null) {
+            if (rows == null || cols == null || values == null
+                    || rowCount != values.size() || colCount != values.size()) {
+                ctxt.reportInputMismatch(CellBatch.class,
+                        "Columnar cells require rows, cols and values of equal length");
+            }
+            for (int i = 0; i < rowCount; i++) {
+                batch.add(rows[i], cols[i], values.get(i));
+            }
+        }
+    }
+    
+    /**
+     * "B3": "值" 或 "B3:C4": [["a", "b"], ["c", "d"]]
+     */
+    private void readRange(JsonParser p, DeserializationContext ctxt, CellBatch batch,
+                           String range, JsonToken valueToken) throws IOException {
+        if (valueToken != JsonToken.START_ARRAY) {
+            CellReference ref = parseReference(range, ctxt);
+            batch.add(ref.getRow() + 1, ref.getCol() + 1, readValue(p, ctxt));
+            return;
+        }
+        CellRangeAddress area;
+        try {
+            area = CellRangeAddress.valueOf(range);
+        } catch (IllegalArgumentException e) {
+            ctxt.reportInputMismatch(CellBatch.class, "Invalid A1 range: %s", range);
+            return;
+        }
+        int row = area.getFirstRow();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            expect(p, ctxt, p.currentToken(), JsonToken.START_ARRAY, range);
+            int col = area.getFirstColumn();
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (row > area.getLastRow() || col > area.getLastColumn()) {
+                    ctxt.reportInputMismatch(CellBatch.class, "Values exceed range %s", range);
+                }
+                batch.add(row + 1, col + 1, readValue(p, ctxt));
+                col++;
+            }
+            row++;
+        }
+    }
+    
+    private CellReference parseReference(String text, DeserializationContext ctxt) throws IOException {
+        try {
+            CellReference ref = new CellReference(text);
+            if (ref.getRow() < 0 || ref.getCol() < 0) {
+                ctxt.reportInputMismatch(CellBatch.class, "Invalid A1 reference: %s", text);
+            }
+            return ref;
+        } catch (IllegalArgumentException e) {
+            ctxt.reportInputMismatch(CellBatch.class, "Invalid A1 reference: %s", text);
+            return null;
+        }
+    }
+    
+    private int readIndex(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (!p.currentToken().isNumeric()) {
+            ctxt.reportInputMismatch(CellBatch.class, "Row/column index must be a number");
+        }
+        long value = p.getLongValue();
+        return (int) Math.max(Math.min(value, Integer.MAX_VALUE), -1);
+    }
+    
+    /**
+     * 读取单元格的值：字符串、数字、布尔或null，嵌套的对象和数组报错而不是跳过（跳过会使后续token错位）
+     */
+    private String readValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (!token.isScalarValue()) {
+            ctxt.reportInputMismatch(CellBatch.class, "Cell value must be a string, number, boolean or null, not %s",
+                    token == JsonToken.START_OBJECT ? "an object" : "an array");
+        }
+        return token == JsonToken.VALUE_NULL ? null : p.getValueAsString();
+    }
+    
+    private void expect(JsonParser p, DeserializationContext ctxt, JsonToken actual, JsonToken expected,
+                        String field) throws IOException {
+        if (actual != expected) {
+            ctxt.reportInputMismatch(CellBatch.class, "Unexpected token %s for '%s'", actual, field);
+        }
+    }
+}
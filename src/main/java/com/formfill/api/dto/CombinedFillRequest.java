@@ -0,0 +1,67 @@
+package com.formfill.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+
+import java.util.List;
+
+/**
+ * 多表单合并输出请求DTO：每个表单填写后作为一个工作表，写入同一个工作簿
+ * {
+ *   "outputName": "客户资料",
+ *   "forms": [
+ *     {"formName": "客户登记表", "cells": {"B3": "某某公司"}},
+ *     {"formName": "纳期回答登记表", "labels": {"customer code": "C-001"}}
+ *   ]
+ * }
+ *
+ * forms 中每项与 /api/fill-form 的请求相同，支持 formContent / cells / labels；
+ * 暂不支持 repeats、recalculate 与 diff。outputName 可省略，默认以各表单名称拼接。
+ * deadlineMs 为整个合并输出的期限，forms 中各项的 deadlineMs 不起作用。
+ */
+public class CombinedFillRequest {
+    
+    @Pattern(regexp = "[^/\\\\]*", message = "outputName 不能包含路径分隔符")
+    private String outputName;
+    
+    @NotEmpty(message = "表单列表不能为空")
+    @Valid
+    private List<FormFillRequest> forms;
+    
+    @Positive(message = "deadlineMs 必须大于0")
+    private Long deadlineMs;
+    
+    public String getOutputName() {
+        return outputName;
+    }
+    
+    public void setOutputName(String outputName) {
+        this.outputName = outputName;
+    }
+    
+    public List<FormFillRequest> getForms() {
+        return forms;
+    }
+    
+    public void setForms(List<FormFillRequest> forms) {
+        this.forms = forms;
+    }
+    
+    public Long getDeadlineMs() {
+        return deadlineMs;
+    }
+    
+    public void setDeadlineMs(Long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+    
+    @Override
+    public String toString() {
+        return "CombinedFillRequest{" +
+                "outputName='" + outputName + '\'' +
+                ", forms=" + forms +
+                '}';
+    }
+}
@@ -2,6 +2,7 @@ package com.formfill.api.dto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 邮件发送响应DTO
@@ -15,6 +16,7 @@ public class EmailSendResponse {
     private String attachmentName;
     private LocalDateTime timestamp;
     private String errorCode;
+    private Map<String, Double> timings;
     
     public EmailSendResponse() {
         this.timestamp = LocalDateTime.now();
@@ -96,4 +98,12 @@ public class EmailSendResponse {
     public void setErrorCode(String errorCode) {
         this.errorCode = errorCode;
     }
+    
+    public Map<String, Double> getTimings() {
+        return timings;
+    }
+    
+    public void setTimings(Map<String, Double> timings) {
+        this.timings = timings;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.formfill.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+
+/**
+ * 异步填写任务请求DTO，form 与 combined 二选一：
+ * {
+ *   "form": {"formName": "员工信息表", "cells": [[3, 2, "张三"]]},
+ *   "callbackUrl": "https://example.com/hooks/formfill",
+ *   "lane": "bulk"
+ * }
+ *
+ * form 与 /api/fill-form 的请求相同；combined 与 /api/fill-form/combined 的请求相同。
+ * lane 可省略：字段数不超过 formfill.jobs.interactive-max-fields 的单表单进入 interactive 通道，
+ * 其余（大表单、多表单合并）进入 bulk 通道；这些任务指定 interactive 时返回400 LANE_NOT_ALLOWED。callbackUrl 可省略，任务结束后以POST回调任务状态。
+ */
+public class FillJobRequest {
+    
+    @Valid
+    private FormFillRequest form;
+    
+    @Valid
+    private CombinedFillRequest combined;
+    
+    private String callbackUrl;
+    
+    private String lane;
+    
+    @JsonIgnore
+    @AssertTrue(message = "form 与 combined 必须且只能提供一个")
+    public boolean isSingleTarget() {
+        return (form != null) != (combined != null);
+    }
+    
+    @JsonIgnore
+    @AssertTrue(message = "lane 只能为 interactive 或 bulk")
+    public boolean isLaneValid() {
+        return lane == null || "interactive".equals(lane) || "bulk".equals(lane);
+    }
+    
+    public FormFillRequest getForm() {
+        return form;
+    }
+    
+    public void setForm(FormFillRequest form) {
+        this.form = form;
+    }
+    
+    public CombinedFillRequest getCombined() {
+        return combined;
+    }
+    
+    public void setCombined(CombinedFillRequest combined) {
+        this.combined = combined;
+    }
+    
+    public String getCallbackUrl() {
+        return callbackUrl;
+    }
+    
+    public void setCallbackUrl(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+    
+    public String getLane() {
+        return lane;
+    }
+    
+    public void setLane(String lane) {
+        this.lane = lane;
+    }
+}
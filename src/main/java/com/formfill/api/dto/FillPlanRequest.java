@@ -0,0 +1,106 @@
+package com.formfill.api.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * 填写计划注册请求DTO
+ * {
+ *   "name": "入职登记",
+ *   "fields": [
+ *     {"name": "姓名", "row": 3, "col": 2},
+ *     {"name": "入职日期", "cell": "B7", "type": "date", "style": "template"},
+ *     {"name": "工龄", "row": 8, "col": 2, "type": "number", "style": "default"}
+ *   ]
+ * }
+ * 
+ * type 可选 string(默认)/number/boolean/date/formula；
+ * style 可选 template(默认，保留模板单元格样式)/default(与坐标填写相同的Arial 11号左对齐样式)
+ */
+public class FillPlanRequest {
+    
+    private String name;
+    
+    @NotEmpty(message = "字段列表不能为空")
+    @Valid
+    private List<Field> fields;
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public List<Field> getFields() {
+        return fields;
+    }
+    
+    public void setFields(List<Field> fields) {
+        this.fields = fields;
+    }
+    
+    public static class Field {
+        
+        @NotBlank(message = "字段名称不能为空")
+        private String name;
+        private Integer row;
+        private Integer col;
+        // A1格式坐标，与 row/col 二选一
+        private String cell;
+        private String type;
+        private String style;
+        
+        public String getName() {
+            return name;
+        }
+        
+        public void setName(String name) {
+            this.name = name;
+        }
+        
+        public Integer getRow() {
+            return row;
+        }
+        
+        public void setRow(Integer row) {
+            this.row = row;
+        }
+        
+        public Integer getCol() {
+            return col;
+        }
+        
+        public void setCol(Integer col) {
+            this.col = col;
+        }
+        
+        public String getCell() {
+            return cell;
+        }
+        
+        public void setCell(String cell) {
+            this.cell = cell;
+        }
+        
+        public String getType() {
+            return type;
+        }
+        
+        public void setType(String type) {
+            this.type = type;
+        }
+        
+        public String getStyle() {
+            return style;
+        }
+        
+        public void setStyle(String style) {
+            this.style = style;
+        }
+    }
+}
@@ -0,0 +1,909 @@
+package com.formfill.api.dto;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 表单填写服务配置类
+ */
+@Component
+@ConfigurationProperties(prefix = "formfill")
+public class FormFillConfig {
+    
+    private Timing timing = new Timing();
+    private Admission admission = new Admission();
+    private Validation validation = new Validation();
+    private RateLimit rateLimit = new RateLimit();
+    private Reactive reactive = new Reactive();
+    private Jobs jobs = new Jobs();
+    private Deadline deadline = new Deadline();
+    private Output output = new Output();
+    private Templates templates = new Templates();
+    private Buffers buffers = new Buffers();
+    
+    public Timing getTiming() {
+        return timing;
+    }
+    
+    public void setTiming(Timing timing) {
+        this.timing = timing;
+    }
+    
+    public Admission getAdmission() {
+        return admission;
+    }
+    
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+    
+    public Validation getValidation() {
+        return validation;
+    }
+    
+    public void setValidation(Validation validation) {
+        this.validation = validation;
+    }
+    
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+    
+    public void setRateLimit(RateLimit rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+    
+    public Reactive getReactive() {
+        return reactive;
+    }
+    
+    public void setReactive(Reactive reactive) {
+        this.reactive = reactive;
+    }
+    
+    public Jobs getJobs() {
+        return jobs;
+    }
+    
+    public void setJobs(Jobs jobs) {
+        this.jobs = jobs;
+    }
+    
+    public Deadline getDeadline() {
+        return deadline;
+    }
+    
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+    
+    public Output getOutput() {
+        return output;
+    }
+    
+    public void setOutput(Output output) {
+        this.output = output;
+    }
+    
+    public Templates getTemplates() {
+        return templates;
+    }
+    
+    public void setTemplates(Templates templates) {
+        this.templates = templates;
+    }
+    
+    public Buffers getBuffers() {
+        return buffers;
+    }
+    
+    public void setBuffers(Buffers buffers) {
+        this.buffers = buffers;
+    }
+    
+    /**
+     * Server-Timing 阶段耗时配置
+     */
+    public static class Timing {
+        // 是否采集阶段耗时并返回 Server-Timing 响应头
+        private boolean enabled = true;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+    
+    /**
+     * 基于预估堆内存的准入控制配置
+     */
+    public static class Admission {
+        private boolean enabled = true;
+        // 填写任务可占用的堆内存预算（MB），0表示取最大堆的40%
+        private long memoryBudgetMb = 0;
+        // 模板文件大小到POI工作簿堆占用的放大倍数（xlsx为压缩包，解析后通常膨胀数十倍）
+        private int heapFactor = 40;
+        // 每个填写字段的预估开销（字节）
+        private int bytesPerField = 2048;
+        // 每次填写的固定开销（KB），覆盖样式表、主题等
+        private int baseCostKb = 4096;
+        // 单个模板允许同时进行的填写数（舱壁）
+        private int maxConcurrentPerTemplate = 4;
+        // 排队等待的最长时间（毫秒），超时返回429
+        private long queueTimeoutMs = 2000;
+        // 429响应中 Retry-After 的秒数
+        private int retryAfterSeconds = 2;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public long getMemoryBudgetMb() {
+            return memoryBudgetMb;
+        }
+        
+        public void setMemoryBudgetMb(long memoryBudgetMb) {
+            this.memoryBudgetMb = memoryBudgetMb;
+        }
+        
+        public int getHeapFactor() {
+            return heapFactor;
+        }
+        
+        public void setHeapFactor(int heapFactor) {
+            this.heapFactor = heapFactor;
+        }
+        
+        public int getBytesPerField() {
+            return bytesPerField;
+        }
+        
+        public void setBytesPerField(int bytesPerField) {
+            this.bytesPerField = bytesPerField;
+        }
+        
+        public int getBaseCostKb() {
+            return baseCostKb;
+        }
+        
+        public void setBaseCostKb(int baseCostKb) {
+            this.baseCostKb = baseCostKb;
+        }
+        
+        public int getMaxConcurrentPerTemplate() {
+            return maxConcurrentPerTemplate;
+        }
+        
+        public void setMaxConcurrentPerTemplate(int maxConcurrentPerTemplate) {
+            this.maxConcurrentPerTemplate = maxConcurrentPerTemplate;
+        }
+        
+        public long getQueueTimeoutMs() {
+            return queueTimeoutMs;
+        }
+        
+        public void setQueueTimeoutMs(long queueTimeoutMs) {
+            this.queueTimeoutMs = queueTimeoutMs;
+        }
+        
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+        
+        public void setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+    
+    /**
+     * formContent 预检限制，在加载模板前执行
+     */
+    public static class Validation {
+        // 单次请求最多字段数
+        private int maxFields = 5000;
+        // 单元格值最大长度（Excel单元格上限为32767字符）
+        private int maxValueLength = 32767;
+        // 最小行号与最大行号之间允许的跨度
+        private int maxRowSpan = 10000;
+        // 400响应中最多列出的违规坐标数
+        private int maxReportedViolations = 50;
+        // 流式批量写入时单次请求最多行数
+        private int maxBulkRows = 200000;
+        // 合并输出时单次请求最多表单数
+        private int maxCombinedForms = 10;
+        // 打包下载时单次请求最多文件数
+        private int maxBundleFiles = 500;
+        // 上传模板的最大大小（MB），multipart 上传另受 spring.servlet.multipart 限制
+        private int maxTemplateUploadMb = 50;
+        
+        public int getMaxFields() {
+            return maxFields;
+        }
+        
+        public void setMaxFields(int maxFields) {
+            this.maxFields = maxFields;
+        }
+        
+        public int getMaxValueLength() {
+            return maxValueLength;
+        }
+        
+        public void setMaxValueLength(int maxValueLength) {
+            this.maxValueLength = maxValueLength;
+        }
+        
+        public int getMaxRowSpan() {
+            return maxRowSpan;
+        }
+        
+        public void setMaxRowSpan(int maxRowSpan) {
+            this.maxRowSpan = maxRowSpan;
+        }
+        
+        public int getMaxReportedViolations() {
+            return maxReportedViolations;
+        }
+        
+        public void setMaxReportedViolations(int maxReportedViolations) {
+            this.maxReportedViolations = maxReportedViolations;
+        }
+        
+        public int getMaxBulkRows() {
+            return maxBulkRows;
+        }
+        
+        public void setMaxBulkRows(int maxBulkRows) {
+            this.maxBulkRows = maxBulkRows;
+        }
+        
+        public int getMaxCombinedForms() {
+            return maxCombinedForms;
+        }
+        
+        public void setMaxCombinedForms(int maxCombinedForms) {
+            this.maxCombinedForms = maxCombinedForms;
+        }
+        
+        public int getMaxBundleFiles() {
+            return maxBundleFiles;
+        }
+        
+        public void setMaxBundleFiles(int maxBundleFiles) {
+            this.maxBundleFiles = maxBundleFiles;
+        }
+        
+        public int getMaxTemplateUploadMb() {
+            return maxTemplateUploadMb;
+        }
+        
+        public void setMaxTemplateUploadMb(int maxTemplateUploadMb) {
+            this.maxTemplateUploadMb = maxTemplateUploadMb;
+        }
+    }
+    
+    /**
+     * 响应式（Reactor Netty）端点配置
+     */
+    public static class Reactive {
+        // 是否在独立端口上启动响应式端点
+        private boolean enabled = false;
+        private int port = 8081;
+        // 执行POI与SMTP阻塞操作的线程数上限，0表示CPU核数的2倍
+        private int workerThreads = 0;
+        // 线程全忙时最多排队的任务数，超出返回429
+        private int queueCapacity = 200;
+        // 下载时每个数据块的大小（KB）
+        private int chunkSizeKb = 64;
+        // 请求体在内存中聚合的上限（MB）
+        private int maxRequestMb = 16;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getPort() {
+            return port;
+        }
+        
+        public void setPort(int port) {
+            this.port = port;
+        }
+        
+        public int getWorkerThreads() {
+            return workerThreads;
+        }
+        
+        public void setWorkerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+        }
+        
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+        
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+        
+        public int getChunkSizeKb() {
+            return chunkSizeKb;
+        }
+        
+        public void setChunkSizeKb(int chunkSizeKb) {
+            this.chunkSizeKb = chunkSizeKb;
+        }
+        
+        public int getMaxRequestMb() {
+            return maxRequestMb;
+        }
+        
+        public void setMaxRequestMb(int maxRequestMb) {
+            this.maxRequestMb = maxRequestMb;
+        }
+    }
+    
+    /**
+     * 异步填写任务配置
+     */
+    public static class Jobs {
+        // 交互通道（小表单）的工作线程数
+        private int interactiveThreads = 4;
+        // 交互通道最多排队的任务数
+        private int interactiveQueueCapacity = 200;
+        // 批量通道（大表单、多表单合并）的工作线程数
+        private int bulkThreads = 1;
+        // 批量通道最多排队的任务数
+        private int bulkQueueCapacity = 50;
+        // 字段数不超过该值的单表单任务进入交互通道
+        private int interactiveMaxFields = 500;
+        // 已完成任务的保留时间（分钟）
+        private int retentionMinutes = 60;
+        // 回调请求超时（毫秒）
+        private int callbackTimeoutMs = 10000;
+        // 回调最多尝试次数，两次之间按1s、2s、4s...退避
+        private int callbackAttempts = 3;
+        // 允许的回调主机（精确匹配，或 *.example.com 匹配子域名），可以是内网主机；
+        // 为空时允许任意公网地址，拒绝本机、内网与链路本地地址
+        private List<String> callbackAllowedHosts = new ArrayList<>();
+        
+        public int getInteractiveThreads() {
+            return interactiveThreads;
+        }
+        
+        public void setInteractiveThreads(int interactiveThreads) {
+            this.interactiveThreads = interactiveThreads;
+        }
+        
+        public int getInteractiveQueueCapacity() {
+            return interactiveQueueCapacity;
+        }
+        
+        public void setInteractiveQueueCapacity(int interactiveQueueCapacity) {
+            this.interactiveQueueCapacity = interactiveQueueCapacity;
+        }
+        
+        public int getBulkThreads() {
+            return bulkThreads;
+        }
+        
+        public void setBulkThreads(int bulkThreads) {
+            this.bulkThreads = bulkThreads;
+        }
+        
+        public int getBulkQueueCapacity() {
+            return bulkQueueCapacity;
+        }
+        
+        public void setBulkQueueCapacity(int bulkQueueCapacity) {
+            this.bulkQueueCapacity = bulkQueueCapacity;
+        }
+        
+        public int getInteractiveMaxFields() {
+            return interactiveMaxFields;
+        }
+        
+        public void setInteractiveMaxFields(int interactiveMaxFields) {
+            this.interactiveMaxFields = interactiveMaxFields;
+        }
+        
+        public int getRetentionMinutes() {
+            return retentionMinutes;
+        }
+        
+        public void setRetentionMinutes(int retentionMinutes) {
+            this.retentionMinutes = retentionMinutes;
+        }
+        
+        public int getCallbackTimeoutMs() {
+            return callbackTimeoutMs;
+        }
+        
+        public void setCallbackTimeoutMs(int callbackTimeoutMs) {
+            this.callbackTimeoutMs = callbackTimeoutMs;
+        }
+        
+        public int getCallbackAttempts() {
+            return callbackAttempts;
+        }
+        
+        public void setCallbackAttempts(int callbackAttempts) {
+            this.callbackAttempts = callbackAttempts;
+        }
+        
+        public List<String> getCallbackAllowedHosts() {
+            return callbackAllowedHosts;
+        }
+        
+        public void setCallbackAllowedHosts(List<String> callbackAllowedHosts) {
+            this.callbackAllowedHosts = callbackAllowedHosts;
+        }
+    }
+    
+    /**
+     * 填写请求期限配置
+     */
+    public static class Deadline {
+        // 客户端未通过 X-Deadline-Ms 或 deadlineMs 给出期限时使用的默认期限（毫秒），0表示不限
+        private long defaultMs = 0;
+        
+        public long getDefaultMs() {
+            return defaultMs;
+        }
+        
+        public void setDefaultMs(long defaultMs) {
+            this.defaultMs = defaultMs;
+        }
+    }
+    
+    /**
+     * 输出文件存储配置
+     */
+    public static class Output {
+        // local：写入本地目录；s3：写入S3兼容对象存储，多个节点共享同一份输出
+        private String store = "local";
+        private String localDir = "output";
+        private S3 s3 = new S3();
+        
+        public String getStore() {
+            return store;
+        }
+        
+        public void setStore(String store) {
+            this.store = store;
+        }
+        
+        public String getLocalDir() {
+            return localDir;
+        }
+        
+        public void setLocalDir(String localDir) {
+            this.localDir = localDir;
+        }
+        
+        public S3 getS3() {
+            return s3;
+        }
+        
+        public void setS3(S3 s3) {
+            this.s3 = s3;
+        }
+    }
+    
+    /**
+     * 共享模板仓库配置
+     */
+    public static class Templates {
+        // none：只使用本节点 templates 目录；filesystem：共享目录（如NFS挂载）；s3：S3兼容对象存储
+        private String repository = "none";
+        private String sharedDir;
+        private S3 s3 = new S3("templates/");
+        // 从共享仓库同步当前版本到本节点 templates 目录的间隔（秒）
+        private int syncIntervalSeconds = 30;
+        // 启动时把共享仓库中没有的本地模板发布上去，便于从单节点部署迁移
+        private boolean seedFromLocal = true;
+        // 本节点缓存的固定版本（templateVersion）模板数上限，超出时删除最久未用的
+        private int maxPinnedVersions = 50;
+        // 内存中缓存的模板内容总大小上限（MB），超出时移除最久未用的模板；0表示不缓存
+        private int cacheMaxMb = 128;
+        
+        public String getRepository() {
+            return repository;
+        }
+        
+        public void setRepository(String repository) {
+            this.repository = repository;
+        }
+        
+        public String getSharedDir() {
+            return sharedDir;
+        }
+        
+        public void setSharedDir(String sharedDir) {
+            this.sharedDir = sharedDir;
+        }
+        
+        public S3 getS3() {
+            return s3;
+        }
+        
+        public void setS3(S3 s3) {
+            this.s3 = s3;
+        }
+        
+        public int getSyncIntervalSeconds() {
+            return syncIntervalSeconds;
+        }
+        
+        public void setSyncIntervalSeconds(int syncIntervalSeconds) {
+            this.syncIntervalSeconds = syncIntervalSeconds;
+        }
+        
+        public boolean isSeedFromLocal() {
+            return seedFromLocal;
+        }
+        
+        public void setSeedFromLocal(boolean seedFromLocal) {
+            this.seedFromLocal = seedFromLocal;
+        }
+        
+        public int getMaxPinnedVersions() {
+            return maxPinnedVersions;
+        }
+        
+        public void setMaxPinnedVersions(int maxPinnedVersions) {
+            this.maxPinnedVersions = maxPinnedVersions;
+        }
+        
+        public int getCacheMaxMb() {
+            return cacheMaxMb;
+        }
+        
+        public void setCacheMaxMb(int cacheMaxMb) {
+            this.cacheMaxMb = cacheMaxMb;
+        }
+    }
+    
+    /**
+     * 输出缓冲池配置
+     */
+    public static class Buffers {
+        // 关闭后每次都新分配缓冲区，用完即丢弃
+        private boolean enabled = true;
+        // 使用堆外（direct）缓冲区：不占用Java堆，写入本地文件时少一次复制
+        private boolean direct = false;
+        // 池中空闲缓冲区的总大小上限（MB），超出时归还的缓冲区直接丢弃
+        private int maxPooledMb = 64;
+        // 可入池的最大缓冲区（MB），更大的缓冲区按需分配、不入池
+        private int maxBufferMb = 16;
+        // 本地输出文件的写缓冲大小（KB）
+        private int writeBufferKb = 64;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public boolean isDirect() {
+            return direct;
+        }
+        
+        public void setDirect(boolean direct) {
+            this.direct = direct;
+        }
+        
+        public int getMaxPooledMb() {
+            return maxPooledMb;
+        }
+        
+        public void setMaxPooledMb(int maxPooledMb) {
+            this.maxPooledMb = maxPooledMb;
+        }
+        
+        public int getMaxBufferMb() {
+            return maxBufferMb;
+        }
+        
+        public void setMaxBufferMb(int maxBufferMb) {
+            this.maxBufferMb = maxBufferMb;
+        }
+        
+        public int getWriteBufferKb() {
+            return writeBufferKb;
+        }
+        
+        public void setWriteBufferKb(int writeBufferKb) {
+            this.writeBufferKb = writeBufferKb;
+        }
+    }
+    
+    /**
+     * S3兼容对象存储配置（AWS S3、MinIO、Ceph RGW 等）
+     */
+    public static class S3 {
+        // 例如 https://s3.us-east-1.amazonaws.com 或 http://minio:9000
+        private String endpoint;
+        private String region = "us-east-1";
+        private String bucket;
+        private String accessKey;
+        private String secretKey;
+        // 对象键前缀：输出文件保存为 <prefix><文件名>（默认 output/），模板仓库默认为 templates/
+        private String prefix;
+        // 路径风格访问（http://endpoint/bucket/key），MinIO 等自建存储通常需要
+        private boolean pathStyle = true;
+        // 分片上传的分片大小（MB），不小于5；输出小于一个分片时使用单次PUT
+        private int partSizeMb = 8;
+        // 下载时重定向到预签名URL，由对象存储直接发送文件；关闭时由应用流式转发
+        private boolean presignDownloads = false;
+        private int presignTtlSeconds = 300;
+        private int connectTimeoutMs = 5000;
+        private int requestTimeoutMs = 60000;
+        
+        public S3() {
+            this("output/");
+        }
+        
+        public S3(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        public String getEndpoint() {
+            return endpoint;
+        }
+        
+        public void setEndpoint(String endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        public String getRegion() {
+            return region;
+        }
+        
+        public void setRegion(String region) {
+            this.region = region;
+        }
+        
+        public String getBucket() {
+            return bucket;
+        }
+        
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+        
+        public String getAccessKey() {
+            return accessKey;
+        }
+        
+        public void setAccessKey(String accessKey) {
+            this.accessKey = accessKey;
+        }
+        
+        public String getSecretKey() {
+            return secretKey;
+        }
+        
+        public void setSecretKey(String secretKey) {
+            this.secretKey = secretKey;
+        }
+        
+        public String getPrefix() {
+            return prefix;
+        }
+        
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        public boolean isPathStyle() {
+            return pathStyle;
+        }
+        
+        public void setPathStyle(boolean pathStyle) {
+            this.pathStyle = pathStyle;
+        }
+        
+        public int getPartSizeMb() {
+            return partSizeMb;
+        }
+        
+        public void setPartSizeMb(int partSizeMb) {
+            this.partSizeMb = partSizeMb;
+        }
+        
+        public boolean isPresignDownloads() {
+            return presignDownloads;
+        }
+        
+        public void setPresignDownloads(boolean presignDownloads) {
+            this.presignDownloads = presignDownloads;
+        }
+        
+        public int getPresignTtlSeconds() {
+            return presignTtlSeconds;
+        }
+        
+        public void setPresignTtlSeconds(int presignTtlSeconds) {
+            this.presignTtlSeconds = presignTtlSeconds;
+        }
+        
+        public int getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+        
+        public void setConnectTimeoutMs(int connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+        
+        public int getRequestTimeoutMs() {
+            return requestTimeoutMs;
+        }
+        
+        public void setRequestTimeoutMs(int requestTimeoutMs) {
+            this.requestTimeoutMs = requestTimeoutMs;
+        }
+    }
+    
+    /**
+     * 按调用方限流与公平排队配置
+     */
+    public static class RateLimit {
+        private boolean enabled = true;
+        // 未单独配置的调用方每秒允许的请求数
+        private double defaultRate = 10;
+        // 未单独配置的调用方允许的突发请求数
+        private int defaultBurst = 20;
+        // 未单独配置的调用方的公平队列权重
+        private int defaultWeight = 1;
+        // 受限接口同时处理的请求数上限，超出部分进入按调用方划分的加权公平队列
+        private int maxConcurrent = 16;
+        // 单个调用方最多排队的请求数
+        private int maxQueuePerClient = 50;
+        // 排队等待的最长时间（毫秒）
+        private long queueTimeoutMs = 3000;
+        // 令牌桶分片数（2的幂）
+        private int stripes = 16;
+        private List<Client> clients = new ArrayList<>();
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public double getDefaultRate() {
+            return defaultRate;
+        }
+        
+        public void setDefaultRate(double defaultRate) {
+            this.defaultRate = defaultRate;
+        }
+        
+        public int getDefaultBurst() {
+            return defaultBurst;
+        }
+        
+        public void setDefaultBurst(int defaultBurst) {
+            this.defaultBurst = defaultBurst;
+        }
+        
+        public int getDefaultWeight() {
+            return defaultWeight;
+        }
+        
+        public void setDefaultWeight(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+        
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+        
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+        
+        public int getMaxQueuePerClient() {
+            return maxQueuePerClient;
+        }
+        
+        public void setMaxQueuePerClient(int maxQueuePerClient) {
+            this.maxQueuePerClient = maxQueuePerClient;
+        }
+        
+        public long getQueueTimeoutMs() {
+            return queueTimeoutMs;
+        }
+        
+        public void setQueueTimeoutMs(long queueTimeoutMs) {
+            this.queueTimeoutMs = queueTimeoutMs;
+        }
+        
+        public int getStripes() {
+            return stripes;
+        }
+        
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+        
+        public List<Client> getClients() {
+            return clients;
+        }
+        
+        public void setClients(List<Client> clients) {
+            this.clients = clients;
+        }
+    }
+    
+    /**
+     * 已知调用方（Dify应用、RPA机器人等）
+     */
+    public static class Client {
+        // 调用方名称，用于指标标签；未配置 api-key 时通过 X-Client-Id 请求头指定该名称识别
+        private String name;
+        // 调用方的 X-API-Key，指标中不会出现该值
+        private String apiKey;
+        private Double rate;
+        private Integer burst;
+        private Integer weight;
+        
+        public String getName() {
+            return name;
+        }
+        
+        public void setName(String name) {
+            this.name = name;
+        }
+        
+        public String getApiKey() {
+            return apiKey;
+        }
+        
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+        
+        public Double getRate() {
+            return rate;
+        }
+        
+        public void setRate(Double rate) {
+            this.rate = rate;
+        }
+        
+        public Integer getBurst() {
+            return burst;
+        }
+        
+        public void setBurst(Integer burst) {
+            this.burst = burst;
+        }
+        
+        public Integer getWeight() {
+            return weight;
+        }
+        
+        public void setWeight(Integer weight) {
+            this.weight = weight;
+        }
+    }
+}
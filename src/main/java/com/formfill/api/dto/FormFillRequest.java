@@ -1,8 +1,12 @@
 package com.formfill.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,15 +21,55 @@ import java.util.Map;
  *     }
  *   }
  * }
+ * 
+ * 大批量数据可改用紧凑的 cells 字段（与 formContent 二选一，见 CellBatchDeserializer）：
+ * {
+ *   "formName": "员工信息表",
+ *   "cells": [[3, 2, "aaaaa"], [3, 3, "男"]]
+ * }
+ * 
+ * 也可以按模板中的标签填写（标签右侧或下方的空白单元格，见 /api/template/{formName}/schema），可与坐标混用：
+ * {
+ *   "formName": "员工信息表",
+ *   "labels": {"姓名": "张三", "性别": "男"}
+ * }
+ * 
+ * 条目数量不固定的明细行可通过 repeats 声明重复区域（见 RepeatRegion），按需插入行：
+ * {
+ *   "formName": "纳期回答登记表",
+ *   "cells": {"B2": "某某公司"},
+ *   "repeats": [{"startRow": 5, "endRow": 5, "items": [{"A1": "PO-001"}, {"A1": "PO-002"}]}]
+ * }
+ * 
+ * templateVersion 固定使用的模板版本（响应中的 template_version），省略时使用当前版本
  */
 public class FormFillRequest {
     
     @NotBlank(message = "表单名称不能为空")
     private String formName;
     
-    @NotNull(message = "表单内容不能为空")
     private Map<String, Map<String, String>> formContent;
     
+    private CellBatch cells;
+    
+    private List<RepeatRegion> repeats;
+    
+    private Map<String, String> labels;
+    
+    // 为true时填写后重新计算受影响的公式，响应中返回 evaluated_count
+    private boolean recalculate;
+    
+    // 为true时响应中返回 diff：每个固定单元格的模板原值、新值与类型
+    private boolean diff;
+    
+    // 客户端剩余等待时间（毫秒），超过后停止填写并返回 DEADLINE_EXCEEDED；也可用 X-Deadline-Ms 请求头给出
+    @Positive(message = "deadlineMs 必须大于0")
+    private Long deadlineMs;
+    
+    // 模板版本（内容的 SHA-256），用于按同一版本的模板重现填写结果
+    @Pattern(regexp = "[0-9a-f]{64}", message = "templateVersion 必须是64位小写十六进制的模板版本号")
+    private String templateVersion;
+    
     public FormFillRequest() {}
     
     public FormFillRequest(String formName, Map<String, Map<String, String>> formContent) {
@@ -49,11 +93,87 @@ public class FormFillRequest {
         this.formContent = formContent;
     }
     
+    public CellBatch getCells() {
+        return cells;
+    }
+    
+    public void setCells(CellBatch cells) {
+        this.cells = cells;
+    }
+    
+    public List<RepeatRegion> getRepeats() {
+        return repeats;
+    }
+    
+    public void setRepeats(List<RepeatRegion> repeats) {
+        this.repeats = repeats;
+    }
+    
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+    
+    public void setLabels(Map<String, String> labels) {
+        this.labels = labels;
+    }
+    
+    public boolean isRecalculate() {
+        return recalculate;
+    }
+    
+    public void setRecalculate(boolean recalculate) {
+        this.recalculate = recalculate;
+    }
+    
+    public boolean isDiff() {
+        return diff;
+    }
+    
+    public void setDiff(boolean diff) {
+        this.diff = diff;
+    }
+    
+    public Long getDeadlineMs() {
+        return deadlineMs;
+    }
+    
+    public void setDeadlineMs(Long deadlineMs) {
+        this.deadlineMs = deadlineMs;
+    }
+    
+    public String getTemplateVersion() {
+        return templateVersion;
+    }
+    
+    public void setTemplateVersion(String templateVersion) {
+        this.templateVersion = templateVersion;
+    }
+    
+    @JsonIgnore
+    @AssertTrue(message = "表单内容不能为空")
+    public boolean isContentPresent() {
+        return formContent != null || cells != null || (repeats != null && !repeats.isEmpty())
+                || (labels != null && !labels.isEmpty());
+    }
+    
+    /**
+     * 统一转换为单元格批次：优先使用紧凑格式，否则解析旧格式的行列键
+     */
+    public CellBatch toCellBatch() {
+        if (cells != null) {
+            return cells;
+        }
+        return formContent != null ? CellBatch.fromFormContent(formContent) : new CellBatch();
+    }
+    
     @Override
     public String toString() {
         return "FormFillRequest{" +
                 "formName='" + formName + '\'' +
                 ", formContent=" + formContent +
+                ", cells=" + cells +
+                ", repeats=" + repeats +
+                ", labels=" + labels +
                 '}';
     }
 } 
\ No newline at end of file
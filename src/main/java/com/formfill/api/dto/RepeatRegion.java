@@ -0,0 +1,78 @@
+package com.formfill.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+
+/**
+ * 重复区域：模板中第 startRow 到 endRow 行（从1开始，含两端）构成一组，每个条目占用一组行
+ *
+ * 第一个条目写入模板原有的行，其余条目所需的行一次性插入在区域下方，
+ * 并复制模板行的样式、合并单元格、行高和相对公式。
+ * 条目使用与 cells 相同的紧凑格式，行号相对于组（1表示组的第一行），列号为绝对列：
+ * {"startRow": 8, "endRow": 8, "items": [{"A1": "PO-001", "C1": "120"}, [[1, 1, "PO-002"], [1, 3, "80"]]]}
+ */
+public class RepeatRegion {
+    
+    private int startRow;
+    
+    private int endRow;
+    
+    private List<CellBatch> items;
+    
+    public int getStartRow() {
+        return startRow;
+    }
+    
+    public void setStartRow(int startRow) {
+        this.startRow = startRow;
+    }
+    
+    public int getEndRow() {
+        return endRow;
+    }
+    
+    public void setEndRow(int endRow) {
+        this.endRow = endRow;
+    }
+    
+    public List<CellBatch> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<CellBatch> items) {
+        this.items = items;
+    }
+    
+    /**
+     * 每组的行数
+     */
+    @JsonIgnore
+    public int getHeight() {
+        return endRow - startRow + 1;
+    }
+    
+    /**
+     * 条目数量
+     */
+    @JsonIgnore
+    public int getItemCount() {
+        return items != null ? items.size() : 0;
+    }
+    
+    /**
+     * 展开后需要在区域下方插入的行数
+     */
+    @JsonIgnore
+    public long getInsertedRows() {
+        return Math.max(0, getItemCount() - 1) * (long) getHeight();
+    }
+    
+    @Override
+    public String toString() {
+        return "RepeatRegion{" +
+                "rows=" + startRow + ".." + endRow +
+                ", items=" + getItemCount() +
+                '}';
+    }
+}
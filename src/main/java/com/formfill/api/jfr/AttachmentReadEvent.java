@@ -0,0 +1,27 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 附件读取事件：记录从输出目录读取邮件附件的耗时与大小
+ */
+@Name("com.formfill.AttachmentRead")
+@Label("Attachment Read")
+@Category({"FormFillAPI", "Email"})
+@Description("Reading a filled form from the output directory as mail attachment")
+public class AttachmentReadEvent extends jdk.jfr.Event {
+
+    @Label("Form Name")
+    public String formName;
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Attachment Size")
+    @DataAmount
+    public long bytes;
+}
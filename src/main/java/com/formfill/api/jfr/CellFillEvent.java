@@ -0,0 +1,28 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 单元格填写事件：覆盖一次请求中完整的单元格填写循环
+ */
+@Name("com.formfill.CellFill")
+@Label("Cell Fill Loop")
+@Category({"FormFillAPI", "Fill"})
+@Description("Writing all requested values into the worksheet")
+public class CellFillEvent extends jdk.jfr.Event {
+
+    @Label("Form Name")
+    public String formName;
+
+    @Label("Total Fields")
+    public int totalFields;
+
+    @Label("Filled Fields")
+    public int filledCount;
+
+    @Label("New Form")
+    public boolean newForm;
+}
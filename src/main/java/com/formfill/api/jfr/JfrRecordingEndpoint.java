@@ -0,0 +1,191 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * JFR录制控制端点，无需重启或挂载Profiler即可采集生产环境热点
+ *
+ * GET    /actuator/jfr         - 查看当前录制状态与已导出的录制文件
+ * POST   /actuator/jfr         - 开始录制，可选参数 settings(default/profile)、maxAgeSeconds、maxSizeMb；
+ *                                录制进行中时传 snapshot=true 导出一份快照，不影响继续录制
+ * DELETE /actuator/jfr         - 停止录制并将结果写入 logs/jfr 目录
+ * GET    /actuator/jfr/{name}  - 下载 logs/jfr 中的录制文件（文件名见状态中的 dumps）
+ *
+ * 录制文件包含系统属性与环境变量（其中可能有SMTP、S3凭据），默认不暴露该端点；
+ * 需要时应通过 management.server.port 放在只对内的管理端口上，或在前面加认证后再加入 exposure。
+ * logs/jfr 中最多保留 MAX_DUMPS 个文件，导出新文件时删除最旧的。
+ */
+@Component
+@WebEndpoint(id = "jfr")
+public class JfrRecordingEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(JfrRecordingEndpoint.class);
+
+    private static final String DUMP_DIR = "logs" + File.separator + "jfr";
+    private static final String RECORDING_NAME = "FormFillAPI";
+    private static final Pattern DUMP_NAME = Pattern.compile("formfill_\\d{8}_\\d{6}_\\d{3}\\.jfr");
+    private static final int MAX_DUMPS = 5;
+
+    private Recording recording;
+    private Path lastDump;
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        if (recording == null) {
+            result.put("state", "NONE");
+        } else {
+            result.put("state", recording.getState().name());
+            result.put("name", recording.getName());
+            result.put("startTime", String.valueOf(recording.getStartTime()));
+            result.put("size", recording.getSize());
+            if (recording.getMaxAge() != null) {
+                result.put("maxAgeSeconds", recording.getMaxAge().getSeconds());
+            }
+        }
+        if (lastDump != null) {
+            result.put("lastDump", lastDump.toString());
+        }
+        result.put("dumps", listDumps().stream().map(path -> path.getFileName().toString()).toList());
+        result.put("timestamp", LocalDateTime.now().toString());
+        return result;
+    }
+
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable String settings, @Nullable Long maxAgeSeconds,
+                                                  @Nullable Long maxSizeMb, @Nullable Boolean snapshot) throws Exception {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            if (Boolean.TRUE.equals(snapshot)) {
+                lastDump = dumpTo(recording);
+                Map<String, Object> result = status();
+                result.put("message", "Snapshot written");
+                result.put("downloadUrl", "/actuator/jfr/" + lastDump.getFileName());
+                return result;
+            }
+            Map<String, Object> result = status();
+            result.put("message", "Recording already running");
+            return result;
+        }
+        closeRecording();
+
+        String configName = (settings == null || settings.isBlank()) ? "profile" : settings;
+        Recording newRecording = new Recording(Configuration.getConfiguration(configName));
+        newRecording.setName(RECORDING_NAME);
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(Duration.ofSeconds(maxAgeSeconds != null ? maxAgeSeconds : 600));
+        newRecording.setMaxSize((maxSizeMb != null ? maxSizeMb : 100) * 1024 * 1024);
+        // 自定义事件默认开启，这里显式打开并去掉阈值，保证每次填写都能被记录
+        newRecording.enable("com.formfill.*").withoutThreshold();
+        newRecording.start();
+        recording = newRecording;
+
+        logger.info("JFR recording started with settings '{}'", configName);
+        Map<String, Object> result = status();
+        result.put("message", "Recording started");
+        return result;
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() throws Exception {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            Map<String, Object> result = status();
+            result.put("message", "No running recording");
+            return result;
+        }
+        recording.stop();
+        lastDump = dumpTo(recording);
+        logger.info("JFR recording stopped, dumped to: {}", lastDump);
+
+        Map<String, Object> result = status();
+        result.put("message", "Recording stopped");
+        result.put("downloadUrl", "/actuator/jfr/" + lastDump.getFileName());
+        return result;
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump(@Selector String name) {
+        // 只接受本端点导出的文件名，不能借此读取其他文件
+        if (!DUMP_NAME.matcher(name).matches()) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path file = Paths.get(DUMP_DIR, name);
+        if (!Files.isRegularFile(file)) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        return new WebEndpointResponse<>(new FileSystemResource(file));
+    }
+
+    private Path dumpTo(Recording source) throws Exception {
+        Files.createDirectories(Paths.get(DUMP_DIR));
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS"));
+        Path target = Paths.get(DUMP_DIR, "formfill_" + timestamp + ".jfr");
+        source.dump(target);
+        pruneDumps();
+        return target;
+    }
+
+    /**
+     * 已导出的录制文件，按文件名（即导出时间）从旧到新
+     */
+    private List<Path> listDumps() {
+        Path dir = Paths.get(DUMP_DIR);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> DUMP_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            logger.warn("Failed to list JFR dumps in {}: {}", dir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void pruneDumps() {
+        List<Path> dumps = listDumps();
+        for (Path old : dumps.subList(0, Math.max(0, dumps.size() - MAX_DUMPS))) {
+            try {
+                Files.deleteIfExists(old);
+                logger.info("Deleted old JFR dump {}", old);
+            } catch (IOException e) {
+                logger.warn("Failed to delete old JFR dump {}: {}", old, e.getMessage());
+            }
+        }
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
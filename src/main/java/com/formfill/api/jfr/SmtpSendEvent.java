@@ -0,0 +1,30 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * SMTP发送事件：记录构建MIME消息并投递到邮件服务器的耗时
+ */
+@Name("com.formfill.SmtpSend")
+@Label("SMTP Send")
+@Category({"FormFillAPI", "Email"})
+@Description("Building the MIME message and delivering it to the SMTP server")
+public class SmtpSendEvent extends jdk.jfr.Event {
+
+    @Label("Form Name")
+    public String formName;
+
+    @Label("Recipients")
+    public int recipientCount;
+
+    @Label("Attachment Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Success")
+    public boolean success;
+}
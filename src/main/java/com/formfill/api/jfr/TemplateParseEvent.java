@@ -0,0 +1,27 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 模板解析事件：记录将模板文件加载为POI Workbook的耗时
+ */
+@Name("com.formfill.TemplateParse")
+@Label("Template Parse")
+@Category({"FormFillAPI", "Template"})
+@Description("Loading a template file into a POI workbook")
+public class TemplateParseEvent extends jdk.jfr.Event {
+
+    @Label("Form Name")
+    public String formName;
+
+    @Label("Template File")
+    public String templateFile;
+
+    @Label("Template Size")
+    @DataAmount
+    public long bytes;
+}
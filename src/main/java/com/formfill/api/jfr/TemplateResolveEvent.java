@@ -0,0 +1,25 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 模板查找事件：记录根据表单名称定位模板文件的耗时
+ */
+@Name("com.formfill.TemplateResolve")
+@Label("Template Resolve")
+@Category({"FormFillAPI", "Template"})
+@Description("Locating the template file for a form name")
+public class TemplateResolveEvent extends jdk.jfr.Event {
+
+    @Label("Form Name")
+    public String formName;
+
+    @Label("Template File")
+    public String templateFile;
+
+    @Label("Found")
+    public boolean found;
+}
@@ -0,0 +1,30 @@
+package com.formfill.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 工作簿写出事件：记录序列化并写入输出文件的耗时与大小
+ */
+@Name("com.formfill.WorkbookWrite")
+@Label("Workbook Write")
+@Category({"FormFillAPI", "Fill"})
+@Description("Serializing the filled workbook to the output file")
+public class WorkbookWriteEvent extends jdk.jfr.Event {
+
+    @Label("Form Name")
+    public String formName;
+
+    @Label("Output File")
+    public String outputFile;
+
+    @Label("Filled Fields")
+    public int filledCount;
+
+    @Label("Output Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,410 @@
+package com.formfill.api.reactive;
+
+import com.formfill.api.controller.FileDownloadSupport;
+import com.formfill.api.dto.EmailSendRequest;
+import com.formfill.api.dto.EmailSendResponse;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.dto.FormFillRequest;
+import com.formfill.api.service.AdmissionRejectedException;
+import com.formfill.api.service.ClientRateLimiter;
+import com.formfill.api.service.EmailService;
+import com.formfill.api.service.FillAbortedException;
+import com.formfill.api.service.FillDeadline;
+import com.formfill.api.service.FillDeadlineService;
+import com.formfill.api.service.FillRequestService;
+import com.formfill.api.service.RequestTimings;
+import com.formfill.api.store.OutputStore;
+import com.formfill.api.store.StoredObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 响应式端点的处理函数
+ *
+ * Netty 事件循环线程只做请求解码、响应编码和网络读写；POI 填写与 SMTP 发送这类阻塞操作
+ * 提交到有界的 worker 调度器执行，线程与排队都满时立即返回429，而不是无限堆积任务。
+ * 下载以 Flux&lt;DataBuffer&gt; 分块读取文件，Netty 只在连接可写时向上游请求下一块，
+ * 慢速客户端只占用一个数据块的内存，不占用任何线程。
+ * 与 Servlet 端点相同，填写经过预检、准入控制，调用方令牌桶限流同样生效（不含公平排队，由有界调度器代替）。
+ * 客户端在填写完成前断开连接时，Netty 取消响应订阅，worker 上的填写在下一个检查点停止（计为 cancelled）。
+ */
+@Component
+@ConditionalOnProperty(prefix = "formfill.reactive", name = "enabled", havingValue = "true")
+public class ReactiveFormHandler {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveFormHandler.class);
+    
+    private static final String API_KEY_HEADER = "X-API-Key";
+    private static final String CLIENT_ID_HEADER = "X-Client-Id";
+    
+    @Autowired
+    private FillRequestService fillRequestService;
+    
+    @Autowired
+    private ClientRateLimiter clientRateLimiter;
+    
+    @Autowired
+    private EmailService emailService;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private FillDeadlineService fillDeadlineService;
+    
+    @Autowired
+    private OutputStore outputStore;
+    
+    private final FormFillConfig formFillConfig;
+    private final Scheduler workers;
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final Counter rejectedCounter;
+    
+    @Autowired
+    public ReactiveFormHandler(FormFillConfig formFillConfig, MeterRegistry meterRegistry) {
+        this.formFillConfig = formFillConfig;
+        FormFillConfig.Reactive config = formFillConfig.getReactive();
+        int threads = config.getWorkerThreads() > 0 ? config.getWorkerThreads() : Runtime.getRuntime().availableProcessors() * 2;
+        this.workers = Schedulers.newBoundedElastic(threads, config.getQueueCapacity(), "formfill-reactive-worker", 60, true);
+        this.rejectedCounter = meterRegistry.counter("formfill.reactive.rejected");
+        Gauge.builder("formfill.reactive.downloads.active", activeDownloads, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("formfill.reactive.tasks.active", activeTasks, AtomicInteger::get).register(meterRegistry);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        workers.dispose();
+    }
+    
+    /**
+     * POST /api/fill-form，请求与响应格式同 Servlet 端点
+     */
+    public Mono<ServerResponse> fillForm(ServerRequest request) {
+        Map<String, Object> limited = checkRateLimit(request);
+        if (limited != null) {
+            return json(HttpStatus.TOO_MANY_REQUESTS, limited, null);
+        }
+        boolean includeTimings = request.queryParam("timings").map(Boolean::parseBoolean).orElse(false);
+        Long deadlineMs;
+        try {
+            String header = request.headers().firstHeader(FillDeadlineService.DEADLINE_HEADER);
+            deadlineMs = header != null ? Long.valueOf(header.trim()) : null;
+        } catch (NumberFormatException e) {
+            return json(HttpStatus.BAD_REQUEST, failure(FillDeadlineService.DEADLINE_HEADER + " must be a number of milliseconds",
+                    "INVALID_REQUEST"), null);
+        }
+        return request.bodyToMono(FormFillRequest.class)
+                .flatMap(body -> {
+                    Map<String, Object> invalid = validate(body);
+                    if (invalid != null) {
+                        return json(HttpStatus.BAD_REQUEST, invalid, null);
+                    }
+                    FillDeadline deadline = fillDeadlineService.create(deadlineMs, body.getDeadlineMs());
+                    return offload(() -> fill(body, deadline, includeTimings), deadline::cancel)
+                            .flatMap(outcome -> json(outcome.status, outcome.body, outcome.serverTiming));
+                })
+                .onErrorResume(this::errorResponse);
+    }
+    
+    /**
+     * GET /api/download/{filename}
+     */
+    public Mono<ServerResponse> downloadFile(ServerRequest request) {
+        String filename = request.pathVariable("filename");
+        if (!OutputStore.isValidName(filename)) {
+            return ServerResponse.notFound().build();
+        }
+        Path localFile = outputStore.localPath(filename);
+        if (localFile != null) {
+            return serveFile(localFile.getParent(), filename, "private, no-cache");
+        }
+        return offload(() -> outputStore.stat(filename))
+                .flatMap(stored -> serveStored(stored, "private, no-cache"))
+                .switchIfEmpty(Mono.defer(() -> {
+                    logger.warn("File not found: {}", filename);
+                    return ServerResponse.notFound().build();
+                }))
+                .onErrorResume(this::errorResponse);
+    }
+    
+    /**
+     * GET /api/template/download/{filename}
+     */
+    public Mono<ServerResponse> downloadTemplate(ServerRequest request) {
+        return serveFile(Paths.get("templates"), request.pathVariable("filename"), "no-cache");
+    }
+    
+    /**
+     * POST /api/email/send，请求与响应格式同 Servlet 端点
+     */
+    public Mono<ServerResponse> sendEmail(ServerRequest request) {
+        Map<String, Object> limited = checkRateLimit(request);
+        if (limited != null) {
+            return json(HttpStatus.TOO_MANY_REQUESTS, limited, null);
+        }
+        return request.bodyToMono(EmailSendRequest.class)
+                .flatMap(body -> {
+                    Map<String, Object> invalid = validate(body);
+                    if (invalid != null) {
+                        return json(HttpStatus.BAD_REQUEST, invalid, null);
+                    }
+                    return offload(() -> {
+                        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+                        try {
+                            EmailSendResponse response = emailService.sendEmailWithAttachment(body);
+                            return new Outcome(response.isSuccess() ? HttpStatus.OK : HttpStatus.BAD_REQUEST, response,
+                                    timings != null ? timings.toHeaderValue() : null);
+                        } finally {
+                            RequestTimings.clear();
+                        }
+                    }).flatMap(outcome -> json(outcome.status, outcome.body, outcome.serverTiming));
+                })
+                .onErrorResume(this::errorResponse);
+    }
+    
+    private Mono<ServerResponse> serveFile(Path directory, String filename, String cacheControl) {
+        Path base = directory.toAbsolutePath().normalize();
+        Path file = base.resolve(filename).normalize();
+        if (!file.startsWith(base) || !Files.isRegularFile(file)) {
+            logger.warn("File not found: {}", filename);
+            return ServerResponse.notFound().build();
+        }
+        long length;
+        try {
+            length = Files.size(file);
+        } catch (Exception e) {
+            return ServerResponse.notFound().build();
+        }
+        
+        int chunkSize = formFillConfig.getReactive().getChunkSizeKb() * 1024;
+        // Chunks are read only as fast as the connection drains them
+        return fileResponse(filename, length, cacheControl, DataBufferUtils.read(file, bufferFactory, chunkSize));
+    }
+    
+    /**
+     * 发送非本地输出存储中的文件：开启预签名下载时重定向，否则按连接的消费速度逐块从存储读取，
+     * 每块的阻塞读取都交给 worker 调度器（不使用 subscribeOn，客户端断开时不中断 worker 线程）
+     */
+    private Mono<ServerResponse> serveStored(StoredObject stored, String cacheControl) {
+        String name = stored.getName();
+        URI directUrl;
+        try {
+            directUrl = outputStore.downloadUrl(name);
+        } catch (IOException e) {
+            return Mono.error(e);
+        }
+        if (directUrl != null) {
+            return ServerResponse.status(HttpStatus.FOUND)
+                    .location(directUrl)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .build();
+        }
+        
+        int chunkSize = formFillConfig.getReactive().getChunkSizeKb() * 1024;
+        Flux<DataBuffer> chunks = Flux.usingWhen(
+                offload(() -> outputStore.open(name)),
+                in -> offload(() -> bufferFactory.wrap(in.readNBytes(chunkSize)))
+                        .repeat()
+                        .takeWhile(chunk -> chunk.readableByteCount() > 0),
+                in -> offload(() -> {
+                    in.close();
+                    return in;
+                }));
+        return fileResponse(name, stored.getSize(), cacheControl, chunks);
+    }
+    
+    private Mono<ServerResponse> fileResponse(String fileName, long length, String cacheControl, Flux<DataBuffer> chunks) {
+        Flux<DataBuffer> body = chunks
+                .doOnSubscribe(subscription -> activeDownloads.incrementAndGet())
+                .doFinally(signal -> activeDownloads.decrementAndGet());
+        String contentType = fileName.toLowerCase().endsWith(".xls")
+                ? FileDownloadSupport.XLS_CONTENT_TYPE : FileDownloadSupport.XLSX_CONTENT_TYPE;
+        return ServerResponse.ok()
+                .contentType(MediaType.parseMediaType(contentType))
+                .contentLength(length)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''"
+                        + URLEncoder.encode(fileName, StandardCharsets.UTF_8).replaceAll("\\+", "%20"))
+                .body(BodyInserters.fromDataBuffers(body));
+    }
+    
+    /**
+     * 在 worker 调度器上执行阻塞操作；调度器排队已满时以 RejectedExecutionException 结束
+     */
+    private <T> Mono<T> offload(Callable<T> task) {
+        return offload(task, () -> {});
+    }
+    
+    /**
+     * 同上，订阅被取消（客户端断开）时执行 onCancel 而不中断 worker 线程：
+     * subscribeOn 取消时会中断线程，使 POI 与 jar 内类加载所用的NIO通道抛出异常，阻塞操作应在检查点自行停止
+     */
+    private <T> Mono<T> offload(Callable<T> task, Runnable onCancel) {
+        return Mono.create(sink -> {
+            sink.onCancel(onCancel::run);
+            workers.schedule(() -> {
+                activeTasks.incrementAndGet();
+                try {
+                    sink.success(task.call());
+                } catch (Throwable e) {
+                    sink.error(e);
+                } finally {
+                    activeTasks.decrementAndGet();
+                }
+            });
+        });
+    }
+    
+    private Outcome fill(FormFillRequest request, FillDeadline deadline, boolean includeTimings) throws Exception {
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        deadline.attach();
+        try {
+            logger.info("Processing form (reactive): {}", request.getFormName());
+            FillRequestService.Prepared prepared = fillRequestService.prepare(request);
+            if (prepared.isRejected()) {
+                FillRequestService.Outcome rejection = prepared.getRejection();
+                return new Outcome(HttpStatusCode.valueOf(rejection.getStatus()), rejection.getBody(), null);
+            }
+            FillRequestService.Outcome outcome = fillRequestService.fill(prepared);
+            Map<String, Object> response = outcome.getBody();
+            if (timings != null && includeTimings) {
+                response.put("timings", timings.toMillis());
+            }
+            return new Outcome(HttpStatusCode.valueOf(outcome.getStatus()), response, timings != null ? timings.toHeaderValue() : null);
+        } catch (FillAbortedException e) {
+            // 连接已断开时该结果会被丢弃，这里只负责计数与释放 worker
+            return new Outcome(HttpStatusCode.valueOf(fillDeadlineService.statusOf(e)),
+                    fillDeadlineService.aborted(e, request.getFormName()), timings != null ? timings.toHeaderValue() : null);
+        } finally {
+            RequestTimings.clear();
+            FillDeadline.clear();
+        }
+    }
+    
+    private Map<String, Object> checkRateLimit(ServerRequest request) {
+        if (!clientRateLimiter.isEnabled()) {
+            return null;
+        }
+        String remoteAddr = request.remoteAddress().map(InetSocketAddress::getHostString).orElse("unknown");
+        ClientRateLimiter.ClientPolicy client = clientRateLimiter.identify(
+                request.headers().firstHeader(API_KEY_HEADER), request.headers().firstHeader(CLIENT_ID_HEADER), remoteAddr);
+        long waitNanos = clientRateLimiter.tryConsume(client);
+        if (waitNanos <= 0) {
+            return null;
+        }
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+        logger.warn("Rate limit exceeded for client: {} (RATE_LIMITED)", client.getTag());
+        Map<String, Object> errorResponse = failure("Rate limit exceeded for client: " + client.getTag(), "RATE_LIMITED");
+        errorResponse.put("retry_after", retryAfter);
+        return errorResponse;
+    }
+    
+    private Map<String, Object> validate(Object body) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(body);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> errors = new HashMap<>();
+        for (ConstraintViolation<Object> violation : violations) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        Map<String, Object> errorResponse = failure("Invalid request", "INVALID_REQUEST");
+        errorResponse.put("violations", errors);
+        return errorResponse;
+    }
+    
+    private Mono<ServerResponse> errorResponse(Throwable e) {
+        if (e instanceof RejectedExecutionException) {
+            rejectedCounter.increment();
+            logger.warn("Reactive worker queue full, rejecting request");
+            Map<String, Object> errorResponse = failure("Server is busy, worker queue is full", "SERVER_BUSY");
+            errorResponse.put("retry_after", 1);
+            return json(HttpStatus.TOO_MANY_REQUESTS, errorResponse, null);
+        }
+        if (e instanceof AdmissionRejectedException) {
+            Map<String, Object> errorResponse = failure(e.getMessage(), "SERVER_BUSY");
+            errorResponse.put("retry_after", ((AdmissionRejectedException) e).getRetryAfterSeconds());
+            return json(HttpStatus.TOO_MANY_REQUESTS, errorResponse, null);
+        }
+        logger.error("Error processing reactive request: {}", e.getMessage(), e);
+        return json(HttpStatus.INTERNAL_SERVER_ERROR, failure("Internal server error: " + e.getMessage(), "INTERNAL_ERROR"), null);
+    }
+    
+    private Mono<ServerResponse> json(HttpStatusCode status, Object body, String serverTiming) {
+        ServerResponse.BodyBuilder builder = ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (status == HttpStatus.TOO_MANY_REQUESTS && body instanceof Map && ((Map<?, ?>) body).containsKey("retry_after")) {
+            builder.header(HttpHeaders.RETRY_AFTER, String.valueOf(((Map<?, ?>) body).get("retry_after")));
+        }
+        if (serverTiming != null) {
+            builder.header("Server-Timing", serverTiming);
+        }
+        return builder.bodyValue(body);
+    }
+    
+    private Map<String, Object> failure(String message, String code) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        return errorResponse;
+    }
+    
+    /**
+     * worker 线程上的处理结果，回到事件循环线程后写出
+     */
+    private static final class Outcome {
+        
+        private final HttpStatusCode status;
+        private final Object body;
+        private final String serverTiming;
+        
+        Outcome(HttpStatusCode status, Object body, String serverTiming) {
+            this.status = status;
+            this.body = body;
+            this.serverTiming = serverTiming;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.formfill.api.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.formfill.api.dto.FormFillConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+
+/**
+ * 响应式端点服务器
+ *
+ * 应用主体仍运行在 Servlet（Tomcat）上；开启 formfill.reactive.enabled 后，
+ * 在独立端口上用 Reactor Netty 提供同样路径的填写、下载与邮件端点，便于两种模型并行运行与对比压测。
+ * JSON 编解码使用应用的 ObjectMapper，与 Servlet 端点的序列化配置一致。
+ */
+@Component
+@ConditionalOnProperty(prefix = "formfill.reactive", name = "enabled", havingValue = "true")
+public class ReactiveServer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveServer.class);
+    
+    @Autowired
+    private ReactiveFormHandler handler;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    private DisposableServer server;
+    
+    @PostConstruct
+    public void start() {
+        FormFillConfig.Reactive config = formFillConfig.getReactive();
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+                .POST("/api/fill-form", contentType(MediaType.APPLICATION_JSON), handler::fillForm)
+                .GET("/api/download/{filename}", handler::downloadFile)
+                .GET("/api/template/download/{filename}", handler::downloadTemplate)
+                .POST("/api/email/send", contentType(MediaType.APPLICATION_JSON), handler::sendEmail)
+                .build();
+        
+        int maxInMemory = config.getMaxRequestMb() * 1024 * 1024;
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().maxInMemorySize(maxInMemory);
+                })
+                .build();
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(routes, strategies);
+        
+        server = HttpServer.create()
+                .port(config.getPort())
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow(Duration.ofSeconds(10));
+        logger.info("Reactive endpoints listening on port {}", server.port());
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (server != null) {
+            server.disposeNow(Duration.ofSeconds(10));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 填写请求准入控制服务
+ * 
+ * 根据模板文件大小和字段数预估每次填写的堆占用，在全局内存预算内限制并发；
+ * 同时为每个模板设置舱壁，避免单个大模板的突发请求占满预算；找不到模板的请求共用一个舱壁，
+ * 舱壁数量不随客户端传入的表单名增长。
+ * 获取不到许可的请求短暂排队，超时后由控制器返回429；请求带有期限时排队不超过剩余时间，
+ * 期限先到时以 FillAbortedException 结束而不是按拒绝计数。
+ *
+ * 预算不按先来后到分配：每次归还都唤醒所有排队请求，放得下的先运行，小请求不会排在一个
+ * 等待大量预算的请求之后。预估超过总预算的请求按整个预算计，只能在没有其他填写时单独运行，
+ * 在排队时间内等不到预算全部空出即返回429。
+ */
+@Service
+public class AdmissionControlService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlService.class);
+    
+    // 找不到模板的请求共用的舱壁
+    static final String UNKNOWN_TEMPLATE_KEY = "(unknown template)";
+    
+    private final FormFillConfig.Admission config;
+    private final FormFillerService formFillerService;
+    private final int budgetKb;
+    private final MemoryBudget memoryBudget;
+    private final ConcurrentHashMap<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+    private final Counter admittedCounter;
+    private final Counter rejectedCounter;
+    
+    @Autowired
+    public AdmissionControlService(FormFillConfig formFillConfig, FormFillerService formFillerService,
+                                   MeterRegistry meterRegistry) {
+        this.config = formFillConfig.getAdmission();
+        this.formFillerService = formFillerService;
+        
+        long budgetBytes = config.getMemoryBudgetMb() > 0
+                ? config.getMemoryBudgetMb() * 1024 * 1024
+                : (long) (Runtime.getRuntime().maxMemory() * 0.4);
+        this.budgetKb = (int) Math.min(Integer.MAX_VALUE, budgetBytes / 1024);
+        this.memoryBudget = new MemoryBudget(budgetKb);
+        
+        this.admittedCounter = meterRegistry.counter("formfill.admission", "outcome", "admitted");
+        this.rejectedCounter = meterRegistry.counter("formfill.admission", "outcome", "rejected");
+        Gauge.builder("formfill.admission.memory.in_use", memoryBudget, b -> b.inUseKb() * 1024.0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        
+        logger.info("Admission control memory budget: {} MB, enabled: {}", budgetKb / 1024, config.isEnabled());
+    }
+    
+    /**
+     * 为一次填写申请许可，调用方必须在完成后关闭返回的 Permit
+     * 
+     * @param formName 表单名称
+     * @param fieldCount 本次填写的字段数
+     * @throws AdmissionRejectedException 排队超时仍未获得许可
+     */
+    public Permit acquire(String formName, int fieldCount) {
+        return acquire(List.of(formName), fieldCount);
+    }
+    
+    /**
+     * 为合并输出的多表单填写申请一个许可：预算按全部模板大小之和估算，舱壁按第一个表单的模板计
+     * 
+     * @param formNames 表单名称，至少一个
+     * @param fieldCount 所有表单的字段总数
+     * @throws AdmissionRejectedException 排队超时仍未获得许可
+     * @throws FillAbortedException 请求期限在排队期间到期或请求已取消
+     */
+    public Permit acquire(List<String> formNames, int fieldCount) {
+        if (!config.isEnabled()) {
+            return Permit.NOOP;
+        }
+        
+        String bulkheadKey = null;
+        long templateBytes = 0L;
+        for (String formName : formNames) {
+            File template = formFillerService.locateTemplate(formName);
+            if (bulkheadKey == null) {
+                bulkheadKey = template != null ? template.getName() : UNKNOWN_TEMPLATE_KEY;
+            }
+            templateBytes += template != null ? template.length() : 0L;
+        }
+        int costKb = estimateCostKb(templateBytes, fieldCount);
+        
+        FillDeadline.checkpoint(FillDeadline.ADMISSION);
+        long deadline = System.nanoTime() + Math.min(TimeUnit.MILLISECONDS.toNanos(config.getQueueTimeoutMs()),
+                FillDeadline.remainingNanos());
+        Semaphore bulkhead = bulkheads.computeIfAbsent(bulkheadKey,
+                key -> new Semaphore(config.getMaxConcurrentPerTemplate(), true));
+        
+        try {
+            if (!bulkhead.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                FillDeadline.checkpoint(FillDeadline.ADMISSION);
+                throw reject("Too many concurrent fills for template: " + bulkheadKey);
+            }
+            if (!memoryBudget.tryAcquire(costKb, deadline - System.nanoTime())) {
+                bulkhead.release();
+                FillDeadline.checkpoint(FillDeadline.ADMISSION);
+                throw reject("Fill memory budget exhausted (estimated " + costKb / 1024 + " MB for " + bulkheadKey + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("Interrupted while waiting for admission");
+        }
+        
+        admittedCounter.increment();
+        logger.debug("Admitted fill for '{}' with estimated cost {} KB", bulkheadKey, costKb);
+        return new Permit(this, bulkhead, costKb);
+    }
+    
+    /**
+     * 在许可内执行 work，结束后（包括异常时）释放许可
+     * 
+     * @throws AdmissionRejectedException 排队超时仍未获得许可，此时 work 不会执行
+     */
+    public <T> T call(String formName, int fieldCount, Callable<T> work) throws Exception {
+        return call(List.of(formName), fieldCount, work);
+    }
+    
+    /**
+     * 同上，多表单合并输出按 acquire(List, int) 申请一个许可
+     */
+    public <T> T call(List<String> formNames, int fieldCount, Callable<T> work) throws Exception {
+        Permit permit = acquire(formNames, fieldCount);
+        try {
+            return work.call();
+        } finally {
+            permit.close();
+        }
+    }
+    
+    /**
+     * 预估一次填写的堆占用（KB），最多按整个预算计：超出预算的填写独占预算，不会与其他填写同时运行
+     */
+    int estimateCostKb(long templateBytes, int fieldCount) {
+        long bytes = templateBytes * config.getHeapFactor() + (long) fieldCount * config.getBytesPerField();
+        long costKb = config.getBaseCostKb() + bytes / 1024;
+        return (int) Math.max(1, Math.min(costKb, budgetKb));
+    }
+    
+    private AdmissionRejectedException reject(String message) {
+        rejectedCounter.increment();
+        logger.warn("Fill rejected by admission control: {}", message);
+        return new AdmissionRejectedException(message, config.getRetryAfterSeconds());
+    }
+    
+    private void release(Semaphore bulkhead, int costKb) {
+        memoryBudget.release(costKb);
+        bulkhead.release();
+    }
+    
+    /**
+     * 内存预算（KB）。与 Semaphore 不同，排队的请求不按顺序获得预算：归还时唤醒全部等待者，
+     * 各自检查剩余预算是否放得下
+     */
+    static final class MemoryBudget {
+        
+        private final int totalKb;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        private int availableKb;
+        
+        MemoryBudget(int totalKb) {
+            this.totalKb = totalKb;
+            this.availableKb = totalKb;
+        }
+        
+        boolean tryAcquire(int costKb, long timeoutNanos) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                long remaining = timeoutNanos;
+                while (availableKb < costKb) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                availableKb -= costKb;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        void release(int costKb) {
+            lock.lock();
+            try {
+                availableKb += costKb;
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        int inUseKb() {
+            lock.lock();
+            try {
+                return totalKb - availableKb;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * 准入许可，关闭时归还内存预算与舱壁名额
+     */
+    public static class Permit implements AutoCloseable {
+        
+        static final Permit NOOP = new Permit(null, null, 0);
+        
+        private final AdmissionControlService owner;
+        private final Semaphore bulkhead;
+        private final int costKb;
+        private boolean released;
+        
+        Permit(AdmissionControlService owner, Semaphore bulkhead, int costKb) {
+            this.owner = owner;
+            this.bulkhead = bulkhead;
+            this.costKb = costKb;
+        }
+        
+        public int getCostKb() {
+            return costKb;
+        }
+        
+        @Override
+        public void close() {
+            if (owner != null && !released) {
+                released = true;
+                owner.release(bulkhead, costKb);
+            }
+        }
+    }
+}
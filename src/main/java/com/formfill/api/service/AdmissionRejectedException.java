@@ -0,0 +1,20 @@
+package com.formfill.api.service;
+
+/**
+ * 填写请求未能在排队时限内获得内存预算或模板舱壁时抛出
+ */
+public class AdmissionRejectedException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final int retryAfterSeconds;
+    
+    public AdmissionRejectedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,623 @@
+package com.formfill.api.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.jfr.CellFillEvent;
+import com.formfill.api.jfr.TemplateParseEvent;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 表格区域流式批量写入服务
+ *
+ * 适用于每条记录占一行的表格型模板（如纳期回答登记表）。请求体为NDJSON或JSON数组，
+ * 使用Jackson流式解析器逐条读取，每读到一条记录立即写成一行；工作簿使用SXSSF，
+ * 超出窗口的行刷写到临时文件，因此内存占用与记录数无关。
+ *
+ * 起始单元格所在行作为样式原型，新行沿用原型行的单元格样式和行高。数据区为起始行及其后
+ * 连续的空白行（只有样式、没有值且不是合并区域的起点），由写入的行替换；数据区之后的模板内容
+ * （合计行、签名栏等）接在最后一条记录之后重新写出，其中的合并区域一起下移。公式中指向这些行的
+ * 引用随之平移，结束于数据区内的区域引用（如合计行的 SUM(C8:C12)）延伸到最后一条记录。
+ */
+@Service
+public class BulkRowService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BulkRowService.class);
+    
+    // SXSSF内存中保留的行数
+    public static final int ROW_WINDOW = 100;
+    
+    private final JsonFactory jsonFactory = new JsonFactory();
+    
+    @Autowired
+    private FormFillerService formFillerService;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    /**
+     * 流式写入表格行
+     *
+     * @param formName 表单名称
+     * @param startCell 第一条记录写入的起始单元格，如 "A8"
+     * @param columns 列映射，逗号分隔的 "字段" 或 "字段:列字母"，未指定列字母时紧接上一列；
+     *                为空时记录必须是数组，按位置从起始列依次写入
+     * @param body NDJSON或JSON数组请求体
+     * @return 包含成功状态和结果信息的Map
+     * @throws FillAbortedException 请求期限已到
+     */
+    public Map<String, Object> fillRows(String formName, String startCell, String columns, InputStream body) {
+        SXSSFWorkbook streamingWorkbook = null;
+        try {
+            File templateFile = formFillerService.locateTemplate(formName);
+            if (templateFile == null) {
+                return failure("Template not found for form: " + formName, "TEMPLATE_NOT_FOUND");
+            }
+            
+            CellReference start;
+            try {
+                start = new CellReference(startCell);
+            } catch (IllegalArgumentException e) {
+                return failure("Invalid start cell: " + startCell, "INVALID_ROWS");
+            }
+            if (start.getRow() < 0 || start.getCol() < 0) {
+                return failure("Invalid start cell: " + startCell, "INVALID_ROWS");
+            }
+            ColumnMapping mapping = ColumnMapping.parse(columns, start.getCol());
+            
+            // Load template and take the start row as formatting prototype
+            TemplateParseEvent parseEvent = new TemplateParseEvent();
+            parseEvent.begin();
+            long parseStart = RequestTimings.mark();
+            TemplateCache.CachedTemplate template = templateCache.get(templateFile);
+            Workbook workbook = templateCache.openWorkbook(template);
+            if (!(workbook instanceof XSSFWorkbook)) {
+                workbook.close();
+                return failure("Streaming rows requires an .xlsx template", "INVALID_ROWS");
+            }
+            Sheet templateSheet = workbook.getSheetAt(0);
+            int firstRow = start.getRow();
+            Row prototype = templateSheet.getRow(firstRow);
+            CellStyle[] prototypeStyles = captureStyles(prototype);
+            short prototypeHeight = prototype != null ? prototype.getHeight() : -1;
+            TrailingRows trailing = TrailingRows.detach(templateSheet, firstRow);
+            RequestTimings.record(RequestTimings.PARSE, parseStart);
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.formName = formName;
+                parseEvent.templateFile = templateFile.getPath();
+                parseEvent.bytes = template.getLength();
+                parseEvent.commit();
+            }
+            FillDeadline.checkpoint(RequestTimings.PARSE);
+            
+            streamingWorkbook = new SXSSFWorkbook((XSSFWorkbook) workbook, ROW_WINDOW);
+            streamingWorkbook.setCompressTempFiles(true);
+            Sheet sheet = streamingWorkbook.getSheetAt(0);
+            
+            // Stream records straight into rows
+            int maxRows = Math.min(formFillConfig.getValidation().getMaxBulkRows(),
+                    SpreadsheetVersion.EXCEL2007.getMaxRows() - firstRow - trailing.span());
+            int maxValueLength = formFillConfig.getValidation().getMaxValueLength();
+            int rowCount = 0;
+            int filledCount = 0;
+            CellFillEvent fillEvent = new CellFillEvent();
+            fillEvent.begin();
+            long fillStart = RequestTimings.mark();
+            
+            try (JsonParser parser = jsonFactory.createParser(body)) {
+                JsonToken token = parser.nextToken();
+                boolean wrappedInArray = token == JsonToken.START_ARRAY;
+                if (wrappedInArray) {
+                    token = parser.nextToken();
+                }
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    if (rowCount % FormFillerService.CHECKPOINT_INTERVAL == 0) {
+                        FillDeadline.checkpoint(RequestTimings.FILL);
+                    }
+                    if (rowCount >= maxRows) {
+                        throw new IllegalArgumentException("Too many rows, limit is " + maxRows);
+                    }
+                    Row row = sheet.createRow(firstRow + rowCount);
+                    if (prototypeHeight >= 0) {
+                        row.setHeight(prototypeHeight);
+                    }
+                    filledCount += writeRecord(parser, token, row, mapping, prototypeStyles, maxValueLength, rowCount + 1);
+                    rowCount++;
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Malformed record after row " + rowCount + ": " + e.getOriginalMessage());
+            }
+            trailing.restore((XSSFWorkbook) workbook, sheet, rowCount);
+            RequestTimings.record(RequestTimings.FILL, fillStart);
+            FillDeadline.checkpoint(RequestTimings.FILL);
+            fillEvent.end();
+            if (fillEvent.shouldCommit()) {
+                fillEvent.formName = formName;
+                fillEvent.totalFields = rowCount;
+                fillEvent.filledCount = filledCount;
+                fillEvent.commit();
+            }
+            
+            String outputPath = formFillerService.writeWorkbook(streamingWorkbook,
+                    formFillerService.filledOutputName(formName), formName, filledCount);
+            
+            logger.info("Streamed {} rows ({} cells) into {}, saved to: {}", rowCount, filledCount, formName, outputPath);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("output_file", outputPath);
+            result.put("rows_written", rowCount);
+            result.put("filled_count", filledCount);
+            result.put("start_cell", start.formatAsString());
+            result.put("template_used", templateFile.getAbsolutePath());
+            result.put("template_version", template.getVersion());
+            result.put("fill_method", "row_stream");
+            return result;
+        
+        } catch (FillAbortedException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected row stream for form '{}': {}", formName, e.getMessage());
+            return failure(e.getMessage(), "INVALID_ROWS");
+        } catch (Exception e) {
+            logger.error("Error streaming rows into form '{}': {}", formName, e.getMessage(), e);
+            return failure("Failed to stream rows: " + e.getMessage(), "ROW_STREAM_ERROR");
+        } finally {
+            if (streamingWorkbook != null) {
+                streamingWorkbook.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Write one JSON record (object or array) into the row, returning the number of cells written
+     */
+    private int writeRecord(JsonParser parser, JsonToken token, Row row, ColumnMapping mapping,
+                            CellStyle[] styles, int maxValueLength, int recordNumber) throws Exception {
+        int written = 0;
+        if (token == JsonToken.START_OBJECT) {
+            if (!mapping.hasNames()) {
+                throw new IllegalArgumentException("Record " + recordNumber
+                        + " is an object but no columns mapping was given");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Integer col = mapping.columnOf(parser.currentName());
+                JsonToken valueToken = parser.nextToken();
+                if (col == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                written += writeValue(parser, valueToken, row, col, styles, maxValueLength, recordNumber);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int position = 0;
+            JsonToken valueToken;
+            while ((valueToken = parser.nextToken()) != JsonToken.END_ARRAY) {
+                int col = mapping.columnAt(position++);
+                if (col < 0) {
+                    parser.skipChildren();
+                    continue;
+                }
+                written += writeValue(parser, valueToken, row, col, styles, maxValueLength, recordNumber);
+            }
+        } else {
+            throw new IllegalArgumentException("Record " + recordNumber + " must be a JSON object or array");
+        }
+        return written;
+    }
+    
+    private int writeValue(JsonParser parser, JsonToken token, Row row, int col, CellStyle[] styles,
+                           int maxValueLength, int recordNumber) throws Exception {
+        Cell cell;
+        switch (token) {
+            case VALUE_NULL:
+                return 0;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                cell = row.createCell(col);
+                cell.setCellValue(parser.getDoubleValue());
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                cell = row.createCell(col);
+                cell.setCellValue(token == JsonToken.VALUE_TRUE);
+                break;
+            case VALUE_STRING:
+                String text = parser.getText();
+                if (text.length() > maxValueLength) {
+                    throw new IllegalArgumentException("Value too long in record " + recordNumber
+                            + ", column " + CellReference.convertNumToColString(col));
+                }
+                cell = row.createCell(col);
+                cell.setCellValue(text);
+                break;
+            default:
+                parser.skipChildren();
+                return 0;
+        }
+        if (col < styles.length && styles[col] != null) {
+            cell.setCellStyle(styles[col]);
+        }
+        return 1;
+    }
+    
+    private CellStyle[] captureStyles(Row prototype) {
+        if (prototype == null || prototype.getLastCellNum() < 0) {
+            return new CellStyle[0];
+        }
+        CellStyle[] styles = new CellStyle[prototype.getLastCellNum()];
+        for (Cell cell : prototype) {
+            styles[cell.getColumnIndex()] = cell.getCellStyle();
+        }
+        return styles;
+    }
+    
+    private Map<String, Object> failure(String message, String code) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("error", message);
+        result.put("code", code);
+        return result;
+    }
+    
+    /**
+     * 字段名到列号（从0开始）的映射
+     */
+    static final class ColumnMapping {
+        
+        private final Map<String, Integer> byName;
+        private final int[] positional;
+        private final int startCol;
+        
+        private ColumnMapping(Map<String, Integer> byName, int[] positional, int startCol) {
+            this.byName = byName;
+            this.positional = positional;
+            this.startCol = startCol;
+        }
+        
+        static ColumnMapping parse(String columns, int startCol) {
+            if (columns == null || columns.isBlank()) {
+                return new ColumnMapping(Map.of(), null, startCol);
+            }
+            String[] entries = columns.split(",");
+            Map<String, Integer> byName = new HashMap<>();
+            int[] positional = new int[entries.length];
+            int next = startCol;
+            for (int i = 0; i < entries.length; i++) {
+                String entry = entries[i].trim();
+                int colon = entry.lastIndexOf(':');
+                String name = colon >= 0 ? entry.substring(0, colon).trim() : entry;
+                int col = next;
+                if (colon >= 0) {
+                    try {
+                        col = CellReference.convertColStringToIndex(entry.substring(colon + 1).trim());
+                    } catch (IllegalArgumentException e) {
+                        col = -1;
+                    }
+                }
+                if (name.isEmpty() || col < 0 || col >= SpreadsheetVersion.EXCEL2007.getMaxColumns()) {
+                    throw new IllegalArgumentException("Invalid column mapping entry: " + entry);
+                }
+                if (byName.put(name, col) != null) {
+                    throw new IllegalArgumentException("Duplicate column mapping for field: " + name);
+                }
+                positional[i] = col;
+                next = col + 1;
+            }
+            return new ColumnMapping(byName, positional, startCol);
+        }
+        
+        boolean hasNames() {
+            return !byName.isEmpty();
+        }
+        
+        Integer columnOf(String field) {
+            return byName.get(field);
+        }
+        
+        int columnAt(int position) {
+            if (positional == null) {
+                int col = startCol + position;
+                return col < SpreadsheetVersion.EXCEL2007.getMaxColumns() ? col : -1;
+            }
+            return position < positional.length ? positional[position] : -1;
+        }
+    }
+    
+    /**
+     * 数据区之后的模板行（合计行、签名栏等）
+     *
+     * detach() 把这些行连同合并区域记下并从模板中移除（SXSSF只能在模板最后一行之后追加），
+     * restore() 在最后一条记录之后重新写出，并调整整张表中受影响的公式引用。
+     */
+    static final class TrailingRows {
+        
+        private final int firstRow;
+        // 模板数据区的结束行（不含），即第一个模板尾部行
+        private final int bodyEnd;
+        private final int lastRow;
+        private final List<RowSnapshot> rows;
+        private final List<CellRangeAddress> merges;
+        
+        private TrailingRows(int firstRow, int bodyEnd, int lastRow, List<RowSnapshot> rows, List<CellRangeAddress> merges) {
+            this.firstRow = firstRow;
+            this.bodyEnd = bodyEnd;
+            this.lastRow = lastRow;
+            this.rows = rows;
+            this.merges = merges;
+        }
+        
+        static TrailingRows detach(Sheet sheet, int firstRow) {
+            Set<Integer> mergeStarts = new HashSet<>();
+            for (CellRangeAddress region : sheet.getMergedRegions()) {
+                mergeStarts.add(region.getFirstRow());
+            }
+            int lastRow = sheet.getLastRowNum();
+            int bodyEnd = Math.max(firstRow + 1, lastRow + 1);
+            for (int i = firstRow + 1; i <= lastRow; i++) {
+                if (mergeStarts.contains(i) || hasContent(sheet.getRow(i))) {
+                    bodyEnd = i;
+                    break;
+                }
+            }
+            
+            List<RowSnapshot> rows = new ArrayList<>();
+            for (int i = bodyEnd; i <= lastRow; i++) {
+                Row row = sheet.getRow(i);
+                if (row != null) {
+                    rows.add(RowSnapshot.of(row));
+                }
+            }
+            List<CellRangeAddress> merges = new ArrayList<>();
+            for (int i = sheet.getNumMergedRegions() - 1; i >= 0; i--) {
+                CellRangeAddress region = sheet.getMergedRegion(i);
+                if (region.getLastRow() >= firstRow) {
+                    if (region.getFirstRow() >= bodyEnd) {
+                        merges.add(region);
+                    }
+                    sheet.removeMergedRegion(i);
+                }
+            }
+            for (int i = lastRow; i >= firstRow; i--) {
+                Row row = sheet.getRow(i);
+                if (row != null) {
+                    sheet.removeRow(row);
+                }
+            }
+            return new TrailingRows(firstRow, bodyEnd, lastRow, rows, merges);
+        }
+        
+        /**
+         * 模板尾部占用的行数
+         */
+        int span() {
+            return lastRow >= bodyEnd ? lastRow - bodyEnd + 1 : 0;
+        }
+        
+        /**
+         * 在 rowCount 条记录之后写回模板尾部，并调整起始行之上已有单元格中的公式
+         */
+        void restore(XSSFWorkbook workbook, Sheet sheet, int rowCount) {
+            int delta = firstRow + rowCount - bodyEnd;
+            int lastWritten = firstRow + rowCount - 1;
+            XSSFEvaluationWorkbook evaluationWorkbook = XSSFEvaluationWorkbook.create(workbook);
+            int sheetIndex = workbook.getSheetIndex(sheet.getSheetName());
+            boolean formulas = false;
+            
+            Sheet templateSheet = workbook.getSheetAt(sheetIndex);
+            for (Row row : templateSheet) {
+                if (row.getRowNum() >= firstRow) {
+                    break;
+                }
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        String formula = cell.getCellFormula();
+                        String adjusted = adjust(formula, evaluationWorkbook, sheetIndex, sheet.getSheetName(), delta, lastWritten);
+                        if (!adjusted.equals(formula)) {
+                            cell.setCellFormula(adjusted);
+                            formulas = true;
+                        }
+                    }
+                }
+            }
+            
+            for (RowSnapshot snapshot : rows) {
+                Row row = sheet.createRow(snapshot.rowNum + delta);
+                row.setHeight(snapshot.height);
+                if (snapshot.rowStyle != null) {
+                    row.setRowStyle(snapshot.rowStyle);
+                }
+                for (CellSnapshot source : snapshot.cells) {
+                    Cell cell = row.createCell(source.col);
+                    cell.setCellStyle(source.style);
+                    switch (source.type) {
+                        case STRING:
+                            cell.setCellValue((String) source.value);
+                            break;
+                        case NUMERIC:
+                            cell.setCellValue((Double) source.value);
+                            break;
+                        case BOOLEAN:
+                            cell.setCellValue((Boolean) source.value);
+                            break;
+                        case ERROR:
+                            cell.setCellErrorValue((Byte) source.value);
+                            break;
+                        case FORMULA:
+                            cell.setCellFormula(adjust((String) source.value, evaluationWorkbook, sheetIndex,
+                                    sheet.getSheetName(), delta, lastWritten));
+                            formulas = true;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            for (CellRangeAddress region : merges) {
+                sheet.addMergedRegionUnsafe(new CellRangeAddress(region.getFirstRow() + delta, region.getLastRow() + delta,
+                        region.getFirstColumn(), region.getLastColumn()));
+            }
+            if (formulas) {
+                workbook.setForceFormulaRecalculation(true);
+            }
+        }
+        
+        /**
+         * 平移指向模板尾部的引用；结束于数据区内的区域引用延伸到最后一条记录。无法解析的公式原样保留
+         */
+        private String adjust(String formula, XSSFEvaluationWorkbook evaluationWorkbook, int sheetIndex,
+                              String sheetName, int delta, int lastWritten) {
+            if (delta == 0) {
+                return formula;
+            }
+            Ptg[] ptgs;
+            try {
+                ptgs = FormulaParser.parse(formula, evaluationWorkbook, FormulaType.CELL, sheetIndex);
+            } catch (FormulaParseException e) {
+                logger.warn("Keeping formula '{}' unchanged: {}", formula, e.getMessage());
+                return formula;
+            }
+            int maxRow = SpreadsheetVersion.EXCEL2007.getLastRowIndex();
+            boolean changed = false;
+            for (Ptg ptg : ptgs) {
+                if (ptg instanceof Pxg && !sheetName.equalsIgnoreCase(((Pxg) ptg).getSheetName())) {
+                    continue;
+                }
+                if (ptg instanceof RefPtgBase) {
+                    RefPtgBase ref = (RefPtgBase) ptg;
+                    if (ref.getRow() >= bodyEnd) {
+                        ref.setRow(Math.min(maxRow, ref.getRow() + delta));
+                        changed = true;
+                    }
+                } else if (ptg instanceof AreaPtgBase) {
+                    AreaPtgBase area = (AreaPtgBase) ptg;
+                    int first = area.getFirstRow();
+                    int last = area.getLastRow();
+                    if (first == 0 && last == maxRow) {
+                        continue;
+                    }
+                    if (first >= bodyEnd) {
+                        area.setFirstRow(Math.min(maxRow, first + delta));
+                    }
+                    if (last >= bodyEnd) {
+                        area.setLastRow(Math.min(maxRow, last + delta));
+                    } else if (last >= firstRow) {
+                        area.setLastRow(Math.max(area.getFirstRow(), lastWritten));
+                    }
+                    changed |= area.getFirstRow() != first || area.getLastRow() != last;
+                }
+            }
+            return changed ? FormulaRenderer.toFormulaString(evaluationWorkbook, ptgs) : formula;
+        }
+        
+        private static boolean hasContent(Row row) {
+            if (row == null) {
+                return false;
+            }
+            for (Cell cell : row) {
+                CellType type = cell.getCellType();
+                if (type != CellType.BLANK && !(type == CellType.STRING && cell.getStringCellValue().isEmpty())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private static final class RowSnapshot {
+        
+        final int rowNum;
+        final short height;
+        final CellStyle rowStyle;
+        final List<CellSnapshot> cells = new ArrayList<>();
+        
+        private RowSnapshot(Row row) {
+            this.rowNum = row.getRowNum();
+            this.height = row.getHeight();
+            this.rowStyle = row.isFormatted() ? row.getRowStyle() : null;
+        }
+        
+        static RowSnapshot of(Row row) {
+            RowSnapshot snapshot = new RowSnapshot(row);
+            for (Cell cell : row) {
+                Object value;
+                switch (cell.getCellType()) {
+                    case STRING:
+                        value = cell.getStringCellValue();
+                        break;
+                    case NUMERIC:
+                        value = cell.getNumericCellValue();
+                        break;
+                    case BOOLEAN:
+                        value = cell.getBooleanCellValue();
+                        break;
+                    case ERROR:
+                        value = cell.getErrorCellValue();
+                        break;
+                    case FORMULA:
+                        value = cell.getCellFormula();
+                        break;
+                    default:
+                        value = null;
+                        break;
+                }
+                snapshot.cells.add(new CellSnapshot(cell.getColumnIndex(), cell.getCellStyle(), cell.getCellType(), value));
+            }
+            return snapshot;
+        }
+    }
+    
+    private static final class CellSnapshot {
+        
+        final int col;
+        final CellStyle style;
+        final CellType type;
+        final Object value;
+        
+        CellSnapshot(int col, CellStyle style, CellType type, Object value) {
+            this.col = col;
+            this.style = style;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
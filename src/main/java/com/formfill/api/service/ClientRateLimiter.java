@@ -0,0 +1,208 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按调用方限流服务
+ *
+ * 调用方通过 X-API-Key（映射到配置中的名称）或 X-Client-Id 请求头识别。X-Client-Id 只认配置中
+ * 没有 api-key 的调用方名称；配置了 api-key 的调用方必须带上密钥，未知的 X-Client-Id 与没有请求头一样按来源IP识别，
+ * 轮换请求头得不到新的令牌桶。
+ * 每个调用方一个无锁令牌桶，令牌桶按调用方哈希分布到多个分片中，减少高并发下的争用；
+ * 各分片在使用时顺带清理已回满的令牌桶（与新建的桶等价），按IP建立的桶不会无限累积。
+ * 通过限流的请求再经过 FairRequestScheduler 的加权公平队列获得处理名额。
+ * 每个调用方的放行、拒绝与排队次数以 formfill.client.requests 指标发布。
+ */
+@Service
+public class ClientRateLimiter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ClientRateLimiter.class);
+    
+    private static final String ANONYMOUS = "anonymous";
+    private static final long SWEEP_INTERVAL_NANOS = 10_000_000_000L;
+    
+    private final FormFillConfig.RateLimit config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ClientPolicy> policiesByApiKey = new HashMap<>();
+    private final Map<String, ClientPolicy> policiesByClientId = new HashMap<>();
+    private final List<Stripe> stripes;
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final FairRequestScheduler scheduler;
+    
+    @Autowired
+    public ClientRateLimiter(FormFillConfig formFillConfig, MeterRegistry meterRegistry) {
+        this.config = formFillConfig.getRateLimit();
+        this.meterRegistry = meterRegistry;
+        
+        for (FormFillConfig.Client client : config.getClients()) {
+            if (client.getName() == null || client.getName().isBlank()) {
+                continue;
+            }
+            ClientPolicy policy = new ClientPolicy(client.getName(), client.getName(),
+                    client.getRate() != null ? client.getRate() : config.getDefaultRate(),
+                    client.getBurst() != null ? client.getBurst() : config.getDefaultBurst(),
+                    client.getWeight() != null ? client.getWeight() : config.getDefaultWeight());
+            if (client.getApiKey() != null && !client.getApiKey().isBlank()) {
+                policiesByApiKey.put(client.getApiKey(), policy);
+            } else {
+                policiesByClientId.put(client.getName(), policy);
+            }
+        }
+        
+        int stripeCount = Integer.highestOneBit(Math.max(config.getStripes(), 1));
+        List<Stripe> stripeList = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripeList.add(new Stripe());
+        }
+        this.stripes = List.copyOf(stripeList);
+        
+        this.scheduler = new FairRequestScheduler(config.getMaxConcurrent(), config.getMaxQueuePerClient());
+        Gauge.builder("formfill.client.in_flight", scheduler, FairRequestScheduler::getInFlight).register(meterRegistry);
+        Gauge.builder("formfill.client.queued", scheduler, FairRequestScheduler::getWaiting).register(meterRegistry);
+        Gauge.builder("formfill.client.buckets", this, ClientRateLimiter::getBucketCount).register(meterRegistry);
+        
+        logger.info("Client rate limiting enabled: {}, {} configured client(s)", config.isEnabled(),
+                policiesByApiKey.size() + policiesByClientId.size());
+    }
+    
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+    
+    /**
+     * 识别调用方
+     *
+     * @param apiKey X-API-Key 请求头
+     * @param clientId X-Client-Id 请求头
+     * @param remoteAddr 来源IP
+     */
+    public ClientPolicy identify(String apiKey, String clientId, String remoteAddr) {
+        if (apiKey != null && !apiKey.isBlank()) {
+            ClientPolicy policy = policiesByApiKey.get(apiKey);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        if (clientId != null && !clientId.isBlank()) {
+            ClientPolicy policy = policiesByClientId.get(clientId);
+            if (policy != null) {
+                return policy;
+            }
+        }
+        // 未识别的调用方（含未知的 X-Client-Id）按IP各自限流，指标合并到一个标签下，避免标签基数膨胀
+        return defaultPolicy("ip:" + remoteAddr, ANONYMOUS);
+    }
+    
+    /**
+     * 从调用方令牌桶中取一个令牌
+     *
+     * @return 0表示放行；否则为建议的重试等待纳秒数
+     */
+    public long tryConsume(ClientPolicy policy) {
+        Stripe stripe = stripes.get(policy.key.hashCode() & (stripes.size() - 1));
+        stripe.sweepIfDue();
+        TokenBucket bucket = stripe.buckets.computeIfAbsent(policy.key, key -> new TokenBucket(policy.rate, policy.burst));
+        long waitNanos = bucket.tryConsume();
+        if (waitNanos > 0) {
+            count(policy, "rejected_rate");
+        }
+        return waitNanos;
+    }
+    
+    /**
+     * 在加权公平队列中申请处理名额
+     */
+    public boolean acquireSlot(ClientPolicy policy) throws InterruptedException {
+        boolean queued = scheduler.getInFlight() >= config.getMaxConcurrent();
+        if (queued) {
+            count(policy, "queued");
+        }
+        boolean granted = scheduler.acquire(policy.key, policy.weight, config.getQueueTimeoutMs());
+        count(policy, granted ? "admitted" : "rejected_queue");
+        return granted;
+    }
+    
+    public void releaseSlot() {
+        scheduler.release();
+    }
+    
+    public int getBucketCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.buckets.size();
+        }
+        return count;
+    }
+    
+    private ClientPolicy defaultPolicy(String key, String tag) {
+        return new ClientPolicy(key, tag, config.getDefaultRate(), config.getDefaultBurst(), config.getDefaultWeight());
+    }
+    
+    private void count(ClientPolicy policy, String outcome) {
+        counters.computeIfAbsent(policy.tag + "|" + outcome, key -> Counter.builder("formfill.client.requests")
+                .tag("client", policy.tag)
+                .tag("outcome", outcome)
+                .register(meterRegistry)).increment();
+    }
+    
+    /**
+     * 令牌桶分片
+     */
+    private static final class Stripe {
+        
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+        
+        /**
+         * 每隔 SWEEP_INTERVAL_NANOS 由一个请求线程删除已回满的令牌桶；
+         * 与删除同时发生的一次取令牌可能落在被删除的桶上，最多多放行一个请求
+         */
+        void sweepIfDue() {
+            long now = System.nanoTime();
+            long due = nextSweep.get();
+            if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+                return;
+            }
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+    }
+    
+    /**
+     * 调用方限流策略
+     */
+    public static class ClientPolicy {
+        // 令牌桶与公平队列的键
+        private final String key;
+        // 指标标签
+        private final String tag;
+        private final double rate;
+        private final int burst;
+        private final int weight;
+        
+        ClientPolicy(String key, String tag, double rate, int burst, int weight) {
+            this.key = key;
+            this.tag = tag;
+            this.rate = rate;
+            this.burst = burst;
+            this.weight = weight;
+        }
+        
+        public String getTag() {
+            return tag;
+        }
+    }
+}
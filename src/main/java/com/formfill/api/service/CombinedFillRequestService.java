@@ -0,0 +1,194 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import com.formfill.api.dto.CombinedFillRequest;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.dto.FormFillRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多表单合并输出请求的处理流程：逐表单预检 -> 标签解析 -> 准入 -> 合并填写 -> 组装响应
+ *
+ * 同步接口（CombinedFormController）与异步任务（FillJobService）共用，与单表单的 FillRequestService 对应。
+ * 错误响应带 form_index 指出出错的表单。
+ */
+@Service
+public class CombinedFillRequestService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CombinedFillRequestService.class);
+    
+    @Autowired
+    private CombinedFormService combinedFormService;
+    
+    @Autowired
+    private TemplateSchemaService templateSchemaService;
+    
+    @Autowired
+    private FormContentValidator formContentValidator;
+    
+    @Autowired
+    private AdmissionControlService admissionControlService;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    /**
+     * 逐个表单预检并解析标签，生成输出文件名
+     *
+     * @return 预检结果；isRejected() 为 true 时 getRejection() 给出错误响应
+     */
+    public Prepared prepare(CombinedFillRequest request) throws Exception {
+        List<FormFillRequest> forms = request.getForms();
+        int maxForms = formFillConfig.getValidation().getMaxCombinedForms();
+        if (forms.size() > maxForms) {
+            return Prepared.rejected(new FillRequestService.Outcome(400,
+                    failure("At most " + maxForms + " forms can be combined", "TOO_MANY_FORMS", null)));
+        }
+        
+        List<String> formNames = new ArrayList<>(forms.size());
+        List<CellBatch> batches = new ArrayList<>(forms.size());
+        int fieldCount = 0;
+        for (int i = 0; i < forms.size(); i++) {
+            FormFillRequest form = forms.get(i);
+            if ((form.getRepeats() != null && !form.getRepeats().isEmpty()) || form.isRecalculate() || form.isDiff()
+                    || form.getTemplateVersion() != null) {
+                return Prepared.rejected(new FillRequestService.Outcome(400, failure(
+                        "repeats, recalculate, diff and templateVersion are not supported in combined output", "UNSUPPORTED_OPTION", i)));
+            }
+            
+            // Pre-flight validation before any template I/O
+            CellBatch cells = form.toCellBatch();
+            FormContentValidator.Result validation = formContentValidator.validate(cells, null, form.getLabels());
+            if (!validation.isValid()) {
+                return Prepared.rejected(invalidContent(validation, i));
+            }
+            if (form.getLabels() != null && !form.getLabels().isEmpty()) {
+                TemplateSchemaService.LabelResolution labels = templateSchemaService.resolveLabels(form.getFormName(), form.getLabels());
+                if (!labels.isTemplateFound()) {
+                    return Prepared.rejected(new FillRequestService.Outcome(404,
+                            failure("Template not found for form: " + form.getFormName(), "TEMPLATE_NOT_FOUND", i)));
+                }
+                if (!labels.isResolved()) {
+                    Map<String, Object> errorResponse = failure("Some labels could not be resolved to a single input cell",
+                            "UNRESOLVED_LABELS", i);
+                    errorResponse.put("label_problems", labels.getProblems());
+                    return Prepared.rejected(new FillRequestService.Outcome(400, errorResponse));
+                }
+                FormContentValidator.Result resolved = formContentValidator.validateResolved(labels.getCells());
+                if (!resolved.isValid()) {
+                    return Prepared.rejected(invalidContent(resolved, i));
+                }
+                cells.addAll(labels.getCells());
+            }
+            
+            formNames.add(form.getFormName());
+            batches.add(cells);
+            fieldCount += validation.getFieldCount();
+        }
+        
+        String outputName = (request.getOutputName() != null && !request.getOutputName().isBlank()
+                ? request.getOutputName().trim() : String.join("_", formNames)).replaceAll("[\\\\/:*?\"<>|]", "_");
+        return new Prepared(outputName, formNames, batches, fieldCount, null);
+    }
+    
+    /**
+     * 在准入许可内合并填写
+     *
+     * @throws AdmissionRejectedException 排队超时仍未获得许可
+     */
+    public FillRequestService.Outcome fill(Prepared prepared) throws Exception {
+        return admissionControlService.call(prepared.formNames, prepared.fieldCount, () -> fillAdmitted(prepared));
+    }
+    
+    /**
+     * 合并填写并组装响应，调用方已持有准入许可
+     */
+    public FillRequestService.Outcome fillAdmitted(Prepared prepared) throws Exception {
+        logger.info("Processing combined output '{}' with forms: {}", prepared.outputName, prepared.formNames);
+        Map<String, Object> result = combinedFormService.fillCombined(prepared.outputName, prepared.formNames, prepared.batches);
+        
+        Map<String, Object> response = new HashMap<>(result);
+        if (!Boolean.TRUE.equals(result.get("success"))) {
+            int status = "TEMPLATE_NOT_FOUND".equals(result.get("code")) ? 404
+                    : "UNSUPPORTED_TEMPLATE".equals(result.get("code")) ? 422 : 500;
+            return new FillRequestService.Outcome(status, response);
+        }
+        
+        String outputFile = (String) result.get("output_file");
+        response.put("message", "Forms combined successfully");
+        response.put("download_url", "/api/download/" + Paths.get(outputFile).getFileName());
+        response.put("timestamp", LocalDateTime.now().toString());
+        response.remove("fill_method");
+        return new FillRequestService.Outcome(200, response);
+    }
+    
+    private FillRequestService.Outcome invalidContent(FormContentValidator.Result validation, int formIndex) {
+        logger.warn("Combined form {} rejected by pre-flight validation: {} violation(s)", formIndex, validation.getViolationCount());
+        Map<String, Object> errorResponse = failure("Form content exceeds allowed limits", "INVALID_FORM_CONTENT", formIndex);
+        errorResponse.put("violation_count", validation.getViolationCount());
+        errorResponse.put("violations", validation.getViolations());
+        return new FillRequestService.Outcome(400, errorResponse);
+    }
+    
+    private Map<String, Object> failure(String message, String code, Integer formIndex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        if (formIndex != null) {
+            errorResponse.put("form_index", formIndex);
+        }
+        return errorResponse;
+    }
+    
+    /**
+     * 通过预检的合并请求：各表单的单元格批次与净化后的输出文件名，字段数为所有表单之和
+     */
+    public static class Prepared {
+        
+        private final String outputName;
+        private final List<String> formNames;
+        private final List<CellBatch> batches;
+        private final int fieldCount;
+        private final FillRequestService.Outcome rejection;
+        
+        private Prepared(String outputName, List<String> formNames, List<CellBatch> batches, int fieldCount,
+                         FillRequestService.Outcome rejection) {
+            this.outputName = outputName;
+            this.formNames = formNames;
+            this.batches = batches;
+            this.fieldCount = fieldCount;
+            this.rejection = rejection;
+        }
+        
+        static Prepared rejected(FillRequestService.Outcome rejection) {
+            return new Prepared(null, null, null, 0, rejection);
+        }
+        
+        public boolean isRejected() {
+            return rejection != null;
+        }
+        
+        public FillRequestService.Outcome getRejection() {
+            return rejection;
+        }
+        
+        public List<String> getFormNames() {
+            return formNames;
+        }
+        
+        public int getFieldCount() {
+            return fieldCount;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorder;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCol;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCols;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 多表单合并输出服务
+ *
+ * 以第一个表单的模板工作簿为基础，其余模板的首个工作表逐个复制进来，每个表单一个工作表，
+ * 最后只写一次包。复制时样式按内容（对齐、字体、填充、边框、数字格式）去重：
+ * 多个模板中相同的样式在输出中只保留一份，字体、填充、边框由 StylesTable 按内容去重。
+ * 同一模板出现多次时直接用 cloneSheet 复制。
+ *
+ * 跨工作簿复制的范围：单元格值与公式、样式、行高、列宽、合并单元格、数据有效性和打印方向；
+ * 富文本按纯文本复制，条件格式、批注和图片不复制。
+ */
+@Service
+public class CombinedFormService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CombinedFormService.class);
+    
+    @Autowired
+    private FormFillerService formFillerService;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    /**
+     * 填写多个表单并合并输出到一个工作簿
+     *
+     * @param outputName 输出文件名前缀
+     * @param formNames 表单名称，按工作表顺序
+     * @param cells 每个表单的单元格批次，与 formNames 一一对应
+     * @return 包含成功状态和结果信息的Map
+     */
+    public Map<String, Object> fillCombined(String outputName, List<String> formNames, List<CellBatch> cells) {
+        List<File> templates = new ArrayList<>(formNames.size());
+        for (String formName : formNames) {
+            File template = formFillerService.locateTemplate(formName);
+            if (template == null) {
+                Map<String, Object> result = failure("Template not found for form: " + formName, "TEMPLATE_NOT_FOUND");
+                result.put("formName", formName);
+                return result;
+            }
+            if (!template.getName().toLowerCase().endsWith(".xlsx")) {
+                Map<String, Object> result = failure("Combined output requires .xlsx templates", "UNSUPPORTED_TEMPLATE");
+                result.put("formName", formName);
+                return result;
+            }
+            templates.add(template);
+        }
+        
+        // Each distinct template is parsed once; the first one becomes the output workbook
+        Map<String, XSSFWorkbook> sources = new LinkedHashMap<>();
+        XSSFWorkbook written = null;
+        try {
+            long parseStart = RequestTimings.mark();
+            Map<String, String> versions = new HashMap<>();
+            for (File template : templates) {
+                String key = template.getAbsolutePath();
+                if (!sources.containsKey(key)) {
+                    TemplateCache.CachedTemplate cached = templateCache.get(template);
+                    sources.put(key, (XSSFWorkbook) templateCache.openWorkbook(cached));
+                    versions.put(key, cached.getVersion());
+                }
+            }
+            RequestTimings.record(RequestTimings.PARSE, parseStart);
+            FillDeadline.checkpoint(RequestTimings.PARSE);
+            
+            long fillStart = RequestTimings.mark();
+            String baseKey = templates.get(0).getAbsolutePath();
+            XSSFWorkbook target = sources.get(baseKey);
+            for (int i = target.getNumberOfSheets() - 1; i > 0; i--) {
+                target.removeSheetAt(i);
+            }
+            
+            // Copy every sheet before filling, so clones of the base template start from the blank layout
+            StyleMapper styles = new StyleMapper(target);
+            Set<String> sheetNames = new HashSet<>();
+            target.setSheetName(0, uniqueSheetName(formNames.get(0), sheetNames));
+            boolean crossWorkbookFormulas = false;
+            for (int i = 1; i < templates.size(); i++) {
+                String key = templates.get(i).getAbsolutePath();
+                XSSFSheet sheet;
+                if (key.equals(baseKey)) {
+                    sheet = target.cloneSheet(0, uniqueSheetName(formNames.get(i), sheetNames));
+                } else {
+                    sheet = target.createSheet(uniqueSheetName(formNames.get(i), sheetNames));
+                    crossWorkbookFormulas |= copySheet(sources.get(key).getSheetAt(0), sheet, styles);
+                }
+            }
+            if (crossWorkbookFormulas) {
+                target.setForceFormulaRecalculation(true);
+            }
+            
+            CellStyle fillStyle = formFillerService.createDefaultFillStyle(target);
+            int filledCount = 0;
+            int totalFields = 0;
+            List<Map<String, Object>> sheets = new ArrayList<>(formNames.size());
+            for (int i = 0; i < formNames.size(); i++) {
+                FillDeadline.checkpoint(RequestTimings.FILL);
+                XSSFSheet sheet = target.getSheetAt(i);
+                int sheetFilled = fillSheet(sheet, cells.get(i), fillStyle);
+                filledCount += sheetFilled;
+                totalFields += cells.get(i).size() + cells.get(i).getSkippedCount();
+                
+                Map<String, Object> sheetInfo = new LinkedHashMap<>();
+                sheetInfo.put("form_name", formNames.get(i));
+                sheetInfo.put("sheet", sheet.getSheetName());
+                sheetInfo.put("template_used", templates.get(i).getAbsolutePath());
+                sheetInfo.put("template_version", versions.get(templates.get(i).getAbsolutePath()));
+                sheetInfo.put("filled_count", sheetFilled);
+                sheets.add(sheetInfo);
+            }
+            RequestTimings.record(RequestTimings.FILL, fillStart);
+            
+            written = target;
+            String outputPath = formFillerService.writeWorkbook(target, formFillerService.filledOutputName(outputName),
+                    outputName, filledCount);
+            
+            logger.info("Combined {} form(s) into {}: {}/{} fields, {} style(s) copied, {} shared",
+                    formNames.size(), outputPath, filledCount, totalFields, styles.copied, styles.shared);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("output_file", outputPath);
+            result.put("filled_count", filledCount);
+            result.put("total_fields", totalFields);
+            result.put("sheets", sheets);
+            result.put("styles_copied", styles.copied);
+            result.put("styles_shared", styles.shared);
+            result.put("fill_method", "combined");
+            return result;
+        
+        } catch (FillAbortedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error filling combined output {}: {}", outputName, e.getMessage(), e);
+            return failure("Failed to fill combined forms: " + e.getMessage(), "COMBINED_FILL_ERROR");
+        } finally {
+            // writeWorkbook closes the output workbook itself
+            for (XSSFWorkbook workbook : sources.values()) {
+                if (workbook != written) {
+                    closeQuietly(workbook);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 写入固定坐标的单元格，样式与填写计划的 default 样式相同（整个工作簿共用一个）
+     */
+    private int fillSheet(XSSFSheet sheet, CellBatch cells, CellStyle fillStyle) {
+        int filled = 0;
+        for (int i = 0; i < cells.size(); i++) {
+            XSSFRow row = sheet.getRow(cells.getRow(i) - 1);
+            if (row == null) {
+                row = sheet.createRow(cells.getRow(i) - 1);
+            }
+            XSSFCell cell = row.getCell(cells.getCol(i) - 1);
+            if (cell == null) {
+                cell = row.createCell(cells.getCol(i) - 1);
+            }
+            // 与单表单坐标填写一致：先清空，否则模板中的公式会保留，填入的值只成为公式的缓存结果
+            cell.setBlank();
+            cell.setCellValue(cells.getValue(i));
+            cell.setCellStyle(fillStyle);
+            filled++;
+        }
+        return filled;
+    }
+    
+    /**
+     * 把其他工作簿的工作表复制到目标工作表
+     *
+     * @return 是否复制了公式（公式在目标工作簿中需要重新计算）
+     */
+    private boolean copySheet(XSSFSheet source, XSSFSheet target, StyleMapper styles) {
+        boolean hasFormulas = false;
+        target.setDefaultRowHeight(source.getDefaultRowHeight());
+        target.setDefaultColumnWidth(source.getDefaultColumnWidth());
+        target.setDisplayGridlines(source.isDisplayGridlines());
+        target.getPrintSetup().setLandscape(source.getPrintSetup().getLandscape());
+        target.getPrintSetup().setPaperSize(source.getPrintSetup().getPaperSize());
+        
+        for (Row sourceRow : source) {
+            XSSFRow row = target.createRow(sourceRow.getRowNum());
+            if (((XSSFRow) sourceRow).getCTRow().getCustomHeight()) {
+                row.setHeight(sourceRow.getHeight());
+            }
+            row.setZeroHeight(sourceRow.getZeroHeight());
+            if (sourceRow.isFormatted()) {
+                row.setRowStyle(styles.map(source.getWorkbook(), (XSSFCellStyle) sourceRow.getRowStyle()));
+            }
+            for (Cell sourceCell : sourceRow) {
+                XSSFCell cell = row.createCell(sourceCell.getColumnIndex());
+                cell.setCellStyle(styles.map(source.getWorkbook(), (XSSFCellStyle) sourceCell.getCellStyle()));
+                hasFormulas |= copyValue(sourceCell, cell);
+            }
+        }
+        
+        // Column widths and styles: copy the <cols> ranges as-is, remapping their style ids
+        CTCols[] sourceCols = source.getCTWorksheet().getColsArray();
+        if (sourceCols.length > 0) {
+            CTCols[] cols = new CTCols[sourceCols.length];
+            for (int i = 0; i < sourceCols.length; i++) {
+                cols[i] = (CTCols) sourceCols[i].copy();
+                for (CTCol col : cols[i].getColArray()) {
+                    if (col.isSetStyle()) {
+                        XSSFCellStyle sourceStyle = source.getWorkbook().getCellStyleAt((int) col.getStyle());
+                        col.setStyle(styles.map(source.getWorkbook(), sourceStyle).getIndex());
+                    }
+                }
+            }
+            target.getCTWorksheet().setColsArray(cols);
+            target.getColumnHelper().cleanColumns();
+        }
+        
+        for (CellRangeAddress region : source.getMergedRegions()) {
+            target.addMergedRegionUnsafe(region.copy());
+        }
+        if (source.getCTWorksheet().isSetDataValidations()) {
+            target.getCTWorksheet().setDataValidations(source.getCTWorksheet().getDataValidations());
+        }
+        return hasFormulas;
+    }
+    
+    private boolean copyValue(Cell source, Cell target) {
+        switch (source.getCellType()) {
+            case STRING:
+                target.setCellValue(source.getStringCellValue());
+                return false;
+            case NUMERIC:
+                target.setCellValue(source.getNumericCellValue());
+                return false;
+            case BOOLEAN:
+                target.setCellValue(source.getBooleanCellValue());
+                return false;
+            case ERROR:
+                target.setCellErrorValue(source.getErrorCellValue());
+                return false;
+            case FORMULA:
+                try {
+                    target.setCellFormula(source.getCellFormula());
+                    return true;
+                } catch (RuntimeException e) {
+                    // e.g. a reference to a sheet that only exists in the source template
+                    logger.warn("Formula {} at {} could not be copied, keeping its cached value: {}",
+                            source.getCellFormula(), source.getAddress(), e.getMessage());
+                    copyCachedValue(source, target);
+                    return false;
+                }
+            default:
+                return false;
+        }
+    }
+    
+    private void copyCachedValue(Cell source, Cell target) {
+        switch (source.getCachedFormulaResultType()) {
+            case NUMERIC:
+                target.setCellValue(source.getNumericCellValue());
+                break;
+            case BOOLEAN:
+                target.setCellValue(source.getBooleanCellValue());
+                break;
+            case STRING:
+                target.setCellValue(source.getStringCellValue());
+                break;
+            default:
+                target.setBlank();
+        }
+    }
+    
+    private String uniqueSheetName(String formName, Set<String> used) {
+        String base = WorkbookUtil.createSafeSheetName(formName);
+        String name = base;
+        for (int n = 2; !used.add(name.toLowerCase()); n++) {
+            String suffix = " (" + n + ")";
+            name = (base.length() + suffix.length() > 31 ? base.substring(0, 31 - suffix.length()) : base) + suffix;
+        }
+        return name;
+    }
+    
+    private void closeQuietly(XSSFWorkbook workbook) {
+        try {
+            workbook.close();
+        } catch (Exception e) {
+            logger.debug("Error closing template workbook: {}", e.getMessage());
+        }
+    }
+    
+    private Map<String, Object> failure(String message, String code) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("error", message);
+        result.put("code", code);
+        return result;
+    }
+    
+    /**
+     * 把源工作簿的样式映射到目标工作簿，按内容去重
+     */
+    private static final class StyleMapper {
+        
+        private final XSSFWorkbook target;
+        private final Map<String, XSSFCellStyle> bySignature = new HashMap<>();
+        private final Map<XSSFWorkbook, Map<Short, XSSFCellStyle>> mapped = new IdentityHashMap<>();
+        private int copied;
+        private int shared;
+        
+        StyleMapper(XSSFWorkbook target) {
+            this.target = target;
+            for (int i = 0; i < target.getNumCellStyles(); i++) {
+                XSSFCellStyle style = target.getCellStyleAt(i);
+                bySignature.putIfAbsent(signature(target.getStylesSource(), style), style);
+            }
+        }
+        
+        XSSFCellStyle map(XSSFWorkbook source, XSSFCellStyle style) {
+            Map<Short, XSSFCellStyle> fromSource = mapped.computeIfAbsent(source, wb -> new HashMap<>());
+            XSSFCellStyle result = fromSource.get(style.getIndex());
+            if (result != null) {
+                return result;
+            }
+            StylesTable sourceStyles = source.getStylesSource();
+            String signature = signature(sourceStyles, style);
+            result = bySignature.get(signature);
+            if (result != null) {
+                shared++;
+            } else {
+                result = target.createCellStyle();
+                result.cloneStyleFrom(style);
+                // Fill and border ids point into the source StylesTable; re-register them by content
+                StylesTable targetStyles = target.getStylesSource();
+                CTXf xf = result.getCoreXf();
+                CTXf sourceXf = style.getCoreXf();
+                xf.setFillId(targetStyles.putFill(new XSSFCellFill(
+                        (CTFill) sourceStyles.getFillAt((int) sourceXf.getFillId()).getCTFill().copy(), null)));
+                xf.setBorderId(targetStyles.putBorder(new XSSFCellBorder(
+                        (CTBorder) sourceStyles.getBorderAt((int) sourceXf.getBorderId()).getCTBorder().copy())));
+                if (xf.isSetXfId()) {
+                    xf.setXfId(0);
+                }
+                bySignature.put(signature, result);
+                copied++;
+            }
+            fromSource.put(style.getIndex(), result);
+            return result;
+        }
+        
+        /**
+         * 样式内容签名：去掉各部件序号后的 xf，加上字体、填充、边框的内容和数字格式
+         */
+        private static String signature(StylesTable styles, XSSFCellStyle style) {
+            CTXf xf = (CTXf) style.getCoreXf().copy();
+            long fillId = xf.getFillId();
+            long borderId = xf.getBorderId();
+            xf.setFontId(0);
+            xf.setFillId(0);
+            xf.setBorderId(0);
+            xf.setNumFmtId(0);
+            if (xf.isSetXfId()) {
+                xf.unsetXfId();
+            }
+            return xf.xmlText()
+                    + '|' + style.getFont().getCTFont().xmlText()
+                    + '|' + styles.getFillAt((int) fillId).getCTFill().xmlText()
+                    + '|' + styles.getBorderAt((int) borderId).getCTBorder().xmlText()
+                    + '|' + style.getDataFormatString();
+        }
+    }
+}
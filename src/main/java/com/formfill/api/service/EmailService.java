@@ -3,12 +3,16 @@ package com.formfill.api.service;
 import com.formfill.api.dto.EmailConfig;
 import com.formfill.api.dto.EmailSendRequest;
 import com.formfill.api.dto.EmailSendResponse;
+import com.formfill.api.jfr.AttachmentReadEvent;
+import com.formfill.api.jfr.SmtpSendEvent;
+import com.formfill.api.store.BufferPool;
+import com.formfill.api.store.OutputStore;
+import com.formfill.api.store.PooledBuffer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
@@ -17,10 +21,9 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.io.UnsupportedEncodingException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
 
 /**
  * 邮件发送服务
@@ -30,27 +33,46 @@ public class EmailService {
     
     private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
     
+    private static final int ATTACHMENT_BUFFER_SIZE = 256 * 1024;
+    
     @Autowired
     private JavaMailSender mailSender;
     
     @Autowired
     private EmailConfig emailConfig;
     
+    @Autowired
+    private OutputStore outputStore;
+    
+    @Autowired
+    private BufferPool bufferPool;
+    
     /**
      * 发送带附件的邮件
      */
     public EmailSendResponse sendEmailWithAttachment(EmailSendRequest request) {
+        PooledBuffer attachmentData = null;
         try {
             logger.info("开始发送邮件，表单名称: {}, 下载链接: {}, 收件人: {}", 
                 request.getFormName(), request.getDownloadUrl(), request.getMailTo());
             
-            byte[] attachmentData = null;
             String fileName = null;
             
-            // 1. 如果有下载链接，则读取本地文件作为附件
+            // 1. 如果有下载链接，则从输出存储读取文件作为附件
             if (request.getDownloadUrl() != null && !request.getDownloadUrl().trim().isEmpty()) {
-                attachmentData = readLocalFile(request.getDownloadUrl());
                 fileName = extractFileNameFromPath(request.getDownloadUrl());
+                AttachmentReadEvent readEvent = new AttachmentReadEvent();
+                readEvent.begin();
+                long readStart = RequestTimings.mark();
+                attachmentData = readOutputFile(request.getDownloadUrl());
+                RequestTimings.record(RequestTimings.READ, readStart);
+                readEvent.end();
+                if (readEvent.shouldCommit()) {
+                    readEvent.formName = request.getFormName();
+                    readEvent.fileName = fileName;
+                    readEvent.bytes = attachmentData.size();
+                    readEvent.commit();
+                }
                 logger.info("附件准备完成: {}", fileName);
             } else {
                 logger.info("未提供下载链接，将发送不带附件的邮件");
@@ -91,7 +113,22 @@ public class EmailService {
             }
             
             // 4. 发送邮件
-            sendMail(recipients, ccRecipients, subject, content, fileName, attachmentData);
+            SmtpSendEvent sendEvent = new SmtpSendEvent();
+            sendEvent.begin();
+            long smtpStart = RequestTimings.mark();
+            try {
+                sendMail(recipients, ccRecipients, subject, content, fileName, attachmentData);
+                sendEvent.success = true;
+            } finally {
+                RequestTimings.record(RequestTimings.SMTP, smtpStart);
+                sendEvent.end();
+                if (sendEvent.shouldCommit()) {
+                    sendEvent.formName = request.getFormName();
+                    sendEvent.recipientCount = recipients.length + (ccRecipients != null ? ccRecipients.length : 0);
+                    sendEvent.bytes = attachmentData != null ? attachmentData.size() : 0;
+                    sendEvent.commit();
+                }
+            }
             
             logger.info("邮件发送成功，收件人: {}, 抄送: {}, 主题: {}", 
                 request.getMailTo(), request.getMailCc(), subject);
@@ -116,37 +153,46 @@ public class EmailService {
                 "邮件发送失败: " + e.getMessage(),
                 "EMAIL_SEND_ERROR"
             );
+        } finally {
+            // 附件在发送时才被读取，发送结束后才能归还缓冲区
+            if (attachmentData != null) {
+                attachmentData.close();
+            }
         }
     }
     
     /**
-     * 从本地output目录读取文件
+     * 从输出存储读取文件到池中的缓冲区，调用方用完后关闭
      */
-    private byte[] readLocalFile(String downloadPath) {
+    private PooledBuffer readOutputFile(String downloadPath) {
+        // 从路径中提取文件名
+        String fileName = extractFileNameFromPath(downloadPath);
+        if (!OutputStore.isValidName(fileName)) {
+            throw new RuntimeException("文件不存在: " + fileName);
+        }
+        String location = outputStore.locationOf(fileName);
         try {
-            // 从路径中提取文件名
-            String fileName = extractFileNameFromPath(downloadPath);
-            
-            // 构建完整的文件路径
-            Path filePath = Paths.get("output", fileName);
-            
-            logger.info("正在读取本地文件: {}", filePath.toString());
-            
-            // 检查文件是否存在
-            if (!Files.exists(filePath)) {
-                throw new RuntimeException("文件不存在: " + filePath.toString());
-            }
+            logger.info("正在读取输出文件: {}", location);
             
             // 读取文件内容
-            byte[] data = Files.readAllBytes(filePath);
+            PooledBuffer data = bufferPool.acquire(ATTACHMENT_BUFFER_SIZE);
+            try (InputStream in = outputStore.open(fileName)) {
+                data.readFrom(in);
+            } catch (IOException | RuntimeException e) {
+                data.close();
+                throw e;
+            }
             
-            if (data.length == 0) {
-                throw new RuntimeException("文件为空: " + filePath.toString());
+            if (data.size() == 0) {
+                data.close();
+                throw new RuntimeException("文件为空: " + location);
             }
             
-            logger.info("文件读取成功，大小: {} bytes", data.length);
+            logger.info("文件读取成功，大小: {} bytes", data.size());
             return data;
             
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("文件不存在: " + location);
         } catch (IOException e) {
             logger.error("文件读取失败: {}", e.getMessage(), e);
             throw new RuntimeException("文件读取失败: " + e.getMessage());
@@ -213,7 +259,7 @@ public class EmailService {
      * 发送邮件
      */
     private void sendMail(String[] recipients, String[] ccRecipients, String subject, String content, 
-                         String fileName, byte[] attachmentData) throws MessagingException, UnsupportedEncodingException {
+                         String fileName, PooledBuffer attachmentData) throws MessagingException, UnsupportedEncodingException {
         
         MimeMessage message = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
@@ -241,9 +287,8 @@ public class EmailService {
         helper.setText(content, false); // false表示纯文本格式
         
         // 添加附件
-        if (attachmentData != null && attachmentData.length > 0) {
-            ByteArrayResource attachment = new ByteArrayResource(attachmentData);
-            helper.addAttachment(fileName, attachment);
+        if (attachmentData != null && attachmentData.size() > 0) {
+            helper.addAttachment(fileName, attachmentData::newInputStream);
         }
         
         // 发送邮件
@@ -0,0 +1,147 @@
+package com.formfill.api.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 加权公平请求调度器
+ * 
+ * 同时处理的请求数达到上限后，新请求按调用方进入各自的等待队列。
+ * 有名额释放时按加权轮询在有等待请求的调用方之间分配：每轮每个调用方最多放行 weight 个请求，
+ * 因此一个高频调用方积压再多，也不会让其它调用方一直排在它后面（不是先到先服务）。
+ */
+public class FairRequestScheduler {
+    
+    private final int maxConcurrent;
+    private final int maxQueuePerClient;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, ClientQueue> queues = new HashMap<>();
+    private final ArrayDeque<ClientQueue> activeRing = new ArrayDeque<>();
+    private int inFlight;
+    private int waiting;
+    
+    public FairRequestScheduler(int maxConcurrent, int maxQueuePerClient) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueuePerClient = maxQueuePerClient;
+    }
+    
+    /**
+     * 申请处理名额，必要时在调用方自己的队列中等待
+     * 
+     * @return 获得名额返回true；队列已满或等待超时返回false
+     */
+    public boolean acquire(String client, int weight, long timeoutMs) throws InterruptedException {
+        lock.lock();
+        try {
+            if (waiting == 0 && inFlight < maxConcurrent) {
+                inFlight++;
+                return true;
+            }
+            ClientQueue queue = queues.computeIfAbsent(client, key -> new ClientQueue(key, weight));
+            if (queue.waiters.size() >= maxQueuePerClient) {
+                return false;
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.waiters.addLast(waiter);
+            waiting++;
+            if (queue.waiters.size() == 1) {
+                queue.credit = queue.weight;
+                activeRing.addLast(queue);
+            }
+            
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            try {
+                while (!waiter.granted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } finally {
+                if (!waiter.granted) {
+                    // 超时或被中断：从队列中撤回
+                    queue.waiters.remove(waiter);
+                    waiting--;
+                    if (queue.waiters.isEmpty()) {
+                        activeRing.remove(queue);
+                        queues.remove(queue.client);
+                    }
+                }
+            }
+            return waiter.granted;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * 归还名额，并按加权轮询唤醒下一个等待者
+     */
+    public void release() {
+        lock.lock();
+        try {
+            ClientQueue queue = activeRing.peekFirst();
+            if (queue == null) {
+                inFlight--;
+                return;
+            }
+            Waiter next = queue.waiters.pollFirst();
+            waiting--;
+            next.granted = true;
+            next.condition.signal();
+            // 名额直接转交给被唤醒的请求，inFlight不变
+            queue.credit--;
+            activeRing.pollFirst();
+            if (queue.waiters.isEmpty()) {
+                queues.remove(queue.client);
+            } else if (queue.credit > 0) {
+                activeRing.addFirst(queue);
+            } else {
+                queue.credit = queue.weight;
+                activeRing.addLast(queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private static final class ClientQueue {
+        final String client;
+        final int weight;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        int credit;
+        
+        ClientQueue(String client, int weight) {
+            this.client = client;
+            this.weight = Math.max(weight, 1);
+        }
+    }
+    
+    private static final class Waiter {
+        final Condition condition;
+        boolean granted;
+        
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
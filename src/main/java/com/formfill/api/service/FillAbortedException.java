@@ -0,0 +1,46 @@
+package com.formfill.api.service;
+
+/**
+ * 填写在检查点上因超过客户端期限或被取消而中止时抛出
+ */
+public class FillAbortedException extends RuntimeException {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private final FillDeadline.Reason reason;
+    private final String phase;
+    private final long timeoutMs;
+    
+    public FillAbortedException(FillDeadline.Reason reason, String phase, long timeoutMs) {
+        super(reason == FillDeadline.Reason.CANCELLED
+                ? "Fill cancelled during " + phase
+                : "Deadline of " + timeoutMs + " ms exceeded during " + phase, null, false, false);
+        this.reason = reason;
+        this.phase = phase;
+        this.timeoutMs = timeoutMs;
+    }
+    
+    /**
+     * 在异常链中查找 FillAbortedException；POI 保存包时会把流异常包装为 OpenXML4JRuntimeException
+     */
+    public static FillAbortedException causeOf(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof FillAbortedException) {
+                return (FillAbortedException) t;
+            }
+        }
+        return null;
+    }
+    
+    public FillDeadline.Reason getReason() {
+        return reason;
+    }
+    
+    public String getPhase() {
+        return phase;
+    }
+    
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+}
@@ -0,0 +1,150 @@
+package com.formfill.api.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 填写请求的截止时间与取消标记，绑定到当前处理线程
+ *
+ * 入口（控制器、响应式处理器、异步任务）创建后调用 attach()，服务层在查找、解析、逐字段填写、
+ * 重算与序列化写出等阶段调用 checkpoint()：已超过截止时间或已被取消时抛出 FillAbortedException。
+ * 未绑定时 checkpoint() 直接返回，开销仅为一次ThreadLocal读取。
+ * cancel() 可由其他线程调用（如连接断开的回调），处理线程在下一个检查点退出。
+ */
+public final class FillDeadline {
+    
+    public static final String ADMISSION = "admission";
+    
+    public enum Reason {
+        DEADLINE_EXCEEDED, CANCELLED;
+        
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+    
+    private static final ThreadLocal<FillDeadline> CURRENT = new ThreadLocal<>();
+    
+    private final long timeoutMs;
+    private final long deadlineNanos;
+    private volatile boolean cancelled;
+    
+    private FillDeadline(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        this.deadlineNanos = timeoutMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : System.nanoTime();
+    }
+    
+    /**
+     * 从现在起 timeoutMs 毫秒后到期；timeoutMs 不大于0时视为已到期
+     */
+    public static FillDeadline after(long timeoutMs) {
+        return new FillDeadline(Math.max(0L, timeoutMs));
+    }
+    
+    /**
+     * 不限时间，只能被取消
+     */
+    public static FillDeadline unbounded() {
+        return new FillDeadline(-1L);
+    }
+    
+    /**
+     * 绑定到当前线程，处理结束后须调用 clear()
+     */
+    public FillDeadline attach() {
+        CURRENT.set(this);
+        return this;
+    }
+    
+    public static FillDeadline current() {
+        return CURRENT.get();
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+    
+    /**
+     * 协作式检查点：当前线程的请求已到期或已取消时抛出 FillAbortedException
+     */
+    public static void checkpoint(String phase) {
+        FillDeadline deadline = CURRENT.get();
+        if (deadline != null) {
+            deadline.check(phase);
+        }
+    }
+    
+    /**
+     * 当前线程请求的剩余时间（纳秒），未绑定或不限时间时为 Long.MAX_VALUE
+     */
+    public static long remainingNanos() {
+        FillDeadline deadline = CURRENT.get();
+        return deadline != null && deadline.isBounded()
+                ? Math.max(0L, deadline.deadlineNanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+    
+    /**
+     * 包装输出流，每次写入前检查截止时间，使 workbook.write 可以在序列化中途停止；未绑定时原样返回
+     */
+    public static OutputStream guardWrites(OutputStream out, String phase) {
+        FillDeadline deadline = CURRENT.get();
+        return deadline != null ? new GuardedOutputStream(out, deadline, phase) : out;
+    }
+    
+    public void check(String phase) {
+        if (cancelled) {
+            throw new FillAbortedException(Reason.CANCELLED, phase, timeoutMs);
+        }
+        if (isBounded() && System.nanoTime() - deadlineNanos >= 0) {
+            throw new FillAbortedException(Reason.DEADLINE_EXCEEDED, phase, timeoutMs);
+        }
+    }
+    
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    public boolean isBounded() {
+        return timeoutMs >= 0;
+    }
+    
+    /**
+     * 客户端给出的期限（毫秒），不限时间时为-1
+     */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+    
+    /**
+     * 写入前执行检查点的输出流
+     */
+    private static final class GuardedOutputStream extends FilterOutputStream {
+        
+        private final FillDeadline deadline;
+        private final String phase;
+        
+        GuardedOutputStream(OutputStream out, FillDeadline deadline, String phase) {
+            super(out);
+            this.deadline = deadline;
+            this.phase = phase;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            deadline.check(phase);
+            out.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            deadline.check(phase);
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 填写请求期限服务
+ *
+ * 客户端可通过 X-Deadline-Ms 请求头或请求体的 deadlineMs 字段给出剩余时间（毫秒，两者都给出时取较小值），
+ * 未给出时使用 formfill.deadline.default-ms。使用相对时长而不是绝对时间，避免客户端与服务器时钟偏差。
+ *
+ * 中止的填写按原因分别计数：formfill.fill.aborted（reason=deadline_exceeded/cancelled，phase=中止时所在阶段），
+ * 可与客户端超时设置对照调整。
+ */
+@Service
+public class FillDeadlineService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FillDeadlineService.class);
+    
+    public static final String DEADLINE_HEADER = "X-Deadline-Ms";
+    
+    // nginx 约定的 "Client Closed Request"，客户端通常已收不到
+    public static final int CLIENT_CLOSED_REQUEST = 499;
+    
+    private final FormFillConfig.Deadline config;
+    private final MeterRegistry meterRegistry;
+    
+    @Autowired
+    public FillDeadlineService(FormFillConfig formFillConfig, MeterRegistry meterRegistry) {
+        this.config = formFillConfig.getDeadline();
+        this.meterRegistry = meterRegistry;
+    }
+    
+    /**
+     * 为同步请求创建期限（尚未绑定线程）
+     *
+     * @param headerMs X-Deadline-Ms 请求头，可为null；不大于0表示客户端已无剩余时间
+     * @param fieldMs 请求体中的 deadlineMs，可为null
+     */
+    public FillDeadline create(Long headerMs, Long fieldMs) {
+        Long timeoutMs = headerMs;
+        if (fieldMs != null && (timeoutMs == null || fieldMs < timeoutMs)) {
+            timeoutMs = fieldMs;
+        }
+        if (timeoutMs == null && config.getDefaultMs() > 0) {
+            timeoutMs = config.getDefaultMs();
+        }
+        return timeoutMs != null ? FillDeadline.after(timeoutMs) : FillDeadline.unbounded();
+    }
+    
+    /**
+     * 记录一次中止并生成错误响应体
+     */
+    public Map<String, Object> aborted(FillAbortedException e, String target) {
+        meterRegistry.counter("formfill.fill.aborted", "reason", e.getReason().getName(), "phase", e.getPhase()).increment();
+        if (e.getReason() == FillDeadline.Reason.CANCELLED) {
+            logger.info("Fill for {} cancelled during {}", target, e.getPhase());
+        } else {
+            logger.warn("Fill for {} exceeded its {} ms deadline during {}", target, e.getTimeoutMs(), e.getPhase());
+        }
+        
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", e.getMessage());
+        errorResponse.put("code", e.getReason() == FillDeadline.Reason.CANCELLED ? "REQUEST_CANCELLED" : "DEADLINE_EXCEEDED");
+        errorResponse.put("phase", e.getPhase());
+        if (e.getTimeoutMs() >= 0) {
+            errorResponse.put("deadline_ms", e.getTimeoutMs());
+        }
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        return errorResponse;
+    }
+    
+    /**
+     * 中止对应的HTTP状态：超过期限为504，被取消为499
+     */
+    public int statusOf(FillAbortedException e) {
+        return e.getReason() == FillDeadline.Reason.CANCELLED ? CLIENT_CLOSED_REQUEST : 504;
+    }
+}
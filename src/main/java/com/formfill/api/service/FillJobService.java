@@ -0,0 +1,635 @@
+package com.formfill.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.formfill.api.dto.CombinedFillRequest;
+import com.formfill.api.dto.FillJobRequest;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.dto.FormFillRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步填写任务服务
+ *
+ * 提交时同步完成标签解析与预检（请求错误立即返回），通过后放入所属通道的有界队列并返回任务ID。
+ * 两个通道各有独立的线程池与队列：interactive 处理小的单表单填写，bulk 处理大表单与多表单合并，
+ * 小表单不会排在大批量任务之后；显式指定 interactive 的大表单或合并任务在提交时被拒绝。
+ * 任务执行时同样经过准入控制，准入被拒时按 Retry-After 等待后重试，而不是失败。
+ * 任务结束后若指定了 callbackUrl，以异步HTTP请求POST回调任务状态，失败时按指数退避定时重试，
+ * 慢速的回调地址不会推迟其他任务的回调。回调地址只能是公网地址，或 formfill.jobs.callback-allowed-hosts 中列出的主机，
+ * 提交时与每次发送前都会检查，防止借回调访问本机、内网或云元数据服务。
+ * 请求中的 deadlineMs 从提交时开始计时（包含排队时间）；任务可被取消，排队中的任务直接移出队列，
+ * 运行中的任务在下一个检查点停止。
+ *
+ * 指标（按 lane 标签区分）：formfill.jobs.wait（排队时间）、formfill.jobs.run（执行时间）、
+ * formfill.jobs.completed（outcome=succeeded/failed/cancelled）、formfill.jobs.queued 与 formfill.jobs.running。
+ */
+@Service
+public class FillJobService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FillJobService.class);
+    
+    public enum Lane {
+        INTERACTIVE, BULK;
+        
+        public String getName() {
+            return name().toLowerCase();
+        }
+    }
+    
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+    
+    @Autowired
+    private FillRequestService fillRequestService;
+    
+    @Autowired
+    private CombinedFillRequestService combinedFillRequestService;
+    
+    @Autowired
+    private AdmissionControlService admissionControlService;
+    
+    @Autowired
+    private FillDeadlineService fillDeadlineService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    private final FormFillConfig formFillConfig;
+    private final FormFillConfig.Jobs config;
+    private final Map<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService callbacks;
+    private final HttpClient httpClient;
+    
+    @Autowired
+    public FillJobService(FormFillConfig formFillConfig, MeterRegistry meterRegistry) {
+        this.formFillConfig = formFillConfig;
+        this.config = formFillConfig.getJobs();
+        lanes.put(Lane.INTERACTIVE, new LaneExecutor(Lane.INTERACTIVE, config.getInteractiveThreads(),
+                config.getInteractiveQueueCapacity(), meterRegistry));
+        lanes.put(Lane.BULK, new LaneExecutor(Lane.BULK, config.getBulkThreads(), config.getBulkQueueCapacity(), meterRegistry));
+        // 只负责发起异步请求与退避定时，不在这里等待回调响应
+        this.callbacks = Executors.newSingleThreadScheduledExecutor(namedThreads("fill-job-callback"));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(config.getCallbackTimeoutMs()))
+                .build();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        for (LaneExecutor lane : lanes.values()) {
+            lane.executor.shutdownNow();
+        }
+        callbacks.shutdownNow();
+    }
+    
+    /**
+     * 校验并提交任务
+     *
+     * @return 成功时为任务状态，失败时带 code（TEMPLATE_NOT_FOUND、SERVER_BUSY、LANE_NOT_ALLOWED 或请求错误）
+     */
+    public Map<String, Object> submit(FillJobRequest request) throws Exception {
+        purgeExpired();
+        
+        String callbackUrl = request.getCallbackUrl();
+        if (callbackUrl != null && !callbackUrl.isBlank()) {
+            if (!isHttpUrl(callbackUrl)) {
+                return failure("callbackUrl must be an absolute http(s) URL", "INVALID_CALLBACK_URL", null);
+            }
+            String rejected = checkCallbackTarget(URI.create(callbackUrl.trim()));
+            if (rejected != null) {
+                return failure(rejected, "INVALID_CALLBACK_URL", null);
+            }
+        }
+        
+        Prepared prepared = request.getForm() != null ? prepare(request.getForm()) : prepare(request.getCombined());
+        if (prepared.error != null) {
+            return prepared.error;
+        }
+        
+        // interactive 只接受小的单表单，大任务不能借此插到小表单前面
+        boolean small = request.getForm() != null && prepared.fieldCount <= config.getInteractiveMaxFields();
+        Lane lane;
+        if (request.getLane() != null) {
+            lane = Lane.valueOf(request.getLane().toUpperCase());
+            if (lane == Lane.INTERACTIVE && !small) {
+                return failure("Lane interactive only accepts single forms with at most " + config.getInteractiveMaxFields() + " fields",
+                        "LANE_NOT_ALLOWED", null);
+            }
+        } else {
+            lane = small ? Lane.INTERACTIVE : Lane.BULK;
+        }
+        
+        // 任务没有等待中的客户端连接，不使用同步请求的默认期限
+        Long deadlineMs = request.getForm() != null ? request.getForm().getDeadlineMs() : request.getCombined().getDeadlineMs();
+        FillDeadline deadline = deadlineMs != null ? FillDeadline.after(deadlineMs) : FillDeadline.unbounded();
+        
+        Job job = new Job(UUID.randomUUID().toString(), lane, prepared.description,
+                callbackUrl != null && !callbackUrl.isBlank() ? callbackUrl.trim() : null, deadline);
+        job.task = () -> run(job, prepared.work);
+        jobs.put(job.id, job);
+        try {
+            lanes.get(lane).executor.execute(job.task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            logger.warn("Job queue full for lane {}, rejecting job for {}", lane.getName(), prepared.description);
+            Map<String, Object> errorResponse = failure("Job queue is full for lane: " + lane.getName(), "SERVER_BUSY", null);
+            errorResponse.put("retry_after", formFillConfig.getAdmission().getRetryAfterSeconds());
+            return errorResponse;
+        }
+        logger.info("Queued job {} for {} on lane {} ({} field(s))", job.id, prepared.description, lane.getName(), prepared.fieldCount);
+        return toMap(job);
+    }
+    
+    /**
+     * 任务状态，未知或已过期的任务返回null
+     */
+    public Map<String, Object> getStatus(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? toMap(job) : null;
+    }
+    
+    /**
+     * 取消任务：排队中的任务直接移出队列并结束，运行中的任务在下一个检查点停止
+     *
+     * @return 任务状态；任务已结束时带 code JOB_FINISHED；未知或已过期的任务返回null
+     */
+    public Map<String, Object> cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        if (job.finishedAt != null) {
+            Map<String, Object> errorResponse = failure("Job already finished: " + job.state.name().toLowerCase(), "JOB_FINISHED", null);
+            errorResponse.put("state", job.state.name().toLowerCase());
+            return errorResponse;
+        }
+        
+        job.deadline.cancel();
+        LaneExecutor lane = lanes.get(job.lane);
+        if (lane.executor.remove(job.task)) {
+            Map<String, Object> aborted = fillDeadlineService.aborted(
+                    new FillAbortedException(FillDeadline.Reason.CANCELLED, "queue", job.deadline.getTimeoutMs()), job.description);
+            job.error = (String) aborted.get("error");
+            job.code = (String) aborted.get("code");
+            job.state = State.CANCELLED;
+            job.finishedAt = LocalDateTime.now();
+            job.finishedMillis = System.currentTimeMillis();
+            lane.cancelled.increment();
+            logger.info("Job {} cancelled while queued on lane {}", job.id, job.lane.getName());
+            scheduleCallback(job);
+        } else {
+            logger.info("Cancellation requested for running job {}", job.id);
+        }
+        Map<String, Object> status = toMap(job);
+        status.put("cancelRequested", true);
+        return status;
+    }
+    
+    /**
+     * 各通道的队列与耗时统计
+     */
+    public List<Map<String, Object>> getLaneStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (LaneExecutor lane : lanes.values()) {
+            Map<String, Object> stat = new LinkedHashMap<>();
+            stat.put("lane", lane.lane.getName());
+            stat.put("threads", lane.executor.getMaximumPoolSize());
+            stat.put("queued", lane.executor.getQueue().size());
+            stat.put("queueCapacity", lane.capacity);
+            stat.put("running", lane.executor.getActiveCount());
+            stat.put("succeeded", (long) lane.succeeded.count());
+            stat.put("failed", (long) lane.failed.count());
+            stat.put("cancelled", (long) lane.cancelled.count());
+            stat.put("waitMeanMs", Math.round(lane.waitTimer.mean(TimeUnit.MILLISECONDS)));
+            stat.put("waitMaxMs", Math.round(lane.waitTimer.max(TimeUnit.MILLISECONDS)));
+            stat.put("runMeanMs", Math.round(lane.runTimer.mean(TimeUnit.MILLISECONDS)));
+            stat.put("runMaxMs", Math.round(lane.runTimer.max(TimeUnit.MILLISECONDS)));
+            stats.add(stat);
+        }
+        return stats;
+    }
+    
+    private Prepared prepare(FormFillRequest form) throws Exception {
+        FillRequestService.Prepared prepared = fillRequestService.prepare(form);
+        if (prepared.isRejected()) {
+            return Prepared.failed(prepared.getRejection().getBody());
+        }
+        List<String> formNames = List.of(prepared.getFormName());
+        Callable<Map<String, Object>> work = () ->
+                admit(formNames, prepared.getFieldCount(), () -> fillRequestService.fillAdmitted(prepared).getBody());
+        return new Prepared(prepared.getFormName(), prepared.getFieldCount(), work);
+    }
+    
+    private Prepared prepare(CombinedFillRequest combined) throws Exception {
+        CombinedFillRequestService.Prepared prepared = combinedFillRequestService.prepare(combined);
+        if (prepared.isRejected()) {
+            return Prepared.failed(prepared.getRejection().getBody());
+        }
+        Callable<Map<String, Object>> work = () -> admit(prepared.getFormNames(), prepared.getFieldCount(),
+                () -> combinedFillRequestService.fillAdmitted(prepared).getBody());
+        return new Prepared("combined " + prepared.getFormNames(), prepared.getFieldCount(), work);
+    }
+    
+    /**
+     * 任务不受请求超时限制，准入被拒时等待 Retry-After 后重试
+     */
+    private <T> T admit(List<String> formNames, int fieldCount, Callable<T> work) throws Exception {
+        while (true) {
+            try {
+                return admissionControlService.call(formNames, fieldCount, work);
+            } catch (AdmissionRejectedException e) {
+                logger.debug("Job admission rejected, retrying in {} s: {}", e.getRetryAfterSeconds(), e.getMessage());
+                Thread.sleep(Math.max(1, e.getRetryAfterSeconds()) * 1000L);
+            }
+        }
+    }
+    
+    private void run(Job job, Callable<Map<String, Object>> work) {
+        LaneExecutor lane = lanes.get(job.lane);
+        long started = System.nanoTime();
+        job.waitNanos = started - job.submittedNanos;
+        job.startedAt = LocalDateTime.now();
+        job.state = State.RUNNING;
+        lane.waitTimer.record(job.waitNanos, TimeUnit.NANOSECONDS);
+        
+        RequestTimings timings = formFillConfig.getTiming().isEnabled() ? RequestTimings.start() : null;
+        job.deadline.attach();
+        try {
+            Map<String, Object> result = new LinkedHashMap<>(work.call());
+            if (Boolean.TRUE.equals(result.get("success"))) {
+                String outputFile = (String) result.get("output_file");
+                result.put("download_url", "/api/download/" + Paths.get(outputFile).getFileName().toString());
+                result.remove("fill_method");
+                if (timings != null) {
+                    result.put("timings", timings.toMillis());
+                }
+                job.result = result;
+                job.state = State.SUCCEEDED;
+                lane.succeeded.increment();
+            } else {
+                job.error = String.valueOf(result.get("error"));
+                job.code = (String) result.get("code");
+                job.state = State.FAILED;
+                lane.failed.increment();
+            }
+        } catch (FillAbortedException e) {
+            Map<String, Object> aborted = fillDeadlineService.aborted(e, job.description);
+            job.error = (String) aborted.get("error");
+            job.code = (String) aborted.get("code");
+            if (e.getReason() == FillDeadline.Reason.CANCELLED) {
+                job.state = State.CANCELLED;
+                lane.cancelled.increment();
+            } else {
+                job.state = State.FAILED;
+                lane.failed.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error = "Job interrupted";
+            job.code = "INTERRUPTED";
+            job.state = State.FAILED;
+            lane.failed.increment();
+        } catch (Exception e) {
+            logger.error("Job {} failed: {}", job.id, e.getMessage(), e);
+            job.error = e.getMessage();
+            job.code = "INTERNAL_ERROR";
+            job.state = State.FAILED;
+            lane.failed.increment();
+        } finally {
+            RequestTimings.clear();
+            FillDeadline.clear();
+            job.runNanos = System.nanoTime() - started;
+            job.finishedAt = LocalDateTime.now();
+            job.finishedMillis = System.currentTimeMillis();
+            lane.runTimer.record(job.runNanos, TimeUnit.NANOSECONDS);
+        }
+        logger.info("Job {} {} on lane {}: waited {} ms, ran {} ms", job.id, job.state.name().toLowerCase(),
+                job.lane.getName(), job.waitNanos / 1_000_000, job.runNanos / 1_000_000);
+        scheduleCallback(job);
+    }
+    
+    private void scheduleCallback(Job job) {
+        if (job.callbackUrl != null) {
+            try {
+                callbacks.execute(() -> sendCallback(job, 1));
+            } catch (RejectedExecutionException e) {
+                logger.warn("Callback for job {} not sent: executor stopped", job.id);
+            }
+        }
+    }
+    
+    /**
+     * 发起第 attempt 次回调；响应在 HttpClient 的线程上处理，失败时定时发起下一次
+     */
+    private void sendCallback(Job job, int attempt) {
+        // 地址在提交后可能解析到别的地址，每次发送前重新检查
+        String rejected = checkCallbackTarget(URI.create(job.callbackUrl));
+        if (rejected != null) {
+            job.callbackState = "blocked";
+            logger.warn("Callback for job {} not sent: {}", job.id, rejected);
+            return;
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(toMap(job));
+        } catch (Exception e) {
+            logger.error("Could not serialize callback for job {}: {}", job.id, e.getMessage());
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(job.callbackUrl))
+                .timeout(Duration.ofMillis(config.getCallbackTimeoutMs()))
+                .header("Content-Type", "application/json")
+                .header("X-FormFill-Job-Id", job.id)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        
+        job.callbackAttempts = attempt;
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (response != null) {
+                job.callbackStatus = response.statusCode();
+                if (response.statusCode() / 100 == 2) {
+                    job.callbackState = "delivered";
+                    logger.info("Delivered callback for job {} to {}", job.id, job.callbackUrl);
+                    return;
+                }
+                logger.warn("Callback for job {} returned HTTP {} (attempt {})", job.id, response.statusCode(), attempt);
+            } else {
+                logger.warn("Callback for job {} failed (attempt {}): {}", job.id, attempt, error.getMessage());
+            }
+            if (attempt >= config.getCallbackAttempts()) {
+                job.callbackState = "failed";
+                return;
+            }
+            try {
+                callbacks.schedule(() -> sendCallback(job, attempt + 1), 1000L << (attempt - 1), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                job.callbackState = "failed";
+            }
+        });
+    }
+    
+    /**
+     * 检查回调地址：配置了 callback-allowed-hosts 时只允许列出的主机（精确匹配，或 *.example.com 匹配其子域名）；
+     * 未配置时主机解析出的所有地址都必须是公网地址
+     *
+     * @return null表示允许，否则为拒绝原因
+     */
+    private String checkCallbackTarget(URI uri) {
+        String host = uri.getHost();
+        List<String> allowedHosts = config.getCallbackAllowedHosts();
+        if (allowedHosts != null && !allowedHosts.isEmpty()) {
+            String name = host.toLowerCase(Locale.ROOT);
+            for (String allowed : allowedHosts) {
+                String pattern = allowed.trim().toLowerCase(Locale.ROOT);
+                if (pattern.equals(name) || (pattern.startsWith("*.") && name.endsWith(pattern.substring(1)))) {
+                    return null;
+                }
+            }
+            return "callbackUrl host is not in formfill.jobs.callback-allowed-hosts: " + host;
+        }
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            return "callbackUrl host cannot be resolved: " + host;
+        }
+        for (InetAddress address : addresses) {
+            if (!isPublicAddress(address)) {
+                return "callbackUrl must not point to a loopback, private or link-local address: " + host;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isPublicAddress(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            int first = bytes[0] & 0xff;
+            int second = bytes[1] & 0xff;
+            // 0.0.0.0/8、100.64.0.0/10（运营商NAT）、192.0.0.0/24、198.18.0.0/15 与 240.0.0.0/4
+            return first != 0 && !(first == 100 && (second & 0xc0) == 64)
+                    && !(first == 192 && second == 0 && bytes[2] == 0)
+                    && !(first == 198 && (second & 0xfe) == 18) && first < 240;
+        }
+        // fc00::/7（唯一本地地址）与 ::/96（内嵌IPv4地址）
+        if ((bytes[0] & 0xfe) == 0xfc) {
+            return false;
+        }
+        for (int i = 0; i < 12; i++) {
+            if (bytes[i] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(config.getRetentionMinutes());
+        jobs.values().removeIf(job -> job.finishedMillis > 0 && job.finishedMillis < cutoff);
+    }
+    
+    private Map<String, Object> toMap(Job job) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("success", true);
+        status.put("jobId", job.id);
+        status.put("lane", job.lane.getName());
+        status.put("state", job.state.name().toLowerCase());
+        status.put("target", job.description);
+        status.put("submittedAt", job.submittedAt.toString());
+        if (job.deadline.isBounded()) {
+            status.put("deadlineMs", job.deadline.getTimeoutMs());
+        }
+        if (job.startedAt != null) {
+            status.put("startedAt", job.startedAt.toString());
+            status.put("queueWaitMs", job.waitNanos / 1_000_000);
+        }
+        if (job.finishedAt != null) {
+            status.put("finishedAt", job.finishedAt.toString());
+            status.put("runMs", job.runNanos / 1_000_000);
+        }
+        if (job.result != null) {
+            status.put("result", job.result);
+        }
+        if (job.error != null) {
+            status.put("error", job.error);
+            status.put("code", job.code);
+        }
+        if (job.callbackUrl != null) {
+            Map<String, Object> callback = new LinkedHashMap<>();
+            callback.put("url", job.callbackUrl);
+            callback.put("state", job.callbackState);
+            callback.put("attempts", job.callbackAttempts);
+            if (job.callbackStatus > 0) {
+                callback.put("status", job.callbackStatus);
+            }
+            status.put("callback", callback);
+        }
+        status.put("statusUrl", "/api/jobs/" + job.id);
+        return status;
+    }
+    
+    private boolean isHttpUrl(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            return ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) && uri.getHost() != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    private Map<String, Object> failure(String message, String code, Integer formIndex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        if (formIndex != null) {
+            errorResponse.put("form_index", formIndex);
+        }
+        return errorResponse;
+    }
+    
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * 预检通过的任务：执行体与用于选择通道的字段数；预检失败时只有 error
+     */
+    private static final class Prepared {
+        
+        private final String description;
+        private final int fieldCount;
+        private final Callable<Map<String, Object>> work;
+        private final Map<String, Object> error;
+        
+        Prepared(String description, int fieldCount, Callable<Map<String, Object>> work) {
+            this.description = description;
+            this.fieldCount = fieldCount;
+            this.work = work;
+            this.error = null;
+        }
+        
+        private Prepared(Map<String, Object> error) {
+            this.description = null;
+            this.fieldCount = 0;
+            this.work = null;
+            this.error = error;
+        }
+        
+        static Prepared failed(Map<String, Object> error) {
+            return new Prepared(error);
+        }
+    }
+    
+    /**
+     * 单个通道：固定大小的线程池、有界队列与按通道的指标
+     */
+    private static final class LaneExecutor {
+        
+        private final Lane lane;
+        private final int capacity;
+        private final ThreadPoolExecutor executor;
+        private final Timer waitTimer;
+        private final Timer runTimer;
+        private final Counter succeeded;
+        private final Counter failed;
+        private final Counter cancelled;
+        
+        LaneExecutor(Lane lane, int threads, int capacity, MeterRegistry meterRegistry) {
+            this.lane = lane;
+            this.capacity = capacity;
+            this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, capacity)), namedThreads("fill-job-" + lane.getName()));
+            String tag = lane.getName();
+            this.waitTimer = Timer.builder("formfill.jobs.wait").tag("lane", tag).register(meterRegistry);
+            this.runTimer = Timer.builder("formfill.jobs.run").tag("lane", tag).register(meterRegistry);
+            this.succeeded = meterRegistry.counter("formfill.jobs.completed", "lane", tag, "outcome", "succeeded");
+            this.failed = meterRegistry.counter("formfill.jobs.completed", "lane", tag, "outcome", "failed");
+            this.cancelled = meterRegistry.counter("formfill.jobs.completed", "lane", tag, "outcome", "cancelled");
+            Gauge.builder("formfill.jobs.queued", executor, e -> e.getQueue().size()).tag("lane", tag).register(meterRegistry);
+            Gauge.builder("formfill.jobs.running", executor, ThreadPoolExecutor::getActiveCount).tag("lane", tag).register(meterRegistry);
+        }
+    }
+    
+    /**
+     * 任务状态，由工作线程更新、查询线程读取
+     */
+    private static final class Job {
+        
+        private final String id;
+        private final Lane lane;
+        private final String description;
+        private final String callbackUrl;
+        private final FillDeadline deadline;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final long submittedNanos = System.nanoTime();
+        private volatile State state = State.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile long finishedMillis;
+        private volatile long waitNanos;
+        private volatile long runNanos;
+        private volatile Map<String, Object> result;
+        private volatile String error;
+        private volatile String code;
+        private volatile String callbackState = "pending";
+        private volatile int callbackAttempts;
+        private volatile int callbackStatus;
+        private Runnable task;
+        
+        Job(String id, Lane lane, String description, String callbackUrl, FillDeadline deadline) {
+            this.id = id;
+            this.lane = lane;
+            this.description = description;
+            this.callbackUrl = callbackUrl;
+            this.deadline = deadline;
+        }
+    }
+}
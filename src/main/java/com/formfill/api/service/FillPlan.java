@@ -0,0 +1,107 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 编译后的填写计划：字段顺序固定，坐标、单元格类型和样式策略在注册时已解析完毕
+ */
+public class FillPlan {
+    
+    /**
+     * 字段写入单元格时使用的值类型
+     */
+    public enum ValueType {
+        STRING, NUMBER, BOOLEAN, DATE, FORMULA
+    }
+    
+    private final String id;
+    private final String name;
+    private final String formName;
+    private final File templateFile;
+    private final String templateVersion;
+    private final String[] fieldNames;
+    private final int[] rows;
+    private final int[] cols;
+    private final ValueType[] types;
+    private final boolean[] keepTemplateStyle;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    
+    FillPlan(String id, String name, String formName, File templateFile, String templateVersion,
+             String[] fieldNames, int[] rows, int[] cols, ValueType[] types, boolean[] keepTemplateStyle) {
+        this.id = id;
+        this.name = name;
+        this.formName = formName;
+        this.templateFile = templateFile;
+        this.templateVersion = templateVersion;
+        this.fieldNames = fieldNames;
+        this.rows = rows;
+        this.cols = cols;
+        this.types = types;
+        this.keepTemplateStyle = keepTemplateStyle;
+    }
+    
+    /**
+     * 按字段顺序把位置参数组装成单元格批次，null 值的字段跳过
+     */
+    public CellBatch toCellBatch(List<String> values) {
+        CellBatch batch = new CellBatch(fieldNames.length);
+        for (int i = 0; i < fieldNames.length && i < values.size(); i++) {
+            if (values.get(i) != null) {
+                batch.add(rows[i], cols[i], values.get(i));
+            }
+        }
+        return batch;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getFormName() {
+        return formName;
+    }
+    
+    public File getTemplateFile() {
+        return templateFile;
+    }
+    
+    public String getTemplateVersion() {
+        return templateVersion;
+    }
+    
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+    
+    public String getFieldName(int index) {
+        return fieldNames[index];
+    }
+    
+    public int getRow(int index) {
+        return rows[index];
+    }
+    
+    public int getCol(int index) {
+        return cols[index];
+    }
+    
+    public ValueType getType(int index) {
+        return types[index];
+    }
+    
+    public boolean isKeepTemplateStyle(int index) {
+        return keepTemplateStyle[index];
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,147 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FillPlanRequest;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.util.CellReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 填写计划服务
+ * 
+ * 调用方为某个模板注册一次字段布局，之后只需按字段顺序提交值数组。
+ * 注册时完成坐标解析、类型与样式策略编译，并预热模板缓存，
+ * 每次填写只剩"复制模板 + 写入N个单元格 + 写出"。
+ * 内存中最多保留 MAX_PLANS 个计划，超出时移除最久未使用的，调用方收到404后重新注册即可。
+ */
+@Service
+public class FillPlanService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FillPlanService.class);
+    
+    // 内存中保留的计划数上限
+    private static final int MAX_PLANS = 1000;
+    
+    // 按访问顺序排列，超出上限时移除最久未使用的计划；以 plans 自身加锁
+    private final Map<String, FillPlan> plans = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FillPlan> eldest) {
+            if (size() > MAX_PLANS) {
+                logger.info("Evicted least recently used fill plan {} for form '{}'", eldest.getKey(), eldest.getValue().getFormName());
+                return true;
+            }
+            return false;
+        }
+    };
+    
+    @Autowired
+    private FormFillerService formFillerService;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    /**
+     * 注册填写计划
+     * 
+     * @param formName 表单名称，必须能找到对应模板
+     * @param request 字段布局
+     * @return 编译后的计划
+     * @throws IllegalArgumentException 模板不存在或字段定义不合法
+     */
+    public FillPlan register(String formName, FillPlanRequest request) throws IOException {
+        File templateFile = formFillerService.locateTemplate(formName);
+        if (templateFile == null) {
+            throw new IllegalArgumentException("Template not found for form: " + formName);
+        }
+        List<FillPlanRequest.Field> fields = request.getFields();
+        int count = fields.size();
+        String[] names = new String[count];
+        int[] rows = new int[count];
+        int[] cols = new int[count];
+        FillPlan.ValueType[] types = new FillPlan.ValueType[count];
+        boolean[] keepStyle = new boolean[count];
+        Set<String> seenNames = new HashSet<>();
+        
+        for (int i = 0; i < count; i++) {
+            FillPlanRequest.Field field = fields.get(i);
+            names[i] = field.getName();
+            if (!seenNames.add(field.getName())) {
+                throw new IllegalArgumentException("Duplicate field name: " + field.getName());
+            }
+            
+            if (field.getCell() != null && !field.getCell().isBlank()) {
+                CellReference ref;
+                try {
+                    ref = new CellReference(field.getCell().trim());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid cell reference for field '" + field.getName() + "': " + field.getCell());
+                }
+                rows[i] = ref.getRow() + 1;
+                cols[i] = ref.getCol() + 1;
+            } else if (field.getRow() != null && field.getCol() != null) {
+                rows[i] = field.getRow();
+                cols[i] = field.getCol();
+            } else {
+                throw new IllegalArgumentException("Field '" + field.getName() + "' needs either cell or row/col");
+            }
+            if (rows[i] < 1 || rows[i] > SpreadsheetVersion.EXCEL2007.getMaxRows()
+                    || cols[i] < 1 || cols[i] > SpreadsheetVersion.EXCEL2007.getMaxColumns()) {
+                throw new IllegalArgumentException("Field '" + field.getName() + "' is outside the Excel grid");
+            }
+            
+            types[i] = parseType(field);
+            keepStyle[i] = field.getStyle() == null || "template".equalsIgnoreCase(field.getStyle());
+            if (!keepStyle[i] && !"default".equalsIgnoreCase(field.getStyle())) {
+                throw new IllegalArgumentException("Unknown style for field '" + field.getName() + "': " + field.getStyle());
+            }
+        }
+        
+        // 预热模板缓存，首次填写无需再读磁盘
+        TemplateCache.CachedTemplate template = templateCache.get(templateFile);
+        
+        String planId = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        FillPlan plan = new FillPlan(planId, request.getName(), formName, templateFile, template.getVersion(),
+                names, rows, cols, types, keepStyle);
+        synchronized (plans) {
+            plans.put(planId, plan);
+        }
+        
+        logger.info("Registered fill plan {} for form '{}' with {} fields", planId, formName, count);
+        return plan;
+    }
+    
+    public FillPlan get(String planId) {
+        synchronized (plans) {
+            return plans.get(planId);
+        }
+    }
+    
+    public boolean remove(String planId) {
+        synchronized (plans) {
+            return plans.remove(planId) != null;
+        }
+    }
+    
+    private FillPlan.ValueType parseType(FillPlanRequest.Field field) {
+        if (field.getType() == null || field.getType().isBlank()) {
+            return FillPlan.ValueType.STRING;
+        }
+        try {
+            return FillPlan.ValueType.valueOf(field.getType().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown type for field '" + field.getName() + "': " + field.getType());
+        }
+    }
+}
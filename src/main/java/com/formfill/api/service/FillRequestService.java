@@ -0,0 +1,210 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import com.formfill.api.dto.FormFillRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单表单填写请求的处理流程：预检 -> 标签解析 -> 准入 -> 填写 -> 组装响应
+ *
+ * 同步接口（FormFillController）、响应式接口（ReactiveFormHandler）与异步任务（FillJobService）共用。
+ * prepare() 只做不涉及模板写入的检查，请求错误在这一步返回；异步任务在提交时调用 prepare()，
+ * 执行时再调用 fillAdmitted()，由任务自己处理准入（被拒时等待重试）。
+ */
+@Service
+public class FillRequestService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FillRequestService.class);
+    
+    private static final String[] RESULT_KEYS = {"filled_count", "total_fields", "template_used", "template_version",
+            "inserted_rows", "evaluated_count", "recalc_mode", "diff"};
+    
+    @Autowired
+    private FormFillerService formFillerService;
+    
+    @Autowired
+    private TemplateSchemaService templateSchemaService;
+    
+    @Autowired
+    private FormContentValidator formContentValidator;
+    
+    @Autowired
+    private AdmissionControlService admissionControlService;
+    
+    /**
+     * 预检填写内容并解析标签
+     *
+     * 坐标、标签个数与取值长度先于任何模板I/O校验；通过后才解析标签，再校验解析得到的坐标。
+     *
+     * @return 预检结果；isRejected() 为 true 时 getRejection() 给出错误响应
+     */
+    public Prepared prepare(FormFillRequest request) throws Exception {
+        CellBatch cells = request.toCellBatch();
+        // Pre-flight validation before any template I/O
+        FormContentValidator.Result validation = formContentValidator.validate(cells, request.getRepeats(), request.getLabels());
+        if (!validation.isValid()) {
+            return Prepared.rejected(invalidContent(validation));
+        }
+        
+        Map<String, String> labelCells = null;
+        if (request.getLabels() != null && !request.getLabels().isEmpty()) {
+            TemplateSchemaService.LabelResolution labels = templateSchemaService.resolveLabels(request.getFormName(),
+                    request.getTemplateVersion(), request.getLabels());
+            if (!labels.isTemplateFound()) {
+                return Prepared.rejected(new Outcome(404, failure("Template not found for form: " + request.getFormName(),
+                        "TEMPLATE_NOT_FOUND")));
+            }
+            if (!labels.isVersionFound()) {
+                return Prepared.rejected(new Outcome(404, failure("Template version not found for form " + request.getFormName()
+                        + ": " + request.getTemplateVersion(), "TEMPLATE_VERSION_NOT_FOUND")));
+            }
+            if (!labels.isResolved()) {
+                logger.warn("Unresolved labels for form '{}': {}", request.getFormName(), labels.getProblems());
+                Map<String, Object> errorResponse = failure("Some labels could not be resolved to a single input cell", "UNRESOLVED_LABELS");
+                errorResponse.put("label_problems", labels.getProblems());
+                return Prepared.rejected(new Outcome(400, errorResponse));
+            }
+            FormContentValidator.Result resolved = formContentValidator.validateResolved(labels.getCells());
+            if (!resolved.isValid()) {
+                return Prepared.rejected(invalidContent(resolved));
+            }
+            cells.addAll(labels.getCells());
+            labelCells = labels.getLabelCells();
+        }
+        return new Prepared(request, cells, labelCells, validation.getFieldCount(), null);
+    }
+    
+    /**
+     * 在准入许可内填写
+     *
+     * @throws AdmissionRejectedException 排队超时仍未获得许可
+     */
+    public Outcome fill(Prepared prepared) throws Exception {
+        return admissionControlService.call(prepared.getFormName(), prepared.getFieldCount(), () -> fillAdmitted(prepared));
+    }
+    
+    /**
+     * 填写并组装响应，调用方已持有准入许可
+     */
+    public Outcome fillAdmitted(Prepared prepared) throws Exception {
+        FormFillRequest request = prepared.request;
+        Map<String, Object> result = formFillerService.fillForm(request.getFormName(), prepared.cells, request.getRepeats(),
+                request.isRecalculate(), request.isDiff(), request.getTemplateVersion());
+        
+        Map<String, Object> response = new HashMap<>();
+        if (!Boolean.TRUE.equals(result.get("success"))) {
+            logger.error("Form filling failed: {}", result.get("error"));
+            response.put("success", false);
+            response.put("error", result.get("error"));
+            response.put("code", result.get("code"));
+            return new Outcome("TEMPLATE_VERSION_NOT_FOUND".equals(result.get("code")) ? 404 : 500, response);
+        }
+        
+        String outputFile = (String) result.get("output_file");
+        logger.info("Form filled successfully: {}", outputFile);
+        response.put("success", true);
+        response.put("message", "Form filled successfully");
+        response.put("output_file", outputFile);
+        response.put("download_url", "/api/download/" + Paths.get(outputFile).getFileName());
+        for (String key : RESULT_KEYS) {
+            if (result.containsKey(key)) {
+                response.put(key, result.get(key));
+            }
+        }
+        if (prepared.labelCells != null) {
+            response.put("label_cells", prepared.labelCells);
+        }
+        response.put("timestamp", LocalDateTime.now().toString());
+        return new Outcome(200, response);
+    }
+    
+    private Outcome invalidContent(FormContentValidator.Result validation) {
+        logger.warn("Form content rejected by pre-flight validation: {} violation(s)", validation.getViolationCount());
+        Map<String, Object> errorResponse = failure("Form content exceeds allowed limits", "INVALID_FORM_CONTENT");
+        errorResponse.put("violation_count", validation.getViolationCount());
+        errorResponse.put("violations", validation.getViolations());
+        return new Outcome(400, errorResponse);
+    }
+    
+    private Map<String, Object> failure(String message, String code) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("error", message);
+        errorResponse.put("code", code);
+        return errorResponse;
+    }
+    
+    /**
+     * 通过预检的请求：标签已解析为坐标，字段数用于准入与任务通道选择
+     */
+    public static class Prepared {
+        
+        private final FormFillRequest request;
+        private final CellBatch cells;
+        private final Map<String, String> labelCells;
+        private final int fieldCount;
+        private final Outcome rejection;
+        
+        private Prepared(FormFillRequest request, CellBatch cells, Map<String, String> labelCells, int fieldCount, Outcome rejection) {
+            this.request = request;
+            this.cells = cells;
+            this.labelCells = labelCells;
+            this.fieldCount = fieldCount;
+            this.rejection = rejection;
+        }
+        
+        static Prepared rejected(Outcome rejection) {
+            return new Prepared(null, null, null, 0, rejection);
+        }
+        
+        public boolean isRejected() {
+            return rejection != null;
+        }
+        
+        public Outcome getRejection() {
+            return rejection;
+        }
+        
+        public String getFormName() {
+            return request.getFormName();
+        }
+        
+        public int getFieldCount() {
+            return fieldCount;
+        }
+    }
+    
+    /**
+     * HTTP状态码与响应体
+     */
+    public static class Outcome {
+        
+        private final int status;
+        private final Map<String, Object> body;
+        
+        Outcome(int status, Map<String, Object> body) {
+            this.status = status;
+            this.body = body;
+        }
+        
+        public int getStatus() {
+            return status;
+        }
+        
+        public Map<String, Object> getBody() {
+            return body;
+        }
+        
+        public boolean isSuccess() {
+            return status == 200;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.dto.RepeatRegion;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * formContent 预检服务
+ * 
+ * 在任何模板I/O之前检查坐标与取值：Excel行列上限、字段数、值长度和行跨度。
+ * 只做字符串解析和整数比较，恶意或错误的请求在微秒级被拒绝，
+ * 不会触发模板加载、稀疏行创建或工作簿写出。
+ * 
+ * 旧格式中无法解析的 "rowX"/"colX" 键保持原有行为（转换时记录警告并跳过），这里不作为违规。
+ */
+@Service
+public class FormContentValidator {
+    
+    private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final int MAX_COLUMNS = SpreadsheetVersion.EXCEL2007.getMaxColumns();
+    
+    private final FormFillConfig.Validation config;
+    
+    @Autowired
+    public FormContentValidator(FormFillConfig formFillConfig) {
+        this.config = formFillConfig.getValidation();
+    }
+    
+    /**
+     * 校验单元格批次
+     * 
+     * @param cells 由 formContent 或紧凑格式得到的单元格批次
+     * @return 校验结果，包含字段数与违规列表
+     */
+    public Result validate(CellBatch cells) {
+        Result result = new Result();
+        result.fieldCount = cells.size() + cells.getSkippedCount();
+        int minRow = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        
+        for (int i = 0; i < cells.size(); i++) {
+            int row = cells.getRow(i);
+            int col = cells.getCol(i);
+            String key = "row" + row + "/col" + col;
+            
+            if (checkCoordinate(result, key, row, col)) {
+                minRow = Math.min(minRow, row);
+                maxRow = Math.max(maxRow, row);
+            }
+            
+            String value = cells.getValue(i);
+            if (value != null && value.length() > config.getMaxValueLength()) {
+                result.addViolation(config, key, row, col, "VALUE_TOO_LONG",
+                        "Value length " + value.length() + " exceeds limit of " + config.getMaxValueLength());
+            }
+        }
+        
+        if (result.fieldCount > config.getMaxFields()) {
+            result.addViolation(config, null, -1, -1, "TOO_MANY_FIELDS",
+                    "Field count " + result.fieldCount + " exceeds limit of " + config.getMaxFields());
+        }
+        if (maxRow >= minRow && maxRow - minRow + 1 > config.getMaxRowSpan()) {
+            result.addViolation(config, "row" + minRow + "..row" + maxRow, minRow, -1, "ROW_SPAN_TOO_LARGE",
+                    "Row span " + (maxRow - minRow + 1) + " exceeds limit of " + config.getMaxRowSpan());
+        }
+        return result;
+    }
+    
+    /**
+     * 校验单元格批次及重复区域
+     * 
+     * 重复区域的条目行号相对于组，必须落在组内；区域之间不能重叠；
+     * 展开后插入的总行数计入行跨度上限，超出Excel行数上限的展开同样被拒绝。
+     * 
+     * @param cells 固定位置的单元格批次
+     * @param repeats 重复区域，可为null
+     * @return 校验结果，字段数包含所有条目中的单元格
+     */
+    public Result validate(CellBatch cells, List<RepeatRegion> repeats) {
+        Result result = validate(cells);
+        if (repeats == null || repeats.isEmpty()) {
+            return result;
+        }
+        
+        long insertedRows = 0;
+        int lowestRow = 0;
+        for (int r = 0; r < repeats.size(); r++) {
+            RepeatRegion region = repeats.get(r);
+            String regionKey = "repeats[" + r + "]";
+            if (region.getStartRow() < 1 || region.getEndRow() < region.getStartRow() || region.getEndRow() > MAX_ROWS) {
+                result.addViolation(config, regionKey, region.getStartRow(), -1, "INVALID_REPEAT_REGION",
+                        "Repeat region rows must satisfy 1 <= startRow <= endRow <= " + MAX_ROWS);
+                continue;
+            }
+            for (int other = 0; other < r; other++) {
+                RepeatRegion previous = repeats.get(other);
+                if (region.getStartRow() <= previous.getEndRow() && previous.getStartRow() <= region.getEndRow()) {
+                    result.addViolation(config, regionKey, region.getStartRow(), -1, "INVALID_REPEAT_REGION",
+                            "Repeat region overlaps repeats[" + other + "]");
+                }
+            }
+            insertedRows += region.getInsertedRows();
+            lowestRow = Math.max(lowestRow, region.getEndRow());
+            
+            for (int i = 0; i < region.getItemCount(); i++) {
+                CellBatch item = region.getItems().get(i);
+                if (item == null) {
+                    continue;
+                }
+                result.fieldCount += item.size() + item.getSkippedCount();
+                for (int c = 0; c < item.size(); c++) {
+                    int row = item.getRow(c);
+                    int col = item.getCol(c);
+                    String key = regionKey + ".items[" + i + "]/row" + row + "/col" + col;
+                    if (row < 1 || row > region.getHeight() || col < 1) {
+                        result.addViolation(config, key, row, col, "INVALID_COORDINATE",
+                                "Item rows are relative to the group and must be within 1.." + region.getHeight());
+                    } else if (col > MAX_COLUMNS) {
+                        result.addViolation(config, key, row, col, "COLUMN_OUT_OF_RANGE",
+                                "Column exceeds Excel limit of " + MAX_COLUMNS);
+                    }
+                    String value = item.getValue(c);
+                    if (value != null && value.length() > config.getMaxValueLength()) {
+                        result.addViolation(config, key, row, col, "VALUE_TOO_LONG",
+                                "Value length " + value.length() + " exceeds limit of " + config.getMaxValueLength());
+                    }
+                }
+            }
+        }
+        
+        if (insertedRows > config.getMaxRowSpan()) {
+            result.addViolation(config, "repeats", -1, -1, "ROW_SPAN_TOO_LARGE",
+                    "Repeat regions insert " + insertedRows + " rows, exceeding limit of " + config.getMaxRowSpan());
+        } else if (lowestRow + insertedRows > MAX_ROWS) {
+            result.addViolation(config, "repeats", -1, -1, "ROW_OUT_OF_RANGE",
+                    "Expanded repeat regions exceed Excel limit of " + MAX_ROWS + " rows");
+        }
+        if (result.fieldCount > config.getMaxFields() && cells.size() + cells.getSkippedCount() <= config.getMaxFields()) {
+            result.addViolation(config, null, -1, -1, "TOO_MANY_FIELDS",
+                    "Field count " + result.fieldCount + " exceeds limit of " + config.getMaxFields());
+        }
+        return result;
+    }
+    
+    /**
+     * 校验单元格批次、重复区域及按标签填写的取值
+     * 
+     * 标签在解析为坐标之前只能检查个数和取值长度：每个标签计为一个字段。
+     * 解析需要读取模板，调用方应在本方法通过后再解析，并用 validateResolved() 检查解析得到的坐标。
+     * 
+     * @param labels 标签到取值的映射，可为null
+     */
+    public Result validate(CellBatch cells, List<RepeatRegion> repeats, Map<String, String> labels) {
+        Result result = validate(cells, repeats);
+        if (labels == null || labels.isEmpty()) {
+            return result;
+        }
+        
+        boolean withinLimit = result.fieldCount <= config.getMaxFields();
+        result.fieldCount += labels.size();
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            String value = label.getValue();
+            if (value != null && value.length() > config.getMaxValueLength()) {
+                result.addViolation(config, "labels." + label.getKey(), -1, -1, "VALUE_TOO_LONG",
+                        "Value length " + value.length() + " exceeds limit of " + config.getMaxValueLength());
+            }
+        }
+        if (withinLimit && result.fieldCount > config.getMaxFields()) {
+            result.addViolation(config, null, -1, -1, "TOO_MANY_FIELDS",
+                    "Field count " + result.fieldCount + " exceeds limit of " + config.getMaxFields());
+        }
+        return result;
+    }
+    
+    /**
+     * 校验标签解析得到的坐标
+     * 
+     * 取值与字段数已在解析前随标签一起校验，这里只检查坐标是否在Excel行列上限内。
+     */
+    public Result validateResolved(CellBatch resolved) {
+        Result result = new Result();
+        for (int i = 0; i < resolved.size(); i++) {
+            int row = resolved.getRow(i);
+            int col = resolved.getCol(i);
+            checkCoordinate(result, "row" + row + "/col" + col, row, col);
+        }
+        return result;
+    }
+    
+    private boolean checkCoordinate(Result result, String key, int row, int col) {
+        if (row < 1 || col < 1) {
+            result.addViolation(config, key, row, col, "INVALID_COORDINATE",
+                    "Row and column numbers start at 1");
+        } else if (row > MAX_ROWS) {
+            result.addViolation(config, key, row, col, "ROW_OUT_OF_RANGE",
+                    "Row exceeds Excel limit of " + MAX_ROWS);
+        } else if (col > MAX_COLUMNS) {
+            result.addViolation(config, key, row, col, "COLUMN_OUT_OF_RANGE",
+                    "Column exceeds Excel limit of " + MAX_COLUMNS);
+        } else {
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 预检结果
+     */
+    public static class Result {
+        
+        private int fieldCount;
+        private int violationCount;
+        private final List<Map<String, Object>> violations = new ArrayList<>();
+        
+        void addViolation(FormFillConfig.Validation config, String key, int row, int col, String code, String message) {
+            violationCount++;
+            if (violations.size() >= config.getMaxReportedViolations()) {
+                return;
+            }
+            Map<String, Object> violation = new LinkedHashMap<>();
+            if (key != null) {
+                violation.put("key", key);
+            }
+            if (row > 0) {
+                violation.put("row", row);
+            }
+            if (col > 0) {
+                violation.put("col", col);
+            }
+            violation.put("code", code);
+            violation.put("message", message);
+            violations.add(violation);
+        }
+        
+        public boolean isValid() {
+            return violationCount == 0;
+        }
+        
+        public int getFieldCount() {
+            return fieldCount;
+        }
+        
+        public int getViolationCount() {
+            return violationCount;
+        }
+        
+        public List<Map<String, Object>> getViolations() {
+            return violations;
+        }
+    }
+}
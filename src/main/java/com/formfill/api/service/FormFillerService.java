@@ -2,19 +2,30 @@ package com.formfill.api.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.formfill.api.dto.CellBatch;
+import com.formfill.api.dto.RepeatRegion;
+import com.formfill.api.jfr.CellFillEvent;
+import com.formfill.api.jfr.TemplateParseEvent;
+import com.formfill.api.jfr.TemplateResolveEvent;
+import com.formfill.api.jfr.WorkbookWriteEvent;
+import com.formfill.api.store.OutputStore;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -28,12 +39,31 @@ public class FormFillerService {
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     private static final String TEMPLATES_DIR = "templates";
-    private static final String OUTPUT_DIR = "output";
+    
+    // 逐字段填写时每隔多少个单元格检查一次请求期限
+    static final int CHECKPOINT_INTERVAL = 64;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    @Autowired
+    private TemplateCatalog templateCatalog;
+    
+    @Autowired
+    private RepeatingRegionService repeatingRegionService;
+    
+    @Autowired
+    private FormulaDependencyService formulaDependencyService;
+    
+    @Autowired
+    private OutputStore outputStore;
+    
+    @Autowired
+    private TemplateRepository templateRepository;
     
     public FormFillerService() {
         // 确保目录存在
         createDirectoryIfNotExists(TEMPLATES_DIR);
-        createDirectoryIfNotExists(OUTPUT_DIR);
     }
     
     /**
@@ -44,18 +74,102 @@ public class FormFillerService {
      * @return 包含成功状态和结果信息的Map
      */
     public Map<String, Object> fillForm(String formName, Map<String, Map<String, String>> formContent) {
+        return fillForm(formName, CellBatch.fromFormContent(formContent));
+    }
+    
+    /**
+     * 按单元格批次填写表单
+     * 
+     * @param formName 表单名称
+     * @param cells 单元格批次（行列从1开始）
+     * @return 包含成功状态和结果信息的Map
+     */
+    public Map<String, Object> fillForm(String formName, CellBatch cells) {
+        return fillForm(formName, cells, null, false);
+    }
+    
+    /**
+     * 按单元格批次填写表单，并展开重复区域
+     * 
+     * @param formName 表单名称
+     * @param cells 固定位置的单元格批次（按模板坐标，行列从1开始）
+     * @param repeats 重复区域，可为null
+     * @param recalculate 是否重新计算受填写影响的公式
+     * @return 包含成功状态和结果信息的Map
+     */
+    public Map<String, Object> fillForm(String formName, CellBatch cells, List<RepeatRegion> repeats, boolean recalculate) {
+        return fillForm(formName, cells, repeats, recalculate, false);
+    }
+    
+    /**
+     * 按单元格批次填写表单，并展开重复区域
+     * 
+     * @param formName 表单名称
+     * @param cells 固定位置的单元格批次（按模板坐标，行列从1开始）
+     * @param repeats 重复区域，可为null
+     * @param recalculate 是否重新计算受填写影响的公式
+     * @param diff 是否在结果中返回固定单元格的改动（模板原值、新值、单元格类型）
+     * @return 包含成功状态和结果信息的Map
+     */
+    public Map<String, Object> fillForm(String formName, CellBatch cells, List<RepeatRegion> repeats,
+                                        boolean recalculate, boolean diff) {
+        return fillForm(formName, cells, repeats, recalculate, diff, null);
+    }
+    
+    /**
+     * 按单元格批次填写表单，可固定模板版本
+     * 
+     * @param formName 表单名称
+     * @param cells 固定位置的单元格批次（按模板坐标，行列从1开始）
+     * @param repeats 重复区域，可为null
+     * @param recalculate 是否重新计算受填写影响的公式
+     * @param diff 是否在结果中返回固定单元格的改动
+     * @param templateVersion 使用的模板版本（内容的 SHA-256），为null时使用当前版本；
+     *                        找不到该版本时返回 TEMPLATE_VERSION_NOT_FOUND，不会退回到新建表单
+     * @return 包含成功状态和结果信息的Map，成功时 template_version 为实际使用的模板版本
+     */
+    public Map<String, Object> fillForm(String formName, CellBatch cells, List<RepeatRegion> repeats,
+                                        boolean recalculate, boolean diff, String templateVersion) {
+        boolean hasRepeats = repeats != null && !repeats.isEmpty();
         try {
             // 查找模板文件
+            TemplateResolveEvent resolveEvent = new TemplateResolveEvent();
+            resolveEvent.begin();
+            long lookupStart = RequestTimings.mark();
             String templatePath = findTemplate(formName);
+            if (templateVersion != null && templatePath != null) {
+                File pinned = templateRepository.resolve(new File(templatePath), templateVersion);
+                templatePath = pinned != null ? pinned.getAbsolutePath() : null;
+            }
+            RequestTimings.record(RequestTimings.LOOKUP, lookupStart);
+            resolveEvent.end();
+            if (resolveEvent.shouldCommit()) {
+                resolveEvent.formName = formName;
+                resolveEvent.templateFile = templatePath;
+                resolveEvent.found = templatePath != null;
+                resolveEvent.commit();
+            }
+            
+            FillDeadline.checkpoint(RequestTimings.LOOKUP);
+            
+            if (templatePath == null && templateVersion != null) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("success", false);
+                result.put("error", "Template version not found for form " + formName + ": " + templateVersion);
+                result.put("code", "TEMPLATE_VERSION_NOT_FOUND");
+                return result;
+            }
             
             if (templatePath == null) {
-                // 如果没有找到模板，创建一个新的表单
-                return createNewForm(formName, formContent);
+                // 如果没有找到模板，创建一个新的表单；重复区域直接按组高换算为绝对坐标
+                return createNewForm(formName, hasRepeats ? repeatingRegionService.flatten(cells, repeats) : cells, diff);
             }
             
             // 使用现有模板填写表单
-            return fillExistingTemplate(templatePath, formName, formContent);
-            
+            return fillExistingTemplate(templatePath, formName, cells, hasRepeats ? repeats : null, recalculate, diff);
+        
+        } catch (FillAbortedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("填写表单时发生错误: {}", e.getMessage(), e);
             Map<String, Object> result = new HashMap<>();
@@ -66,6 +180,110 @@ public class FormFillerService {
         }
     }
     
+    /**
+     * 按已注册的填写计划填写表单
+     * 
+     * @param plan 编译后的填写计划
+     * @param values 按计划字段顺序排列的值，null 表示跳过该字段
+     * @return 包含成功状态和结果信息的Map
+     * @throws FillAbortedException 请求期限已到或请求已取消
+     */
+    public Map<String, Object> fillWithPlan(FillPlan plan, List<String> values) {
+        try {
+            TemplateParseEvent parseEvent = new TemplateParseEvent();
+            parseEvent.begin();
+            long parseStart = RequestTimings.mark();
+            TemplateCache.CachedTemplate template = templateCache.get(plan.getTemplateFile());
+            Workbook workbook = templateCache.openWorkbook(template);
+            Sheet sheet = workbook.getSheetAt(0);
+            RequestTimings.record(RequestTimings.PARSE, parseStart);
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.formName = plan.getFormName();
+                parseEvent.templateFile = plan.getTemplateFile().getPath();
+                parseEvent.bytes = template.getLength();
+                parseEvent.commit();
+            }
+            if (!template.getVersion().equals(plan.getTemplateVersion())) {
+                logger.info("Template {} changed since plan {} was registered", plan.getTemplateFile().getName(), plan.getId());
+            }
+            FillDeadline.checkpoint(RequestTimings.PARSE);
+            
+            int filledCount = 0;
+            int totalFields = Math.min(values.size(), plan.getFieldCount());
+            List<Map<String, Object>> failedFields = new ArrayList<>();
+            CellStyle defaultStyle = null;
+            CellFillEvent fillEvent = new CellFillEvent();
+            fillEvent.begin();
+            long fillStart = RequestTimings.mark();
+            
+            for (int i = 0; i < totalFields; i++) {
+                if (i % CHECKPOINT_INTERVAL == 0) {
+                    FillDeadline.checkpoint(RequestTimings.FILL);
+                }
+                String value = values.get(i);
+                if (value == null) {
+                    continue;
+                }
+                Row targetRow = sheet.getRow(plan.getRow(i) - 1);
+                if (targetRow == null) {
+                    targetRow = sheet.createRow(plan.getRow(i) - 1);
+                }
+                Cell targetCell = targetRow.getCell(plan.getCol(i) - 1);
+                if (targetCell == null) {
+                    targetCell = targetRow.createCell(plan.getCol(i) - 1);
+                }
+                
+                try {
+                    writeTypedValue(targetCell, plan.getType(i), value);
+                    if (!plan.isKeepTemplateStyle(i)) {
+                        if (defaultStyle == null) {
+                            defaultStyle = createDefaultFillStyle(workbook);
+                        }
+                        targetCell.setCellStyle(defaultStyle);
+                    }
+                    filledCount++;
+                } catch (Exception e) {
+                    logger.warn("Failed to fill plan field '{}' with value '{}': {}", plan.getFieldName(i), value, e.getMessage());
+                    Map<String, Object> failure = new HashMap<>();
+                    failure.put("field", plan.getFieldName(i));
+                    failure.put("error", e.getMessage());
+                    failedFields.add(failure);
+                }
+            }
+            RequestTimings.record(RequestTimings.FILL, fillStart);
+            FillDeadline.checkpoint(RequestTimings.FILL);
+            commitFillEvent(fillEvent, plan.getFormName(), totalFields, filledCount, false);
+            
+            String outputPath = writeWorkbook(workbook, filledOutputName(plan.getFormName()), plan.getFormName(), filledCount);
+            
+            logger.info("Filled {}/{} plan fields ({}), saved to: {}", filledCount, totalFields, plan.getId(), outputPath);
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("output_file", outputPath);
+            result.put("filled_count", filledCount);
+            result.put("total_fields", totalFields);
+            result.put("template_used", plan.getTemplateFile().getAbsolutePath());
+            result.put("template_version", template.getVersion());
+            result.put("fill_method", "plan");
+            if (!failedFields.isEmpty()) {
+                result.put("failed_fields", failedFields);
+            }
+            return result;
+        
+        } catch (FillAbortedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error filling with plan {}: {}", plan.getId(), e.getMessage(), e);
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("error", "Failed to fill with plan: " + e.getMessage());
+            result.put("code", "PLAN_FILL_ERROR");
+            return result;
+        }
+    }
+    
     /**
      * 根据表单名称获取模板信息
      * 
@@ -78,25 +296,22 @@ public class FormFillerService {
         try {
             logger.info("查找表单模板: {}", formName);
             
-            // 查找模板文件
-            String templatePath = findTemplate(formName);
+            // 查找模板文件（文件信息来自模板目录缓存）
+            TemplateCatalog.Entry entry = findTemplateEntry(formName);
             
-            if (templatePath != null) {
-                File templateFile = new File(templatePath);
-                String fileName = templateFile.getName();
+            if (entry != null) {
+                String fileName = entry.getFileName();
                 
                 result.put("found", true);
                 result.put("formName", formName);
-                result.put("templatePath", templatePath);
+                result.put("templatePath", entry.getAbsolutePath());
                 result.put("fileName", fileName);
-                result.put("fileSize", templateFile.length());
-                result.put("lastModified", templateFile.lastModified());
-                result.put("readable", templateFile.canRead());
-                result.put("absolutePath", templateFile.getAbsolutePath());
-                
-                // 解析文件名获取基础名称
-                String baseName = fileName.replaceAll("\\.(xlsx|xls)$", "");
-                result.put("baseName", baseName);
+                result.put("fileSize", entry.getSize());
+                result.put("lastModified", entry.getLastModified());
+                result.put("readable", entry.isReadable());
+                result.put("absolutePath", entry.getAbsolutePath());
+                result.put("baseName", entry.getBaseName());
+                result.put("version", templateCache.versionOf(entry.getFile()));
                 
                 // 判断匹配类型
                 if (fileName.equals(formName + ".xlsx") || fileName.equals(formName + ".xls")) {
@@ -108,7 +323,7 @@ public class FormFillerService {
                 }
                 
                 logger.info("找到模板文件: {} (匹配类型: {})", fileName, result.get("matchType"));
-                
+            
             } else {
                 result.put("found", false);
                 result.put("formName", formName);
@@ -128,7 +343,7 @@ public class FormFillerService {
             
             result.put("timestamp", LocalDateTime.now().toString());
             return result;
-            
+        
         } catch (Exception e) {
             logger.error("获取模板信息时发生错误: {}", e.getMessage(), e);
             result.put("found", false);
@@ -139,6 +354,17 @@ public class FormFillerService {
         }
     }
     
+    /**
+     * 根据表单名称定位模板文件
+     * 
+     * @param formName 表单名称
+     * @return 模板文件，未找到时返回null
+     */
+    public File locateTemplate(String formName) {
+        String templatePath = findTemplate(formName);
+        return templatePath != null ? new File(templatePath) : null;
+    }
+    
     /**
      * 解析坐标字符串，如 "[3, 2]" 返回 [3, 2]
      */
@@ -155,7 +381,7 @@ public class FormFillerService {
                 }
             }
             throw new IllegalArgumentException("坐标格式错误: " + coordStr);
-            
+        
         } catch (Exception e) {
             logger.error("解析坐标失败: {}, 错误: {}", coordStr, e.getMessage());
             return null;
@@ -166,6 +392,14 @@ public class FormFillerService {
      * Find corresponding template file
      */
     private String findTemplate(String formName) {
+        TemplateCatalog.Entry entry = findTemplateEntry(formName);
+        return entry != null ? entry.getAbsolutePath() : null;
+    }
+    
+    /**
+     * Find the template in the in-memory catalog, without touching the disk on a hit
+     */
+    private TemplateCatalog.Entry findTemplateEntry(String formName) {
         String[] possibleNames = {
             formName + ".xlsx",
             formName + ".xls",
@@ -173,103 +407,133 @@ public class FormFillerService {
             formName + "模板.xls"
         };
         
-        File templatesDir = new File(TEMPLATES_DIR);
-        if (!templatesDir.exists()) {
-            return null;
+        TemplateCatalog.Entry entry = matchTemplateEntry(formName, possibleNames);
+        // Not on this node yet: pull the current templates from the shared repository and look again
+        if (entry == null && templateRepository.syncOnMiss()) {
+            entry = matchTemplateEntry(formName, possibleNames);
+        }
+        if (entry == null) {
+            logger.warn("Form template not found: {}", formName);
         }
+        return entry;
+    }
+    
+    private TemplateCatalog.Entry matchTemplateEntry(String formName, String[] possibleNames) {
+        TemplateCatalog.Snapshot catalog = templateCatalog.snapshot();
         
         // Exact match
         for (String name : possibleNames) {
-            File templateFile = new File(templatesDir, name);
-            if (templateFile.exists()) {
-                logger.info("Found template file: {}", templateFile.getAbsolutePath());
-                return templateFile.getAbsolutePath();
+            TemplateCatalog.Entry entry = catalog.get(name);
+            if (entry != null) {
+                logger.info("Found template file: {}", entry.getAbsolutePath());
+                return entry;
             }
         }
         
         // Fuzzy match
-        File[] files = templatesDir.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                String fileName = file.getName();
-                if (fileName.endsWith(".xlsx") || fileName.endsWith(".xls")) {
-                    String baseName = fileName.replaceAll("\\.(xlsx|xls)$", "");
-                    if (fileName.contains(formName) || baseName.contains(formName)) {
-                        logger.info("Found template file by fuzzy match: {}", file.getAbsolutePath());
-                        return file.getAbsolutePath();
-                    }
-                }
+        for (TemplateCatalog.Entry entry : catalog.getEntries()) {
+            if (entry.getFileName().contains(formName) || entry.getBaseName().contains(formName)) {
+                logger.info("Found template file by fuzzy match: {}", entry.getAbsolutePath());
+                return entry;
             }
         }
         
-        logger.warn("Form template not found: {}", formName);
+        // A file copied in just now may not have reached the catalog through its watch event yet
+        for (String name : possibleNames) {
+            TemplateCatalog.Entry entry = templateCatalog.refresh(name);
+            if (entry != null) {
+                logger.info("Found template file not yet in catalog: {}", entry.getAbsolutePath());
+                return entry;
+            }
+        }
         return null;
     }
     
     /**
      * Fill form using existing template
      */
-    private Map<String, Object> fillExistingTemplate(String templatePath, String formName, 
-                                                    Map<String, Map<String, String>> formContent) {
+    private Map<String, Object> fillExistingTemplate(String templatePath, String formName, CellBatch cells,
+                                                     List<RepeatRegion> repeats, boolean recalculate, boolean diff) {
         try {
             // Load template
-            FileInputStream fis = new FileInputStream(templatePath);
-            Workbook workbook = WorkbookFactory.create(fis);
+            TemplateParseEvent parseEvent = new TemplateParseEvent();
+            parseEvent.begin();
+            long parseStart = RequestTimings.mark();
+            TemplateCache.CachedTemplate template = templateCache.get(new File(templatePath));
+            Workbook workbook = templateCache.openWorkbook(template);
             Sheet sheet = workbook.getSheetAt(0);
-            fis.close();
+            RequestTimings.record(RequestTimings.PARSE, parseStart);
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.formName = formName;
+                parseEvent.templateFile = templatePath;
+                parseEvent.bytes = template.getLength();
+                parseEvent.commit();
+            }
             
             logger.info("Using template: {}", templatePath);
             logger.info("Worksheet name: {}", sheet.getSheetName());
+            FillDeadline.checkpoint(RequestTimings.PARSE);
+            
+            // Dependency graph must come from the untouched template layout
+            FormulaDependencyService.DependencyGraph dependencyGraph = null;
+            if (recalculate && repeats == null) {
+                long graphStart = RequestTimings.mark();
+                dependencyGraph = formulaDependencyService.getGraph(template.getFile(), template.getVersion(), workbook);
+                RequestTimings.record(RequestTimings.RECALC, graphStart);
+            }
             
             // Fill fields
             int filledCount = 0;
-            int totalFields = 0;
+            int totalFields = cells.size() + cells.getSkippedCount();
+            List<Map<String, Object>> changes = diff ? new ArrayList<>(cells.size()) : null;
+            CellFillEvent fillEvent = new CellFillEvent();
+            fillEvent.begin();
+            long fillStart = RequestTimings.mark();
+            
+            // Expand repeating regions before any value is written so template groups are copied clean
+            RepeatingRegionService.Expansion expansion = null;
+            if (repeats != null) {
+                expansion = repeatingRegionService.expand(sheet, repeats);
+                filledCount += expansion.getFilledCount();
+                totalFields += expansion.getTotalFields();
+                FillDeadline.checkpoint(RequestTimings.FILL);
+            }
             
-            for (Map.Entry<String, Map<String, String>> rowEntry : formContent.entrySet()) {
-                String rowStr = rowEntry.getKey(); // e.g., "row3"
-                Map<String, String> colMap = rowEntry.getValue();
-                
-                // Extract row number from "rowX" format
-                int row = parseRowNumber(rowStr);
-                if (row <= 0) {
-                    logger.warn("Invalid row format: {}", rowStr);
-                    continue;
+            for (int i = 0; i < cells.size(); i++) {
+                if (i % CHECKPOINT_INTERVAL == 0) {
+                    FillDeadline.checkpoint(RequestTimings.FILL);
                 }
+                // Fixed cells use template coordinates; map them past the inserted groups
+                int row = expansion != null ? expansion.shiftedRow(cells.getRow(i)) : cells.getRow(i);
+                int col = cells.getCol(i);
+                String value = cells.getValue(i);
                 
-                // Process each column
-                for (Map.Entry<String, String> colEntry : colMap.entrySet()) {
-                    String colStr = colEntry.getKey(); // e.g., "col2"
-                    String value = colEntry.getValue();
-                    totalFields++;
-                    
-                    // Extract column number from "colX" format
-                    int col = parseColNumber(colStr);
-                    if (col <= 0) {
-                        logger.warn("Invalid column format: {}", colStr);
-                        continue;
-                    }
-                    
-                    // Create coordinate string for logging
-                    String coordStr = String.format("[%d,%d]", row, col);
-                    
-                    if (fillCellByCoordinates(sheet, coordStr, value, row, col)) {
-                        filledCount++;
-                    } else {
-                        logger.warn("Failed to fill value at coordinates {}: {}", coordStr, value);
-                    }
+                // Create coordinate string for logging
+                String coordStr = String.format("[%d,%d]", row, col);
+                
+                if (fillCellByCoordinates(sheet, coordStr, value, row, col, changes)) {
+                    filledCount++;
+                } else {
+                    logger.warn("Failed to fill value at coordinates {}: {}", coordStr, value);
                 }
             }
-            
-            // Generate output filename
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String outputFileName = formName + "_filled_" + timestamp + ".xlsx";
-            String outputPath = OUTPUT_DIR + File.separator + outputFileName;
+            RequestTimings.record(RequestTimings.FILL, fillStart);
+            FillDeadline.checkpoint(RequestTimings.FILL);
+            commitFillEvent(fillEvent, formName, totalFields, filledCount, false);
+            
+            FormulaDependencyService.Recalculation recalculation = null;
+            if (recalculate) {
+                long recalcStart = RequestTimings.mark();
+                recalculation = formulaDependencyService.recalculate(workbook, dependencyGraph, cells);
+                RequestTimings.record(RequestTimings.RECALC, recalcStart);
+                logger.info("Recalculated {} formula cell(s) ({})", recalculation.getEvaluatedCount(),
+                        recalculation.isIncremental() ? "incremental" : "full");
+                FillDeadline.checkpoint(RequestTimings.RECALC);
+            }
             
             // Save file
-            FileOutputStream fos = new FileOutputStream(outputPath);
-            workbook.write(fos);
-            fos.close();
-            workbook.close();
+            String outputPath = writeWorkbook(workbook, filledOutputName(formName), formName, filledCount);
             
             logger.info("Successfully filled {}/{} fields, saved to: {}", filledCount, totalFields, outputPath);
             
@@ -279,9 +543,25 @@ public class FormFillerService {
             result.put("filled_count", filledCount);
             result.put("total_fields", totalFields);
             result.put("template_used", templatePath);
+            result.put("template_version", template.getVersion());
             result.put("fill_method", "row_col_format");
+            if (expansion != null) {
+                result.put("inserted_rows", expansion.getInsertedRows());
+            }
+            if (changes != null) {
+                result.put("diff", changes);
+            }
+            if (recalculation != null) {
+                result.put("evaluated_count", recalculation.getEvaluatedCount());
+                result.put("recalc_mode", recalculation.isIncremental() ? "incremental" : "full");
+                if (recalculation.getFailedCount() > 0) {
+                    result.put("evaluation_failures", recalculation.getFailedCount());
+                }
+            }
             return result;
-            
+        
+        } catch (FillAbortedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error filling existing template: {}", e.getMessage(), e);
             Map<String, Object> result = new HashMap<>();
@@ -294,8 +574,11 @@ public class FormFillerService {
     
     /**
      * Fill cell directly by coordinates
+     * 
+     * @param changes 不为null时追加该单元格的改动记录，取自写入前后已有的值，不再回读单元格
      */
-    private boolean fillCellByCoordinates(Sheet sheet, String coordStr, String answer, int row, int col) {
+    private boolean fillCellByCoordinates(Sheet sheet, String coordStr, String answer, int row, int col,
+                                          List<Map<String, Object>> changes) {
         try {
             logger.info("Filling value at coordinates {}: '{}'", coordStr, answer);
             
@@ -370,7 +653,7 @@ public class FormFillerService {
                 Workbook workbook = sheet.getWorkbook();
                 targetCell.setCellValue(workbook.getCreationHelper().createRichTextString(answer));
                 logger.debug("Method 3: Set as RichTextString");
-                
+            
             } catch (Exception e) {
                 logger.debug("Some write methods failed: {}", e.getMessage());
             }
@@ -399,10 +682,17 @@ public class FormFillerService {
                 logger.debug("Error setting new style: {}", styleError.getMessage());
             }
             
-            // Verify the cell was actually filled
+            if (changes != null) {
+                changes.add(cellChange(row, col, originalValue, originalCellType, answer, targetCell.getCellType()));
+            }
+            
+            // Read-back verification is for troubleshooting only
+            if (!logger.isDebugEnabled()) {
+                return true;
+            }
             String verifyValue = getCellValueAsString(targetCell);
             CellType finalCellType = targetCell.getCellType();
-            logger.info("After filling - Coordinates {}: '{}' -> '{}' (verified: '{}', final type: {})", 
+            logger.debug("After filling - Coordinates {}: '{}' -> '{}' (verified: '{}', final type: {})", 
                        coordStr, originalValue, answer, verifyValue, finalCellType);
             
             // Additional verification
@@ -422,17 +712,33 @@ public class FormFillerService {
             }
             
             return true;
-            
+        
         } catch (Exception e) {
             logger.error("Error filling value at coordinates {}: {}", coordStr, e.getMessage(), e);
             return false;
         }
     }
     
+    /**
+     * 单元格改动记录：坐标、模板原值与类型、新值与类型
+     */
+    private Map<String, Object> cellChange(int row, int col, String templateValue, CellType templateType,
+                                           String value, CellType type) {
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("cell", new CellReference(row - 1, col - 1).formatAsString());
+        change.put("row", row);
+        change.put("col", col);
+        change.put("template_value", templateValue);
+        change.put("template_type", templateType.name());
+        change.put("value", value);
+        change.put("type", type.name());
+        return change;
+    }
+    
     /**
      * Create new form file
      */
-    private Map<String, Object> createNewForm(String formName, Map<String, Map<String, String>> formContent) {
+    private Map<String, Object> createNewForm(String formName, CellBatch cells, boolean diff) {
         try {
             // Create new workbook
             Workbook workbook = new XSSFWorkbook();
@@ -459,62 +765,58 @@ public class FormFillerService {
             
             // Fill form content
             int filledCount = 0;
-            int totalFields = 0;
-            
-            for (Map.Entry<String, Map<String, String>> rowEntry : formContent.entrySet()) {
-                String rowStr = rowEntry.getKey(); // e.g., "row3"
-                Map<String, String> colMap = rowEntry.getValue();
-                
-                // Extract row number from "rowX" format
-                int row = parseRowNumber(rowStr);
-                if (row <= 0) {
-                    logger.warn("Invalid row format: {}", rowStr);
-                    continue;
+            int totalFields = cells.size() + cells.getSkippedCount();
+            List<Map<String, Object>> changes = diff ? new ArrayList<>(cells.size()) : null;
+            CellFillEvent fillEvent = new CellFillEvent();
+            fillEvent.begin();
+            long fillStart = RequestTimings.mark();
+            
+            for (int i = 0; i < cells.size(); i++) {
+                if (i % CHECKPOINT_INTERVAL == 0) {
+                    FillDeadline.checkpoint(RequestTimings.FILL);
                 }
+                int row = cells.getRow(i);
+                int col = cells.getCol(i);
+                String value = cells.getValue(i);
                 
-                // Process each column
-                for (Map.Entry<String, String> colEntry : colMap.entrySet()) {
-                    String colStr = colEntry.getKey(); // e.g., "col2"
-                    String value = colEntry.getValue();
-                    totalFields++;
+                // Ensure coordinates are valid
+                if (row >= 1 && col >= 1) {
+                    // Fill value at specified coordinates
+                    Row targetRow = sheet.getRow(row - 1);
+                    if (targetRow == null) {
+                        targetRow = sheet.createRow(row - 1);
+                    }
                     
-                    // Extract column number from "colX" format
-                    int col = parseColNumber(colStr);
-                    if (col <= 0) {
-                        logger.warn("Invalid column format: {}", colStr);
-                        continue;
+                    // createCell reuses the existing cell's XML, so capture the old value first
+                    Cell existing = changes != null ? targetRow.getCell(col - 1) : null;
+                    String previousValue = existing != null ? getCellValueAsString(existing) : "";
+                    CellType previousType = existing != null ? existing.getCellType() : CellType.BLANK;
+                    Cell targetCell = targetRow.createCell(col - 1);
+                    targetCell.setCellValue(value);
+                    if (changes != null) {
+                        changes.add(cellChange(row, col, previousValue, previousType, value, targetCell.getCellType()));
                     }
                     
-                    // Ensure coordinates are valid
-                    if (row >= 1 && col >= 1) {
-                        // Fill value at specified coordinates
-                        Row targetRow = sheet.getRow(row - 1);
-                        if (targetRow == null) {
-                            targetRow = sheet.createRow(row - 1);
-                        }
-                        
-                        Cell targetCell = targetRow.createCell(col - 1);
-                        targetCell.setCellValue(value);
-                        
-                        // Set style
-                        try {
-                            CellStyle style = workbook.createCellStyle();
-                            Font font = workbook.createFont();
-                            font.setFontName("Arial");
-                            font.setFontHeightInPoints((short) 11);
-                            style.setFont(font);
-                            style.setAlignment(HorizontalAlignment.LEFT);
-                            style.setVerticalAlignment(VerticalAlignment.CENTER);
-                            targetCell.setCellStyle(style);
-                        } catch (Exception styleError) {
-                            logger.debug("Error setting style: {}", styleError.getMessage());
-                        }
-                        
-                        filledCount++;
-                        logger.info("Filled at row {} col {}: {}", row, col, value);
+                    // Set style
+                    try {
+                        CellStyle style = workbook.createCellStyle();
+                        Font font = workbook.createFont();
+                        font.setFontName("Arial");
+                        font.setFontHeightInPoints((short) 11);
+                        style.setFont(font);
+                        style.setAlignment(HorizontalAlignment.LEFT);
+                        style.setVerticalAlignment(VerticalAlignment.CENTER);
+                        targetCell.setCellStyle(style);
+                    } catch (Exception styleError) {
+                        logger.debug("Error setting style: {}", styleError.getMessage());
                     }
+                    
+                    filledCount++;
+                    logger.info("Filled at row {} col {}: {}", row, col, value);
                 }
             }
+            RequestTimings.record(RequestTimings.FILL, fillStart);
+            commitFillEvent(fillEvent, formName, totalFields, filledCount, true);
             
             // Adjust column width
             sheet.setColumnWidth(0, 20 * 256);
@@ -523,13 +825,9 @@ public class FormFillerService {
             // Generate output filename
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
             String outputFileName = formName + "_" + timestamp + ".xlsx";
-            String outputPath = OUTPUT_DIR + File.separator + outputFileName;
             
             // Save file
-            FileOutputStream fos = new FileOutputStream(outputPath);
-            workbook.write(fos);
-            fos.close();
-            workbook.close();
+            String outputPath = writeWorkbook(workbook, outputFileName, formName, filledCount);
             
             logger.info("Successfully created new form: {}", outputPath);
             
@@ -540,8 +838,13 @@ public class FormFillerService {
             result.put("total_fields", totalFields);
             result.put("message", "New form created");
             result.put("fill_method", "row_col_format");
+            if (changes != null) {
+                result.put("diff", changes);
+            }
             return result;
-            
+        
+        } catch (FillAbortedException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error creating new form: {}", e.getMessage(), e);
             Map<String, Object> result = new HashMap<>();
@@ -553,33 +856,118 @@ public class FormFillerService {
     }
     
     /**
-     * Parse row number from "rowX" format (e.g., "row3" -> 3)
+     * Write a value into the cell using the declared type; the cell keeps its existing style
+     * 
+     * The value is parsed before the cell is cleared, so a rejected value leaves the template content in place.
+     * Clearing is needed because setting a value on a formula cell only replaces the cached result.
      */
-    private int parseRowNumber(String rowStr) {
-        try {
-            if (rowStr != null && rowStr.toLowerCase().startsWith("row")) {
-                String numberPart = rowStr.substring(3);
-                return Integer.parseInt(numberPart);
-            }
-        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-            logger.warn("Failed to parse row number from: {}", rowStr);
+    private void writeTypedValue(Cell cell, FillPlan.ValueType type, String value) {
+        switch (type) {
+            case NUMBER:
+                double number = Double.parseDouble(value.trim());
+                cell.setBlank();
+                cell.setCellValue(number);
+                break;
+            case BOOLEAN:
+                cell.setBlank();
+                cell.setCellValue(Boolean.parseBoolean(value.trim()));
+                break;
+            case DATE:
+                String text = value.trim();
+                if (text.length() > 10) {
+                    LocalDateTime dateTime = LocalDateTime.parse(text);
+                    cell.setBlank();
+                    cell.setCellValue(dateTime);
+                } else {
+                    LocalDate date = LocalDate.parse(text);
+                    cell.setBlank();
+                    cell.setCellValue(date);
+                }
+                break;
+            case FORMULA:
+                cell.setCellFormula(value.startsWith("=") ? value.substring(1) : value);
+                break;
+            default:
+                cell.setBlank();
+                cell.setCellValue(value);
         }
-        return -1;
     }
     
     /**
-     * Parse column number from "colX" format (e.g., "col2" -> 2)
+     * The same visible style used by coordinate filling, created once per workbook
      */
-    private int parseColNumber(String colStr) {
-        try {
-            if (colStr != null && colStr.toLowerCase().startsWith("col")) {
-                String numberPart = colStr.substring(3);
-                return Integer.parseInt(numberPart);
-            }
-        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
-            logger.warn("Failed to parse column number from: {}", colStr);
+    CellStyle createDefaultFillStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setFontName("Arial");
+        font.setFontHeightInPoints((short) 11);
+        font.setBold(false);
+        style.setFont(font);
+        style.setAlignment(HorizontalAlignment.LEFT);
+        style.setVerticalAlignment(VerticalAlignment.CENTER);
+        return style;
+    }
+    
+    /**
+     * Output name for a template-based fill, e.g. 员工信息表_filled_20240531_143000.xlsx
+     */
+    String filledOutputName(String formName) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        return formName + "_filled_" + timestamp + ".xlsx";
+    }
+    
+    /**
+     * Write workbook to the output store and close it, recording a JFR write event.
+     * Time spent inside the store stream (and committing the upload) is reported as "write", the rest as "serialize".
+     * The request deadline is checked before every stream write; an aborted or failed write leaves no output behind.
+     *
+     * @return location of the stored output, reported to clients as output_file
+     */
+    String writeWorkbook(Workbook workbook, String outputName, String formName, int filledCount) throws IOException {
+        WorkbookWriteEvent writeEvent = new WorkbookWriteEvent();
+        writeEvent.begin();
+        RequestTimings timings = RequestTimings.current();
+        long writeStart = RequestTimings.mark();
+        long diskBefore = timings != null ? timings.getNanos(RequestTimings.WRITE) : 0L;
+        long bytes;
+        try (OutputStore.Upload upload = outputStore.create(outputName)) {
+            FillDeadline.checkpoint(RequestTimings.SERIALIZE);
+            OutputStream out = FillDeadline.guardWrites(RequestTimings.timeWrites(upload), RequestTimings.SERIALIZE);
+            workbook.write(out);
+            long commitStart = RequestTimings.mark();
+            bytes = upload.commit().getSize();
+            RequestTimings.record(RequestTimings.WRITE, commitStart);
+        } catch (RuntimeException e) {
+            FillAbortedException aborted = FillAbortedException.causeOf(e);
+            throw aborted != null ? aborted : e;
+        } finally {
+            workbook.close();
+        }
+        if (timings != null) {
+            long diskNanos = timings.getNanos(RequestTimings.WRITE) - diskBefore;
+            timings.add(RequestTimings.SERIALIZE, System.nanoTime() - writeStart - diskNanos);
+        }
+        String location = outputStore.locationOf(outputName);
+        writeEvent.end();
+        if (writeEvent.shouldCommit()) {
+            writeEvent.formName = formName;
+            writeEvent.outputFile = location;
+            writeEvent.filledCount = filledCount;
+            writeEvent.bytes = bytes;
+            writeEvent.commit();
+        }
+        return location;
+    }
+    
+    private void commitFillEvent(CellFillEvent fillEvent, String formName, int totalFields, int filledCount, boolean newForm) {
+        fillEvent.end();
+        if (fillEvent.shouldCommit()) {
+            fillEvent.formName = formName;
+            fillEvent.totalFields = totalFields;
+            fillEvent.filledCount = filledCount;
+            fillEvent.newForm = newForm;
+            fillEvent.commit();
         }
-        return -1;
     }
     
     private void createDirectoryIfNotExists(String dirPath) {
@@ -0,0 +1,346 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.Area3DPxg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Ref3DPxg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * 增量公式重算服务
+ *
+ * 每个模板版本解析一次全部公式，建立“被引用单元格 -> 依赖它的公式单元格”的反向依赖图并缓存；
+ * 填写后只从被填写的坐标出发，沿反向依赖图找出传递可达的公式单元格并重新计算，
+ * 不必对整个工作簿执行 evaluateAll。
+ *
+ * 只支持 .xlsx 模板；.xls 模板或展开了重复区域（布局已与模板不同）时退化为全量重算。
+ * 定义名称引用（NamePtg）不进入依赖图，依赖名称的公式不会被增量重算。
+ * 内存中最多缓存 MAX_GRAPHS 个模板文件的依赖图，超出时移除最久未使用的，下次填写时重新构建。
+ */
+@Service
+public class FormulaDependencyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FormulaDependencyService.class);
+    
+    // 跨度不超过该列数的区域按列建索引，更宽的区域放入单独列表逐个检查
+    private static final int MAX_INDEXED_AREA_WIDTH = 64;
+    
+    private static final int MAX_GRAPHS = 256;
+    
+    // 按访问顺序排列，超出上限时移除最久未使用的依赖图；以 graphs 自身加锁
+    private final Map<String, DependencyGraph> graphs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DependencyGraph> eldest) {
+            if (size() > MAX_GRAPHS) {
+                logger.info("Evicted least recently used formula dependency graph for {}", eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    
+    /**
+     * 获取模板当前版本的依赖图，未缓存时从传入的（尚未填写的）模板工作簿构建
+     *
+     * @param templateFile 模板文件
+     * @param version 模板版本号
+     * @param workbook 刚从模板解析出的工作簿
+     * @return 依赖图；非 .xlsx 工作簿返回null
+     */
+    public DependencyGraph getGraph(File templateFile, String version, Workbook workbook) {
+        if (!(workbook instanceof XSSFWorkbook)) {
+            return null;
+        }
+        String key = templateFile.getAbsolutePath();
+        DependencyGraph cached;
+        synchronized (graphs) {
+            cached = graphs.get(key);
+        }
+        if (cached != null && cached.version.equals(version)) {
+            return cached;
+        }
+        long start = System.nanoTime();
+        DependencyGraph graph = build((XSSFWorkbook) workbook, version);
+        synchronized (graphs) {
+            graphs.put(key, graph);
+        }
+        logger.info("Built formula dependency graph for {} (version {}): {} formula(s) in {} ms",
+                templateFile.getName(), version, graph.formulaCount, (System.nanoTime() - start) / 1_000_000);
+        return graph;
+    }
+    
+    /**
+     * 重新计算受填写影响的公式
+     *
+     * @param workbook 已填写的工作簿
+     * @param graph 模板依赖图，为null时全量重算
+     * @param cells 填写到第一个工作表的单元格（行列从1开始）
+     * @return 重算结果
+     */
+    public Recalculation recalculate(Workbook workbook, DependencyGraph graph, CellBatch cells) {
+        FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+        Recalculation result = new Recalculation();
+        
+        if (graph == null) {
+            result.incremental = false;
+            for (Sheet sheet : workbook) {
+                for (Row row : sheet) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() == CellType.FORMULA) {
+                            evaluate(evaluator, cell, result);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+        
+        result.incremental = true;
+        Set<Long> visited = new HashSet<>();
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        for (int i = 0; i < cells.size(); i++) {
+            queue.add(cellKey(0, cells.getRow(i) - 1, cells.getCol(i) - 1));
+        }
+        List<Long> affected = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            long precedent = queue.poll();
+            graph.forEachDependent(precedent, dependent -> {
+                if (visited.add(dependent)) {
+                    affected.add(dependent);
+                    queue.add(dependent);
+                }
+            });
+        }
+        
+        for (long key : affected) {
+            Sheet sheet = workbook.getSheetAt(sheetOf(key));
+            Row row = sheet.getRow(rowOf(key));
+            Cell cell = row != null ? row.getCell(colOf(key)) : null;
+            // Formula cells overwritten by the fill are plain values now
+            if (cell != null && cell.getCellType() == CellType.FORMULA) {
+                evaluate(evaluator, cell, result);
+            }
+        }
+        return result;
+    }
+    
+    public void evict(File templateFile) {
+        synchronized (graphs) {
+            graphs.remove(templateFile.getAbsolutePath());
+        }
+    }
+    
+    private void evaluate(FormulaEvaluator evaluator, Cell cell, Recalculation result) {
+        try {
+            evaluator.evaluateFormulaCell(cell);
+            result.evaluatedCount++;
+        } catch (RuntimeException e) {
+            result.failedCount++;
+            logger.debug("Could not evaluate {}!{}: {}", cell.getSheet().getSheetName(), cell.getAddress(), e.getMessage());
+        }
+    }
+    
+    private DependencyGraph build(XSSFWorkbook workbook, String version) {
+        XSSFEvaluationWorkbook evaluationWorkbook = XSSFEvaluationWorkbook.create(workbook);
+        DependencyGraph graph = new DependencyGraph(version, workbook.getNumberOfSheets());
+        
+        for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
+            Sheet sheet = workbook.getSheetAt(sheetIndex);
+            for (Row row : sheet) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() != CellType.FORMULA) {
+                        continue;
+                    }
+                    graph.formulaCount++;
+                    long dependent = cellKey(sheetIndex, cell.getRowIndex(), cell.getColumnIndex());
+                    Ptg[] ptgs;
+                    try {
+                        ptgs = FormulaParser.parse(cell.getCellFormula(), evaluationWorkbook, FormulaType.CELL, sheetIndex, cell.getRowIndex());
+                    } catch (RuntimeException e) {
+                        logger.debug("Skipping unparsable formula at {}!{}: {}", sheet.getSheetName(), cell.getAddress(), e.getMessage());
+                        continue;
+                    }
+                    for (Ptg ptg : ptgs) {
+                        if (ptg instanceof Ref3DPxg) {
+                            Ref3DPxg ref = (Ref3DPxg) ptg;
+                            int target = ref.getExternalWorkbookNumber() > 0 ? -1 : workbook.getSheetIndex(ref.getSheetName());
+                            if (target >= 0) {
+                                graph.addCell(cellKey(target, ref.getRow(), ref.getColumn()), dependent);
+                            }
+                        } else if (ptg instanceof Area3DPxg) {
+                            Area3DPxg area = (Area3DPxg) ptg;
+                            int target = area.getExternalWorkbookNumber() > 0 ? -1 : workbook.getSheetIndex(area.getSheetName());
+                            if (target >= 0) {
+                                graph.addArea(target, area.getFirstRow(), area.getLastRow(), area.getFirstColumn(), area.getLastColumn(), dependent);
+                            }
+                        } else if (ptg instanceof RefPtgBase) {
+                            RefPtgBase ref = (RefPtgBase) ptg;
+                            graph.addCell(cellKey(sheetIndex, ref.getRow(), ref.getColumn()), dependent);
+                        } else if (ptg instanceof AreaPtgBase) {
+                            AreaPtgBase area = (AreaPtgBase) ptg;
+                            graph.addArea(sheetIndex, area.getFirstRow(), area.getLastRow(), area.getFirstColumn(), area.getLastColumn(), dependent);
+                        }
+                    }
+                }
+            }
+        }
+        return graph;
+    }
+    
+    // 工作表序号、行号（20位）和列号（14位）打包为一个long
+    static long cellKey(int sheet, int row, int col) {
+        return ((long) sheet << 34) | ((long) row << 14) | col;
+    }
+    
+    static int sheetOf(long key) {
+        return (int) (key >>> 34);
+    }
+    
+    static int rowOf(long key) {
+        return (int) ((key >>> 14) & 0xFFFFF);
+    }
+    
+    static int colOf(long key) {
+        return (int) (key & 0x3FFF);
+    }
+    
+    /**
+     * 某一模板版本的反向依赖图，构建后只读，可被并发请求共享
+     */
+    public static class DependencyGraph {
+        
+        private final String version;
+        // 单元格引用：被引用单元格 -> 依赖它的公式单元格
+        private final Map<Long, List<Long>> cellDependents = new HashMap<>();
+        // 区域引用：按 (工作表, 列) 索引的窄区域，以及每个工作表上的宽区域
+        private final Map<Long, List<AreaEdge>> areasByColumn = new HashMap<>();
+        private final List<List<AreaEdge>> wideAreas;
+        private int formulaCount;
+        
+        DependencyGraph(String version, int sheetCount) {
+            this.version = version;
+            this.wideAreas = new ArrayList<>(sheetCount);
+            for (int i = 0; i < sheetCount; i++) {
+                wideAreas.add(new ArrayList<>());
+            }
+        }
+        
+        void addCell(long precedent, long dependent) {
+            cellDependents.computeIfAbsent(precedent, key -> new ArrayList<>(2)).add(dependent);
+        }
+        
+        void addArea(int sheet, int firstRow, int lastRow, int firstCol, int lastCol, long dependent) {
+            AreaEdge edge = new AreaEdge(firstRow, lastRow, firstCol, lastCol, dependent);
+            if (lastCol - firstCol + 1 > MAX_INDEXED_AREA_WIDTH) {
+                wideAreas.get(sheet).add(edge);
+                return;
+            }
+            for (int col = firstCol; col <= lastCol; col++) {
+                areasByColumn.computeIfAbsent(cellKey(sheet, 0, col), key -> new ArrayList<>()).add(edge);
+            }
+        }
+        
+        void forEachDependent(long precedent, LongConsumer consumer) {
+            List<Long> direct = cellDependents.get(precedent);
+            if (direct != null) {
+                for (long dependent : direct) {
+                    consumer.accept(dependent);
+                }
+            }
+            int sheet = sheetOf(precedent);
+            int row = rowOf(precedent);
+            int col = colOf(precedent);
+            List<AreaEdge> narrow = areasByColumn.get(cellKey(sheet, 0, col));
+            if (narrow != null) {
+                for (AreaEdge edge : narrow) {
+                    if (row >= edge.firstRow && row <= edge.lastRow) {
+                        consumer.accept(edge.dependent);
+                    }
+                }
+            }
+            if (sheet < wideAreas.size()) {
+                for (AreaEdge edge : wideAreas.get(sheet)) {
+                    if (edge.contains(row, col)) {
+                        consumer.accept(edge.dependent);
+                    }
+                }
+            }
+        }
+        
+        public String getVersion() {
+            return version;
+        }
+        
+        public int getFormulaCount() {
+            return formulaCount;
+        }
+    }
+    
+    private static final class AreaEdge {
+        
+        private final int firstRow;
+        private final int lastRow;
+        private final int firstCol;
+        private final int lastCol;
+        private final long dependent;
+        
+        AreaEdge(int firstRow, int lastRow, int firstCol, int lastCol, long dependent) {
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.firstCol = firstCol;
+            this.lastCol = lastCol;
+            this.dependent = dependent;
+        }
+        
+        boolean contains(int row, int col) {
+            return row >= firstRow && row <= lastRow && col >= firstCol && col <= lastCol;
+        }
+    }
+    
+    /**
+     * 重算结果
+     */
+    public static class Recalculation {
+        
+        private boolean incremental;
+        private int evaluatedCount;
+        private int failedCount;
+        
+        public boolean isIncremental() {
+            return incremental;
+        }
+        
+        public int getEvaluatedCount() {
+            return evaluatedCount;
+        }
+        
+        public int getFailedCount() {
+            return failedCount;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import com.formfill.api.dto.RepeatRegion;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellCopyPolicy;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 重复区域展开服务
+ *
+ * 每个区域只做一次 shiftRows，把区域下方的内容整体下移 (条目数-1)×组高 行，
+ * 再用 copyRows 把模板组逐组复制到空出的位置（样式、行高和相对公式随之复制），
+ * 总开销与插入行数成线性关系，不会因逐行插入而退化为平方级。
+ * 
+ * 合并单元格不交给 copyRows 处理：它每次复制都会扫描并校验工作表中全部合并区域，
+ * 组数多时同样是平方级。这里先取出组内的合并区域，再按组偏移直接追加。
+ *
+ * 复制的是模板组本身（标签、样式、公式），因此要在填写任何值之前展开；固定位置的单元格随后
+ * 按 Expansion.shiftedRow 换算到展开后的行号填写，不会被复制到每一组中。
+ *
+ * shiftRows 不会延伸结束于区域最后一行的区域引用（如区域下方合计行的 SUM(C5:C7)），
+ * 展开后把本工作表中区域以外、起点不晚于区域首行且终点为区域末行的区域引用延伸到最后一组。
+ *
+ * 区域按起始行从下往上处理，下方区域的插入不会改变上方区域的行号。
+ */
+@Service
+public class RepeatingRegionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RepeatingRegionService.class);
+    
+    private static final CellCopyPolicy COPY_POLICY = new CellCopyPolicy.Builder()
+            .cellValue(true)
+            .cellStyle(true)
+            .cellFormula(true)
+            .mergedRegions(false)
+            .rowHeight(true)
+            .condenseRows(false)
+            .build();
+    
+    /**
+     * 在模板工作表中展开重复区域并写入条目
+     *
+     * @param sheet 模板工作表，必须是 .xlsx 工作表
+     * @param repeats 已通过预检的重复区域
+     * @return 展开结果
+     */
+    public Expansion expand(Sheet sheet, List<RepeatRegion> repeats) {
+        if (!(sheet instanceof XSSFSheet)) {
+            throw new IllegalArgumentException("Repeating regions require an .xlsx template");
+        }
+        XSSFSheet xssfSheet = (XSSFSheet) sheet;
+        Expansion expansion = new Expansion();
+        
+        List<RepeatRegion> bottomUp = new ArrayList<>(repeats);
+        bottomUp.sort(Comparator.comparingInt(RepeatRegion::getStartRow).reversed());
+        
+        for (RepeatRegion region : bottomUp) {
+            int height = region.getHeight();
+            int first = region.getStartRow() - 1;
+            int last = region.getEndRow() - 1;
+            int groups = region.getItemCount();
+            
+            if (groups > 1) {
+                int inserted = (int) region.getInsertedRows();
+                // Single bulk shift for everything below the region
+                int lastRowNum = xssfSheet.getLastRowNum();
+                if (last < lastRowNum) {
+                    xssfSheet.shiftRows(last + 1, lastRowNum, inserted, true, false);
+                }
+                List<CellRangeAddress> groupMerges = new ArrayList<>();
+                for (CellRangeAddress merged : xssfSheet.getMergedRegions()) {
+                    if (merged.getFirstRow() >= first && merged.getLastRow() <= last) {
+                        groupMerges.add(merged);
+                    }
+                }
+                for (int g = 1; g < groups; g++) {
+                    int offset = g * height;
+                    xssfSheet.copyRows(first, last, first + offset, COPY_POLICY);
+                    for (CellRangeAddress merged : groupMerges) {
+                        // Target rows were freshly vacated by the shift, so overlap validation is unnecessary
+                        xssfSheet.addMergedRegionUnsafe(new CellRangeAddress(merged.getFirstRow() + offset,
+                                merged.getLastRow() + offset, merged.getFirstColumn(), merged.getLastColumn()));
+                    }
+                }
+                int extended = extendRanges(xssfSheet, first, last, inserted);
+                if (extended > 0) {
+                    logger.info("Extended {} formula(s) ending at row {} over the inserted groups", extended, region.getEndRow());
+                }
+                expansion.insertedRows += inserted;
+                expansion.shifts.add(new int[] {region.getEndRow(), inserted});
+            }
+            
+            for (int g = 0; g < groups; g++) {
+                CellBatch item = region.getItems().get(g);
+                if (item == null) {
+                    continue;
+                }
+                int groupStart = first + g * height;
+                expansion.totalFields += item.size() + item.getSkippedCount();
+                for (int i = 0; i < item.size(); i++) {
+                    String value = item.getValue(i);
+                    if (value == null) {
+                        continue;
+                    }
+                    Row row = xssfSheet.getRow(groupStart + item.getRow(i) - 1);
+                    if (row == null) {
+                        row = xssfSheet.createRow(groupStart + item.getRow(i) - 1);
+                    }
+                    Cell cell = row.getCell(item.getCol(i) - 1);
+                    if (cell == null) {
+                        cell = row.createCell(item.getCol(i) - 1);
+                    }
+                    // Keep the style copied from the template group
+                    cell.setCellValue(value);
+                    expansion.filledCount++;
+                }
+            }
+            logger.info("Expanded repeat region rows {}..{} into {} group(s)", region.getStartRow(), region.getEndRow(), groups);
+        }
+        return expansion;
+    }
+    
+    /**
+     * 把区域以外、覆盖整个模板组且结束于区域末行的区域引用延伸到最后一组，返回修改的公式数
+     */
+    private int extendRanges(XSSFSheet sheet, int first, int last, int inserted) {
+        XSSFEvaluationWorkbook evaluationWorkbook = XSSFEvaluationWorkbook.create(sheet.getWorkbook());
+        int sheetIndex = sheet.getWorkbook().getSheetIndex(sheet);
+        int extended = 0;
+        for (Row row : sheet) {
+            if (row.getRowNum() >= first && row.getRowNum() <= last + inserted) {
+                continue;
+            }
+            for (Cell cell : row) {
+                if (cell.getCellType() != CellType.FORMULA || cell.getCellFormula().indexOf(':') < 0) {
+                    continue;
+                }
+                Ptg[] ptgs;
+                try {
+                    ptgs = FormulaParser.parse(cell.getCellFormula(), evaluationWorkbook, FormulaType.CELL, sheetIndex);
+                } catch (FormulaParseException e) {
+                    continue;
+                }
+                boolean changed = false;
+                for (Ptg ptg : ptgs) {
+                    if (ptg instanceof Pxg && !sheet.getSheetName().equalsIgnoreCase(((Pxg) ptg).getSheetName())) {
+                        continue;
+                    }
+                    if (ptg instanceof AreaPtgBase) {
+                        AreaPtgBase area = (AreaPtgBase) ptg;
+                        if (area.getFirstRow() <= first && area.getLastRow() == last) {
+                            area.setLastRow(last + inserted);
+                            changed = true;
+                        }
+                    }
+                }
+                if (changed) {
+                    cell.setCellFormula(FormulaRenderer.toFormulaString(evaluationWorkbook, ptgs));
+                    extended++;
+                }
+            }
+        }
+        return extended;
+    }
+    
+    /**
+     * 没有模板时按组高把条目换算为绝对坐标，追加到单元格批次中
+     */
+    public CellBatch flatten(CellBatch cells, List<RepeatRegion> repeats) {
+        CellBatch flattened = new CellBatch(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            flattened.add(cells.getRow(i), cells.getCol(i), cells.getValue(i));
+        }
+        for (RepeatRegion region : repeats) {
+            for (int g = 0; g < region.getItemCount(); g++) {
+                CellBatch item = region.getItems().get(g);
+                if (item == null) {
+                    continue;
+                }
+                int groupStart = region.getStartRow() + g * region.getHeight();
+                for (int i = 0; i < item.size(); i++) {
+                    flattened.add(groupStart + item.getRow(i) - 1, item.getCol(i), item.getValue(i));
+                }
+            }
+        }
+        return flattened;
+    }
+    
+    /**
+     * 展开结果
+     */
+    public static class Expansion {
+        
+        private int insertedRows;
+        private int filledCount;
+        private int totalFields;
+        // 每个展开区域的 {末行（从1开始，模板坐标）, 插入行数}
+        private final List<int[]> shifts = new ArrayList<>();
+        
+        /**
+         * 模板中的行号（从1开始）在展开后的行号：位于某区域下方的行下移该区域插入的行数
+         */
+        public int shiftedRow(int templateRow) {
+            int row = templateRow;
+            for (int[] shift : shifts) {
+                if (templateRow > shift[0]) {
+                    row += shift[1];
+                }
+            }
+            return row;
+        }
+        
+        public int getInsertedRows() {
+            return insertedRows;
+        }
+        
+        public int getFilledCount() {
+            return filledCount;
+        }
+        
+        public int getTotalFields() {
+            return totalFields;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.formfill.api.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 请求阶段耗时记录器，绑定到当前处理线程
+ * 
+ * 控制器通过 start() 开启记录，服务层在各阶段调用 mark()/record()。
+ * 未开启时 current() 为 null，所有静态方法直接返回，开销仅为一次ThreadLocal读取。
+ * 所有耗时均使用 System.nanoTime() 单调时钟测量。
+ */
+public final class RequestTimings {
+    
+    public static final String LOOKUP = "lookup";
+    public static final String PARSE = "parse";
+    public static final String FILL = "fill";
+    public static final String RECALC = "recalc";
+    public static final String SERIALIZE = "serialize";
+    public static final String WRITE = "write";
+    public static final String READ = "read";
+    public static final String SMTP = "smtp";
+    
+    public static final String HEADER = "Server-Timing";
+    
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+    
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    
+    private RequestTimings() {}
+    
+    /**
+     * 为当前线程开启阶段耗时记录
+     */
+    public static RequestTimings start() {
+        RequestTimings timings = new RequestTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+    
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+    
+    /**
+     * 返回阶段起点；未开启记录时返回0
+     */
+    public static long mark() {
+        return CURRENT.get() != null ? System.nanoTime() : 0L;
+    }
+    
+    /**
+     * 记录从 startNanos 到现在的阶段耗时，同名阶段累加
+     */
+    public static void record(String phase, long startNanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.add(phase, System.nanoTime() - startNanos);
+        }
+    }
+    
+    /**
+     * 包装输出流以单独统计落盘耗时；未开启记录时原样返回
+     */
+    public static OutputStream timeWrites(OutputStream out) {
+        RequestTimings timings = CURRENT.get();
+        return timings != null ? new TimedOutputStream(out, timings) : out;
+    }
+    
+    /**
+     * 为响应加上 Server-Timing 头；includeTimings 为 true 时响应体中同时返回 timings 对象
+     * 
+     * @param timings 本次请求的记录器，未开启记录时为null，原样返回响应
+     */
+    public static ResponseEntity<Map<String, Object>> withTimings(ResponseEntity.BodyBuilder builder, Map<String, Object> body,
+                                                                 RequestTimings timings, boolean includeTimings) {
+        if (timings != null) {
+            builder.header(HEADER, timings.toHeaderValue());
+            if (includeTimings) {
+                body.put("timings", timings.toMillis());
+            }
+        }
+        return builder.body(body);
+    }
+    
+    public void add(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+    
+    public long getNanos(String phase) {
+        return phases.getOrDefault(phase, 0L);
+    }
+    
+    /**
+     * 各阶段耗时（毫秒），包含 total
+     */
+    public Map<String, Double> toMillis() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            result.put(entry.getKey(), toMillis(entry.getValue()));
+        }
+        result.put("total", toMillis(System.nanoTime() - startNanos));
+        return result;
+    }
+    
+    /**
+     * 生成 Server-Timing 响应头，例如 "lookup;dur=0.12, parse;dur=35.4, total;dur=80.2"
+     */
+    public String toHeaderValue() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Double> entry : toMillis().entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(";dur=").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+    
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+    
+    /**
+     * 统计底层流 write 调用耗时的输出流
+     */
+    private static final class TimedOutputStream extends FilterOutputStream {
+        
+        private final RequestTimings timings;
+        
+        TimedOutputStream(OutputStream out, RequestTimings timings) {
+            super(out);
+            this.timings = timings;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            timings.add(WRITE, System.nanoTime() - start);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            timings.add(WRITE, System.nanoTime() - start);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            timings.add(WRITE, System.nanoTime() - start);
+        }
+    }
+}
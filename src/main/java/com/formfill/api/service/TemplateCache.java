@@ -0,0 +1,241 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.store.TemplateVersion;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 模板文件内容缓存
+ * 
+ * 以模板绝对路径为键缓存文件字节，(最后修改时间, 文件大小) 变化后下次访问自动重新读取。
+ * 每次填写从缓存字节解析出独立的Workbook，省去重复的磁盘读取，多个请求之间不共享可变的POI对象。
+ * 版本号是模板内容的 SHA-256（见 TemplateVersion），同样的内容在各节点上版本号相同，
+ * 结构索引与公式依赖图等按版本号缓存的结果随内容一致地失效；版本号按文件状态记住，不必每次重新计算。
+ *
+ * 缓存内容总大小不超过 formfill.templates.cache-max-mb，超出时移除最久未用的模板；
+ * 记住的版本号最多 MAX_VERSIONS 个。指标 formfill.template.cache.bytes 为当前缓存的内容大小。
+ */
+@Service
+public class TemplateCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCache.class);
+    
+    // 超过该大小的模板不缓存，直接从磁盘读取
+    private static final long MAX_CACHED_BYTES = 20L * 1024 * 1024;
+    
+    // 记住版本号的模板文件数上限
+    private static final int MAX_VERSIONS = 4096;
+    
+    private final long maxTotalBytes;
+    
+    // 按访问顺序排列，最久未用的在前；以 cache 自身加锁
+    private final LinkedHashMap<String, CachedTemplate> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    
+    // 文件状态对应的内容版本号，包括不缓存内容的大模板
+    private final Map<String, FileVersion> versions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileVersion> eldest) {
+            return size() > MAX_VERSIONS;
+        }
+    };
+    
+    @Autowired
+    public TemplateCache(FormFillConfig formFillConfig, MeterRegistry meterRegistry) {
+        this.maxTotalBytes = Math.max(0, (long) formFillConfig.getTemplates().getCacheMaxMb()) * 1024 * 1024;
+        Gauge.builder("formfill.template.cache.bytes", this, TemplateCache::getCachedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * 获取模板的当前版本，文件变化时重新加载
+     */
+    public CachedTemplate get(File templateFile) throws IOException {
+        String key = templateFile.getAbsolutePath();
+        long lastModified = templateFile.lastModified();
+        long length = templateFile.length();
+        
+        CachedTemplate cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            return cached;
+        }
+        
+        byte[] bytes = length <= Math.min(MAX_CACHED_BYTES, maxTotalBytes) ? Files.readAllBytes(templateFile.toPath()) : null;
+        String version;
+        if (bytes != null) {
+            version = TemplateVersion.versionOf(bytes);
+            rememberVersion(key, new FileVersion(lastModified, length, version));
+        } else {
+            version = versionOf(templateFile);
+        }
+        CachedTemplate loaded = new CachedTemplate(templateFile, lastModified, length, version, bytes);
+        if (bytes != null) {
+            put(key, loaded);
+            logger.info("Cached template {} (version {})", templateFile.getName(), loaded.getVersion());
+        }
+        return loaded;
+    }
+    
+    /**
+     * 模板文件当前内容的版本号，不把内容读入缓存
+     */
+    public String versionOf(File templateFile) throws IOException {
+        String key = templateFile.getAbsolutePath();
+        long lastModified = templateFile.lastModified();
+        long length = templateFile.length();
+        FileVersion known;
+        synchronized (versions) {
+            known = versions.get(key);
+        }
+        if (known != null && known.lastModified == lastModified && known.length == length) {
+            return known.version;
+        }
+        String version = TemplateVersion.versionOf(templateFile.toPath());
+        rememberVersion(key, new FileVersion(lastModified, length, version));
+        return version;
+    }
+    
+    /**
+     * 从缓存内容解析出一个新的Workbook，调用方负责关闭
+     */
+    public Workbook openWorkbook(CachedTemplate template) throws IOException {
+        if (template.bytes != null) {
+            return WorkbookFactory.create(new ByteArrayInputStream(template.bytes));
+        }
+        // 大模板不缓存：按流读取，避免以读写方式打开文件导致关闭时回写模板
+        try (InputStream in = new FileInputStream(template.file)) {
+            return WorkbookFactory.create(in);
+        }
+    }
+    
+    /**
+     * 以只读方式打开 .xlsx 模板的OPC包，供事件(SAX)解析使用，调用方负责关闭
+     */
+    public OPCPackage openPackage(CachedTemplate template) throws IOException, InvalidFormatException {
+        if (template.bytes != null) {
+            return OPCPackage.open(new ByteArrayInputStream(template.bytes));
+        }
+        return OPCPackage.open(template.file, PackageAccess.READ);
+    }
+    
+    public void evict(File templateFile) {
+        String key = templateFile.getAbsolutePath();
+        synchronized (cache) {
+            CachedTemplate removed = cache.remove(key);
+            if (removed != null) {
+                cachedBytes -= removed.bytes.length;
+            }
+        }
+        synchronized (versions) {
+            versions.remove(key);
+        }
+    }
+    
+    /**
+     * 当前缓存的模板内容总大小（字节）
+     */
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+    
+    private void put(String key, CachedTemplate loaded) {
+        synchronized (cache) {
+            CachedTemplate previous = cache.put(key, loaded);
+            if (previous != null) {
+                cachedBytes -= previous.bytes.length;
+            }
+            cachedBytes += loaded.bytes.length;
+            // 从最久未用的开始移除，刚放入的排在最后，不会被移除
+            Iterator<Map.Entry<String, CachedTemplate>> eldest = cache.entrySet().iterator();
+            while (cachedBytes > maxTotalBytes && eldest.hasNext()) {
+                Map.Entry<String, CachedTemplate> entry = eldest.next();
+                if (entry.getValue() == loaded) {
+                    break;
+                }
+                cachedBytes -= entry.getValue().bytes.length;
+                eldest.remove();
+                logger.debug("Evicted template {} from cache", entry.getKey());
+            }
+        }
+    }
+    
+    private void rememberVersion(String key, FileVersion version) {
+        synchronized (versions) {
+            versions.put(key, version);
+        }
+    }
+    
+    private static final class FileVersion {
+        
+        final long lastModified;
+        final long length;
+        final String version;
+        
+        FileVersion(long lastModified, long length, String version) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.version = version;
+        }
+    }
+    
+    /**
+     * 某一版本的模板文件内容
+     */
+    public static class CachedTemplate {
+        
+        private final File file;
+        private final long lastModified;
+        private final long length;
+        private final String version;
+        private final byte[] bytes;
+        
+        CachedTemplate(File file, long lastModified, long length, String version, byte[] bytes) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.version = version;
+            this.bytes = bytes;
+        }
+        
+        public File getFile() {
+            return file;
+        }
+        
+        public long getLength() {
+            return length;
+        }
+        
+        /**
+         * 模板版本号：内容的 SHA-256，内容变化时改变
+         */
+        public String getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.formfill.api.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 模板目录的内存模型
+ *
+ * 启动时扫描一次 templates 目录，之后由 WatchService 的文件事件增量维护，
+ * 列表、查找和预览不再访问磁盘。每次变化生成一个新的不可变快照并递增版本号，
+ * 读取方无锁地拿到一致的快照；版本号用作 /api/templates 的ETag。
+ * 事件丢失（OVERFLOW）时整体重新扫描；WatchService 不可用时退化为读取时按间隔重新扫描。
+ */
+@Service
+public class TemplateCatalog {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCatalog.class);
+    
+    private static final String TEMPLATES_DIR = "templates";
+    
+    // WatchService 不可用时两次扫描之间的最短间隔
+    private static final long RESCAN_INTERVAL_MS = 2000;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    private final Path directory = Paths.get(TEMPLATES_DIR).toAbsolutePath().normalize();
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private volatile Snapshot snapshot = new Snapshot(0, new TreeMap<>());
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile long lastScan;
+    
+    @PostConstruct
+    public void start() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            logger.warn("Could not create templates directory {}: {}", directory, e.getMessage());
+        }
+        rescan();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watcher = new Thread(this::watch, "template-catalog-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            logger.info("Template catalog loaded {} template(s), watching {}", snapshot.entries.size(), directory);
+        } catch (IOException | UnsupportedOperationException e) {
+            watchService = null;
+            logger.warn("File watching unavailable for {}, catalog will rescan periodically: {}", directory, e.getMessage());
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Error closing watch service: {}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 当前快照
+     */
+    public Snapshot snapshot() {
+        if (watchService == null && System.currentTimeMillis() - lastScan > RESCAN_INTERVAL_MS) {
+            rescan();
+        }
+        return snapshot;
+    }
+    
+    /**
+     * 按文件名查找模板
+     */
+    public Entry get(String fileName) {
+        return snapshot().entries.get(fileName);
+    }
+    
+    /**
+     * 目录中有但尚未收到事件的文件（例如刚复制进来），立即读入目录
+     *
+     * @return 文件存在时返回条目，否则返回null
+     */
+    public Entry refresh(String fileName) {
+        Path file = directory.resolve(fileName).normalize();
+        if (!file.getParent().equals(directory) || !isTemplateName(fileName)) {
+            return null;
+        }
+        apply(fileName);
+        return snapshot.entries.get(fileName);
+    }
+    
+    private void watch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    logger.info("Template watch events overflowed, rescanning {}", directory);
+                    rescan();
+                } else {
+                    String fileName = ((Path) event.context()).getFileName().toString();
+                    if (isTemplateName(fileName)) {
+                        apply(fileName);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                logger.warn("Template directory {} is no longer watched", directory);
+                watchService = null;
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 按单个文件的当前状态更新快照
+     */
+    private synchronized void apply(String fileName) {
+        Entry current = snapshot.entries.get(fileName);
+        Entry updated = stat(directory.resolve(fileName));
+        if (updated == null ? current == null : updated.sameAs(current)) {
+            return;
+        }
+        TreeMap<String, Entry> entries = new TreeMap<>(snapshot.entries);
+        if (updated == null) {
+            entries.remove(fileName);
+            templateCache.evict(directory.resolve(fileName).toFile());
+            logger.info("Template removed from catalog: {}", fileName);
+        } else {
+            entries.put(fileName, updated);
+            logger.info("Template {} in catalog: {}", current == null ? "added" : "updated", fileName);
+        }
+        snapshot = new Snapshot(snapshot.version + 1, entries);
+    }
+    
+    private synchronized void rescan() {
+        TreeMap<String, Entry> entries = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> isTemplateName(file.getFileName().toString()))
+                    .map(this::stat)
+                    .filter(entry -> entry != null)
+                    .forEach(entry -> entries.put(entry.fileName, entry));
+        } catch (IOException e) {
+            logger.warn("Could not scan templates directory {}: {}", directory, e.getMessage());
+        }
+        lastScan = System.currentTimeMillis();
+        if (!sameEntries(snapshot.entries, entries)) {
+            snapshot = new Snapshot(snapshot.version + 1, entries);
+        }
+    }
+    
+    private boolean sameEntries(Map<String, Entry> a, Map<String, Entry> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (Entry entry : b.values()) {
+            if (!entry.sameAs(a.get(entry.fileName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Entry stat(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis(), Files.isReadable(file));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Could not read template attributes for {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+    
+    private static boolean isTemplateName(String fileName) {
+        return (fileName.endsWith(".xlsx") || fileName.endsWith(".xls")) && !fileName.startsWith("~$") && !fileName.startsWith(".");
+    }
+    
+    /**
+     * 目录快照，按文件名排序
+     */
+    public final class Snapshot {
+        
+        private final long version;
+        private final TreeMap<String, Entry> entries;
+        private final List<Entry> ordered;
+        
+        Snapshot(long version, TreeMap<String, Entry> entries) {
+            this.version = version;
+            this.entries = entries;
+            this.ordered = Collections.unmodifiableList(new ArrayList<>(entries.values()));
+        }
+        
+        /**
+         * 目录版本号，任一模板增删改后改变（重启后也不会与之前的版本相同）
+         */
+        public String getVersion() {
+            return epoch + "-" + Long.toHexString(version);
+        }
+        
+        public List<Entry> getEntries() {
+            return ordered;
+        }
+        
+        public Entry get(String fileName) {
+            return entries.get(fileName);
+        }
+        
+        /**
+         * 文件名以 prefix 开头的模板，按文件名排序
+         */
+        public List<Entry> withPrefix(String prefix) {
+            if (prefix == null || prefix.isEmpty()) {
+                return ordered;
+            }
+            // Every name starting with prefix sorts before prefix followed by the largest char
+            return new ArrayList<>(entries.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+        }
+    }
+    
+    /**
+     * 单个模板文件
+     */
+    public static final class Entry {
+        
+        private final String fileName;
+        private final String baseName;
+        private final String absolutePath;
+        private final long size;
+        private final long lastModified;
+        private final boolean readable;
+        private final Map<String, Object> view;
+        
+        Entry(Path file, long size, long lastModified, boolean readable) {
+            this.fileName = file.getFileName().toString();
+            this.baseName = fileName.replaceAll("\\.(xlsx|xls)$", "");
+            this.absolutePath = file.toString();
+            this.size = size;
+            this.lastModified = lastModified;
+            this.readable = readable;
+            
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("name", baseName);
+            map.put("filename", fileName);
+            map.put("path", absolutePath);
+            map.put("size", size);
+            map.put("lastModified", lastModified);
+            map.put("downloadUrl", "/api/template/download/" + fileName);
+            map.put("previewUrl", "/api/template/preview/" + fileName);
+            map.put("getTemplateUrl", "/api/template/" + baseName);
+            this.view = Collections.unmodifiableMap(map);
+        }
+        
+        boolean sameAs(Entry other) {
+            return other != null && other.size == size && other.lastModified == lastModified && other.readable == readable;
+        }
+        
+        public String getFileName() {
+            return fileName;
+        }
+        
+        public String getBaseName() {
+            return baseName;
+        }
+        
+        public String getAbsolutePath() {
+            return absolutePath;
+        }
+        
+        public File getFile() {
+            return new File(absolutePath);
+        }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        public long getLastModified() {
+            return lastModified;
+        }
+        
+        public boolean isReadable() {
+            return readable;
+        }
+        
+        /**
+         * /api/templates 列表中的表示，构造时生成一次
+         */
+        public Map<String, Object> toMap() {
+            return view;
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import com.formfill.api.store.TemplateStore;
+import com.formfill.api.store.TemplateVersion;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 共享模板仓库的本节点读取缓存
+ *
+ * 配置了共享仓库（formfill.templates.repository 为 filesystem 或 s3）时，templates 目录就是仓库在本节点的缓存：
+ * 启动时和每隔 sync-interval-seconds 把各模板的当前版本同步到 templates 目录，只下载内容变化了的模板；
+ * 查找不到模板时立即同步一次。模板目录、模板缓存与文件监听照常工作，所有节点最终使用同一版本的内容。
+ * 上传的模板先发布到共享仓库再放入本地目录，其他节点在下次同步时取得；以共享仓库的当前版本为准，
+ * 本地目录中内容不同的同名模板会被替换。
+ *
+ * 填写请求可以用 templateVersion 固定模板版本：不是当前版本时从共享仓库取出该版本，
+ * 缓存在 templates/.versions/<版本号>/<文件名>（不进入模板目录），最多保留 max-pinned-versions 个。
+ * 没有共享仓库时只能固定到当前版本。
+ */
+@Service
+public class TemplateRepository {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TemplateRepository.class);
+    
+    private static final String TEMPLATES_DIR = "templates";
+    private static final String PINNED_DIR = ".versions";
+    
+    // 查找不到模板或版本时两次按需同步之间的最短间隔
+    private static final long MISS_SYNC_INTERVAL_MS = 1000;
+    
+    @Autowired(required = false)
+    private TemplateStore templateStore;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    @Autowired
+    private TemplateCatalog templateCatalog;
+    
+    // TemplateSchemaService 依赖本类查找固定版本，延迟注入以避免循环依赖
+    @Lazy
+    @Autowired
+    private TemplateSchemaService templateSchemaService;
+    
+    @Autowired
+    private FormulaDependencyService formulaDependencyService;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    private final Path directory = Paths.get(TEMPLATES_DIR).toAbsolutePath().normalize();
+    private final Path pinnedDirectory = directory.resolve(PINNED_DIR);
+    
+    // 最近一次列举得到的全部版本
+    private volatile List<TemplateVersion> versions = List.of();
+    // 本节点发布的版本，列举结果可能早于发布，选当前版本时一并考虑
+    private final ConcurrentHashMap<String, TemplateVersion> published = new ConcurrentHashMap<>();
+    private final AtomicLong lastMissSync = new AtomicLong();
+    private ScheduledExecutorService syncer;
+    
+    @PostConstruct
+    public void start() {
+        if (templateStore == null) {
+            return;
+        }
+        FormFillConfig.Templates config = formFillConfig.getTemplates();
+        try {
+            if (config.isSeedFromLocal()) {
+                seed(heads(list()));
+            }
+            int updated = sync();
+            logger.info("Template repository ({}) has {} template(s), {} updated locally",
+                    templateStore.getType(), heads(versions).size(), updated);
+        } catch (IOException e) {
+            logger.warn("Initial sync from the {} template repository failed, using local templates: {}",
+                    templateStore.getType(), e.getMessage());
+        }
+        
+        syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "template-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getSyncIntervalSeconds());
+        syncer.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (Exception e) {
+                logger.warn("Template sync from the {} repository failed: {}", templateStore.getType(), e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+    }
+    
+    /**
+     * 仓库类型：none / filesystem / s3
+     */
+    public String getType() {
+        return templateStore != null ? templateStore.getType() : "none";
+    }
+    
+    /**
+     * 把共享仓库中各模板的当前版本同步到本地目录
+     *
+     * @return 本地更新的模板数
+     */
+    public int sync() throws IOException {
+        if (templateStore == null) {
+            return 0;
+        }
+        int updated = 0;
+        for (TemplateVersion head : heads(list()).values()) {
+            try {
+                if (install(head)) {
+                    updated++;
+                }
+            } catch (IOException | RuntimeException e) {
+                // 单个模板同步失败（网络、本地文件名编码等）不影响其他模板
+                logger.warn("Could not sync template {} version {}: {}", head.getFileName(), head.getVersion(), e.getMessage());
+            }
+        }
+        return updated;
+    }
+    
+    /**
+     * 模板目录中查找不到模板时调用，立即从共享仓库同步一次
+     *
+     * @return 是否有模板更新，为true时调用方应重新查找
+     */
+    public boolean syncOnMiss() {
+        if (templateStore == null || !claimMissSync()) {
+            return false;
+        }
+        try {
+            return sync() > 0;
+        } catch (IOException e) {
+            logger.warn("Template sync on lookup miss failed: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * 发布上传的模板：先发布到共享仓库，再原子地放入本地目录（替换同名模板）
+     *
+     * 没有共享仓库时只放入本地目录；发布失败时本地目录不变。
+     *
+     * @return 模板内容的版本号
+     */
+    public synchronized String publish(String fileName, Path content) throws IOException {
+        String version = TemplateVersion.versionOf(content);
+        if (templateStore != null) {
+            TemplateVersion head = publishVersion(fileName, version, content);
+            logger.info("Published template {} version {} to the {} repository", fileName, version, templateStore.getType());
+            published.put(fileName, head);
+        }
+        move(content, directory.resolve(fileName));
+        return version;
+    }
+    
+    /**
+     * 模板的指定版本
+     *
+     * @param current 模板目录中的当前文件
+     * @param version 版本号（内容的 SHA-256）
+     * @return 该版本的模板文件；仓库中没有该版本时返回null
+     */
+    public File resolve(File current, String version) throws IOException {
+        if (!TemplateVersion.isVersion(version)) {
+            return null;
+        }
+        if (current.isFile() && version.equals(templateCache.versionOf(current))) {
+            return current;
+        }
+        String fileName = current.getName();
+        Path pinned = pinnedDirectory.resolve(version).resolve(fileName);
+        if (Files.isRegularFile(pinned)) {
+            Files.setLastModifiedTime(pinned.getParent(), FileTime.fromMillis(System.currentTimeMillis()));
+            return pinned.toFile();
+        }
+        if (templateStore == null) {
+            return null;
+        }
+        
+        TemplateVersion found = find(versions, fileName, version);
+        if (found == null && claimMissSync()) {
+            found = find(list(), fileName, version);
+        }
+        if (found == null) {
+            return null;
+        }
+        Files.createDirectories(pinned.getParent());
+        Path temp = pinned.resolveSibling("." + UUID.randomUUID() + ".tmp");
+        try {
+            fetch(found, temp);
+            move(temp, pinned);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.info("Fetched pinned template {} version {}", fileName, version);
+        prunePinned();
+        return pinned.toFile();
+    }
+    
+    /**
+     * 模板的所有版本，最新的在前；没有共享仓库时只有本地目录中的当前版本
+     */
+    public List<Map<String, Object>> history(String fileName) throws IOException {
+        List<Map<String, Object>> history = new ArrayList<>();
+        if (templateStore == null) {
+            TemplateCatalog.Entry entry = templateCatalog.get(fileName);
+            if (entry != null) {
+                history.add(describe(templateCache.versionOf(entry.getFile()), entry.getLastModified(), entry.getSize(), true));
+            }
+            return history;
+        }
+        List<TemplateVersion> all = list();
+        TemplateVersion head = heads(all).get(fileName);
+        all.stream()
+                .filter(template -> template.getFileName().equals(fileName))
+                .sorted(Comparator.comparingLong(TemplateVersion::getPublishedAt).reversed())
+                .forEach(template -> history.add(describe(template.getVersion(), template.getPublishedAt(),
+                        template.getSize(), head != null && template.getPath().equals(head.getPath()))));
+        return history;
+    }
+    
+    private Map<String, Object> describe(String version, long publishedAt, long size, boolean current) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("version", version);
+        map.put("publishedAt", publishedAt);
+        map.put("size", size);
+        map.put("current", current);
+        return map;
+    }
+    
+    /**
+     * 把一个模板的当前版本放入本地目录，内容相同时不下载
+     *
+     * 与 publish 互斥；本节点已经发布了更新的版本时跳过，避免用较早的列举结果覆盖刚上传的模板。
+     */
+    private synchronized boolean install(TemplateVersion head) throws IOException {
+        TemplateVersion latest = published.get(head.getFileName());
+        if (latest != null && latest.isNewerThan(head)) {
+            return false;
+        }
+        Path target = directory.resolve(head.getFileName());
+        if (Files.isRegularFile(target) && head.getVersion().equals(templateCache.versionOf(target.toFile()))) {
+            return false;
+        }
+        Path temp = directory.resolve(".sync-" + UUID.randomUUID() + ".tmp");
+        try {
+            fetch(head, temp);
+            move(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        templateCatalog.refresh(head.getFileName());
+        logger.info("Synced template {} version {} from the {} repository", head.getFileName(), head.getVersion(), templateStore.getType());
+        return true;
+    }
+    
+    /**
+     * 把共享仓库中还没有的本地模板发布上去
+     */
+    private void seed(Map<String, TemplateVersion> heads) {
+        for (TemplateCatalog.Entry entry : templateCatalog.snapshot().getEntries()) {
+            if (heads.containsKey(entry.getFileName())) {
+                continue;
+            }
+            try {
+                String version = templateCache.versionOf(entry.getFile());
+                published.put(entry.getFileName(), publishVersion(entry.getFileName(), version, entry.getFile().toPath()));
+                logger.info("Seeded template {} version {} into the {} repository", entry.getFileName(), version, templateStore.getType());
+            } catch (IOException e) {
+                logger.warn("Could not seed template {}: {}", entry.getFileName(), e.getMessage());
+            }
+        }
+    }
+    
+    private TemplateVersion publishVersion(String fileName, String version, Path content) throws IOException {
+        TemplateVersion template = templateStore.publish(fileName, version, content);
+        List<TemplateVersion> updated = new ArrayList<>(versions);
+        updated.add(template);
+        versions = updated;
+        return template;
+    }
+    
+    private List<TemplateVersion> list() throws IOException {
+        List<TemplateVersion> listed = templateStore.list();
+        versions = listed;
+        return listed;
+    }
+    
+    /**
+     * 各模板的当前版本：发布时间最新的一个
+     */
+    private Map<String, TemplateVersion> heads(List<TemplateVersion> all) {
+        Map<String, TemplateVersion> heads = new HashMap<>();
+        for (TemplateVersion template : all) {
+            heads.merge(template.getFileName(), template, (a, b) -> b.isNewerThan(a) ? b : a);
+        }
+        for (TemplateVersion template : published.values()) {
+            heads.merge(template.getFileName(), template, (a, b) -> b.isNewerThan(a) ? b : a);
+        }
+        return heads;
+    }
+    
+    private static TemplateVersion find(List<TemplateVersion> all, String fileName, String version) {
+        for (TemplateVersion template : all) {
+            if (template.getFileName().equals(fileName) && template.getVersion().equals(version)) {
+                return template;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 下载并校验内容与版本号一致
+     */
+    private void fetch(TemplateVersion template, Path target) throws IOException {
+        templateStore.fetch(template, target);
+        String actual = TemplateVersion.versionOf(target);
+        if (!actual.equals(template.getVersion())) {
+            throw new IOException("Content of " + template.getPath() + " does not match its version (got " + actual + ")");
+        }
+    }
+    
+    private boolean claimMissSync() {
+        long now = System.currentTimeMillis();
+        long last = lastMissSync.get();
+        return now - last >= MISS_SYNC_INTERVAL_MS && lastMissSync.compareAndSet(last, now);
+    }
+    
+    /**
+     * 固定版本缓存超过上限时删除最久未用的版本
+     */
+    private void prunePinned() {
+        List<Path> cached;
+        try (Stream<Path> dirs = Files.list(pinnedDirectory)) {
+            cached = dirs.filter(Files::isDirectory).collect(Collectors.toList());
+        } catch (IOException e) {
+            logger.debug("Could not list pinned templates: {}", e.getMessage());
+            return;
+        }
+        int excess = cached.size() - Math.max(1, formFillConfig.getTemplates().getMaxPinnedVersions());
+        if (excess <= 0) {
+            return;
+        }
+        cached.sort(Comparator.comparingLong(dir -> dir.toFile().lastModified()));
+        for (Path dir : cached.subList(0, excess)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    // 各缓存按绝对路径保存，删除的版本不会再被访问，不清理就一直占用内存
+                    templateCache.evict(file.toFile());
+                    templateSchemaService.evict(file.toFile());
+                    formulaDependencyService.evict(file.toFile());
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(dir);
+                logger.info("Removed pinned template version {}", dir.getFileName());
+            } catch (IOException e) {
+                logger.debug("Could not remove pinned template {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+    
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.CellBatch;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 模板结构分析服务
+ *
+ * 用 XSSFReader 的事件(SAX)接口扫描模板第一个工作表，不构建POI对象模型，得到：
+ * 文字标签及其相邻的输入单元格（右侧优先，其次下方）、合并区域和数据有效性。
+ * 只由下划线组成的单元格（如 "______"）视为填写占位符而不是标签；输入单元格限制在工作表的已用范围内。
+ * 结果按模板版本缓存，模板文件变化后下次访问重新分析；重复查询只是一次Map读取。
+ * 同一份结果还用于按标签填写（resolveLabels）：标签索引与结构一起构建和失效。
+ */
+@Service
+public class TemplateSchemaService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TemplateSchemaService.class);
+    
+    // 单个模板最多返回的标签数
+    private static final int MAX_LABELS = 5000;
+    
+    // 填写占位符，如 "______"、"＿＿＿"
+    private static final Pattern PLACEHOLDER = Pattern.compile("[_＿\\s]+");
+    
+    private final ConcurrentHashMap<String, CachedSchema> schemas = new ConcurrentHashMap<>();
+    
+    @Autowired
+    private FormFillerService formFillerService;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    @Autowired
+    private TemplateRepository templateRepository;
+    
+    /**
+     * 获取表单模板的结构
+     *
+     * @param formName 表单名称
+     * @return 包含成功状态和结构信息的Map
+     */
+    public Map<String, Object> getSchema(String formName) {
+        try {
+            File templateFile = formFillerService.locateTemplate(formName);
+            if (templateFile == null) {
+                return failure("Template not found for form: " + formName, "TEMPLATE_NOT_FOUND");
+            }
+            if (!templateFile.getName().toLowerCase().endsWith(".xlsx")) {
+                return failure("Schema analysis requires an .xlsx template", "UNSUPPORTED_TEMPLATE");
+            }
+            
+            TemplateCache.CachedTemplate template = templateCache.get(templateFile);
+            CachedSchema schema = getSchema(template);
+            
+            Map<String, Object> result = new LinkedHashMap<>(schema.content);
+            result.put("success", true);
+            result.put("formName", formName);
+            result.put("templateFile", templateFile.getName());
+            result.put("templateVersion", schema.version);
+            return result;
+        
+        } catch (Exception e) {
+            logger.error("Error analyzing template schema for '{}': {}", formName, e.getMessage(), e);
+            return failure("Failed to analyze template: " + e.getMessage(), "SCHEMA_ERROR");
+        }
+    }
+    
+    /**
+     * 按模板版本取缓存的结构，版本变化时重新扫描
+     */
+    CachedSchema getSchema(TemplateCache.CachedTemplate template) throws Exception {
+        String key = template.getFile().getAbsolutePath();
+        CachedSchema cached = schemas.get(key);
+        if (cached != null && cached.version.equals(template.getVersion())) {
+            return cached;
+        }
+        long start = System.nanoTime();
+        CachedSchema scanned = new CachedSchema(template.getVersion(), scan(template));
+        schemas.put(key, scanned);
+        logger.info("Analyzed template schema {} (version {}) in {} ms", template.getFile().getName(),
+                template.getVersion(), (System.nanoTime() - start) / 1_000_000);
+        return scanned;
+    }
+    
+    public void evict(File templateFile) {
+        schemas.remove(templateFile.getAbsolutePath());
+    }
+    
+    private Map<String, Object> scan(TemplateCache.CachedTemplate template) throws Exception {
+        try (OPCPackage pkg = templateCache.openPackage(template)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IllegalStateException("Template has no worksheets");
+            }
+            
+            SheetHandler handler = new SheetHandler(sharedStrings);
+            String sheetName;
+            try (InputStream sheet = sheets.next()) {
+                sheetName = sheets.getSheetName();
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(handler);
+                parser.parse(new InputSource(sheet));
+            }
+            return handler.toSchema(sheetName);
+        }
+    }
+    
+    private Map<String, Object> failure(String message, String code) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("error", message);
+        result.put("code", code);
+        return result;
+    }
+    
+    // 行号（从0开始）和列号打包为一个long
+    private static long key(int row, int col) {
+        return ((long) row << 16) | col;
+    }
+    
+    /**
+     * 把按标签填写的内容解析为单元格坐标
+     * 
+     * 标签索引随结构分析结果一起按模板版本缓存，解析过程只是哈希查找。
+     * 找不到、对应多个输入单元格或没有相邻输入单元格的标签都作为问题返回，不会猜测。
+     * 
+     * @param formName 表单名称
+     * @param labels 标签到值的映射，如 {"姓名": "张三"}
+     * @return 解析结果
+     */
+    public LabelResolution resolveLabels(String formName, Map<String, String> labels) throws Exception {
+        return resolveLabels(formName, null, labels);
+    }
+    
+    /**
+     * 按指定的模板版本解析标签，与填写使用同一个模板文件（见 TemplateRepository.resolve）
+     * 
+     * @param formName 表单名称
+     * @param templateVersion 固定的模板版本，null 表示当前版本
+     * @param labels 标签到值的映射
+     * @return 解析结果；找不到该版本时 isVersionFound() 为 false
+     */
+    public LabelResolution resolveLabels(String formName, String templateVersion, Map<String, String> labels) throws Exception {
+        LabelResolution resolution = new LabelResolution(labels.size());
+        File templateFile = formFillerService.locateTemplate(formName);
+        if (templateFile == null) {
+            resolution.templateFound = false;
+            return resolution;
+        }
+        if (templateVersion != null) {
+            templateFile = templateRepository.resolve(templateFile, templateVersion);
+            if (templateFile == null) {
+                resolution.versionFound = false;
+                return resolution;
+            }
+        }
+        if (!templateFile.getName().toLowerCase().endsWith(".xlsx")) {
+            resolution.addProblem(null, "UNSUPPORTED_TEMPLATE", "Label addressing requires an .xlsx template", null);
+            return resolution;
+        }
+        CachedSchema schema = getSchema(templateCache.get(templateFile));
+        
+        for (Map.Entry<String, String> entry : labels.entrySet()) {
+            String label = entry.getKey();
+            List<long[]> inputs = schema.labelIndex.get(normalizeLabel(label));
+            if (inputs == null) {
+                resolution.addProblem(label, "UNKNOWN_LABEL", "No label matching '" + label + "' in template", null);
+            } else if (inputs.isEmpty()) {
+                resolution.addProblem(label, "LABEL_HAS_NO_INPUT", "Label '" + label + "' has no empty adjacent cell", null);
+            } else if (inputs.size() > 1) {
+                List<String> candidates = new ArrayList<>(inputs.size());
+                for (long[] input : inputs) {
+                    candidates.add(new CellReference((int) input[0], (int) input[1]).formatAsString(false));
+                }
+                resolution.addProblem(label, "AMBIGUOUS_LABEL",
+                        "Label '" + label + "' matches " + inputs.size() + " input cells; use coordinates instead", candidates);
+            } else {
+                long[] input = inputs.get(0);
+                resolution.cells.add((int) input[0] + 1, (int) input[1] + 1, entry.getValue());
+                resolution.labelCells.put(label, new CellReference((int) input[0], (int) input[1]).formatAsString(false));
+            }
+        }
+        return resolution;
+    }
+    
+    /**
+     * 标签规范化：去掉空白和结尾的冒号，"姓 名：" 与 "姓名" 视为同一标签
+     */
+    static String normalizeLabel(String label) {
+        String normalized = label.replaceAll("\\s+", "");
+        while (normalized.endsWith(":") || normalized.endsWith("：")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+    
+    /**
+     * 某一模板版本的结构分析结果，内容只读
+     */
+    static final class CachedSchema {
+        
+        final String version;
+        final Map<String, Object> content;
+        // 规范化标签 -> 输入单元格（行列从0开始）；空列表表示标签存在但没有输入单元格
+        final Map<String, List<long[]>> labelIndex = new HashMap<>();
+        
+        @SuppressWarnings("unchecked")
+        CachedSchema(String version, Map<String, Object> content) {
+            this.version = version;
+            this.content = Collections.unmodifiableMap(content);
+            for (Map<String, Object> label : (List<Map<String, Object>>) content.get("labels")) {
+                List<long[]> inputs = labelIndex.computeIfAbsent(normalizeLabel((String) label.get("text")), key -> new ArrayList<>(1));
+                Map<String, Object> input = (Map<String, Object>) label.get("input");
+                if (input != null) {
+                    inputs.add(new long[]{(Integer) input.get("row") - 1, (Integer) input.get("col") - 1});
+                }
+            }
+        }
+    }
+    
+    /**
+     * 标签解析结果
+     */
+    public static class LabelResolution {
+        
+        private boolean templateFound = true;
+        private boolean versionFound = true;
+        private final CellBatch cells;
+        private final Map<String, String> labelCells = new LinkedHashMap<>();
+        private final List<Map<String, Object>> problems = new ArrayList<>();
+        
+        LabelResolution(int capacity) {
+            this.cells = new CellBatch(capacity);
+        }
+        
+        void addProblem(String label, String code, String message, List<String> candidates) {
+            Map<String, Object> problem = new LinkedHashMap<>();
+            if (label != null) {
+                problem.put("label", label);
+            }
+            problem.put("code", code);
+            problem.put("message", message);
+            if (candidates != null) {
+                problem.put("candidates", candidates);
+            }
+            problems.add(problem);
+        }
+        
+        public boolean isTemplateFound() {
+            return templateFound;
+        }
+        
+        public boolean isVersionFound() {
+            return versionFound;
+        }
+        
+        public boolean isResolved() {
+            return templateFound && versionFound && problems.isEmpty();
+        }
+        
+        /**
+         * 解析得到的单元格（行列从1开始）
+         */
+        public CellBatch getCells() {
+            return cells;
+        }
+        
+        /**
+         * 标签到所填单元格的映射，如 {"姓名": "B3"}
+         */
+        public Map<String, String> getLabelCells() {
+            return labelCells;
+        }
+        
+        public List<Map<String, Object>> getProblems() {
+            return problems;
+        }
+    }
+    
+    /**
+     * 收集工作表XML中的单元格文字、合并区域和数据有效性
+     */
+    private static final class SheetHandler extends DefaultHandler {
+        
+        private final ReadOnlySharedStringsTable sharedStrings;
+        
+        // 按出现顺序记录的文字单元格
+        private final List<long[]> textCells = new ArrayList<>();
+        private final Map<Long, String> texts = new HashMap<>();
+        // 有任意取值（文字、数字、公式）的单元格
+        private final Set<Long> valued = new HashSet<>();
+        private final Set<Long> placeholders = new HashSet<>();
+        private final List<CellRangeAddress> merges = new ArrayList<>();
+        private final List<Map<String, Object>> validations = new ArrayList<>();
+        private String dimension;
+        private int maxRow = Integer.MAX_VALUE;
+        private int maxCol = Integer.MAX_VALUE;
+        
+        private final StringBuilder characters = new StringBuilder();
+        private boolean collecting;
+        // 当前单元格位置；r 属性可省略，此时为本行上一个单元格的下一列（行同理）
+        private boolean inCell;
+        private int currentRow = -1;
+        private int nextCol;
+        private int cellRow;
+        private int cellCol;
+        private String cellType;
+        private boolean cellHasFormula;
+        private String cellValue;
+        private Map<String, Object> validation;
+        private String formulaElement;
+        
+        SheetHandler(ReadOnlySharedStringsTable sharedStrings) {
+            this.sharedStrings = sharedStrings;
+        }
+        
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "dimension":
+                    dimension = attributes.getValue("ref");
+                    break;
+                case "row":
+                    String rowRef = attributes.getValue("r");
+                    currentRow = rowRef != null ? Integer.parseInt(rowRef) - 1 : currentRow + 1;
+                    nextCol = 0;
+                    break;
+                case "c":
+                    String cellRef = attributes.getValue("r");
+                    if (cellRef != null) {
+                        CellReference ref = new CellReference(cellRef);
+                        cellRow = ref.getRow();
+                        cellCol = ref.getCol();
+                    } else {
+                        cellRow = currentRow;
+                        cellCol = nextCol;
+                    }
+                    nextCol = cellCol + 1;
+                    inCell = true;
+                    cellType = attributes.getValue("t");
+                    cellHasFormula = false;
+                    cellValue = null;
+                    break;
+                case "f":
+                    cellHasFormula = true;
+                    break;
+                case "v":
+                case "t":
+                    if (inCell) {
+                        startCollecting();
+                    }
+                    break;
+                case "mergeCell":
+                    merges.add(CellRangeAddress.valueOf(attributes.getValue("ref")));
+                    break;
+                case "dataValidation":
+                    validation = new LinkedHashMap<>();
+                    validation.put("range", attributes.getValue("sqref"));
+                    validation.put("type", attributes.getValue("type") != null ? attributes.getValue("type") : "any");
+                    if (attributes.getValue("operator") != null) {
+                        validation.put("operator", attributes.getValue("operator"));
+                    }
+                    validation.put("allowBlank", "1".equals(attributes.getValue("allowBlank")));
+                    if (attributes.getValue("promptTitle") != null || attributes.getValue("prompt") != null) {
+                        validation.put("prompt", attributes.getValue("prompt"));
+                    }
+                    break;
+                case "formula1":
+                case "formula2":
+                    if (validation != null) {
+                        formulaElement = localName;
+                        startCollecting();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                    if (collecting) {
+                        cellValue = characters.toString();
+                        collecting = false;
+                    }
+                    break;
+                case "t":
+                    if (collecting) {
+                        // Inline strings may be split into several runs
+                        cellValue = cellValue == null ? characters.toString() : cellValue + characters;
+                        collecting = false;
+                    }
+                    break;
+                case "c":
+                    endCell();
+                    inCell = false;
+                    break;
+                case "formula1":
+                case "formula2":
+                    if (validation != null && collecting) {
+                        String formula = characters.toString();
+                        validation.put(formulaElement, formula);
+                        if ("formula1".equals(formulaElement) && "list".equals(validation.get("type"))
+                                && formula.length() >= 2 && formula.startsWith("\"") && formula.endsWith("\"")) {
+                            validation.put("options", List.of(formula.substring(1, formula.length() - 1).split(",")));
+                        }
+                        collecting = false;
+                    }
+                    break;
+                case "dataValidation":
+                    validations.add(validation);
+                    validation = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) {
+                characters.append(ch, start, length);
+            }
+        }
+        
+        private void startCollecting() {
+            characters.setLength(0);
+            collecting = true;
+        }
+        
+        private void endCell() {
+            if (cellRow < 0 || (cellValue == null && !cellHasFormula)) {
+                return;
+            }
+            long cellKey = key(cellRow, cellCol);
+            valued.add(cellKey);
+            if (cellHasFormula || cellValue == null) {
+                return;
+            }
+            String text = null;
+            if ("s".equals(cellType)) {
+                text = sharedStrings.getItemAt(Integer.parseInt(cellValue.trim())).getString();
+            } else if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+                text = cellValue;
+            }
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            if (PLACEHOLDER.matcher(text).matches()) {
+                // Placeholders mark input cells; they are filled over, not labels
+                valued.remove(cellKey);
+                placeholders.add(cellKey);
+                return;
+            }
+            texts.put(cellKey, text.trim());
+            textCells.add(new long[]{cellRow, cellCol});
+        }
+        
+        Map<String, Object> toSchema(String sheetName) {
+            if (dimension != null) {
+                CellRangeAddress used = CellRangeAddress.valueOf(dimension);
+                maxRow = used.getLastRow();
+                maxCol = used.getLastColumn();
+            }
+            Map<Long, CellRangeAddress> mergeByTopLeft = new HashMap<>();
+            for (CellRangeAddress merge : merges) {
+                mergeByTopLeft.put(key(merge.getFirstRow(), merge.getFirstColumn()), merge);
+            }
+            
+            List<Map<String, Object>> labels = new ArrayList<>();
+            boolean truncated = false;
+            for (long[] cell : textCells) {
+                if (labels.size() >= MAX_LABELS) {
+                    truncated = true;
+                    break;
+                }
+                int row = (int) cell[0];
+                int col = (int) cell[1];
+                CellRangeAddress labelMerge = mergeByTopLeft.get(key(row, col));
+                int lastCol = labelMerge != null ? labelMerge.getLastColumn() : col;
+                int lastRow = labelMerge != null ? labelMerge.getLastRow() : row;
+                
+                Map<String, Object> label = new LinkedHashMap<>();
+                label.put("text", texts.get(key(row, col)));
+                label.put("cell", new CellReference(row, col).formatAsString(false));
+                label.put("row", row + 1);
+                label.put("col", col + 1);
+                
+                Map<String, Object> input = inputCell(row, lastCol + 1, "right", mergeByTopLeft);
+                if (input == null) {
+                    input = inputCell(lastRow + 1, col, "below", mergeByTopLeft);
+                }
+                if (input != null) {
+                    label.put("input", input);
+                }
+                labels.add(label);
+            }
+            
+            List<String> mergedRegions = new ArrayList<>(merges.size());
+            for (CellRangeAddress merge : merges) {
+                mergedRegions.add(merge.formatAsString());
+            }
+            
+            Map<String, Object> schema = new LinkedHashMap<>();
+            schema.put("sheetName", sheetName);
+            if (dimension != null) {
+                schema.put("dimension", dimension);
+            }
+            schema.put("labelCount", labels.size());
+            schema.put("labels", Collections.unmodifiableList(labels));
+            if (truncated) {
+                schema.put("labelsTruncated", true);
+            }
+            schema.put("mergedRegions", Collections.unmodifiableList(mergedRegions));
+            schema.put("dataValidations", Collections.unmodifiableList(validations));
+            return schema;
+        }
+        
+        /**
+         * 相邻单元格为空（且不是合并区域的非左上角部分）时作为输入单元格
+         */
+        private Map<String, Object> inputCell(int row, int col, String direction,
+                                              Map<Long, CellRangeAddress> mergeByTopLeft) {
+            long cellKey = key(row, col);
+            if (row > maxRow || col > maxCol || valued.contains(cellKey) || coveredByMerge(row, col)) {
+                return null;
+            }
+            Map<String, Object> input = new LinkedHashMap<>();
+            input.put("cell", new CellReference(row, col).formatAsString(false));
+            input.put("row", row + 1);
+            input.put("col", col + 1);
+            input.put("direction", direction);
+            if (placeholders.contains(cellKey)) {
+                input.put("placeholder", true);
+            }
+            CellRangeAddress merge = mergeByTopLeft.get(cellKey);
+            if (merge != null) {
+                input.put("mergedRange", merge.formatAsString());
+            }
+            return input;
+        }
+        
+        /**
+         * 单元格位于某个合并区域内且不是其左上角，按区域边界判断，与区域大小无关
+         */
+        private boolean coveredByMerge(int row, int col) {
+            for (CellRangeAddress merge : merges) {
+                if (merge.isInRange(row, col) && (row != merge.getFirstRow() || col != merge.getFirstColumn())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
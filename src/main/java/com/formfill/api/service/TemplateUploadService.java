@@ -0,0 +1,310 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 模板上传服务
+ *
+ * 上传内容先流式写入 templates 目录下的隐藏临时文件（与目标同一文件系统，保证能原子改名），
+ * 只读取包结构做校验：.xlsx 须为含工作簿和至少一个工作表的OOXML包，.xls 须为OLE2文件，不解析整个工作簿。
+ * 校验通过后发布到共享模板仓库（配置了时，见 TemplateRepository），再原子改名到位并立即登记到模板目录；
+ * 之后在后台线程中预编译：缓存模板内容、构建结构与标签索引、构建公式依赖图并统计样式，
+ * 首次真正填写时不再承担这些开销。
+ */
+@Service
+public class TemplateUploadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TemplateUploadService.class);
+    
+    private static final String TEMPLATES_DIR = "templates";
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    @Autowired
+    private TemplateCatalog templateCatalog;
+    
+    @Autowired
+    private TemplateCache templateCache;
+    
+    @Autowired
+    private TemplateSchemaService templateSchemaService;
+    
+    @Autowired
+    private FormulaDependencyService formulaDependencyService;
+    
+    @Autowired
+    private TemplateRepository templateRepository;
+    
+    @Autowired
+    private FormFillConfig formFillConfig;
+    
+    private final Path directory = Paths.get(TEMPLATES_DIR).toAbsolutePath().normalize();
+    
+    // 预编译逐个进行，避免批量上传时同时解析多个工作簿
+    private final ExecutorService precompiler = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "template-precompile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final ConcurrentHashMap<String, Map<String, Object>> precompileStatus = new ConcurrentHashMap<>();
+    
+    /**
+     * 上传内容来源，把内容写入给定的临时文件
+     */
+    @FunctionalInterface
+    public interface UploadSource {
+        void writeTo(Path target) throws IOException;
+    }
+    
+    /**
+     * 保存上传的模板并安排后台预编译
+     *
+     * @param fileName 模板文件名（.xlsx 或 .xls）
+     * @param source 上传内容
+     * @param overwrite 是否覆盖同名模板
+     * @return 包含成功状态和模板信息的Map，失败时带 code
+     */
+    public Map<String, Object> upload(String fileName, UploadSource source, boolean overwrite) throws IOException {
+        String nameError = checkFileName(fileName);
+        if (nameError != null) {
+            return failure(nameError, "INVALID_TEMPLATE_NAME");
+        }
+        Path target = directory.resolve(fileName);
+        if (!overwrite && Files.exists(target)) {
+            return failure("Template already exists: " + fileName, "TEMPLATE_EXISTS");
+        }
+        
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(".upload-" + UUID.randomUUID() + ".tmp");
+        try {
+            long start = System.nanoTime();
+            source.writeTo(temp);
+            long size = Files.size(temp);
+            
+            String formatError = validate(temp, fileName);
+            if (formatError != null) {
+                logger.warn("Rejected template upload {}: {}", fileName, formatError);
+                return failure(formatError, "INVALID_TEMPLATE");
+            }
+            
+            synchronized (this) {
+                if (!overwrite && Files.exists(target)) {
+                    return failure("Template already exists: " + fileName, "TEMPLATE_EXISTS");
+                }
+                boolean replaced = Files.exists(target);
+                String version = templateRepository.publish(fileName, temp);
+                
+                // 旧版本的缓存按版本号也会失效，这里直接清除以释放内存
+                File file = target.toFile();
+                templateCache.evict(file);
+                templateSchemaService.evict(file);
+                formulaDependencyService.evict(file);
+                TemplateCatalog.Entry entry = templateCatalog.refresh(fileName);
+                
+                logger.info("Stored template {} ({} bytes, {}) in {} ms", fileName, size,
+                        replaced ? "replaced" : "new", (System.nanoTime() - start) / 1_000_000);
+                schedulePrecompile(fileName);
+                
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("success", true);
+                result.put("replaced", replaced);
+                result.put("version", version);
+                if (entry != null) {
+                    result.putAll(entry.toMap());
+                } else {
+                    result.put("filename", fileName);
+                    result.put("size", size);
+                }
+                result.put("precompile", precompileStatus.get(fileName));
+                result.put("precompileUrl", "/api/templates/" + fileName + "/precompile");
+                return result;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * 最近一次预编译的状态：queued / running / ready / failed
+     *
+     * @return 未上传过的模板返回null
+     */
+    public Map<String, Object> getPrecompileStatus(String fileName) {
+        return precompileStatus.get(fileName);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        precompiler.shutdownNow();
+    }
+    
+    private String checkFileName(String fileName) {
+        if (fileName == null || fileName.isBlank()) {
+            return "Template file name is required";
+        }
+        String lower = fileName.toLowerCase();
+        if (!lower.endsWith(".xlsx") && !lower.endsWith(".xls")) {
+            return "Template file name must end with .xlsx or .xls";
+        }
+        if (fileName.startsWith(".") || fileName.startsWith("~$") || fileName.matches(".*[\\\\/:*?\"<>|].*")) {
+            return "Invalid template file name: " + fileName;
+        }
+        Path target = directory.resolve(fileName).normalize();
+        if (!directory.equals(target.getParent())) {
+            return "Invalid template file name: " + fileName;
+        }
+        return null;
+    }
+    
+    /**
+     * 只读取包结构校验格式，不构建工作簿对象模型
+     *
+     * @return 校验失败的原因，通过时返回null
+     */
+    private String validate(Path file, String fileName) {
+        FileMagic magic;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            magic = FileMagic.valueOf(in);
+        } catch (IOException e) {
+            return "Could not read uploaded file: " + e.getMessage();
+        }
+        
+        if (fileName.toLowerCase().endsWith(".xls")) {
+            return magic == FileMagic.OLE2 ? null : "Uploaded file is not an .xls workbook";
+        }
+        if (magic != FileMagic.OOXML) {
+            return "Uploaded file is not an .xlsx (OOXML) package";
+        }
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return "Workbook has no worksheets";
+            }
+            return null;
+        } catch (Exception e) {
+            return "Invalid .xlsx package: " + e.getMessage();
+        }
+    }
+    
+    private void schedulePrecompile(String fileName) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", "queued");
+        status.put("queuedAt", LocalDateTime.now().toString());
+        precompileStatus.put(fileName, status);
+        precompiler.execute(() -> precompile(fileName));
+    }
+    
+    private void precompile(String fileName) {
+        Map<String, Object> status = new LinkedHashMap<>(precompileStatus.get(fileName));
+        status.put("state", "running");
+        precompileStatus.put(fileName, status);
+        
+        long start = System.nanoTime();
+        status = new LinkedHashMap<>(status);
+        try {
+            File file = directory.resolve(fileName).toFile();
+            TemplateCache.CachedTemplate template = templateCache.get(file);
+            status.put("version", template.getVersion());
+            
+            if (fileName.toLowerCase().endsWith(".xlsx")) {
+                long phase = System.nanoTime();
+                templateSchemaService.getSchema(template);
+                status.put("schemaMs", (System.nanoTime() - phase) / 1_000_000);
+            }
+            
+            long phase = System.nanoTime();
+            try (Workbook workbook = templateCache.openWorkbook(template)) {
+                status.put("parseMs", (System.nanoTime() - phase) / 1_000_000);
+                status.put("sheets", workbook.getNumberOfSheets());
+                status.put("cellStyles", workbook.getNumCellStyles());
+                status.put("fonts", workbook.getNumberOfFonts());
+                
+                phase = System.nanoTime();
+                FormulaDependencyService.DependencyGraph graph =
+                        formulaDependencyService.getGraph(template.getFile(), template.getVersion(), workbook);
+                if (graph != null) {
+                    status.put("formulas", graph.getFormulaCount());
+                    status.put("graphMs", (System.nanoTime() - phase) / 1_000_000);
+                }
+            }
+            status.put("state", "ready");
+            logger.info("Precompiled template {} in {} ms", fileName, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            status.put("state", "failed");
+            status.put("error", e.getMessage());
+            logger.error("Failed to precompile template {}: {}", fileName, e.getMessage(), e);
+        }
+        status.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        status.put("completedAt", LocalDateTime.now().toString());
+        precompileStatus.put(fileName, status);
+    }
+    
+    /**
+     * 把输入流写入文件，超过上限时抛出 UploadTooLargeException
+     */
+    public static void copyLimited(InputStream in, Path target, long maxBytes) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                total += n;
+                if (total > maxBytes) {
+                    throw new UploadTooLargeException(maxBytes);
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+    
+    public long getMaxUploadBytes() {
+        return formFillConfig.getValidation().getMaxTemplateUploadMb() * 1024L * 1024L;
+    }
+    
+    private Map<String, Object> failure(String message, String code) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("success", false);
+        result.put("error", message);
+        result.put("code", code);
+        return result;
+    }
+    
+    /**
+     * 上传内容超过大小上限
+     */
+    public static class UploadTooLargeException extends IOException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        public UploadTooLargeException(long maxBytes) {
+            super("Upload exceeds the limit of " + maxBytes + " bytes");
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.formfill.api.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * 
+ * 采用GCRA（通用信元速率算法）形式实现：只保存一个"理论到达时间"(TAT)，
+ * 每次申请通过一次CAS推进TAT，与按速率补充令牌、容量为burst的令牌桶等价，
+ * 无需锁，也不需要后台补充线程。
+ */
+public class TokenBucket {
+    
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+    
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst 桶容量，即允许的突发请求数
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.intervalNanos = (long) (1_000_000_000L / Math.max(ratePerSecond, 0.001));
+        this.burstToleranceNanos = intervalNanos * Math.max(burst - 1, 0);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+    
+    /**
+     * 尝试取走一个令牌
+     * 
+     * @return 0表示成功；否则为下一个令牌可用前需要等待的纳秒数
+     */
+    public long tryConsume() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long base = Math.max(tat, now);
+            long waitNanos = base - burstToleranceNanos - now;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrival.compareAndSet(tat, base + intervalNanos)) {
+                return 0L;
+            }
+        }
+    }
+    
+    /**
+     * 桶是否已回满，即与新建的桶状态相同，可以丢弃
+     */
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+}
@@ -0,0 +1,339 @@
+package com.formfill.api.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 工作簿流式读取服务
+ *
+ * 用 XSSFReader + XSSFSheetXMLHandler 的事件模型逐个单元格读取，边读边写出JSON或CSV，
+ * 不构建 Workbook，读取超出行范围后立即停止解析；内存占用与行数无关（共享字符串表除外）。
+ */
+@Service
+public class WorkbookReadService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WorkbookReadService.class);
+    
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_CSV = "csv";
+    
+    private final JsonFactory jsonFactory = new JsonFactory();
+    
+    /**
+     * 打开 .xlsx 文件并定位工作表；在写出响应之前调用，以便文件或工作表问题仍能返回错误状态码
+     *
+     * @param file .xlsx 文件
+     * @param sheetIndex 工作表序号（从0开始）
+     * @return 读取会话，调用方负责关闭
+     */
+    public ReadSession open(File file, int sheetIndex) throws Exception {
+        return open(file.getName(), OPCPackage.open(file, PackageAccess.READ), sheetIndex);
+    }
+    
+    /**
+     * 从输入流打开 .xlsx（如对象存储中的输出文件）；POI 会把各个包部件读入内存，工作表XML仍按流解析
+     *
+     * @param fileName 文件名，用于错误信息
+     * @param in .xlsx 内容，调用方负责关闭
+     * @param sheetIndex 工作表序号（从0开始）
+     * @return 读取会话，调用方负责关闭
+     */
+    public ReadSession open(String fileName, InputStream in, int sheetIndex) throws Exception {
+        return open(fileName, OPCPackage.open(in), sheetIndex);
+    }
+    
+    private ReadSession open(String fileName, OPCPackage pkg, int sheetIndex) throws Exception {
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            for (int i = 0; sheets.hasNext(); i++) {
+                InputStream sheet = sheets.next();
+                if (i == sheetIndex) {
+                    return new ReadSession(fileName, pkg, reader.getStylesTable(),
+                            new ReadOnlySharedStringsTable(pkg, false), sheets.getSheetName(), sheet);
+                }
+                sheet.close();
+            }
+        } catch (Exception e) {
+            pkg.revert();
+            throw e;
+        }
+        pkg.revert();
+        throw new IllegalArgumentException("Sheet index " + sheetIndex + " does not exist in " + fileName);
+    }
+    
+    /**
+     * 单个工作表的读取会话
+     */
+    public class ReadSession implements Closeable {
+        
+        private final String fileName;
+        private final OPCPackage pkg;
+        private final StylesTable styles;
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final String sheetName;
+        private final InputStream sheet;
+        
+        ReadSession(String fileName, OPCPackage pkg, StylesTable styles, ReadOnlySharedStringsTable sharedStrings,
+                    String sheetName, InputStream sheet) {
+            this.fileName = fileName;
+            this.pkg = pkg;
+            this.styles = styles;
+            this.sharedStrings = sharedStrings;
+            this.sheetName = sheetName;
+            this.sheet = sheet;
+        }
+        
+        /**
+         * 把指定范围内的单元格写出到输出流
+         *
+         * @param out 输出流
+         * @param format json 或 csv
+         * @param startRow 起始行（从1开始，含）
+         * @param endRow 结束行（含），0表示不限
+         * @param startCol 起始列（从1开始，含）
+         * @param endCol 结束列（含），0表示不限
+         * @return 写出的行数
+         */
+        public int writeTo(OutputStream out, String format, int startRow, int endRow, int startCol, int endCol) throws Exception {
+            RangeWriter writer = FORMAT_CSV.equals(format)
+                    ? new CsvRangeWriter(out, startCol)
+                    : new JsonRangeWriter(out, fileName, sheetName);
+            RangeHandler handler = new RangeHandler(writer, startRow - 1,
+                    endRow > 0 ? endRow - 1 : Integer.MAX_VALUE, startCol - 1, endCol > 0 ? endCol - 1 : Integer.MAX_VALUE);
+            
+            long start = System.nanoTime();
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, sharedStrings, handler, new DataFormatter(), false));
+            try {
+                parser.parse(new InputSource(sheet));
+            } catch (StopReading e) {
+                // Past the requested rows, no need to parse the rest of the sheet
+            } catch (WriteFailed e) {
+                throw (IOException) e.getCause();
+            }
+            writer.finish(handler.rowCount);
+            logger.info("Streamed {} row(s) from {}!{} as {} in {} ms", handler.rowCount, fileName, sheetName, format,
+                    (System.nanoTime() - start) / 1_000_000);
+            return handler.rowCount;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            sheet.close();
+            pkg.revert();
+        }
+    }
+    
+    /**
+     * 行列范围过滤，把落在范围内的单元格交给写出器
+     */
+    private static final class RangeHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        
+        private final RangeWriter writer;
+        private final int firstRow;
+        private final int lastRow;
+        private final int firstCol;
+        private final int lastCol;
+        private int currentRow = -1;
+        private boolean rowStarted;
+        private int rowCount;
+        
+        RangeHandler(RangeWriter writer, int firstRow, int lastRow, int firstCol, int lastCol) {
+            this.writer = writer;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.firstCol = firstCol;
+            this.lastCol = lastCol;
+        }
+        
+        @Override
+        public void startRow(int rowNum) {
+            if (rowNum > lastRow) {
+                throw new StopReading();
+            }
+            currentRow = rowNum;
+            rowStarted = false;
+        }
+        
+        @Override
+        public void endRow(int rowNum) {
+            if (rowStarted) {
+                uncheck(writer::endRow);
+                rowCount++;
+            }
+        }
+        
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (currentRow < firstRow || cellReference == null || formattedValue == null) {
+                return;
+            }
+            int col = new CellReference(cellReference).getCol();
+            if (col < firstCol || col > lastCol) {
+                return;
+            }
+            if (!rowStarted) {
+                rowStarted = true;
+                uncheck(() -> writer.startRow(currentRow + 1));
+            }
+            uncheck(() -> writer.cell(cellReference, col + 1, formattedValue));
+        }
+        
+        private void uncheck(IoAction action) {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new WriteFailed(e);
+            }
+        }
+    }
+    
+    private interface IoAction {
+        void run() throws IOException;
+    }
+    
+    private interface RangeWriter {
+        void startRow(int row) throws IOException;
+        void cell(String ref, int col, String value) throws IOException;
+        void endRow() throws IOException;
+        void finish(int rowCount) throws IOException;
+    }
+    
+    /**
+     * {"file": ..., "sheet": ..., "rows": [{"row": 3, "cells": {"B3": "张三"}}], "rowCount": 1}
+     */
+    private final class JsonRangeWriter implements RangeWriter {
+        
+        private final JsonGenerator json;
+        
+        JsonRangeWriter(OutputStream out, String fileName, String sheetName) throws IOException {
+            this.json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+            json.writeStartObject();
+            json.writeStringField("file", fileName);
+            json.writeStringField("sheet", sheetName);
+            json.writeArrayFieldStart("rows");
+        }
+        
+        @Override
+        public void startRow(int row) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("row", row);
+            json.writeObjectFieldStart("cells");
+        }
+        
+        @Override
+        public void cell(String ref, int col, String value) throws IOException {
+            json.writeStringField(ref, value);
+        }
+        
+        @Override
+        public void endRow() throws IOException {
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        
+        @Override
+        public void finish(int rowCount) throws IOException {
+            json.writeEndArray();
+            json.writeNumberField("rowCount", rowCount);
+            json.writeEndObject();
+            json.flush();
+        }
+    }
+    
+    /**
+     * 每行一条记录：第一列为行号，其后为起始列到该行最后一个非空单元格的值，中间的空单元格留空
+     */
+    private static final class CsvRangeWriter implements RangeWriter {
+        
+        private final Writer writer;
+        private final int startCol;
+        private int nextCol;
+        
+        CsvRangeWriter(OutputStream out, int startCol) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.startCol = startCol;
+        }
+        
+        @Override
+        public void startRow(int row) throws IOException {
+            writer.write(Integer.toString(row));
+            nextCol = startCol;
+        }
+        
+        @Override
+        public void cell(String ref, int col, String value) throws IOException {
+            for (; nextCol < col; nextCol++) {
+                writer.write(',');
+            }
+            writer.write(',');
+            nextCol = col + 1;
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        
+        @Override
+        public void endRow() throws IOException {
+            writer.write("\r\n");
+        }
+        
+        @Override
+        public void finish(int rowCount) throws IOException {
+            writer.flush();
+        }
+    }
+    
+    /**
+     * 超出行范围时中止SAX解析
+     */
+    private static final class StopReading extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        StopReading() {
+            super(null, null, false, false);
+        }
+    }
+    
+    /**
+     * 写出失败（通常是客户端断开），穿过SAX解析器后还原为IOException
+     */
+    private static final class WriteFailed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        
+        WriteFailed(IOException cause) {
+            super(cause);
+        }
+    }
+}
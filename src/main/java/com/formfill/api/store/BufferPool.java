@@ -0,0 +1,192 @@
+package com.formfill.api.store;
+
+import com.formfill.api.dto.FormFillConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按大小分级复用的输出缓冲池
+ *
+ * 工作簿写出（本地文件写缓冲、S3分片）、邮件附件与下载复制都从这里取缓冲区，用完归还，
+ * 避免每个请求重新分配并逐步扩容缓冲区。大小分级为64KB起的2的幂，最大为 formfill.buffers.max-buffer-mb；
+ * 堆大小1GB时G1的region为1MB，512KB以上的数组是直接进入老年代的巨型对象，S3分片缓冲区（默认8MB）
+ * 每次新分配的代价尤其高。更大的请求按需分配、不入池；池中空闲缓冲区总量不超过 max-pooled-mb，
+ * 超出时归还的缓冲区直接丢弃。direct=true 时序列化使用堆外缓冲区，流复制始终使用堆内缓冲区。
+ *
+ * 指标：formfill.buffers.acquire（result=hit/miss/oversize）、formfill.buffers.discarded、
+ * formfill.buffers.pooled.bytes 与 formfill.buffers.in_use.bytes。
+ */
+@Component
+public class BufferPool {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BufferPool.class);
+    
+    private static final int MIN_SHIFT = 16;
+    private static final int COPY_BUFFER_SIZE = 1 << MIN_SHIFT;
+    
+    private final boolean enabled;
+    private final boolean direct;
+    private final long maxPooledBytes;
+    private final int maxShift;
+    private final int writeBufferSize;
+    // 堆内与堆外缓冲区各自按大小分级，每级一个空闲列表，后进先出
+    private final List<ConcurrentLinkedDeque<ByteBuffer>> heapFree;
+    private final List<ConcurrentLinkedDeque<ByteBuffer>> directFree;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong inUseBytes = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter oversize;
+    private final Counter discarded;
+    
+    @Autowired
+    public BufferPool(FormFillConfig formFillConfig, MeterRegistry meterRegistry) {
+        FormFillConfig.Buffers config = formFillConfig.getBuffers();
+        this.enabled = config.isEnabled();
+        this.direct = config.isDirect();
+        this.maxPooledBytes = Math.max(0, (long) config.getMaxPooledMb()) * 1024 * 1024;
+        this.maxShift = Math.max(MIN_SHIFT, Math.min(30, 32 - Integer.numberOfLeadingZeros(Math.max(1, config.getMaxBufferMb()) * 1024 * 1024 - 1)));
+        this.writeBufferSize = Math.max(4 * 1024, config.getWriteBufferKb() * 1024);
+        this.heapFree = new ArrayList<>(maxShift - MIN_SHIFT + 1);
+        this.directFree = new ArrayList<>(maxShift - MIN_SHIFT + 1);
+        for (int shift = MIN_SHIFT; shift <= maxShift; shift++) {
+            heapFree.add(new ConcurrentLinkedDeque<>());
+            directFree.add(new ConcurrentLinkedDeque<>());
+        }
+        this.hits = meterRegistry.counter("formfill.buffers.acquire", "result", "hit");
+        this.misses = meterRegistry.counter("formfill.buffers.acquire", "result", "miss");
+        this.oversize = meterRegistry.counter("formfill.buffers.acquire", "result", "oversize");
+        this.discarded = meterRegistry.counter("formfill.buffers.discarded");
+        Gauge.builder("formfill.buffers.pooled.bytes", pooledBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("formfill.buffers.in_use.bytes", inUseBytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+        logger.info("Buffer pool: {} ({} buffers, {} KB - {} MB classes, up to {} MB pooled)",
+                enabled ? "enabled" : "disabled", direct ? "direct" : "heap",
+                1 << (MIN_SHIFT - 10), 1 << (maxShift - 20), maxPooledBytes / (1024 * 1024));
+    }
+    
+    /**
+     * 取一个容量不小于 minCapacity 的缓冲区，用于序列化输出（按配置为堆内或堆外）
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        return new PooledBuffer(this, take(minCapacity, direct));
+    }
+    
+    /**
+     * 取一个堆内缓冲区，可通过 PooledBuffer.array() 直接读写
+     */
+    public PooledBuffer acquireHeap(int minCapacity) {
+        return new PooledBuffer(this, take(minCapacity, false));
+    }
+    
+    /**
+     * 本地输出文件写缓冲大小（formfill.buffers.write-buffer-kb）
+     */
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+    
+    /**
+     * 用池中的缓冲区把 in 复制到 out，返回复制的字节数
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        try (PooledBuffer buffer = acquireHeap(COPY_BUFFER_SIZE)) {
+            byte[] array = buffer.array();
+            long total = 0;
+            for (int n; (n = in.read(array)) > 0; ) {
+                out.write(array, 0, n);
+                total += n;
+            }
+            return total;
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("direct", direct);
+        stats.put("pooledBytes", pooledBytes.get());
+        stats.put("maxPooledBytes", maxPooledBytes);
+        stats.put("inUseBytes", inUseBytes.get());
+        stats.put("hits", (long) hits.count());
+        stats.put("misses", (long) misses.count());
+        stats.put("oversize", (long) oversize.count());
+        stats.put("discarded", (long) discarded.count());
+        List<Map<String, Object>> classes = new ArrayList<>();
+        for (int shift = MIN_SHIFT; shift <= maxShift; shift++) {
+            Map<String, Object> sizeClass = new LinkedHashMap<>();
+            sizeClass.put("size", 1 << shift);
+            sizeClass.put("heap", freeList(false, shift).size());
+            sizeClass.put("direct", freeList(true, shift).size());
+            classes.add(sizeClass);
+        }
+        stats.put("classes", classes);
+        return stats;
+    }
+    
+    ByteBuffer take(int minCapacity, boolean direct) {
+        if (minCapacity < 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + minCapacity);
+        }
+        int shift = shiftOf(minCapacity);
+        ByteBuffer buffer;
+        if (shift > maxShift) {
+            oversize.increment();
+            buffer = allocate(minCapacity, direct);
+        } else {
+            buffer = enabled ? freeList(direct, shift).pollFirst() : null;
+            if (buffer != null) {
+                pooledBytes.addAndGet(-buffer.capacity());
+                hits.increment();
+            } else {
+                misses.increment();
+                buffer = allocate(1 << shift, direct);
+            }
+        }
+        inUseBytes.addAndGet(buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+    
+    void give(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        inUseBytes.addAndGet(-capacity);
+        int shift = shiftOf(capacity);
+        if (!enabled || shift > maxShift || capacity != 1 << shift) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            pooledBytes.addAndGet(-capacity);
+            discarded.increment();
+            return;
+        }
+        freeList(buffer.isDirect(), shift).offerFirst(buffer);
+    }
+    
+    private ConcurrentLinkedDeque<ByteBuffer> freeList(boolean direct, int shift) {
+        return (direct ? directFree : heapFree).get(shift - MIN_SHIFT);
+    }
+    
+    private static int shiftOf(int capacity) {
+        return capacity <= 1 << MIN_SHIFT ? MIN_SHIFT : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+    
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
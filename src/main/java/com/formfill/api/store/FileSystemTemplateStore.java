@@ -0,0 +1,97 @@
+package com.formfill.api.store;
+
+import com.formfill.api.dto.FormFillConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 共享目录模板仓库（formfill.templates.repository=filesystem）
+ *
+ * 目录结构为 <shared-dir>/<文件名>/<发布时间>-<版本号>；发布时先写入同目录下的临时文件再原子改名，
+ * 其他节点不会读到写了一半的版本。
+ */
+@Component
+@ConditionalOnProperty(prefix = "formfill.templates", name = "repository", havingValue = "filesystem")
+public class FileSystemTemplateStore implements TemplateStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemTemplateStore.class);
+    
+    private final Path root;
+    
+    @Autowired
+    public FileSystemTemplateStore(FormFillConfig formFillConfig) throws IOException {
+        String sharedDir = formFillConfig.getTemplates().getSharedDir();
+        if (sharedDir == null || sharedDir.isBlank()) {
+            throw new IllegalStateException("formfill.templates.shared-dir is required");
+        }
+        this.root = Paths.get(sharedDir).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        logger.info("Template repository: shared directory {}", root);
+    }
+    
+    @Override
+    public String getType() {
+        return "filesystem";
+    }
+    
+    @Override
+    public List<TemplateVersion> list() throws IOException {
+        List<TemplateVersion> versions = new ArrayList<>();
+        try (Stream<Path> templates = Files.list(root)) {
+            for (Path template : (Iterable<Path>) templates::iterator) {
+                if (!Files.isDirectory(template)) {
+                    continue;
+                }
+                try (Stream<Path> entries = Files.list(template)) {
+                    for (Path entry : (Iterable<Path>) entries::iterator) {
+                        TemplateVersion version = TemplateVersion.parse(
+                                template.getFileName() + "/" + entry.getFileName(), Files.size(entry));
+                        if (version != null) {
+                            versions.add(version);
+                        }
+                    }
+                }
+            }
+        }
+        return versions;
+    }
+    
+    @Override
+    public TemplateVersion publish(String fileName, String version, Path content) throws IOException {
+        TemplateVersion published = new TemplateVersion(OutputStore.requireValidName(fileName), version,
+                System.currentTimeMillis(), Files.size(content));
+        Path target = root.resolve(published.getPath());
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(content, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return published;
+    }
+    
+    @Override
+    public void fetch(TemplateVersion template, Path target) throws IOException {
+        Files.copy(root.resolve(template.getPath()), target, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
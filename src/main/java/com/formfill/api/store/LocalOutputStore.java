@@ -0,0 +1,228 @@
+package com.formfill.api.store;
+
+import com.formfill.api.dto.FormFillConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.UUID;
+
+/**
+ * 本地目录输出存储（formfill.output.store=local，默认）
+ *
+ * 写入先落到同目录下的临时文件，提交时原子重命名为目标文件名，下载方不会读到写了一半的文件。
+ * 写入经过从 BufferPool 取得的写缓冲（formfill.buffers.write-buffer-kb），攒满后一次写入文件通道，
+ * 工作簿序列化产生的大量小块写入不会各自成为一次系统调用。
+ */
+@Component
+@ConditionalOnProperty(prefix = "formfill.output", name = "store", havingValue = "local", matchIfMissing = true)
+public class LocalOutputStore implements OutputStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LocalOutputStore.class);
+    
+    private final String localDir;
+    private final Path baseDir;
+    private final BufferPool bufferPool;
+    
+    @Autowired
+    public LocalOutputStore(FormFillConfig formFillConfig, BufferPool bufferPool) throws IOException {
+        this.bufferPool = bufferPool;
+        this.localDir = formFillConfig.getOutput().getLocalDir();
+        this.baseDir = Paths.get(localDir).toAbsolutePath().normalize();
+        Files.createDirectories(baseDir);
+        logger.info("Output store: local directory {}", baseDir);
+    }
+    
+    @Override
+    public String getType() {
+        return "local";
+    }
+    
+    @Override
+    public Upload create(String name) throws IOException {
+        Path target = resolve(name);
+        Path temp = baseDir.resolve("." + UUID.randomUUID() + ".tmp");
+        return new FileUpload(name, temp, target, bufferPool);
+    }
+    
+    @Override
+    public StoredObject stat(String name) throws IOException {
+        Path file = resolve(name);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new StoredObject(name, attributes.size(), attributes.lastModifiedTime().toMillis(), null);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public InputStream open(String name) throws IOException {
+        return Files.newInputStream(resolve(name));
+    }
+    
+    @Override
+    public InputStream open(String name, long offset, long length) throws IOException {
+        InputStream in = Files.newInputStream(resolve(name));
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new LimitedInputStream(in, length);
+    }
+    
+    @Override
+    public String locationOf(String name) {
+        return localDir + File.separator + name;
+    }
+    
+    @Override
+    public Path localPath(String name) {
+        return resolve(name);
+    }
+    
+    private Path resolve(String name) {
+        return baseDir.resolve(OutputStore.requireValidName(name));
+    }
+    
+    /**
+     * 经写缓冲写入临时文件，提交时原子重命名
+     */
+    private static final class FileUpload extends Upload {
+        
+        private final String name;
+        private final Path temp;
+        private final Path target;
+        private final FileChannel channel;
+        private final PooledBuffer buffer;
+        
+        FileUpload(String name, Path temp, Path target, BufferPool bufferPool) throws IOException {
+            this.name = name;
+            this.temp = temp;
+            this.target = target;
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.buffer = bufferPool.acquire(bufferPool.getWriteBufferSize());
+        }
+        
+        @Override
+        protected void writeBytes(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.remaining()) {
+                flushBuffer();
+                if (len >= buffer.capacity()) {
+                    // 大块写入不经过缓冲
+                    ByteBuffer chunk = ByteBuffer.wrap(b, off, len);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                    return;
+                }
+            }
+            buffer.write(b, off, len);
+        }
+        
+        private void flushBuffer() throws IOException {
+            buffer.writeTo(channel);
+            buffer.reset();
+        }
+        
+        @Override
+        protected StoredObject doCommit() throws IOException {
+            try {
+                flushBuffer();
+                channel.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                channel.close();
+                Files.deleteIfExists(temp);
+                throw e;
+            } finally {
+                buffer.close();
+            }
+            return new StoredObject(name, Files.size(target), Files.getLastModifiedTime(target).toMillis(), null);
+        }
+        
+        @Override
+        protected void doAbort() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                buffer.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+    
+    /**
+     * 最多读取 remaining 字节的输入流
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        
+        private long remaining;
+        
+        LimitedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+        
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.formfill.api.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * 填写结果（输出文件）存储
+ *
+ * 填写写出、下载、邮件附件、打包下载与工作簿读取都通过该接口访问输出文件，
+ * 由 formfill.output.store 选择实现：local 写入本地目录（默认，单节点），
+ * s3 写入S3兼容对象存储，多个节点写出的文件可以由任一节点下载。
+ * 对象名为不含路径的文件名，与 /api/download/{filename} 中的文件名一致。
+ */
+public interface OutputStore {
+    
+    /**
+     * 存储类型（local / s3），用于日志与健康信息
+     */
+    String getType();
+    
+    /**
+     * 开始写入一个对象；写完后调用 Upload.commit() 使其可见，未提交就关闭时丢弃已写内容
+     */
+    Upload create(String name) throws IOException;
+    
+    /**
+     * 对象元数据，不存在时返回null
+     */
+    StoredObject stat(String name) throws IOException;
+    
+    /**
+     * 读取整个对象，不存在时抛出 NoSuchFileException
+     */
+    InputStream open(String name) throws IOException;
+    
+    /**
+     * 读取对象的一段 [offset, offset + length)，用于 Range 下载
+     */
+    InputStream open(String name, long offset, long length) throws IOException;
+    
+    /**
+     * 写入结果中 output_file 给出的位置，如 output/a.xlsx 或 s3://bucket/output/a.xlsx
+     */
+    String locationOf(String name);
+    
+    /**
+     * 对象在本地文件系统中的路径，可直接用 sendfile 或随机访问读取；非本地存储返回null
+     */
+    default Path localPath(String name) {
+        return null;
+    }
+    
+    /**
+     * 可由客户端直接下载的地址（如S3预签名URL），返回null时由应用发送文件内容
+     */
+    default URI downloadUrl(String name) throws IOException {
+        return null;
+    }
+    
+    /**
+     * 对象名只能是单个文件名，不能包含路径分隔符或指向上级目录
+     */
+    static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && name.length() <= 255
+                && name.indexOf('/') < 0 && name.indexOf('\\') < 0 && name.indexOf('\0') < 0
+                && !".".equals(name) && !"..".equals(name);
+    }
+    
+    static String requireValidName(String name) {
+        if (!isValidName(name)) {
+            throw new IllegalArgumentException("Invalid output name: " + name);
+        }
+        return name;
+    }
+    
+    /**
+     * 进行中的写入
+     *
+     * 写入内容在 commit() 之前对读取方不可见；close() 时若尚未提交则中止写入并清理临时数据，
+     * 因此在 try-with-resources 中写出失败时不会留下不完整的文件。
+     */
+    abstract class Upload extends OutputStream {
+        
+        private long bytesWritten;
+        private boolean finished;
+        
+        @Override
+        public final void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public final void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Upload already finished");
+            }
+            writeBytes(b, off, len);
+            bytesWritten += len;
+        }
+        
+        /**
+         * 使写入的内容可见并返回对象元数据
+         */
+        public final StoredObject commit() throws IOException {
+            if (finished) {
+                throw new IOException("Upload already finished");
+            }
+            finished = true;
+            return doCommit();
+        }
+        
+        @Override
+        public final void close() throws IOException {
+            if (!finished) {
+                finished = true;
+                doAbort();
+            }
+        }
+        
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+        
+        protected abstract void writeBytes(byte[] b, int off, int len) throws IOException;
+        
+        protected abstract StoredObject doCommit() throws IOException;
+        
+        protected abstract void doAbort() throws IOException;
+    }
+}
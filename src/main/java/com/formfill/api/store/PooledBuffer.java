@@ -0,0 +1,171 @@
+package com.formfill.api.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 从 BufferPool 取得的缓冲区，作为 OutputStream 写入（代替 ByteArrayOutputStream）
+ *
+ * 写满时从池中换一个更大的缓冲区并归还原来的；close() 后缓冲区回到池中，不能再使用，
+ * contents() 与 newInputStream() 返回的视图也随之失效。非线程安全。
+ */
+public final class PooledBuffer extends OutputStream {
+    
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+    
+    PooledBuffer(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+    }
+    
+    /**
+     * 读取 in 直到结束，追加到已有内容之后，返回读取的字节数
+     */
+    public long readFrom(InputStream in) throws IOException {
+        long total = 0;
+        ReadableByteChannel channel = null;
+        while (true) {
+            ensureRemaining(1);
+            int n;
+            if (buffer.hasArray()) {
+                n = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (n > 0) {
+                    buffer.position(buffer.position() + n);
+                }
+            } else {
+                if (channel == null) {
+                    channel = Channels.newChannel(in);
+                }
+                n = channel.read(buffer);
+            }
+            if (n < 0) {
+                return total;
+            }
+            total += n;
+        }
+    }
+    
+    /**
+     * 把全部内容写入 channel
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer contents = contents();
+        while (contents.hasRemaining()) {
+            channel.write(contents);
+        }
+    }
+    
+    /**
+     * 已写入的内容 [0, size) 的视图，不复制数据
+     */
+    public ByteBuffer contents() {
+        return checkOpen().duplicate().flip();
+    }
+    
+    /**
+     * 读取已写入内容的输入流，可多次调用，各自从头读取
+     */
+    public InputStream newInputStream() {
+        ByteBuffer contents = contents();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return contents.hasRemaining() ? contents.get() & 0xff : -1;
+            }
+            
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!contents.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, contents.remaining());
+                contents.get(b, off, n);
+                return n;
+            }
+            
+            @Override
+            public int available() {
+                return contents.remaining();
+            }
+        };
+    }
+    
+    /**
+     * 堆内缓冲区的底层数组（由 BufferPool.acquireHeap 取得），内容从下标0开始
+     */
+    public byte[] array() {
+        return checkOpen().array();
+    }
+    
+    public int size() {
+        return checkOpen().position();
+    }
+    
+    public int capacity() {
+        return checkOpen().capacity();
+    }
+    
+    public int remaining() {
+        return checkOpen().remaining();
+    }
+    
+    /**
+     * 清空内容，保留当前缓冲区
+     */
+    public void reset() {
+        checkOpen().clear();
+    }
+    
+    @Override
+    public void close() {
+        if (buffer != null) {
+            ByteBuffer released = buffer;
+            buffer = null;
+            pool.give(released);
+        }
+    }
+    
+    private ByteBuffer checkOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException("Buffer already released");
+        }
+        return buffer;
+    }
+    
+    private void ensureRemaining(int needed) throws IOException {
+        ByteBuffer current = checkOpen();
+        if (current.remaining() >= needed) {
+            return;
+        }
+        long required = (long) current.position() + needed;
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IOException("Buffer size limit exceeded: " + required + " bytes");
+        }
+        int capacity = (int) Math.max(required, Math.min(Integer.MAX_VALUE - 8, (long) current.capacity() * 2));
+        ByteBuffer larger = pool.take(capacity, current.isDirect());
+        larger.put(current.flip());
+        buffer = larger;
+        pool.give(current);
+    }
+}
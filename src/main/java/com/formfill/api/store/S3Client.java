@@ -0,0 +1,474 @@
+package com.formfill.api.store;
+
+import com.formfill.api.dto.FormFillConfig;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * S3 REST API 的最小客户端，只实现输出存储与模板仓库用到的对象操作，请求使用 AWS Signature Version 4 签名
+ *
+ * 适用于 AWS S3 以及 MinIO、Ceph RGW 等S3兼容存储。
+ */
+final class S3Client {
+    
+    static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+    
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final Pattern ETAG = Pattern.compile("<ETag>([^<]+)</ETag>");
+    private static final Pattern ERROR_CODE = Pattern.compile("<Code>([^<]+)</Code>");
+    private static final Pattern CONTENTS = Pattern.compile("<Contents>(.*?)</Contents>", Pattern.DOTALL);
+    private static final Pattern KEY = Pattern.compile("<Key>([^<]*)</Key>");
+    private static final Pattern SIZE = Pattern.compile("<Size>(\\d+)</Size>");
+    private static final Pattern LAST_MODIFIED = Pattern.compile("<LastModified>([^<]+)</LastModified>");
+    private static final Pattern NEXT_TOKEN = Pattern.compile("<NextContinuationToken>([^<]+)</NextContinuationToken>");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private final String scheme;
+    private final String host;
+    private final String hostHeader;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final boolean pathStyle;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+    
+    /**
+     * @param property 配置项前缀（如 formfill.output.s3），用于缺少配置时的错误信息
+     */
+    S3Client(FormFillConfig.S3 config, String property) {
+        if (config.getEndpoint() == null || config.getEndpoint().isBlank() || config.getBucket() == null || config.getBucket().isBlank()) {
+            throw new IllegalStateException(property + ".endpoint and " + property + ".bucket are required");
+        }
+        URI endpoint = URI.create(config.getEndpoint());
+        this.scheme = endpoint.getScheme();
+        this.bucket = config.getBucket();
+        this.pathStyle = config.isPathStyle();
+        this.host = pathStyle ? endpoint.getHost() : bucket + "." + endpoint.getHost();
+        // 与 HttpClient 实际发送的 Host 一致：默认端口不带端口号
+        int port = endpoint.getPort();
+        boolean defaultPort = port == -1 || ("https".equals(scheme) ? port == 443 : port == 80);
+        this.hostHeader = defaultPort ? host : host + ":" + port;
+        this.region = config.getRegion();
+        this.accessKey = config.getAccessKey();
+        this.secretKey = config.getSecretKey();
+        this.requestTimeout = Duration.ofMillis(config.getRequestTimeoutMs());
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMs()))
+                .build();
+    }
+    
+    String getBucket() {
+        return bucket;
+    }
+    
+    /**
+     * 单次上传对象，返回对象的ETag
+     */
+    String putObject(String key, ByteBuffer body, String contentType) throws IOException {
+        HttpRequest.Builder builder = request("PUT", key, Map.of(), Map.of("content-type", contentType), sha256Hex(body))
+                .PUT(bodyOf(body));
+        HttpResponse<String> response = expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "PutObject", 200);
+        return response.headers().firstValue("ETag").orElse(null);
+    }
+    
+    /**
+     * 以文件内容单次上传对象，返回对象的ETag
+     */
+    String putObject(String key, Path file, String contentType) throws IOException {
+        HttpRequest.Builder builder = request("PUT", key, Map.of(), Map.of("content-type", contentType), sha256Hex(file))
+                .PUT(HttpRequest.BodyPublishers.ofFile(file));
+        HttpResponse<String> response = expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "PutObject", 200);
+        return response.headers().firstValue("ETag").orElse(null);
+    }
+    
+    String createMultipartUpload(String key, String contentType) throws IOException {
+        HttpRequest.Builder builder = request("POST", key, Map.of("uploads", ""), Map.of("content-type", contentType), EMPTY_SHA256)
+                .POST(HttpRequest.BodyPublishers.noBody());
+        HttpResponse<String> response = expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "CreateMultipartUpload", 200);
+        Matcher matcher = UPLOAD_ID.matcher(response.body());
+        if (!matcher.find()) {
+            throw new IOException("CreateMultipartUpload returned no UploadId for " + key);
+        }
+        return matcher.group(1);
+    }
+    
+    /**
+     * 上传一个分片，返回分片的ETag
+     */
+    String uploadPart(String key, String uploadId, int partNumber, ByteBuffer body) throws IOException {
+        Map<String, String> query = Map.of("partNumber", String.valueOf(partNumber), "uploadId", uploadId);
+        HttpRequest.Builder builder = request("PUT", key, query, Map.of(), sha256Hex(body))
+                .PUT(bodyOf(body));
+        HttpResponse<String> response = expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "UploadPart", 200);
+        return response.headers().firstValue("ETag")
+                .orElseThrow(() -> new IOException("UploadPart returned no ETag for " + key + " part " + partNumber));
+    }
+    
+    /**
+     * 合并分片，返回对象的ETag
+     */
+    String completeMultipartUpload(String key, String uploadId, List<String> partEtags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < partEtags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(partEtags.get(i).replace("\"", "&quot;")).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+        
+        HttpRequest.Builder builder = request("POST", key, Map.of("uploadId", uploadId), Map.of("content-type", "application/xml"), sha256Hex(body, body.length))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        HttpResponse<String> response = expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "CompleteMultipartUpload", 200);
+        // 合并失败时S3也可能返回200，错误放在响应体中
+        if (response.body().contains("<Error>")) {
+            throw new IOException("CompleteMultipartUpload failed for " + key + ": " + errorCode(response.body()));
+        }
+        Matcher matcher = ETAG.matcher(response.body());
+        return matcher.find() ? matcher.group(1).replace("&quot;", "\"") : null;
+    }
+    
+    void abortMultipartUpload(String key, String uploadId) throws IOException {
+        HttpRequest.Builder builder = request("DELETE", key, Map.of("uploadId", uploadId), Map.of(), EMPTY_SHA256).DELETE();
+        expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "AbortMultipartUpload", 204, 200, 404);
+    }
+    
+    /**
+     * 对象元数据，不存在时返回null
+     */
+    StoredObject headObject(String key, String name) throws IOException {
+        HttpRequest.Builder builder = request("HEAD", key, Map.of(), Map.of(), EMPTY_SHA256)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody());
+        HttpResponse<Void> response = send(builder.build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HeadObject " + key + " failed with HTTP " + response.statusCode());
+        }
+        long size = response.headers().firstValueAsLong("Content-Length").orElse(0L);
+        long lastModified = response.headers().firstValue("Last-Modified")
+                .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli())
+                .orElse(0L);
+        return new StoredObject(name, size, lastModified, response.headers().firstValue("ETag").orElse(null));
+    }
+    
+    /**
+     * 读取对象，length 小于0时读取从 offset 起的全部内容；对象不存在时抛出 NoSuchFileException
+     */
+    InputStream getObject(String key, long offset, long length) throws IOException {
+        boolean ranged = offset > 0 || length >= 0;
+        Map<String, String> headers = ranged
+                ? Map.of("range", "bytes=" + offset + "-" + (length >= 0 ? String.valueOf(offset + length - 1) : ""))
+                : Map.of();
+        HttpRequest.Builder builder = request("GET", key, Map.of(), headers, EMPTY_SHA256).GET();
+        HttpResponse<InputStream> response = send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        int status = response.statusCode();
+        if (status == 200 || status == 206) {
+            return response.body();
+        }
+        String body;
+        try (InputStream in = response.body()) {
+            body = new String(in.readNBytes(4096), StandardCharsets.UTF_8);
+        }
+        if (status == 404) {
+            throw new NoSuchFileException(key);
+        }
+        throw new IOException("GetObject " + key + " failed with HTTP " + status + ": " + errorCode(body));
+    }
+    
+    /**
+     * 列出键以 prefix 开头的全部对象（ListObjectsV2，按页续取），返回对象的name为完整的键
+     */
+    List<StoredObject> listObjects(String prefix) throws IOException {
+        List<StoredObject> objects = new ArrayList<>();
+        String token = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", prefix);
+            if (token != null) {
+                query.put("continuation-token", token);
+            }
+            HttpRequest.Builder builder = request("GET", "", query, Map.of(), EMPTY_SHA256).GET();
+            String body = expect(send(builder.build(), HttpResponse.BodyHandlers.ofString()), "ListObjectsV2", 200).body();
+            Matcher contents = CONTENTS.matcher(body);
+            while (contents.find()) {
+                String entry = contents.group(1);
+                Matcher key = KEY.matcher(entry);
+                if (!key.find()) {
+                    continue;
+                }
+                Matcher size = SIZE.matcher(entry);
+                Matcher lastModified = LAST_MODIFIED.matcher(entry);
+                Matcher etag = ETAG.matcher(entry);
+                objects.add(new StoredObject(unescapeXml(key.group(1)),
+                        size.find() ? Long.parseLong(size.group(1)) : 0,
+                        lastModified.find() ? Instant.parse(lastModified.group(1)).toEpochMilli() : 0,
+                        etag.find() ? unescapeXml(etag.group(1)) : null));
+            }
+            Matcher next = NEXT_TOKEN.matcher(body);
+            token = body.contains("<IsTruncated>true</IsTruncated>") && next.find() ? unescapeXml(next.group(1)) : null;
+        } while (token != null);
+        return objects;
+    }
+    
+    /**
+     * 生成预签名GET地址；extraQuery 可包含 response-content-disposition 等响应头覆盖参数
+     */
+    URI presignGet(String key, Duration ttl, Map<String, String> extraQuery) {
+        return presignGet(key, ttl, extraQuery, Instant.now());
+    }
+    
+    URI presignGet(String key, Duration ttl, Map<String, String> extraQuery, Instant now) {
+        String amzDate = AMZ_DATE.format(now);
+        String scope = amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+        Map<String, String> query = new TreeMap<>(extraQuery);
+        query.put("X-Amz-Algorithm", ALGORITHM);
+        query.put("X-Amz-Credential", accessKey + "/" + scope);
+        query.put("X-Amz-Date", amzDate);
+        query.put("X-Amz-Expires", String.valueOf(ttl.getSeconds()));
+        query.put("X-Amz-SignedHeaders", "host");
+        
+        String canonicalQuery = canonicalQuery(query);
+        String canonicalUri = canonicalUri(key);
+        String canonicalRequest = "GET\n" + canonicalUri + "\n" + canonicalQuery + "\nhost:" + hostHeader + "\n\nhost\nUNSIGNED-PAYLOAD";
+        String signature = signature(amzDate, scope, canonicalRequest);
+        return URI.create(scheme + "://" + hostHeader + canonicalUri + "?" + canonicalQuery + "&X-Amz-Signature=" + signature);
+    }
+    
+    private HttpRequest.Builder request(String method, String key, Map<String, String> query,
+                                        Map<String, String> extraHeaders, String payloadHash) {
+        String amzDate = AMZ_DATE.format(Instant.now());
+        Map<String, String> headers = new TreeMap<>(extraHeaders);
+        headers.put("x-amz-content-sha256", payloadHash);
+        headers.put("x-amz-date", amzDate);
+        
+        String canonicalUri = canonicalUri(key);
+        String canonicalQuery = canonicalQuery(query);
+        String authorization = authorization(method, canonicalUri, canonicalQuery, headers, payloadHash, amzDate);
+        
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(scheme + "://" + hostHeader + canonicalUri + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery)))
+                .timeout(requestTimeout)
+                .header("Authorization", authorization);
+        headers.forEach(builder::header);
+        return builder;
+    }
+    
+    /**
+     * Authorization 请求头；headers 为小写名称的待签名请求头（不含 host，host 总是参与签名）
+     */
+    String authorization(String method, String canonicalUri, String canonicalQuery,
+                         Map<String, String> headers, String payloadHash, String amzDate) {
+        Map<String, String> signed = new TreeMap<>(headers);
+        signed.put("host", hostHeader);
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> header : signed.entrySet()) {
+            canonicalHeaders.append(header.getKey()).append(':').append(header.getValue().trim()).append('\n');
+        }
+        String signedHeaders = String.join(";", signed.keySet());
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaders + "\n" + payloadHash;
+        
+        String scope = amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope
+                + ",SignedHeaders=" + signedHeaders + ",Signature=" + signature(amzDate, scope, canonicalRequest);
+    }
+    
+    private String signature(String amzDate, String scope, String canonicalRequest) {
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n"
+                + sha256Hex(canonicalRequest.getBytes(StandardCharsets.UTF_8), -1);
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), amzDate.substring(0, 8));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return hex(hmac(key, stringToSign));
+    }
+    
+    String canonicalUri(String key) {
+        return "/" + (pathStyle ? encode(bucket, false) + "/" : "") + encode(key, true);
+    }
+    
+    private static String canonicalQuery(Map<String, String> query) {
+        Map<String, String> sorted = new TreeMap<>();
+        query.forEach((name, value) -> sorted.put(encode(name, false), encode(value, false)));
+        StringBuilder canonical = new StringBuilder();
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            if (canonical.length() > 0) {
+                canonical.append('&');
+            }
+            canonical.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return canonical.toString();
+    }
+    
+    /**
+     * SigV4 的URI编码：除 A-Z a-z 0-9 - _ . ~ 外按UTF-8字节编码为 %XX（大写）
+     */
+    static String encode(String value, boolean keepSlash) {
+        StringBuilder encoded = new StringBuilder(value.length() + 16);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(HEX[c >> 4])).append(Character.toUpperCase(HEX[c & 0xf]));
+            }
+        }
+        return encoded.toString();
+    }
+    
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return httpClient.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during S3 request " + request.method() + " " + request.uri().getPath(), e);
+        } catch (IOException e) {
+            // 连接失败等异常通常没有消息，补上请求信息
+            throw new IOException("S3 request " + request.method() + " " + request.uri().getPath() + " failed: " + e, e);
+        }
+    }
+    
+    private static HttpResponse<String> expect(HttpResponse<String> response, String operation, int... accepted) throws IOException {
+        for (int status : accepted) {
+            if (response.statusCode() == status) {
+                return response;
+            }
+        }
+        throw new IOException(operation + " " + response.request().uri().getPath() + " failed with HTTP "
+                + response.statusCode() + ": " + errorCode(response.body()));
+    }
+    
+    private static String unescapeXml(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&#13;", "\r").replace("&amp;", "&");
+    }
+    
+    private static String errorCode(String body) {
+        Matcher matcher = ERROR_CODE.matcher(body == null ? "" : body);
+        return matcher.find() ? matcher.group(1) : "no error code";
+    }
+    
+    /**
+     * length 为-1时对整个数组求摘要
+     */
+    private static String sha256Hex(byte[] data, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data, 0, length < 0 ? data.length : length);
+            return hex(digest.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 对 body 的 [position, limit) 求摘要，不改变其位置
+     */
+    private static String sha256Hex(ByteBuffer body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(body.duplicate());
+            return hex(digest.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 以 body 的 [position, limit) 作为请求体，不复制数据；堆外缓冲区整块交给 HttpClient 发送，
+     * 每次订阅（如重发请求）都从头开始
+     */
+    private static HttpRequest.BodyPublisher bodyOf(ByteBuffer body) {
+        if (body.hasArray()) {
+            return HttpRequest.BodyPublishers.ofByteArray(body.array(), body.arrayOffset() + body.position(), body.remaining());
+        }
+        ByteBuffer content = body.duplicate();
+        Flow.Publisher<ByteBuffer> publisher = subscriber -> subscriber.onSubscribe(new Flow.Subscription() {
+            private boolean done;
+            
+            @Override
+            public void request(long n) {
+                if (!done) {
+                    done = true;
+                    subscriber.onNext(content.asReadOnlyBuffer());
+                    subscriber.onComplete();
+                }
+            }
+            
+            @Override
+            public void cancel() {
+                done = true;
+            }
+        });
+        return HttpRequest.BodyPublishers.fromPublisher(publisher, content.remaining());
+    }
+    
+    /**
+     * 按流计算文件内容的 SHA-256（十六进制）
+     */
+    static String sha256Hex(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, n);
+            }
+            return hex(digest.digest());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,183 @@
+package com.formfill.api.store;
+
+import com.formfill.api.dto.FormFillConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * S3兼容对象存储的输出存储（formfill.output.store=s3）
+ *
+ * 多个节点共享同一个桶，填写结果可以由任一节点下载或作为邮件附件发送。
+ * 写入时在内存中缓冲一个分片（formfill.output.s3.part-size-mb）：输出不超过一个分片时以单次PUT上传，
+ * 否则改为分片上传，每写满一个分片上传一次，内存占用不随输出大小增长；未提交的分片上传在关闭时中止。
+ * 分片缓冲区从 BufferPool 取得，上传结束后归还，由后续上传复用。
+ */
+@Component
+@ConditionalOnProperty(prefix = "formfill.output", name = "store", havingValue = "s3")
+public class S3OutputStore implements OutputStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(S3OutputStore.class);
+    
+    // S3 要求除最后一个分片外每个分片不小于5MB
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    
+    private final S3Client client;
+    private final BufferPool bufferPool;
+    private final String prefix;
+    private final int partSize;
+    private final boolean presignDownloads;
+    private final Duration presignTtl;
+    
+    @Autowired
+    public S3OutputStore(FormFillConfig formFillConfig, BufferPool bufferPool) {
+        FormFillConfig.S3 config = formFillConfig.getOutput().getS3();
+        this.client = new S3Client(config, "formfill.output.s3");
+        this.bufferPool = bufferPool;
+        this.prefix = config.getPrefix() == null ? "" : config.getPrefix();
+        this.partSize = Math.max(MIN_PART_SIZE, config.getPartSizeMb() * 1024 * 1024);
+        this.presignDownloads = config.isPresignDownloads();
+        this.presignTtl = Duration.ofSeconds(config.getPresignTtlSeconds());
+        logger.info("Output store: s3://{}/{} via {} (part size {} MB, presigned downloads {})",
+                client.getBucket(), prefix, config.getEndpoint(), partSize / (1024 * 1024), presignDownloads);
+    }
+    
+    @Override
+    public String getType() {
+        return "s3";
+    }
+    
+    @Override
+    public Upload create(String name) {
+        return new S3Upload(name, keyOf(name));
+    }
+    
+    @Override
+    public StoredObject stat(String name) throws IOException {
+        return client.headObject(keyOf(name), name);
+    }
+    
+    @Override
+    public InputStream open(String name) throws IOException {
+        return client.getObject(keyOf(name), 0, -1);
+    }
+    
+    @Override
+    public InputStream open(String name, long offset, long length) throws IOException {
+        return client.getObject(keyOf(name), offset, length);
+    }
+    
+    @Override
+    public String locationOf(String name) {
+        return "s3://" + client.getBucket() + "/" + keyOf(name);
+    }
+    
+    @Override
+    public URI downloadUrl(String name) {
+        if (!presignDownloads) {
+            return null;
+        }
+        String disposition = "attachment; filename*=UTF-8''"
+                + URLEncoder.encode(name, StandardCharsets.UTF_8).replaceAll("\\+", "%20");
+        return client.presignGet(keyOf(name), presignTtl, Map.of("response-content-disposition", disposition));
+    }
+    
+    private String keyOf(String name) {
+        return prefix + OutputStore.requireValidName(name);
+    }
+    
+    private static String contentTypeOf(String name) {
+        return name.toLowerCase().endsWith(".xls")
+                ? "application/vnd.ms-excel"
+                : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+    
+    /**
+     * 缓冲一个分片的写入；缓冲区从池中按需换大，直到分片大小
+     */
+    private final class S3Upload extends Upload {
+        
+        private final String name;
+        private final String key;
+        private final List<String> partEtags = new ArrayList<>();
+        private final PooledBuffer buffer = bufferPool.acquire(INITIAL_BUFFER_SIZE);
+        private String uploadId;
+        private long uploaded;
+        
+        S3Upload(String name, String key) {
+            this.name = name;
+            this.key = key;
+        }
+        
+        @Override
+        protected void writeBytes(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (buffer.size() == partSize) {
+                    flushPart();
+                }
+                int n = Math.min(len, partSize - buffer.size());
+                buffer.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+        
+        private void flushPart() throws IOException {
+            if (uploadId == null) {
+                uploadId = client.createMultipartUpload(key, contentTypeOf(name));
+            }
+            partEtags.add(client.uploadPart(key, uploadId, partEtags.size() + 1, buffer.contents()));
+            uploaded += buffer.size();
+            buffer.reset();
+        }
+        
+        @Override
+        protected StoredObject doCommit() throws IOException {
+            String etag;
+            try {
+                if (uploadId == null) {
+                    etag = client.putObject(key, buffer.contents(), contentTypeOf(name));
+                } else {
+                    if (buffer.size() > 0) {
+                        flushPart();
+                    }
+                    etag = client.completeMultipartUpload(key, uploadId, partEtags);
+                }
+            } catch (IOException e) {
+                doAbort();
+                throw e;
+            }
+            long size = uploaded + buffer.size();
+            buffer.close();
+            return new StoredObject(name, size, System.currentTimeMillis(), etag);
+        }
+        
+        @Override
+        protected void doAbort() {
+            buffer.close();
+            if (uploadId == null) {
+                return;
+            }
+            try {
+                client.abortMultipartUpload(key, uploadId);
+            } catch (IOException e) {
+                // 未中止的分片会占用存储，桶上应配置 AbortIncompleteMultipartUpload 生命周期规则兜底
+                logger.warn("Failed to abort multipart upload {} for {}: {}", uploadId, key, e.getMessage());
+            }
+            uploadId = null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.formfill.api.store;
+
+import com.formfill.api.dto.FormFillConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * S3兼容对象存储模板仓库（formfill.templates.repository=s3）
+ *
+ * 每个版本保存为 <prefix><文件名>/<发布时间>-<版本号>，一次列举（ListObjectsV2）即可得到所有模板的全部版本。
+ */
+@Component
+@ConditionalOnProperty(prefix = "formfill.templates", name = "repository", havingValue = "s3")
+public class S3TemplateStore implements TemplateStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(S3TemplateStore.class);
+    
+    private final S3Client client;
+    private final String prefix;
+    
+    @Autowired
+    public S3TemplateStore(FormFillConfig formFillConfig) {
+        FormFillConfig.S3 config = formFillConfig.getTemplates().getS3();
+        this.client = new S3Client(config, "formfill.templates.s3");
+        this.prefix = config.getPrefix() == null ? "" : config.getPrefix();
+        logger.info("Template repository: s3://{}/{} via {}", client.getBucket(), prefix, config.getEndpoint());
+    }
+    
+    @Override
+    public String getType() {
+        return "s3";
+    }
+    
+    @Override
+    public List<TemplateVersion> list() throws IOException {
+        List<TemplateVersion> versions = new ArrayList<>();
+        for (StoredObject object : client.listObjects(prefix)) {
+            TemplateVersion version = TemplateVersion.parse(object.getName().substring(prefix.length()), object.getSize());
+            if (version != null) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+    
+    @Override
+    public TemplateVersion publish(String fileName, String version, Path content) throws IOException {
+        TemplateVersion published = new TemplateVersion(OutputStore.requireValidName(fileName), version,
+                System.currentTimeMillis(), Files.size(content));
+        String contentType = fileName.toLowerCase().endsWith(".xls")
+                ? "application/vnd.ms-excel"
+                : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        client.putObject(prefix + published.getPath(), content, contentType);
+        return published;
+    }
+    
+    @Override
+    public void fetch(TemplateVersion template, Path target) throws IOException {
+        try (InputStream in = client.getObject(prefix + template.getPath(), 0, -1)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.formfill.api.store;
+
+/**
+ * 输出存储中一个对象的元数据
+ */
+public final class StoredObject {
+    
+    private final String name;
+    private final long size;
+    private final long lastModified;
+    private final String etag;
+    
+    public StoredObject(String name, long size, long lastModified, String etag) {
+        this.name = name;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.etag = etag;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * 最后修改时间（毫秒时间戳）
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    
+    /**
+     * 强校验ETag（含引号）；本地存储为null，下载时由文件属性生成
+     */
+    public String getEtag() {
+        return etag;
+    }
+}
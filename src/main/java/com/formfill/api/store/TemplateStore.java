@@ -0,0 +1,38 @@
+package com.formfill.api.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 多个节点共享的模板仓库
+ *
+ * 由 formfill.templates.repository 选择实现：filesystem 为共享目录（如NFS挂载），
+ * s3 为S3兼容对象存储；为 none 时没有共享仓库，每个节点只使用自己的 templates 目录。
+ * 仓库只追加不可变的版本（见 TemplateVersion），并发发布不会互相覆盖，
+ * 各节点按相同规则选出当前版本，因此最终会同步到同一份内容。
+ */
+public interface TemplateStore {
+    
+    /**
+     * 仓库类型（filesystem / s3），用于日志与版本列表
+     */
+    String getType();
+    
+    /**
+     * 仓库中所有模板的所有版本
+     */
+    List<TemplateVersion> list() throws IOException;
+    
+    /**
+     * 发布模板内容作为该模板的新版本
+     *
+     * @param version 内容的 SHA-256，由调用方计算
+     */
+    TemplateVersion publish(String fileName, String version, Path content) throws IOException;
+    
+    /**
+     * 把某个版本的内容下载到 target（覆盖已有文件）
+     */
+    void fetch(TemplateVersion template, Path target) throws IOException;
+}
@@ -0,0 +1,119 @@
+package com.formfill.api.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 共享模板仓库中一个模板的一个版本
+ *
+ * 版本号是模板内容的 SHA-256（十六进制），同样的内容在任何节点上得到同样的版本号。
+ * 仓库中每个版本保存为 <文件名>/<发布时间>-<版本号>，发布时间为13位毫秒时间戳，
+ * 同一模板按发布时间排序最新的一个为当前版本；各版本发布后不再修改。
+ */
+public final class TemplateVersion {
+    
+    private static final Pattern ENTRY = Pattern.compile("(\\d{13})-([0-9a-f]{64})");
+    
+    private final String fileName;
+    private final String version;
+    private final long publishedAt;
+    private final long size;
+    
+    public TemplateVersion(String fileName, String version, long publishedAt, long size) {
+        this.fileName = fileName;
+        this.version = version;
+        this.publishedAt = publishedAt;
+        this.size = size;
+    }
+    
+    /**
+     * 按仓库中的相对路径解析，不是模板版本的路径返回null
+     */
+    public static TemplateVersion parse(String path, long size) {
+        int slash = path.indexOf('/');
+        if (slash <= 0 || path.indexOf('/', slash + 1) >= 0) {
+            return null;
+        }
+        String fileName = path.substring(0, slash);
+        Matcher matcher = ENTRY.matcher(path.substring(slash + 1));
+        if (!OutputStore.isValidName(fileName) || !matcher.matches()) {
+            return null;
+        }
+        return new TemplateVersion(fileName, matcher.group(2), Long.parseLong(matcher.group(1)), size);
+    }
+    
+    /**
+     * 内容的版本号（SHA-256，十六进制）
+     */
+    public static String versionOf(byte[] content) {
+        MessageDigest digest = sha256();
+        digest.update(content);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    public static String versionOf(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    public static boolean isVersion(String version) {
+        return version != null && version.length() == 64 && version.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'));
+    }
+    
+    /**
+     * 在仓库中的相对路径
+     */
+    public String getPath() {
+        return fileName + "/" + String.format("%013d", publishedAt) + "-" + version;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public String getVersion() {
+        return version;
+    }
+    
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    /**
+     * 同一模板中是否比 other 更新（发布时间相同时按版本号比较，各节点得到同样的结果）
+     */
+    public boolean isNewerThan(TemplateVersion other) {
+        if (other == null) {
+            return true;
+        }
+        if (publishedAt != other.publishedAt) {
+            return publishedAt > other.publishedAt;
+        }
+        return version.compareTo(other.version) > 0;
+    }
+}
@@ -0,0 +1,177 @@
+package com.formfill.api.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileDownloadSupportTest {
+    
+    private static final byte[] CONTENT = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    
+    @TempDir
+    Path dir;
+    
+    private final FileDownloadSupport downloadSupport = new FileDownloadSupport();
+    private Path file;
+    
+    @BeforeEach
+    void createFile() throws Exception {
+        file = Files.write(dir.resolve("form filled.xlsx"), CONTENT);
+    }
+    
+    @Test
+    void servesWholeFileWithoutRange() throws Exception {
+        MockHttpServletResponse response = serve(get());
+        
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(16, response.getContentLengthLong());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals(FileDownloadSupport.XLSX_CONTENT_TYPE, response.getContentType());
+        assertEquals("attachment; filename*=UTF-8''form%20filled.xlsx",
+                response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+    }
+    
+    @Test
+    void servesSingleRange() throws Exception {
+        assertPartial("bytes=2-5", 2, 5);
+    }
+    
+    @Test
+    void servesOpenEndedAndSuffixRanges() throws Exception {
+        assertPartial("bytes=10-", 10, 15);
+        assertPartial("bytes=-3", 13, 15);
+    }
+    
+    @Test
+    void clampsRangeEndToFileLength() throws Exception {
+        assertPartial("bytes=12-1000", 12, 15);
+    }
+    
+    @Test
+    void rejectsRangeStartingPastTheEnd() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=16-20"));
+        
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */16", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void servesWholeFileForMultipleOrMalformedRanges() throws Exception {
+        for (String range : new String[] {"bytes=0-1,4-5", "bytes=abc", "items=0-1"}) {
+            MockHttpServletResponse response = serve(get(range));
+            assertEquals(200, response.getStatus(), range);
+            assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE), range);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), range);
+        }
+    }
+    
+    @Test
+    void honoursIfRangeOnlyWhenValidatorMatches() throws Exception {
+        MockHttpServletResponse first = serve(get());
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        String lastModified = first.getHeader(HttpHeaders.LAST_MODIFIED);
+        
+        MockHttpServletRequest matchingTag = get("bytes=0-3");
+        matchingTag.addHeader(HttpHeaders.IF_RANGE, etag);
+        assertEquals(206, serve(matchingTag).getStatus());
+        
+        MockHttpServletRequest matchingDate = get("bytes=0-3");
+        matchingDate.addHeader(HttpHeaders.IF_RANGE, lastModified);
+        assertEquals(206, serve(matchingDate).getStatus());
+        
+        MockHttpServletRequest staleTag = get("bytes=0-3");
+        staleTag.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+        MockHttpServletResponse response = serve(staleTag);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        
+        // If-Range 不接受弱ETag
+        MockHttpServletRequest weakTag = get("bytes=0-3");
+        weakTag.addHeader(HttpHeaders.IF_RANGE, "W/" + etag);
+        assertEquals(200, serve(weakTag).getStatus());
+    }
+    
+    @Test
+    void headRequestReportsRangeWithoutBody() throws Exception {
+        MockHttpServletRequest request = get("bytes=2-5");
+        request.setMethod("HEAD");
+        MockHttpServletResponse response = serve(request);
+        
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/16", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void notModifiedTakesPrecedenceOverRange() throws Exception {
+        String etag = serve(get()).getHeader(HttpHeaders.ETAG);
+        MockHttpServletRequest request = get("bytes=2-5");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "W/" + etag);
+        MockHttpServletResponse response = serve(request);
+        
+        assertEquals(304, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+    
+    @Test
+    void handsRangeToContainerSendfile() throws Exception {
+        MockHttpServletRequest request = get("bytes=4-7");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = serve(request);
+        
+        assertEquals(206, response.getStatus());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(4L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        // sendfile 的结束位置不含
+        assertEquals(8L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+    
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadSupport.serve(get(), response, dir.resolve("missing.xlsx"), "no-cache");
+        
+        assertEquals(404, response.getStatus());
+    }
+    
+    private void assertPartial(String range, int start, int end) throws Exception {
+        MockHttpServletResponse response = serve(get(range));
+        
+        assertEquals(206, response.getStatus(), range);
+        assertEquals("bytes " + start + "-" + end + "/16", response.getHeader(HttpHeaders.CONTENT_RANGE), range);
+        assertEquals(end - start + 1, response.getContentLengthLong(), range);
+        assertEquals(new String(CONTENT, start, end - start + 1, StandardCharsets.US_ASCII),
+                response.getContentAsString(), range);
+    }
+    
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadSupport.serve(request, response, file, "private, no-cache");
+        return response;
+    }
+    
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/download/file.xlsx");
+    }
+    
+    private static MockHttpServletRequest get(String range) {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+}
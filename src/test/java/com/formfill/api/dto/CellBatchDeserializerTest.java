@@ -0,0 +1,115 @@
+package com.formfill.api.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CellBatchDeserializerTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Test
+    void readsNumericAndA1Tuples() throws Exception {
+        CellBatch batch = read("[[3, 2, \"张三\"], [\"B4\", \"男\"], [5, 3, 42], [6, 1, null]]");
+        
+        assertEquals(List.of("3,2=张三", "4,2=男", "5,3=42", "6,1=null"), cells(batch));
+        assertNull(batch.getValue(3));
+    }
+    
+    @Test
+    void readsColumnarObject() throws Exception {
+        CellBatch batch = read("{\"rows\": [3, 4], \"cols\": [2, 2], \"values\": [\"张三\", \"男\"]}");
+        
+        assertEquals(List.of("3,2=张三", "4,2=男"), cells(batch));
+    }
+    
+    @Test
+    void readsA1CellsAndRangeBlocks() throws Exception {
+        CellBatch batch = read("{\"B3\": \"张三\", \"B4:C5\": [[\"a\", \"b\"], [\"c\", \"d\"]]}");
+        
+        assertEquals(List.of("3,2=张三", "4,2=a", "4,3=b", "5,2=c", "5,3=d"), cells(batch));
+    }
+    
+    @Test
+    void growsBeyondInitialCapacity() throws Exception {
+        StringBuilder json = new StringBuilder("{\"rows\": [");
+        for (int i = 1; i <= 100; i++) {
+            json.append(i == 1 ? "" : ",").append(i);
+        }
+        json.append("], \"cols\": [");
+        for (int i = 1; i <= 100; i++) {
+            json.append(i == 1 ? "" : ",").append(1);
+        }
+        json.append("], \"values\": [");
+        for (int i = 1; i <= 100; i++) {
+            json.append(i == 1 ? "" : ",").append('"').append("v").append(i).append('"');
+        }
+        json.append("]}");
+        
+        CellBatch batch = read(json.toString());
+        
+        assertEquals(100, batch.size());
+        assertEquals(100, batch.getRow(99));
+        assertEquals("v100", batch.getValue(99));
+    }
+    
+    @Test
+    void rejectsTuplesWithTooFewElements() {
+        assertMismatch("[[3, 2]]", "Cell tuple has too few elements");
+        assertMismatch("[[3]]", "Cell tuple has too few elements");
+        assertMismatch("[[\"B3\"]]", "Cell tuple has too few elements");
+        assertMismatch("[[]]", "Cell tuple has too few elements");
+    }
+    
+    @Test
+    void rejectsTuplesWithTooManyElements() {
+        assertMismatch("[[3, 2, \"a\", \"b\"]]", "Cell tuple has too many elements");
+    }
+    
+    @Test
+    void rejectsMalformedInput() {
+        assertMismatch("[3, 2, \"a\"]", "Each cell must be [row, col, value]");
+        assertMismatch("[[\"x\", 2, \"a\"]]", "Invalid A1 reference: x");
+        assertMismatch("[[3, \"b\", \"a\"]]", "Row/column index must be a number");
+        assertMismatch("{\"rows\": [3], \"cols\": [2, 3], \"values\": [\"a\"]}",
+                "Columnar cells require rows, cols and values of equal length");
+        assertMismatch("{\"B3:B3\": [[\"a\", \"b\"]]}", "Values exceed range B3:B3");
+        assertMismatch("{\"B3:?\": [[\"a\"]]}", "Invalid A1 range: B3:?");
+    }
+    
+    @Test
+    void rejectsNestedValues() {
+        String message = "Cell value must be a string, number, boolean or null";
+        assertMismatch("[[3, 2, {\"a\": 1}], [4, 2, \"b\"]]", message);
+        assertMismatch("[[3, 2, [\"a\"]], [4, 2, \"b\"]]", message);
+        assertMismatch("[[\"B3\", {}]]", message);
+        assertMismatch("{\"rows\": [3], \"cols\": [2], \"values\": [[\"a\"]]}", message);
+        assertMismatch("{\"B3\": {\"a\": 1}, \"B4\": \"b\"}", message);
+        assertMismatch("{\"B3:C3\": [[\"a\", [\"b\"]]]}", message);
+    }
+    
+    private CellBatch read(String json) throws Exception {
+        return objectMapper.readValue(json, CellBatch.class);
+    }
+    
+    private void assertMismatch(String json, String message) {
+        MismatchedInputException e = assertThrows(MismatchedInputException.class, () -> read(json), json);
+        assertTrue(e.getOriginalMessage().startsWith(message), json + ": " + e.getOriginalMessage());
+    }
+    
+    private static List<String> cells(CellBatch batch) {
+        List<String> cells = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            cells.add(batch.getRow(i) + "," + batch.getCol(i) + "=" + batch.getValue(i));
+        }
+        return cells;
+    }
+}
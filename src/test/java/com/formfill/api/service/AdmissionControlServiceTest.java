@@ -0,0 +1,196 @@
+package com.formfill.api.service;
+
+import com.formfill.api.dto.FormFillConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControlServiceTest {
+    
+    // 64 MB
+    private static final int BUDGET_KB = 64 * 1024;
+    
+    @TempDir
+    Path dir;
+    
+    private final FormFillConfig formFillConfig = new FormFillConfig();
+    private final FormFillerService formFillerService = mock(FormFillerService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    @BeforeEach
+    void configure() throws IOException {
+        FormFillConfig.Admission admission = formFillConfig.getAdmission();
+        admission.setMemoryBudgetMb(BUDGET_KB / 1024);
+        admission.setBaseCostKb(1024);
+        admission.setMaxConcurrentPerTemplate(2);
+        admission.setQueueTimeoutMs(50);
+        
+        // 小模板：1KB；大模板：2MB，按40倍放大后超过整个预算
+        when(formFillerService.locateTemplate("small")).thenReturn(template("small.xlsx", 1024));
+        when(formFillerService.locateTemplate("other")).thenReturn(template("other.xlsx", 1024));
+        when(formFillerService.locateTemplate("huge")).thenReturn(template("huge.xlsx", 2 * 1024 * 1024));
+        when(formFillerService.locateTemplate("huge2")).thenReturn(template("huge2.xlsx", 2 * 1024 * 1024));
+    }
+    
+    @Test
+    void estimatesTemplateAndFieldCost() {
+        AdmissionControlService service = service();
+        
+        // 1024 + (10240 * 40 + 100 * 2048) / 1024
+        assertEquals(1624, service.estimateCostKb(10_240, 100));
+        assertEquals(1024, service.estimateCostKb(0, 0));
+    }
+    
+    @Test
+    void capsEstimateAtTheWholeBudget() {
+        AdmissionControlService service = service();
+        
+        assertEquals(BUDGET_KB, service.estimateCostKb(100L * 1024 * 1024, 0));
+        assertEquals(BUDGET_KB, service.estimateCostKb(0, Integer.MAX_VALUE));
+    }
+    
+    @Test
+    void oversizeFillsRunAlone() throws Exception {
+        AdmissionControlService service = service();
+        
+        AdmissionControlService.Permit first = service.acquire("huge", 0);
+        assertEquals(BUDGET_KB, first.getCostKb());
+        assertEquals(BUDGET_KB, inUseKb());
+        
+        // 不同模板的舱壁不相干，被拒绝只能是因为内存预算
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, () -> service.acquire("huge2", 0));
+        assertTrue(e.getMessage().startsWith("Fill memory budget exhausted"), e.getMessage());
+        assertThrows(AdmissionRejectedException.class, () -> service.acquire("small", 1));
+        
+        first.close();
+        try (AdmissionControlService.Permit second = service.acquire("huge2", 0)) {
+            assertEquals(BUDGET_KB, second.getCostKb());
+        }
+        assertEquals(0, inUseKb());
+    }
+    
+    @Test
+    void smallFillsShareTheBudget() {
+        AdmissionControlService service = service();
+        
+        AdmissionControlService.Permit a = service.acquire("small", 10);
+        AdmissionControlService.Permit b = service.acquire("other", 10);
+        assertEquals(a.getCostKb() + b.getCostKb(), inUseKb());
+        
+        a.close();
+        b.close();
+        assertEquals(0, inUseKb());
+    }
+    
+    @Test
+    void bulkheadLimitsConcurrentFillsPerTemplate() {
+        AdmissionControlService service = service();
+        
+        AdmissionControlService.Permit a = service.acquire("small", 1);
+        AdmissionControlService.Permit b = service.acquire("small", 1);
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, () -> service.acquire("small", 1));
+        assertEquals("Too many concurrent fills for template: small.xlsx", e.getMessage());
+        assertEquals(2, e.getRetryAfterSeconds());
+        // 其他模板不受影响
+        service.acquire("other", 1).close();
+        
+        a.close();
+        service.acquire("small", 1).close();
+        b.close();
+    }
+    
+    @Test
+    void memoryRejectionReturnsTheBulkheadSlot() {
+        formFillConfig.getAdmission().setMaxConcurrentPerTemplate(1);
+        AdmissionControlService service = service();
+        
+        AdmissionControlService.Permit huge = service.acquire("huge", 0);
+        assertThrows(AdmissionRejectedException.class, () -> service.acquire("small", 1));
+        huge.close();
+        
+        // 上一次因预算被拒时已归还舱壁名额
+        service.acquire("small", 1).close();
+    }
+    
+    @Test
+    void unknownTemplatesShareOneBulkhead() {
+        AdmissionControlService service = service();
+        
+        AdmissionControlService.Permit a = service.acquire("missing-1", 0);
+        AdmissionControlService.Permit b = service.acquire("missing-2", 0);
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class, () -> service.acquire("missing-3", 0));
+        assertEquals("Too many concurrent fills for template: " + AdmissionControlService.UNKNOWN_TEMPLATE_KEY, e.getMessage());
+        a.close();
+        b.close();
+    }
+    
+    @Test
+    void combinedFillsChargeAllTemplates() {
+        AdmissionControlService service = service();
+        
+        try (AdmissionControlService.Permit permit = service.acquire(List.of("small", "other"), 0)) {
+            assertEquals(service.estimateCostKb(2048, 0), permit.getCostKb());
+        }
+    }
+    
+    @Test
+    void closingTwiceReleasesOnce() {
+        AdmissionControlService service = service();
+        
+        AdmissionControlService.Permit kept = service.acquire("other", 0);
+        AdmissionControlService.Permit permit = service.acquire("small", 0);
+        permit.close();
+        permit.close();
+        assertEquals(kept.getCostKb(), inUseKb());
+        kept.close();
+    }
+    
+    @Test
+    void callReleasesThePermitWhenWorkFails() {
+        AdmissionControlService service = service();
+        
+        assertThrows(IllegalStateException.class, () -> service.call("small", 1, () -> {
+            throw new IllegalStateException("fill failed");
+        }));
+        assertEquals(0, inUseKb());
+    }
+    
+    @Test
+    void disabledAdmissionAlwaysGrants() {
+        formFillConfig.getAdmission().setEnabled(false);
+        AdmissionControlService service = service();
+        
+        assertSame(AdmissionControlService.Permit.NOOP, service.acquire("huge", 0));
+        assertSame(AdmissionControlService.Permit.NOOP, service.acquire("huge2", 0));
+    }
+    
+    private AdmissionControlService service() {
+        return new AdmissionControlService(formFillConfig, formFillerService, meterRegistry);
+    }
+    
+    private long inUseKb() {
+        return (long) meterRegistry.get("formfill.admission.memory.in_use").gauge().value() / 1024;
+    }
+    
+    private File template(String name, long size) throws IOException {
+        File file = dir.resolve(name).toFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,141 @@
+package com.formfill.api.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class FairRequestSchedulerTest {
+    
+    private static final long WAIT_MS = 10_000;
+    
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<String> granted = new CopyOnWriteArrayList<>();
+    
+    @AfterEach
+    void stopWaiters() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join(WAIT_MS);
+        }
+    }
+    
+    @Test
+    void grantsImmediatelyBelowLimit() throws InterruptedException {
+        FairRequestScheduler scheduler = new FairRequestScheduler(2, 4);
+        
+        assertTrue(scheduler.acquire("a", 1, 0));
+        assertTrue(scheduler.acquire("b", 1, 0));
+        assertEquals(2, scheduler.getInFlight());
+        
+        scheduler.release();
+        scheduler.release();
+        assertEquals(0, scheduler.getInFlight());
+        assertEquals(0, scheduler.getWaiting());
+    }
+    
+    @Test
+    void timesOutAndWithdrawsFromQueue() throws InterruptedException {
+        FairRequestScheduler scheduler = new FairRequestScheduler(1, 4);
+        assertTrue(scheduler.acquire("a", 1, 0));
+        
+        assertFalse(scheduler.acquire("b", 1, 50));
+        assertEquals(0, scheduler.getWaiting());
+        
+        // 撤回后名额释放不应交给已超时的请求
+        scheduler.release();
+        assertEquals(0, scheduler.getInFlight());
+        assertTrue(scheduler.acquire("b", 1, 0));
+    }
+    
+    @Test
+    void rejectsWhenClientQueueIsFull() throws InterruptedException {
+        FairRequestScheduler scheduler = new FairRequestScheduler(1, 1);
+        assertTrue(scheduler.acquire("holder", 1, 0));
+        
+        enqueue(scheduler, "a", 1);
+        assertFalse(scheduler.acquire("a", 1, WAIT_MS));
+        // 其它调用方有自己的队列
+        enqueue(scheduler, "b", 1);
+        assertEquals(2, scheduler.getWaiting());
+    }
+    
+    @Test
+    void sharesReleasedSlotsRoundRobinAcrossClients() throws InterruptedException {
+        FairRequestScheduler scheduler = new FairRequestScheduler(1, 10);
+        assertTrue(scheduler.acquire("holder", 1, 0));
+        for (int i = 0; i < 4; i++) {
+            enqueue(scheduler, "heavy", 1);
+        }
+        enqueue(scheduler, "light", 1);
+        
+        releaseAll(scheduler, 5);
+        
+        assertEquals(List.of("heavy", "light", "heavy", "heavy", "heavy"), granted);
+    }
+    
+    @Test
+    void grantsUpToWeightPerRound() throws InterruptedException {
+        FairRequestScheduler scheduler = new FairRequestScheduler(1, 10);
+        assertTrue(scheduler.acquire("holder", 1, 0));
+        for (int i = 0; i < 4; i++) {
+            enqueue(scheduler, "heavy", 2);
+        }
+        for (int i = 0; i < 2; i++) {
+            enqueue(scheduler, "light", 1);
+        }
+        
+        releaseAll(scheduler, 6);
+        
+        assertEquals(List.of("heavy", "heavy", "light", "heavy", "heavy", "light"), granted);
+        assertEquals(1, scheduler.getInFlight());
+    }
+    
+    /**
+     * 启动一个等待线程，待其进入队列后返回，保证入队顺序
+     */
+    private void enqueue(FairRequestScheduler scheduler, String client, int weight) {
+        int waiting = scheduler.getWaiting();
+        Thread thread = new Thread(() -> {
+            try {
+                if (scheduler.acquire(client, weight, WAIT_MS)) {
+                    granted.add(client);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "waiter-" + client);
+        threads.add(thread);
+        thread.start();
+        awaitCondition(() -> scheduler.getWaiting() == waiting + 1);
+    }
+    
+    /**
+     * 逐个归还名额，每次等被唤醒的请求记录后再归还下一个
+     */
+    private void releaseAll(FairRequestScheduler scheduler, int count) {
+        for (int i = 0; i < count; i++) {
+            int expected = i + 1;
+            scheduler.release();
+            awaitCondition(() -> granted.size() == expected);
+        }
+    }
+    
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for scheduler state");
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
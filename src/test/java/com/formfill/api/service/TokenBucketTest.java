@@ -0,0 +1,58 @@
+package com.formfill.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+    
+    @Test
+    void allowsBurstThenReportsWaitUntilNextToken() {
+        TokenBucket bucket = new TokenBucket(1.0, 3);
+        
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, bucket.tryConsume(), "request " + i + " within burst");
+        }
+        long waitNanos = bucket.tryConsume();
+        assertTrue(waitNanos > 0, "burst exhausted");
+        assertTrue(waitNanos <= TimeUnit.SECONDS.toNanos(1), "wait is at most one interval: " + waitNanos);
+    }
+    
+    @Test
+    void rejectedRequestsDoNotConsumeTokens() {
+        TokenBucket bucket = new TokenBucket(1.0, 1);
+        
+        assertEquals(0L, bucket.tryConsume());
+        long first = bucket.tryConsume();
+        long second = bucket.tryConsume();
+        assertTrue(first > 0 && second > 0);
+        // 被拒绝的请求不推进TAT，等待时间不会累加
+        assertTrue(second <= first, "wait should not grow: " + first + " -> " + second);
+    }
+    
+    @Test
+    void refillsAtConfiguredRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(5.0, 1);
+        
+        assertEquals(0L, bucket.tryConsume());
+        long waitNanos = bucket.tryConsume();
+        assertTrue(waitNanos > 0);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 20);
+        assertEquals(0L, bucket.tryConsume());
+    }
+    
+    @Test
+    void isFullOnceIdleForTheRefillPeriod() {
+        TokenBucket bucket = new TokenBucket(1.0, 2);
+        assertTrue(bucket.isFull(System.nanoTime()));
+        
+        bucket.tryConsume();
+        long now = System.nanoTime();
+        assertFalse(bucket.isFull(now));
+        assertTrue(bucket.isFull(now + TimeUnit.SECONDS.toNanos(2)));
+    }
+}